@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb;
+
+/**
+ * A database can be configured with a compaction filter to drop or rewrite
+ * entries while they are compacted, e.g. to expire values carrying a time to
+ * live without a full scan followed by deletes.
+ * <p>
+ * The filter is only presented values that no live {@link Snapshot} can read:
+ * entries visible from a snapshot and deletions are written unchanged. Snapshots
+ * taken while a compaction is running may observe its filtered output once the
+ * compaction is installed.
+ * <p>
+ * The filter is invoked from the background compaction thread.
+ */
+public interface CompactionFilter
+{
+    /**
+     * Decide what happens to an entry written by a compaction.
+     *
+     * @param level level the compaction output is written to
+     * @param key   user key of the entry
+     * @param value current value of the entry
+     * @return {@code value} itself to keep the entry unchanged, a new value to replace it,
+     * or {@code null} to delete the key, as if it had been deleted when the value was written
+     */
+    byte[] filter(int level, byte[] key, byte[] value);
+}
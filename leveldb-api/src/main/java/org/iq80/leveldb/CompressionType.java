@@ -28,7 +28,10 @@ public enum CompressionType
     // NOTE: do not change the values of existing entries, as these are
     // part of the persistent format on disk.
     NONE(0x00),
-    SNAPPY(0x01);
+    SNAPPY(0x01),
+    // same identifiers as used by RocksDB for these codecs
+    LZ4(0x04),
+    ZSTD(0x07);
 
     public static CompressionType getCompressionTypeByPersistentId(int persistentId)
     {
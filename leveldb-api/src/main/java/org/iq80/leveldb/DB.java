@@ -18,6 +18,8 @@
 package org.iq80.leveldb;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -78,6 +80,12 @@ public interface DB
     void delete(byte[] key)
             throws DBException;
 
+    void merge(byte[] key, byte[] operand)
+            throws DBException;
+
+    void deleteRange(byte[] begin, byte[] end)
+            throws DBException;
+
     void write(WriteBatch updates)
             throws DBException;
 
@@ -108,6 +116,28 @@ public interface DB
     Snapshot delete(byte[] key, WriteOptions options)
             throws DBException;
 
+    /**
+     * Combine "operand" with the database entry (if any) for "key" using
+     * {@link Options#mergeOperator()}, without reading the current value.
+     *
+     * @return null if {@link WriteOptions#snapshot()}==false otherwise returns a snapshot
+     * of the DB after this operation.
+     * @throws DBException on any write failure
+     */
+    Snapshot merge(byte[] key, byte[] operand, WriteOptions options)
+            throws DBException;
+
+    /**
+     * Remove the database entries (if any) of every key in the range ["begin", "end").
+     * Nothing is removed if "begin" &gt;= "end".
+     *
+     * @return null if {@link WriteOptions#snapshot()}==false otherwise returns a snapshot
+     * of the DB after this operation.
+     * @throws DBException on any write failure
+     */
+    Snapshot deleteRange(byte[] begin, byte[] end, WriteOptions options)
+            throws DBException;
+
     /**
      * Apply the specified updates to the database.
      * <p>
@@ -163,6 +193,8 @@ public interface DB
      * of the sstables that make up the db contents.</li>
      * <li>"leveldb.approximate-memory-usage" - returns the approximate number of
      * bytes of memory in use by the DB.</li>
+     * <li>"leveldb.rate-limiter-throttled-micros" - returns the total time flushes
+     * and compactions waited for the compaction rate limiter.</li>
      * </ul>
      *
      * @param name property name
@@ -201,4 +233,20 @@ public interface DB
      */
     void compactRange(byte[] begin, byte[] end)
             throws DBException;
+
+    /**
+     * Add table files built outside of the database to it, without going
+     * through the log and the memtable. Each file must hold keys in strictly
+     * increasing order and the key ranges of the files must not overlap.
+     * <p>
+     * The entries of the files become visible atomically and replace the
+     * existing entries of the same keys, snapshots taken before the call do
+     * not see them. The files are copied into the database directory and can
+     * be deleted once the call returns.
+     *
+     * @param files table files to add
+     * @throws DBException if a file is invalid or could not be added
+     */
+    void ingestExternalFiles(List<File> files)
+            throws DBException;
 }
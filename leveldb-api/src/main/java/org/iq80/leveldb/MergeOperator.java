@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb;
+
+/**
+ * A database can be configured with a merge operator to record
+ * read-modify-write updates, e.g. counters or list appends, as operands
+ * written with {@link DB#merge(byte[], byte[])} instead of reading the
+ * current value first. Operands are combined when the key is read and folded
+ * together when they are compacted.
+ * <p>
+ * The operator must be associative: besides combining an operand with the
+ * current value, it is used to combine two operands into one, passing the
+ * older operand as {@code existingValue}.
+ * <p>
+ * The operator is invoked from reading threads and from the background
+ * compaction thread.
+ */
+public interface MergeOperator
+{
+    /**
+     * Combine an operand with the value it is applied to.
+     *
+     * @param key           user key of the entry
+     * @param existingValue value or older operand the operand is applied to,
+     *                      {@code null} if the key has no value
+     * @param operand       operand to apply
+     * @return the combined value, never {@code null}
+     */
+    byte[] merge(byte[] key, byte[] existingValue, byte[] operand);
+}
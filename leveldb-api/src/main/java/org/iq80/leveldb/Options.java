@@ -17,6 +17,10 @@
  */
 package org.iq80.leveldb;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Options to control the behavior of a database
  */
@@ -32,12 +36,35 @@ public class Options
     private int maxFileSize = 2 << 20;
     private int blockSize = 4 * 1024;
     private CompressionType compressionType = CompressionType.SNAPPY;
+    private List<CompressionType> compressionPerLevel;
+    private int compressionDictionarySize;
+    private int compressionThreads = 1;
     private boolean paranoidChecks;
     private DBComparator comparator;
+    private CompactionFilter compactionFilter;
+    private MergeOperator mergeOperator;
     private Logger logger;
     private long cacheSize = 8 << 20;
     private XFilterPolicy filterPolicy;
     private boolean reuseLogs = false;
+    private boolean partitionIndexAndFilters;
+    private int metadataBlockSize = 4 * 1024;
+    private int minBlobSize;
+    private double blobGarbageRatio = 0.5;
+    private boolean useDirectIO;
+    private boolean zeroCopyMmapReads;
+    private long compactionRateLimit;
+    private boolean autoTuneCompactionRateLimit;
+    private int compactionReadaheadSize = 2 * 1024 * 1024;
+    private boolean warmTableCache;
+    private boolean preloadIndexAndFilters;
+    private boolean blockCacheWarmList;
+    private int blockCacheWarmListPeriod;
+    private long blockCacheWarmupRate = 32 * 1024 * 1024;
+    private long maxManifestFileSize = 64 * 1024 * 1024;
+    private int recycleLogFileNum;
+    private int logPreallocationSize;
+    private SyncCoordinator syncCoordinator;
 
     /**
      * Clone, create a copy of the provided instance of {@link Options}
@@ -54,12 +81,35 @@ public class Options
         options1.maxFileSize = options.maxFileSize;
         options1.blockSize = options.blockSize;
         options1.compressionType = options.compressionType;
+        options1.compressionPerLevel = options.compressionPerLevel;
+        options1.compressionDictionarySize = options.compressionDictionarySize;
+        options1.compressionThreads = options.compressionThreads;
         options1.paranoidChecks = options.paranoidChecks;
         options1.comparator = options.comparator;
+        options1.compactionFilter = options.compactionFilter;
+        options1.mergeOperator = options.mergeOperator;
         options1.logger = options.logger;
         options1.cacheSize = options.cacheSize;
         options1.filterPolicy = options.filterPolicy;
         options1.reuseLogs = options.reuseLogs;
+        options1.partitionIndexAndFilters = options.partitionIndexAndFilters;
+        options1.metadataBlockSize = options.metadataBlockSize;
+        options1.minBlobSize = options.minBlobSize;
+        options1.blobGarbageRatio = options.blobGarbageRatio;
+        options1.useDirectIO = options.useDirectIO;
+        options1.zeroCopyMmapReads = options.zeroCopyMmapReads;
+        options1.compactionRateLimit = options.compactionRateLimit;
+        options1.autoTuneCompactionRateLimit = options.autoTuneCompactionRateLimit;
+        options1.compactionReadaheadSize = options.compactionReadaheadSize;
+        options1.warmTableCache = options.warmTableCache;
+        options1.preloadIndexAndFilters = options.preloadIndexAndFilters;
+        options1.blockCacheWarmList = options.blockCacheWarmList;
+        options1.blockCacheWarmListPeriod = options.blockCacheWarmListPeriod;
+        options1.blockCacheWarmupRate = options.blockCacheWarmupRate;
+        options1.maxManifestFileSize = options.maxManifestFileSize;
+        options1.recycleLogFileNum = options.recycleLogFileNum;
+        options1.logPreallocationSize = options.logPreallocationSize;
+        options1.syncCoordinator = options.syncCoordinator;
         return options1;
     }
 
@@ -224,7 +274,12 @@ public class Options
      * incompressible, the {@link CompressionType#SNAPPY} implementation will
      * efficiently detect that and will switch to uncompressed mode.
      * <p>
-     * If Snappy compression is not available, {@link CompressionType#NONE}
+     * {@link CompressionType#LZ4} decompresses faster than Snappy for a similar
+     * ratio, while {@link CompressionType#ZSTD} trades CPU for a noticeably
+     * better ratio. Both have pure Java implementations and do not require
+     * native libraries.
+     * <p>
+     * If the selected compression is not available, {@link CompressionType#NONE}
      * will be used.
      */
     public Options compressionType(CompressionType compressionType)
@@ -234,6 +289,93 @@ public class Options
         return this;
     }
 
+    public List<CompressionType> compressionPerLevel()
+    {
+        return compressionPerLevel;
+    }
+
+    /**
+     * Compression to use for tables written to each level, index {@code i}
+     * applying to level {@code i}. Levels past the end of the list use the
+     * last entry. When {@code null} or empty, {@link #compressionType()} is
+     * used for every level.
+     * <p>
+     * Upper levels are small and rewritten often, so a cheap codec (or none)
+     * there saves compaction CPU, while the last level holds most of the data
+     * and benefits from a stronger codec such as {@link CompressionType#ZSTD}.
+     * For example {@code [NONE, NONE, LZ4, LZ4, LZ4, LZ4, ZSTD]}.
+     * A memtable flush uses the entry of the level its table is placed at,
+     * which can be below level 0 if no table overlaps its keys.
+     * <p>
+     * Entries whose compression is not available are replaced with
+     * {@link CompressionType#NONE}.
+     * <p>
+     * Default: null
+     */
+    public Options compressionPerLevel(List<CompressionType> compressionPerLevel)
+    {
+        if (compressionPerLevel == null || compressionPerLevel.isEmpty()) {
+            this.compressionPerLevel = null;
+        }
+        else {
+            for (CompressionType compressionType : compressionPerLevel) {
+                checkArgNotNull(compressionType, "compressionPerLevel entry");
+            }
+            this.compressionPerLevel = Collections.unmodifiableList(new ArrayList<>(compressionPerLevel));
+        }
+        return this;
+    }
+
+    public int compressionDictionarySize()
+    {
+        return compressionDictionarySize;
+    }
+
+    /**
+     * Maximum size of a compression dictionary trained for each table written
+     * by a compaction to the bottommost level, or 0 to disable dictionaries.
+     * <p>
+     * The first data blocks of such a table, up to 100 times this size but no
+     * more than {@link #maxFileSize()}, are held in memory as samples to train
+     * the dictionary, which is stored in the table and used to compress all of
+     * its data blocks.
+     * This greatly improves the ratio of small blocks of similar records, for
+     * which a block on its own gives little to compress against. Typical
+     * values are 16KB to 64KB.
+     * <p>
+     * Only applies to {@link CompressionType#ZSTD} with the native zstd-jni
+     * library, which is also required to read such tables.
+     * <p>
+     * Default: 0
+     */
+    public Options compressionDictionarySize(int compressionDictionarySize)
+    {
+        this.compressionDictionarySize = compressionDictionarySize;
+        return this;
+    }
+
+    public int compressionThreads()
+    {
+        return compressionThreads;
+    }
+
+    /**
+     * Number of threads used to compress the data blocks of tables written by
+     * compactions and memtable flushes. With more than one thread, blocks are
+     * compressed concurrently while the compaction thread keeps merging keys,
+     * which helps when compaction is bound by a heavy codec such as
+     * {@link CompressionType#ZSTD} and cores are idle. Handing blocks to other
+     * threads has a cost, so this does not pay off on one or two cores.
+     * Tables are identical either way.
+     * <p>
+     * Default: 1, compress on the compaction thread
+     */
+    public Options compressionThreads(int compressionThreads)
+    {
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
     public long cacheSize()
     {
         return cacheSize;
@@ -271,6 +413,38 @@ public class Options
         return this;
     }
 
+    public CompactionFilter compactionFilter()
+    {
+        return compactionFilter;
+    }
+
+    /**
+     * If non-null, compactions pass to {@code compactionFilter} the values that no
+     * snapshot can read, so that it can drop or rewrite them.
+     * Default: null
+     */
+    public Options compactionFilter(CompactionFilter compactionFilter)
+    {
+        this.compactionFilter = compactionFilter;
+        return this;
+    }
+
+    public MergeOperator mergeOperator()
+    {
+        return mergeOperator;
+    }
+
+    /**
+     * Operator combining the operands written with {@link DB#merge(byte[], byte[])}.
+     * Merges can only be written to a database opened with a merge operator.
+     * Default: null
+     */
+    public Options mergeOperator(MergeOperator mergeOperator)
+    {
+        this.mergeOperator = mergeOperator;
+        return this;
+    }
+
     public Logger logger()
     {
         return logger;
@@ -337,4 +511,350 @@ public class Options
     {
         return this.reuseLogs;
     }
+
+    public boolean partitionIndexAndFilters()
+    {
+        return partitionIndexAndFilters;
+    }
+
+    /**
+     * If true, new tables are written with a two-level index: a small
+     * top-level index pointing to index partitions of about
+     * {@link #metadataBlockSize()} bytes each. When a filter policy is set,
+     * the filter is partitioned the same way, one filter per index partition.
+     * <p>
+     * Only the top-level index is held in memory for the lifetime of an open
+     * table; partitions are loaded on demand through the block cache. This
+     * keeps table opening fast and memory bounded for very large files.
+     * Tables written with either setting can always be read.
+     * <p>
+     * Default: false
+     */
+    public Options partitionIndexAndFilters(boolean partitionIndexAndFilters)
+    {
+        this.partitionIndexAndFilters = partitionIndexAndFilters;
+        return this;
+    }
+
+    public int metadataBlockSize()
+    {
+        return metadataBlockSize;
+    }
+
+    /**
+     * Approximate size of each index (and filter) partition when
+     * {@link #partitionIndexAndFilters()} is enabled.
+     * <p>
+     * Default: 4KB
+     */
+    public Options metadataBlockSize(int metadataBlockSize)
+    {
+        this.metadataBlockSize = metadataBlockSize;
+        return this;
+    }
+
+    public int minBlobSize()
+    {
+        return minBlobSize;
+    }
+
+    /**
+     * If positive, values of at least {@code minBlobSize} bytes are written
+     * to separate append-only blob files when they are flushed or compacted,
+     * tables only storing a reference to them. Compactions then rewrite the
+     * keys without copying these values again, at the cost of an extra read
+     * for each large value returned.
+     * <p>
+     * Default: 0, values are stored in tables
+     */
+    public Options minBlobSize(int minBlobSize)
+    {
+        this.minBlobSize = minBlobSize;
+        return this;
+    }
+
+    public double blobGarbageRatio()
+    {
+        return blobGarbageRatio;
+    }
+
+    /**
+     * Fraction of the bytes of a blob file whose values must be overwritten or
+     * deleted before compactions move its remaining values to a new blob file,
+     * releasing the space of the old one.
+     * <p>
+     * Default: 0.5
+     */
+    public Options blobGarbageRatio(double blobGarbageRatio)
+    {
+        this.blobGarbageRatio = blobGarbageRatio;
+        return this;
+    }
+
+    public boolean useDirectIO()
+    {
+        return useDirectIO;
+    }
+
+    /**
+     * Read tables and write the tables of flushes and compactions with direct
+     * I/O ({@code O_DIRECT}), bypassing the operating system page cache. Blocks
+     * are then only cached once, in the block cache, and compactions do not
+     * evict the pages of frequently read tables. The block cache should be
+     * sized accordingly. Where direct I/O is not supported by the JVM, the
+     * {@code Env} or the file system, buffered I/O is used.
+     * <p>
+     * Default: false
+     */
+    public Options useDirectIO(boolean useDirectIO)
+    {
+        this.useDirectIO = useDirectIO;
+        return this;
+    }
+
+    public boolean zeroCopyMmapReads()
+    {
+        return zeroCopyMmapReads;
+    }
+
+    /**
+     * Use the uncompressed data blocks of memory mapped tables in place instead
+     * of copying them to the heap. This saves the copy and its allocation, but
+     * reading keys and values from mapped memory is slower than from heap
+     * arrays. As blocks and the values read from them may outlive their table,
+     * memory mapped tables are then unmapped by the garbage collector instead
+     * of on close. Tables not memory mapped, and compressed or direct I/O
+     * blocks, are still copied.
+     * <p>
+     * Default: false
+     */
+    public Options zeroCopyMmapReads(boolean zeroCopyMmapReads)
+    {
+        this.zeroCopyMmapReads = zeroCopyMmapReads;
+        return this;
+    }
+
+    public long compactionRateLimit()
+    {
+        return compactionRateLimit;
+    }
+
+    /**
+     * Maximum number of bytes per second written by flushes and compactions,
+     * or 0 for no limit. Flushes have priority over compactions, so that a
+     * compaction backlog does not stall the writers waiting for the memtable
+     * to be flushed. Limiting background writes smooths the latency of reads
+     * and writes competing with them for disk bandwidth.
+     * <p>
+     * Default: 0
+     */
+    public Options compactionRateLimit(long compactionRateLimit)
+    {
+        this.compactionRateLimit = compactionRateLimit;
+        return this;
+    }
+
+    public boolean autoTuneCompactionRateLimit()
+    {
+        return autoTuneCompactionRateLimit;
+    }
+
+    /**
+     * Raise the compaction rate limit, up to 8 times {@link #compactionRateLimit()},
+     * in proportion to the compaction backlog, so that compactions keep up with
+     * heavy writes. Has no effect without a compaction rate limit.
+     * <p>
+     * Default: false
+     */
+    public Options autoTuneCompactionRateLimit(boolean autoTuneCompactionRateLimit)
+    {
+        this.autoTuneCompactionRateLimit = autoTuneCompactionRateLimit;
+        return this;
+    }
+
+    public int compactionReadaheadSize()
+    {
+        return compactionReadaheadSize;
+    }
+
+    /**
+     * Number of bytes compactions read ahead of the data blocks of their input
+     * tables, in a single read. Compactions read whole tables sequentially, few
+     * large reads are much cheaper than one read per block, especially on
+     * network attached storage. If 0, sequential reads are detected as for
+     * iterators, see {@link ReadOptions#readaheadSize(int)}.
+     * <p>
+     * Default: 2MB
+     */
+    public Options compactionReadaheadSize(int compactionReadaheadSize)
+    {
+        this.compactionReadaheadSize = compactionReadaheadSize;
+        return this;
+    }
+
+    public boolean warmTableCache()
+    {
+        return warmTableCache;
+    }
+
+    /**
+     * Open the tables of the database in the background once it is opened,
+     * newest tables first and up to the number of tables the table cache
+     * holds, so that the first reads do not pay for opening them. Opening
+     * the database does not wait for the tables to be opened.
+     * <p>
+     * Default: false
+     */
+    public Options warmTableCache(boolean warmTableCache)
+    {
+        this.warmTableCache = warmTableCache;
+        return this;
+    }
+
+    public boolean preloadIndexAndFilters()
+    {
+        return preloadIndexAndFilters;
+    }
+
+    /**
+     * When warming the table cache, also load the index and filter partitions
+     * of the tables written with {@link #partitionIndexAndFilters()} in the
+     * block cache. The index and filter of other tables are always read when
+     * a table is opened.
+     * <p>
+     * Default: false
+     */
+    public Options preloadIndexAndFilters(boolean preloadIndexAndFilters)
+    {
+        this.preloadIndexAndFilters = preloadIndexAndFilters;
+        return this;
+    }
+
+    public boolean blockCacheWarmList()
+    {
+        return blockCacheWarmList;
+    }
+
+    /**
+     * Save the list of the blocks held by the block cache when the database
+     * is closed, and load those blocks again in the background, most recently
+     * used last, when it is opened. Blocks of tables deleted in the meantime
+     * are skipped.
+     * <p>
+     * Default: false
+     */
+    public Options blockCacheWarmList(boolean blockCacheWarmList)
+    {
+        this.blockCacheWarmList = blockCacheWarmList;
+        return this;
+    }
+
+    public int blockCacheWarmListPeriod()
+    {
+        return blockCacheWarmListPeriod;
+    }
+
+    /**
+     * Seconds between saves of the block cache warm list while the database
+     * is open, so that a crash does not lose it. 0 only saves it at close.
+     * Has no effect unless {@link #blockCacheWarmList()} is enabled.
+     * <p>
+     * Default: 0
+     */
+    public Options blockCacheWarmListPeriod(int blockCacheWarmListPeriod)
+    {
+        this.blockCacheWarmListPeriod = blockCacheWarmListPeriod;
+        return this;
+    }
+
+    public long blockCacheWarmupRate()
+    {
+        return blockCacheWarmupRate;
+    }
+
+    /**
+     * Maximum bytes per second read to load the block cache warm list, so that
+     * foreground reads are not starved while the cache is warmed. 0 means unlimited.
+     * <p>
+     * Default: 32MB
+     */
+    public Options blockCacheWarmupRate(long blockCacheWarmupRate)
+    {
+        this.blockCacheWarmupRate = blockCacheWarmupRate;
+        return this;
+    }
+
+    public long maxManifestFileSize()
+    {
+        return maxManifestFileSize;
+    }
+
+    /**
+     * Once the MANIFEST grows past this many bytes, a new MANIFEST starting
+     * with a snapshot of the current state replaces it, so that the edits of
+     * a long-lived database do not make the next open slow.
+     * <p>
+     * Default: 64MB
+     */
+    public Options maxManifestFileSize(long maxManifestFileSize)
+    {
+        this.maxManifestFileSize = maxManifestFileSize;
+        return this;
+    }
+
+    public int recycleLogFileNum()
+    {
+        return recycleLogFileNum;
+    }
+
+    /**
+     * Number of obsolete log files kept to be overwritten by new logs instead
+     * of being deleted. Overwriting a file whose blocks are already allocated
+     * spares the file system the size updates of synced writes. Logs are then
+     * written in a format whose records hold the log number, so that records
+     * left by the previous log are not replayed.
+     * <p>
+     * Default: 0
+     */
+    public Options recycleLogFileNum(int recycleLogFileNum)
+    {
+        this.recycleLogFileNum = recycleLogFileNum;
+        return this;
+    }
+
+    public int logPreallocationSize()
+    {
+        return logPreallocationSize;
+    }
+
+    /**
+     * Bytes of zeros log files are extended by ahead of the writes, so that
+     * synced writes do not have to update the file size each time. 0 lets
+     * the log files grow with each write.
+     * <p>
+     * Default: 0
+     */
+    public Options logPreallocationSize(int logPreallocationSize)
+    {
+        this.logPreallocationSize = logPreallocationSize;
+        return this;
+    }
+
+    public SyncCoordinator syncCoordinator()
+    {
+        return syncCoordinator;
+    }
+
+    /**
+     * Coordinator grouping the log syncs of synchronous writes with those of
+     * other databases sharing it, see {@link SyncCoordinator}. {@code null}
+     * to sync the log of each write on its own.
+     * <p>
+     * Default: null
+     */
+    public Options syncCoordinator(SyncCoordinator syncCoordinator)
+    {
+        this.syncCoordinator = syncCoordinator;
+        return this;
+    }
 }
@@ -25,6 +25,8 @@ public class ReadOptions
     private boolean verifyChecksums;
     private boolean fillCache = true;
     private Snapshot snapshot;
+    private int readaheadSize;
+    private boolean asyncPrefetch;
 
     public Snapshot snapshot()
     {
@@ -72,4 +74,39 @@ public class ReadOptions
         this.verifyChecksums = verifyChecksums;
         return this;
     }
+
+    public int readaheadSize()
+    {
+        return readaheadSize;
+    }
+
+    /**
+     * Number of bytes read ahead of the data blocks read by iterators, in a
+     * single read serving the following blocks. Large values suit scans of
+     * whole tables, especially on storage with a high latency per read.
+     * If 0, sequential reads are detected and read ahead of, with a readahead
+     * growing from 8KB to 256KB.
+     */
+    public ReadOptions readaheadSize(int readaheadSize)
+    {
+        this.readaheadSize = readaheadSize;
+        return this;
+    }
+
+    public boolean asyncPrefetch()
+    {
+        return asyncPrefetch;
+    }
+
+    /**
+     * If true, while an iterator consumes a data block of a table, the next
+     * data block of that table is loaded in the block cache by a background
+     * thread. Speeds up scans of data that is not cached. Has no effect
+     * without a block cache or if {@link #fillCache()} is false.
+     */
+    public ReadOptions asyncPrefetch(boolean asyncPrefetch)
+    {
+        this.asyncPrefetch = asyncPrefetch;
+        return this;
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb;
+
+/**
+ * A coordinator shared by the databases of a process to group the syncs of
+ * their logs. Syncs requested by different databases within a short window
+ * are issued together, and their writers resume once all of them completed,
+ * so that a disk serving many databases sees batches of syncs instead of a
+ * stream per database.
+ * <p>
+ * Use the implementation provided by the database, see
+ * {@code org.iq80.leveldb.impl.GroupSyncCoordinator}.
+ */
+public interface SyncCoordinator
+{
+}
@@ -47,4 +47,16 @@ public interface WriteBatch
      * If the database contains a mapping for "key", erase it.  Else do nothing.
      */
     WriteBatch delete(byte[] key);
+
+    /**
+     * Combine "operand" with the current mapping of "key" using the
+     * {@link MergeOperator} of the database.
+     */
+    WriteBatch merge(byte[] key, byte[] operand);
+
+    /**
+     * Erase the mappings of every key in the range ["begin", "end"), the
+     * range is empty and nothing is erased if "begin" &gt;= "end".
+     */
+    WriteBatch deleteRange(byte[] begin, byte[] end);
 }
@@ -19,6 +19,8 @@ package org.iq80.leveldb;
 
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+
 import static org.testng.Assert.assertEquals;
 
 public class OptionsTest
@@ -38,6 +40,11 @@ public class OptionsTest
         XFilterPolicy filterPolicy = new XFilterPolicy()
         {
         };
+        CompactionFilter compactionFilter = (level, key, value) -> value;
+        MergeOperator mergeOperator = (key, existingValue, operand) -> operand;
+        SyncCoordinator syncCoordinator = new SyncCoordinator()
+        {
+        };
         Options op = new Options();
         op.createIfMissing(false);
         op.errorIfExists(true);
@@ -47,12 +54,35 @@ public class OptionsTest
         op.blockRestartInterval(789);
         op.blockSize(345);
         op.compressionType(CompressionType.NONE);
+        op.compressionPerLevel(Arrays.asList(CompressionType.NONE, CompressionType.LZ4, CompressionType.ZSTD));
+        op.compressionDictionarySize(16 * 1024);
+        op.compressionThreads(4);
         op.paranoidChecks(true);
         op.comparator(comparator);
+        op.compactionFilter(compactionFilter);
+        op.mergeOperator(mergeOperator);
         op.logger(logger);
         op.cacheSize(678);
         op.filterPolicy(filterPolicy);
         op.reuseLogs(true);
+        op.partitionIndexAndFilters(true);
+        op.metadataBlockSize(8192);
+        op.minBlobSize(4096);
+        op.blobGarbageRatio(0.25);
+        op.useDirectIO(true);
+        op.zeroCopyMmapReads(true);
+        op.compactionRateLimit(1 << 20);
+        op.autoTuneCompactionRateLimit(true);
+        op.compactionReadaheadSize(4096);
+        op.warmTableCache(true);
+        op.preloadIndexAndFilters(true);
+        op.blockCacheWarmList(true);
+        op.blockCacheWarmListPeriod(60);
+        op.blockCacheWarmupRate(1024);
+        op.maxManifestFileSize(4096);
+        op.recycleLogFileNum(2);
+        op.logPreallocationSize(8192);
+        op.syncCoordinator(syncCoordinator);
         Options op2 = Options.fromOptions(op);
 
         assertEquals(op2.createIfMissing(), false);
@@ -63,12 +93,35 @@ public class OptionsTest
         assertEquals(op2.blockRestartInterval(), 789);
         assertEquals(op2.blockSize(), 345);
         assertEquals(op2.compressionType(), CompressionType.NONE);
+        assertEquals(op2.compressionPerLevel(), Arrays.asList(CompressionType.NONE, CompressionType.LZ4, CompressionType.ZSTD));
+        assertEquals(op2.compressionDictionarySize(), 16 * 1024);
+        assertEquals(op2.compressionThreads(), 4);
         assertEquals(op2.paranoidChecks(), true);
         assertEquals(op2.comparator(), comparator);
+        assertEquals(op2.compactionFilter(), compactionFilter);
+        assertEquals(op2.mergeOperator(), mergeOperator);
         assertEquals(op2.logger(), logger);
         assertEquals(op2.cacheSize(), 678);
         assertEquals(op2.filterPolicy(), filterPolicy);
         assertEquals(op2.reuseLogs(), true);
+        assertEquals(op2.partitionIndexAndFilters(), true);
+        assertEquals(op2.metadataBlockSize(), 8192);
+        assertEquals(op2.minBlobSize(), 4096);
+        assertEquals(op2.blobGarbageRatio(), 0.25);
+        assertEquals(op2.useDirectIO(), true);
+        assertEquals(op2.zeroCopyMmapReads(), true);
+        assertEquals(op2.compactionRateLimit(), 1 << 20);
+        assertEquals(op2.autoTuneCompactionRateLimit(), true);
+        assertEquals(op2.compactionReadaheadSize(), 4096);
+        assertEquals(op2.warmTableCache(), true);
+        assertEquals(op2.preloadIndexAndFilters(), true);
+        assertEquals(op2.blockCacheWarmList(), true);
+        assertEquals(op2.blockCacheWarmListPeriod(), 60);
+        assertEquals(op2.blockCacheWarmupRate(), 1024);
+        assertEquals(op2.maxManifestFileSize(), 4096);
+        assertEquals(op2.recycleLogFileNum(), 2);
+        assertEquals(op2.logPreallocationSize(), 8192);
+        assertEquals(op2.syncCoordinator(), syncCoordinator);
     }
 
     private static class MyDBComparator implements DBComparator
@@ -22,6 +22,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
+import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBFactory;
 import org.iq80.leveldb.DBIterator;
@@ -30,8 +31,16 @@ import org.iq80.leveldb.ReadOptions;
 import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 import org.iq80.leveldb.fileenv.FileUtils;
+import org.iq80.leveldb.impl.InternalKeyComparator;
+import org.iq80.leveldb.impl.MemTable;
+import org.iq80.leveldb.impl.ValueType;
+import org.iq80.leveldb.iterator.InternalIterator;
+import org.iq80.leveldb.iterator.MergingIterator;
 import org.iq80.leveldb.table.BloomFilterPolicy;
+import org.iq80.leveldb.table.BytewiseComparator;
 import org.iq80.leveldb.util.Closeables;
+import org.iq80.leveldb.util.Compressions;
+import org.iq80.leveldb.util.Crc32C;
 import org.iq80.leveldb.util.PureJavaCrc32C;
 import org.iq80.leveldb.util.Slice;
 import org.iq80.leveldb.util.SliceOutput;
@@ -42,16 +51,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -70,6 +84,20 @@ public class DbBenchmark
     private final int bloomFilterBits;
     private final int maxFileSize;
     private final int blockSize;
+    private final CompressionType compressionType;
+    private final List<CompressionType> compressionPerLevel;
+    private final int compressionDictionarySize;
+    private final int compressionThreads;
+    private final boolean useDirectIO;
+    private final boolean zeroCopyMmapReads;
+    private final long compactionRateLimit;
+    private final boolean autoTuneCompactionRateLimit;
+    private final int compactionReadaheadSize;
+    private final boolean asyncPrefetch;
+    private final boolean warmTableCache;
+    private final boolean blockCacheWarmList;
+    private final int recycleLogFileNum;
+    private final int logPreallocationSize;
     private DB db;
     private int num;
     private int reads;
@@ -91,6 +119,20 @@ public class DbBenchmark
         maxFileSize = (Integer) flags.get(Flag.max_file_size);
         blockSize = (Integer) flags.get(Flag.block_size);
         compressionRatio = (Double) flags.get(Flag.compression_ratio);
+        compressionType = (CompressionType) flags.get(Flag.compression);
+        compressionPerLevel = (List<CompressionType>) flags.get(Flag.compression_per_level);
+        compressionDictionarySize = (Integer) flags.get(Flag.compression_dictionary_size);
+        compressionThreads = (Integer) flags.get(Flag.compression_threads);
+        useDirectIO = (Boolean) flags.get(Flag.use_direct_io);
+        zeroCopyMmapReads = (Boolean) flags.get(Flag.zero_copy_mmap_reads);
+        compactionRateLimit = (Long) flags.get(Flag.compaction_rate_limit);
+        autoTuneCompactionRateLimit = (Boolean) flags.get(Flag.auto_tune_compaction_rate_limit);
+        compactionReadaheadSize = (Integer) flags.get(Flag.compaction_readahead_size);
+        asyncPrefetch = (Boolean) flags.get(Flag.async_prefetch);
+        warmTableCache = (Boolean) flags.get(Flag.warm_table_cache);
+        blockCacheWarmList = (Boolean) flags.get(Flag.block_cache_warm_list);
+        recycleLogFileNum = (Integer) flags.get(Flag.recycle_log_file_num);
+        logPreallocationSize = (Integer) flags.get(Flag.log_preallocation_size);
         useExisting = (Boolean) flags.get(Flag.use_existing_db);
         blockCacheSize = (Integer) flags.get(Flag.cache_size);
         bloomFilterBits = (Integer) flags.get(Flag.bloom_bits);
@@ -209,8 +251,20 @@ public class DbBenchmark
             else if (benchmark.equals("compact")) {
                 method = this::compact;
             }
+            else if (benchmark.equals("reopen")) {
+                method = this::reopen;
+            }
+            else if (benchmark.equals("mergeiter")) {
+                method = this::mergeIterators;
+            }
             else if (benchmark.equals("crc32c")) {
-                method = this::crc32c;
+                method = thread -> crc32c(thread, Crc32C::newChecksum, Crc32C.intrinsic() ? "jdk" : "pure java");
+            }
+            else if (benchmark.equals("crc32c-pure")) {
+                method = thread -> crc32c(thread, PureJavaCrc32C::new, "pure java");
+            }
+            else if (benchmark.equals("crc32c-direct")) {
+                method = this::crc32cDirectBuffer;
             }
             else if (benchmark.equals("snappycomp")) {
                 if (Snappy.available()) {
@@ -232,6 +286,31 @@ public class DbBenchmark
                     method = this::snappyUncompressDirectBuffer;
                 }
             }
+            else if (benchmark.equals("unsnap-block")) {
+                if (Snappy.available()) {
+                    method = thread -> uncompressBlock(thread, CompressionType.SNAPPY);
+                }
+            }
+            else if (benchmark.equals("lz4comp")) {
+                if (Compressions.available(CompressionType.LZ4)) {
+                    method = thread -> compress(thread, CompressionType.LZ4);
+                }
+            }
+            else if (benchmark.equals("lz4uncomp")) {
+                if (Compressions.available(CompressionType.LZ4)) {
+                    method = thread -> uncompress(thread, CompressionType.LZ4);
+                }
+            }
+            else if (benchmark.equals("zstdcomp")) {
+                if (Compressions.available(CompressionType.ZSTD)) {
+                    method = thread -> compress(thread, CompressionType.ZSTD);
+                }
+            }
+            else if (benchmark.equals("zstduncomp")) {
+                if (Compressions.available(CompressionType.ZSTD)) {
+                    method = thread -> uncompress(thread, CompressionType.ZSTD);
+                }
+            }
             else if (benchmark.equals("heapprofile")) {
                 heapProfile();
             }
@@ -241,6 +320,9 @@ public class DbBenchmark
             else if (benchmark.equals("sstables")) {
                 printStats("leveldb.sstables");
             }
+            else if (benchmark.equals("dbsize")) {
+                printDbSize();
+            }
             else {
                 System.err.println("Unknown benchmark: " + benchmark);
             }
@@ -443,6 +525,20 @@ public class DbBenchmark
         if (writeBufferSize != null) {
             options.writeBufferSize(writeBufferSize);
         }
+        options.compressionType(compressionType);
+        options.compressionPerLevel(compressionPerLevel);
+        options.compressionDictionarySize(compressionDictionarySize);
+        options.compressionThreads(compressionThreads);
+        options.useDirectIO(useDirectIO);
+        options.zeroCopyMmapReads(zeroCopyMmapReads);
+        options.compactionRateLimit(compactionRateLimit);
+        options.autoTuneCompactionRateLimit(autoTuneCompactionRateLimit);
+        options.compactionReadaheadSize(compactionReadaheadSize);
+        options.warmTableCache(warmTableCache);
+        options.preloadIndexAndFilters(warmTableCache);
+        options.blockCacheWarmList(blockCacheWarmList);
+        options.recycleLogFileNum(recycleLogFileNum);
+        options.logPreallocationSize(logPreallocationSize);
         db = factory.open(databaseDir, options);
     }
 
@@ -491,7 +587,7 @@ public class DbBenchmark
     {
         long bytes = 0;
         for (int loops = 0; loops < 5; loops++) {
-            try (DBIterator iterator = db.iterator()) {
+            try (DBIterator iterator = db.iterator(new ReadOptions().asyncPrefetch(asyncPrefetch))) {
                 iterator.seekToFirst();
                 for (int i = 0; i < reads && iterator.hasNext(); i++) {
                     Map.Entry<byte[], byte[]> entry = iterator.next();
@@ -607,13 +703,50 @@ public class DbBenchmark
     private void compact(ThreadState thread)
     {
         db.compactRange(null, null);
+        // report the duration of the whole compaction as a single op
+        thread.stats.finishedSingleOp();
+    }
+
+    private void mergeIterators(ThreadState thread) throws IOException
+    {
+        // merge sorted inputs holding interleaved keys, as a compaction or a scan does over level 0 files and levels
+        int inputs = (Integer) flags.get(Flag.merge_iterators);
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        List<MemTable> memTables = new ArrayList<>();
+        for (int i = 0; i < inputs; i++) {
+            memTables.add(new MemTable(comparator));
+        }
+        Random random = new Random(301);
+        Slice value = Slices.wrappedBuffer(newGenerator().generate(valueSize));
+        for (int i = 0; i < num; i++) {
+            byte[] key = formatNumber(i);
+            memTables.get(random.nextInt(inputs)).add(i, ValueType.VALUE, Slices.wrappedBuffer(key), value);
+        }
+        // only measure the merge
+        thread.stats.init();
+
+        long bytes = 0;
+        for (int loops = 0; loops < 5; loops++) {
+            List<InternalIterator> iterators = new ArrayList<>();
+            for (MemTable memTable : memTables) {
+                iterators.add(memTable.iterator());
+            }
+            try (MergingIterator iterator = new MergingIterator(iterators, comparator)) {
+                for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                    bytes += iterator.key().size() + iterator.value().length();
+                    thread.stats.finishedSingleOp();
+                }
+            }
+        }
+        thread.stats.addBytes(bytes);
+        thread.stats.addMessage("(" + inputs + " inputs)");
     }
 
-    private void crc32c(final ThreadState thread)
+    private void crc32c(final ThreadState thread, Supplier<Checksum> factory, String implementation)
     {
         // Checksum about 500MB of data total
         int blockSize = 4096;
-        String label = "(4K per op)";
+        String label = "(4K per op, " + implementation + ")";
         // Checksum about 500MB of data total
         byte[] data = new byte[blockSize];
         Arrays.fill(data, (byte) 'x');
@@ -621,9 +754,9 @@ public class DbBenchmark
         long bytes = 0;
         int crc = 0;
         while (bytes < 1000 * 1048576) {
-            PureJavaCrc32C checksum = new PureJavaCrc32C();
+            Checksum checksum = factory.get();
             checksum.update(data, 0, blockSize);
-            crc = checksum.getMaskedValue();
+            crc = Crc32C.getMaskedValue(checksum);
             thread.stats.finishedSingleOp();
             bytes += blockSize;
         }
@@ -634,6 +767,32 @@ public class DbBenchmark
         thread.stats.addMessage(label);
     }
 
+    private void crc32cDirectBuffer(final ThreadState thread)
+    {
+        // checksum of memory mapped blocks, as done by table reads with verify checksums
+        int blockSize = 4096;
+        ByteBuffer data = ByteBuffer.allocateDirect(blockSize);
+        while (data.hasRemaining()) {
+            data.put((byte) 'x');
+        }
+
+        long bytes = 0;
+        int crc = 0;
+        while (bytes < 1000 * 1048576) {
+            Checksum checksum = Crc32C.newChecksum();
+            data.clear();
+            Crc32C.update(checksum, data);
+            crc = Crc32C.getMaskedValue(checksum);
+            thread.stats.finishedSingleOp();
+            bytes += blockSize;
+        }
+        // Print so result is not dead
+        System.out.printf("... crc=0x%x\r", crc);
+
+        thread.stats.addBytes(bytes);
+        thread.stats.addMessage("(4K per op, " + (Crc32C.intrinsic() ? "jdk" : "pure java") + ")");
+    }
+
     private void snappyCompress(ThreadState thread)
     {
         byte[] raw = newGenerator().generate(new Options().blockSize());
@@ -734,6 +893,96 @@ public class DbBenchmark
         }
     }
 
+    private void compress(ThreadState thread, CompressionType type)
+    {
+        byte[] raw = newGenerator().generate(new Options().blockSize());
+        byte[] compressedOutput = new byte[Compressions.maxCompressedLength(type, raw.length)];
+
+        long bytes = 0;
+        long produced = 0;
+
+        // attempt to compress the block
+        while (bytes < 1024 * 1048576) {  // Compress 1G
+            try {
+                int compressedSize = Compressions.compress(type, raw, 0, raw.length, compressedOutput, 0);
+                bytes += raw.length;
+                produced += compressedSize;
+            }
+            catch (IOException ignored) {
+                thread.stats.addMessage("(" + type + " failure)");
+                Throwables.propagateIfPossible(ignored, AssertionError.class);
+            }
+
+            thread.stats.finishedSingleOp();
+        }
+        thread.stats.addMessage(String.format("(output: %.1f%%)", (produced * 100.0) / bytes));
+        thread.stats.addBytes(bytes);
+    }
+
+    private void uncompress(ThreadState thread, CompressionType type)
+    {
+        int inputSize = new Options().blockSize();
+        byte[] compressedOutput = new byte[Compressions.maxCompressedLength(type, inputSize)];
+        byte[] raw = newGenerator().generate(inputSize);
+        int compressedLength;
+        try {
+            compressedLength = Compressions.compress(type, raw, 0, raw.length, compressedOutput, 0);
+        }
+        catch (IOException e) {
+            Throwables.propagateIfPossible(e, AssertionError.class);
+            return;
+        }
+        ByteBuffer compressedBuffer = ByteBuffer.wrap(compressedOutput, 0, compressedLength);
+        long bytes = 0;
+        // uncompress the block the same way table reads do
+        while (bytes < 5L * 1024 * 1048576) {  // Uncompress 5G
+            try {
+                Compressions.uncompress(type, compressedBuffer);
+                bytes += inputSize;
+            }
+            catch (IOException ignored) {
+                thread.stats.addMessage("(" + type + " failure)");
+                throw Throwables.propagate(ignored);
+            }
+
+            thread.stats.finishedSingleOp();
+        }
+        thread.stats.addBytes(bytes);
+    }
+
+    private void uncompressBlock(ThreadState thread, CompressionType type)
+    {
+        int inputSize = new Options().blockSize();
+        byte[] compressedOutput = new byte[Compressions.maxCompressedLength(type, inputSize)];
+        byte[] raw = newGenerator().generate(inputSize);
+        int compressedLength;
+        try {
+            compressedLength = Compressions.compress(type, raw, 0, raw.length, compressedOutput, 0);
+        }
+        catch (IOException e) {
+            Throwables.propagateIfPossible(e, AssertionError.class);
+            return;
+        }
+        // blocks read from memory mapped tables are backed by direct buffers
+        ByteBuffer compressedBuffer = ByteBuffer.allocateDirect(compressedLength);
+        compressedBuffer.put(compressedOutput, 0, compressedLength);
+        compressedBuffer.flip();
+        long bytes = 0;
+        while (bytes < 5L * 1024 * 1048576) {  // Uncompress 5G
+            try {
+                Compressions.uncompress(type, compressedBuffer);
+                bytes += inputSize;
+            }
+            catch (IOException ignored) {
+                thread.stats.addMessage("(" + type + " failure)");
+                throw Throwables.propagate(ignored);
+            }
+
+            thread.stats.finishedSingleOp();
+        }
+        thread.stats.addBytes(bytes);
+    }
+
     private void openBench(ThreadState thread) throws IOException
     {
         for (int i = 0; i < num; i++) {
@@ -744,6 +993,15 @@ public class DbBenchmark
         }
     }
 
+    private void reopen(ThreadState thread) throws IOException
+    {
+        // the log of the previous benchmarks is replayed, up to --write_buffer_size bytes
+        db.close();
+        db = null;
+        open();
+        thread.stats.finishedSingleOp();
+    }
+
     private void writeSeq(ThreadState thread) throws IOException
     {
         write(thread, true);
@@ -774,6 +1032,21 @@ public class DbBenchmark
         }
     }
 
+    private void printDbSize()
+    {
+        // on-disk size of all tables, to weigh against the compaction time in "stats"
+        long tableBytes = 0;
+        int tables = 0;
+        for (File file : FileUtils.listFiles(databaseDir)) {
+            String name = file.getName();
+            if (name.endsWith(".ldb") || name.endsWith(".sst")) {
+                tableBytes += file.length();
+                tables++;
+            }
+        }
+        System.out.printf("%-12s : %d tables, %.1f MB on disk%n", "dbsize", tables, tableBytes / 1048576.0);
+    }
+
     public static void main(String[] args)
             throws Exception
     {
@@ -842,11 +1115,59 @@ public class DbBenchmark
         //      readreverse   -- read N times in reverse order
         //      readrandom    -- read N times in random order
         //      readhot       -- read N times in random order from 1% section of DB
+        //      mergeiter     -- iterate N entries merged from --merge_iterators sorted inputs
         //      crc32c        -- repeated crc32c of 4K of data
+        //      crc32c-pure   -- same as crc32c using the pure java implementation
+        //      crc32c-direct -- repeated crc32c of a 4K direct buffer
+        //      lz4comp       -- repeated LZ4 compression of a block
+        //      lz4uncomp     -- repeated LZ4 uncompression of a block
+        //      zstdcomp      -- repeated Zstandard compression of a block
+        //      zstduncomp    -- repeated Zstandard uncompression of a block
         //   Meta operations:
         //      compact     -- Compact the entire DB
+        //      reopen      -- Close and reopen the DB, replaying its log
         //      stats       -- Print DB stats
         //      heapprofile -- Dump a heap profile (if supported by this port)
+        //      dbsize      -- Print the on-disk size of all tables
+        //
+        //   To compare compaction CPU with on-disk size for a compression
+        //   layout, run e.g. --benchmarks=fillrandom,compact,stats,dbsize
+        //   --compression_per_level=none,none,lz4,lz4,zstd
+        //
+        //   Compaction throughput with parallel block compression can be
+        //   compared with e.g. --benchmarks=fillrandom,compact --compression=zstd
+        //   --compression_threads=1 and --compression_threads=4
+        //
+        //   Reads through the block cache alone can be compared with reads also
+        //   served by the page cache with e.g. --benchmarks=fillrandom,compact,readrandom
+        //   --use_direct_io=true and --use_direct_io=false
+        //
+        //   Reads of memory mapped blocks used in place can be compared with reads of
+        //   heap copies, for both throughput and allocation (e.g. with -Xlog:gc), with e.g.
+        //   --benchmarks=fillrandom,compact,readrandom --compression=none --cache_size=65536
+        //   --zero_copy_mmap_reads=true and --zero_copy_mmap_reads=false
+        //
+        //   Read latency while compactions run can be compared with and without
+        //   throttled background writes with e.g. --benchmarks=fillrandom,readwhilewriting
+        //   --compaction_rate_limit=0 and --compaction_rate_limit=33554432, with a fixed
+        //   or, with --auto_tune_compaction_rate_limit=true, a backlog driven rate
+        //
+        //   Scans of uncached data can be compared with and without block prefetching
+        //   with e.g. --benchmarks=fillrandom,compact,readseq --cache_size=1048576
+        //   --use_direct_io=true --async_prefetch=true and --async_prefetch=false
+        //
+        //   Restart time after a crash with a large memtable can be measured with e.g.
+        //   --benchmarks=fillrandom,reopen --write_buffer_size=1073741824
+        //
+        //   Reads right after a restart can be compared with and without warming
+        //   the table cache with e.g. --benchmarks=fillrandom,compact,reopen,readrandom
+        //   --warm_table_cache=true and --warm_table_cache=false, or with and without
+        //   reloading the block cache with --benchmarks=fillrandom,readrandom,reopen,readrandom
+        //   --block_cache_warm_list=true and --block_cache_warm_list=false
+        //
+        //   Synced writes can be compared with and without recycled and preallocated
+        //   logs with e.g. --benchmarks=fillsync --write_buffer_size=65536
+        //   --recycle_log_file_num=4 --log_preallocation_size=4194304 and the defaults
         benchmarks(ImmutableList.of(
                 "fillseq",
                 "fillsync",
@@ -865,6 +1186,10 @@ public class DbBenchmark
                 "snappycomp",
                 "unsnap-array",
                 "unsnap-direct",
+                "lz4comp",
+                "lz4uncomp",
+                "zstdcomp",
+                "zstduncomp",
                 "stats"
         )) {
             @Override
@@ -884,6 +1209,146 @@ public class DbBenchmark
             }
         },
 
+        // Compression used for all levels: none, snappy, lz4 or zstd
+        compression(CompressionType.SNAPPY) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return CompressionType.valueOf(value.toUpperCase(Locale.ENGLISH));
+            }
+        },
+
+        // Comma-separated compression per level, overrides --compression
+        // (the last entry applies to all deeper levels)
+        compression_per_level(null) {
+            @Override
+            public Object parseValue(String value)
+            {
+                ImmutableList.Builder<CompressionType> compressions = ImmutableList.builder();
+                for (String compression : Splitter.on(",").trimResults().omitEmptyStrings().split(value)) {
+                    compressions.add(CompressionType.valueOf(compression.toUpperCase(Locale.ENGLISH)));
+                }
+                return compressions.build();
+            }
+        },
+
+        // Size of the zstd dictionary trained for bottommost tables, 0 disables dictionaries
+        compression_dictionary_size(0) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
+        // Number of threads compressing data blocks of new tables
+        compression_threads(1) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
+        // If true, read tables and write flush and compaction outputs with direct I/O
+        use_direct_io(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // If true, use uncompressed blocks of memory mapped tables in place instead of copying them
+        zero_copy_mmap_reads(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // Bytes per second written by flushes and compactions, 0 for no limit
+        compaction_rate_limit(0L) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Long.parseLong(value);
+            }
+        },
+
+        // If true, the compaction rate limit is raised with the compaction backlog
+        auto_tune_compaction_rate_limit(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // Bytes compactions read ahead of their input blocks, 0 to detect sequential reads
+        compaction_readahead_size(2 * 1024 * 1024) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
+        // If true, sequential reads load the next data block of each table in the background
+        async_prefetch(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // If true, tables are opened in the background when the database is opened
+        warm_table_cache(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // If true, the blocks held by the block cache are saved at close and loaded again on open
+        block_cache_warm_list(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
+        // Number of obsolete logs kept to be overwritten by new logs, 0 to delete them
+        recycle_log_file_num(0) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
+        // Bytes logs are extended by ahead of the writes, 0 to grow them with each write
+        log_preallocation_size(0) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
+        // Number of sorted inputs merged by the mergeiter benchmark
+        merge_iterators(18) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Integer.parseInt(value);
+            }
+        },
+
         // Print histogram of operation timings
         histogram(false) {
             @Override
@@ -893,6 +1358,15 @@ public class DbBenchmark
             }
         },
 
+        // Print heap bytes allocated per op by the benchmark threads
+        alloc_stats(false) {
+            @Override
+            public Object parseValue(String value)
+            {
+                return Boolean.parseBoolean(value);
+            }
+        },
+
         // If true, do not destroy the existing database.  If you set this
         // flag and also specify a benchmark that wants a fresh database, that
         // benchmark will fail.
@@ -1143,6 +1617,8 @@ public class DbBenchmark
         int done;
         int nextReport;
         long bytes;
+        long startAllocated;
+        long allocated;
         double lastOpFinish;
         Histogram hist = new Histogram();
         StringBuilder message = new StringBuilder();
@@ -1163,6 +1639,8 @@ public class DbBenchmark
             start = System.nanoTime();
             finish = start;
             message.setLength(0);
+            allocated = 0;
+            startAllocated = allocatedBytes();
         }
 
         void merge(Stats other)
@@ -1170,6 +1648,7 @@ public class DbBenchmark
             hist.merge(other.hist);
             done += other.done;
             bytes += other.bytes;
+            allocated += other.allocated;
             seconds += other.seconds;
             if (other.start < start) {
                 start = other.start;
@@ -1188,6 +1667,19 @@ public class DbBenchmark
         {
             finish = System.nanoTime();
             seconds = 1.0d * (finish - start) / TimeUnit.SECONDS.toNanos(1);
+            if (startAllocated >= 0) {
+                allocated = allocatedBytes() - startAllocated;
+            }
+        }
+
+        private long allocatedBytes()
+        {
+            // only available on HotSpot based JVMs
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return -1;
         }
 
         void addMessage(String msg)
@@ -1245,10 +1737,13 @@ public class DbBenchmark
         void report(String name)
         {
             if (bytes > 0) {
-                double elapsed = TimeUnit.NANOSECONDS.toSeconds(finish - start);
+                double elapsed = (finish - start) / (double) TimeUnit.SECONDS.toNanos(1);
                 String rate = String.format("%6.1f MB/s", (bytes / 1048576.0) / elapsed);
                 message.insert(0, " ").insert(0, rate);
             }
+            if (flags.get(Flag.alloc_stats).equals(true) && done > 0) {
+                addMessage(String.format("(alloc: %.1f bytes/op)", (double) allocated / done));
+            }
 
             System.out.printf("%-12s : %11.5f micros/op; %11.0f op/sec;%s%s%n",
                     name,
@@ -67,6 +67,67 @@ public interface Env
      */
     WritableFile newWritableFile(File file) throws IOException;
 
+    /**
+     * Same as {@link #newRandomAccessFile(File)} reading the file with direct I/O,
+     * bypassing the operating system page cache.
+     * <p>
+     * Env not supporting direct I/O return a buffered file.
+     */
+    default RandomInputFile newDirectRandomAccessFile(File file) throws IOException
+    {
+        return newRandomAccessFile(file);
+    }
+
+    /**
+     * Same as {@link #newRandomAccessFile(File)} returning reads that reference the file content in place,
+     * see {@link RandomInputFile#isZeroCopy()}.
+     * <p>
+     * Env not supporting zero copy reads return a file whose reads must be copied.
+     */
+    default RandomInputFile newZeroCopyRandomAccessFile(File file) throws IOException
+    {
+        return newRandomAccessFile(file);
+    }
+
+    /**
+     * Same as {@link #newWritableFile(File)} writing the file with direct I/O,
+     * bypassing the operating system page cache.
+     * <p>
+     * Env not supporting direct I/O return a buffered file.
+     */
+    default WritableFile newDirectWritableFile(File file) throws IOException
+    {
+        return newWritableFile(file);
+    }
+
+    /**
+     * Same as {@link #newWritableFile(File)} extending the file with zeros
+     * {@code preallocationSize} bytes at a time ahead of the writes, so that
+     * syncing the written data does not also have to update the file size.
+     * The file is not truncated when closed.
+     * <p>
+     * Env not supporting preallocation return a file growing with each write.
+     */
+    default WritableFile newPreallocatedWritableFile(File file, long preallocationSize) throws IOException
+    {
+        return newWritableFile(file);
+    }
+
+    /**
+     * Rename {@code oldFile} to {@code file} and overwrite it from its start,
+     * reusing the space already allocated to it. Data of the old file past
+     * the written bytes is left in place, see {@link #newPreallocatedWritableFile(File, long)}.
+     * <p>
+     * Env not supporting overwrites return a new file.
+     */
+    default WritableFile reuseWritableFile(File oldFile, File file, long preallocationSize) throws IOException
+    {
+        if (!oldFile.renameTo(file)) {
+            throw new IOException("Could not rename " + oldFile + " to " + file);
+        }
+        return newPreallocatedWritableFile(file, preallocationSize);
+    }
+
     /**
      * Create an WritableFile that either appends to an existing file, or
      * writes to a new file (if the file does not exist to begin with).
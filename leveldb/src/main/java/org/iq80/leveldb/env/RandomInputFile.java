@@ -41,4 +41,13 @@ public interface RandomInputFile extends Closeable
      * @throws IOException on any exception will accessing source media
      */
     ByteBuffer read(long offset, int length) throws IOException;
+
+    /**
+     * Whether the buffers returned by {@link #read(long, int)} can be referenced in place, even after
+     * this source is closed, instead of being copied to the heap.
+     */
+    default boolean isZeroCopy()
+    {
+        return false;
+    }
 }
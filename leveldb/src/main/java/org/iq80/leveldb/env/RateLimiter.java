@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.env;
+
+import org.iq80.leveldb.util.Slice;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Token bucket limiting the number of bytes per second written through the files it wraps.
+ * The bucket is refilled every 100 milliseconds and holds at most one refill, larger
+ * requests are granted in chunks. Requests of {@link Priority#HIGH} priority are granted
+ * before any waiting request of {@link Priority#LOW} priority.
+ */
+public final class RateLimiter
+{
+    private static final long REFILL_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public enum Priority
+    {
+        HIGH,
+        LOW
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private volatile long bytesPerSecond;
+    private long refillBytes;
+    private long available;
+    private long lastRefillNanos;
+    private int waitingHighPriority;
+
+    public RateLimiter(long bytesPerSecond)
+    {
+        setBytesPerSecond(bytesPerSecond);
+        lock.lock();
+        try {
+            available = refillBytes;
+            lastRefillNanos = System.nanoTime();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(long bytesPerSecond)
+    {
+        checkArgument(bytesPerSecond > 0, "bytesPerSecond must be positive");
+        lock.lock();
+        try {
+            this.bytesPerSecond = bytesPerSecond;
+            refillBytes = Math.max(1, bytesPerSecond / (TimeUnit.SECONDS.toNanos(1) / REFILL_PERIOD_NANOS));
+            available = Math.min(available, refillBytes);
+            refilled.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Total time requests waited for their bytes to be granted.
+     */
+    public long getThrottledMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(throttledNanos.get());
+    }
+
+    /**
+     * Wait until {@code bytes} can be written.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void request(long bytes, Priority priority)
+            throws InterruptedIOException
+    {
+        checkArgument(bytes >= 0, "bytes must not be negative");
+        requireNonNull(priority, "priority is null");
+        lock.lock();
+        try {
+            long remaining = bytes;
+            while (remaining > 0) {
+                remaining -= acquire(remaining, priority);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of bytes granted, at most one refill
+     */
+    private long acquire(long bytes, Priority priority)
+            throws InterruptedIOException
+    {
+        boolean highPriority = priority == Priority.HIGH;
+        if (highPriority) {
+            waitingHighPriority++;
+        }
+        try {
+            long waitStart = -1;
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+                long granted = Math.min(bytes, refillBytes);
+                if (available >= granted && (highPriority || waitingHighPriority == 0)) {
+                    available -= granted;
+                    if (waitStart != -1) {
+                        throttledNanos.addAndGet(now - waitStart);
+                    }
+                    return granted;
+                }
+                if (waitStart == -1) {
+                    waitStart = now;
+                }
+                try {
+                    refilled.awaitNanos(lastRefillNanos + REFILL_PERIOD_NANOS - now);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+                }
+            }
+        }
+        finally {
+            if (highPriority) {
+                waitingHighPriority--;
+            }
+            // low priority requests may proceed
+            refilled.signalAll();
+        }
+    }
+
+    private void refill(long now)
+    {
+        long periods = (now - lastRefillNanos) / REFILL_PERIOD_NANOS;
+        if (periods > 0) {
+            available = refillBytes;
+            lastRefillNanos += periods * REFILL_PERIOD_NANOS;
+        }
+    }
+
+    /**
+     * Wrap {@code file} so that its appends wait for the rate limiter.
+     */
+    public WritableFile limit(WritableFile file, Priority priority)
+    {
+        return new RateLimitedWritableFile(file, priority);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("RateLimiter");
+        sb.append("{bytesPerSecond=").append(bytesPerSecond);
+        sb.append(", throttledMicros=").append(getThrottledMicros());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private final class RateLimitedWritableFile implements WritableFile
+    {
+        private final WritableFile file;
+        private final Priority priority;
+
+        private RateLimitedWritableFile(WritableFile file, Priority priority)
+        {
+            this.file = requireNonNull(file, "file is null");
+            this.priority = requireNonNull(priority, "priority is null");
+        }
+
+        @Override
+        public void append(Slice data) throws IOException
+        {
+            request(data.length(), priority);
+            file.append(data);
+        }
+
+        @Override
+        public void force() throws IOException
+        {
+            file.force();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            file.close();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "RateLimitedWritableFile{" +
+                    "file=" + file +
+                    ", priority=" + priority +
+                    '}';
+        }
+    }
+}
@@ -72,6 +72,14 @@ final class ByteBufferSupport
     }
 
     public static void unmap(MappedByteBuffer buffer)
+    {
+        free(buffer);
+    }
+
+    /**
+     * Release the memory of a direct buffer, that must not be a slice or a duplicate of another buffer.
+     */
+    public static void free(ByteBuffer buffer)
     {
         try {
             INVOKE_CLEANER.invoke(buffer);
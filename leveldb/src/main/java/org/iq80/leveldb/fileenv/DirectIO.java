@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.fileenv;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Direct I/O ({@code O_DIRECT}) support. Requires Java 10 {@code ExtendedOpenOption.DIRECT},
+ * looked up at runtime. Reads and writes of a direct channel must use buffers, positions and
+ * lengths aligned on the file system block size.
+ */
+final class DirectIO
+{
+    private static final OpenOption DIRECT;
+    private static final MethodHandle BLOCK_SIZE;
+    private static final MethodHandle ALIGNED_SLICE;
+
+    static {
+        OpenOption direct = null;
+        MethodHandle blockSize = null;
+        MethodHandle alignedSlice = null;
+        try {
+            Class<?> extendedOpenOption = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object option : extendedOpenOption.getEnumConstants()) {
+                if (((Enum<?>) option).name().equals("DIRECT")) {
+                    direct = (OpenOption) option;
+                }
+            }
+            blockSize = MethodHandles.lookup().findVirtual(FileStore.class, "getBlockSize", MethodType.methodType(long.class));
+            alignedSlice = MethodHandles.lookup().findVirtual(ByteBuffer.class, "alignedSlice", MethodType.methodType(ByteBuffer.class, int.class));
+        }
+        catch (ReflectiveOperationException ignored) {
+            // Java 8, buffered I/O only
+            direct = null;
+        }
+        DIRECT = direct;
+        BLOCK_SIZE = blockSize;
+        ALIGNED_SLICE = alignedSlice;
+    }
+
+    private DirectIO()
+    {
+    }
+
+    public static boolean isSupported()
+    {
+        return DIRECT != null;
+    }
+
+    /**
+     * Open a channel on {@code file} bypassing the page cache.
+     *
+     * @throws IOException if the file can not be opened or the file system does not support direct I/O
+     */
+    public static FileChannel open(File file, OpenOption... options) throws IOException
+    {
+        if (!isSupported()) {
+            throw new IOException("Direct I/O is not supported");
+        }
+        OpenOption[] directOptions = new OpenOption[options.length + 1];
+        System.arraycopy(options, 0, directOptions, 0, options.length);
+        directOptions[options.length] = DIRECT;
+        return FileChannel.open(file.toPath(), directOptions);
+    }
+
+    public static FileChannel openForWrite(File file) throws IOException
+    {
+        return open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Alignment required by direct reads and writes of {@code file}.
+     */
+    public static int alignment(File file) throws IOException
+    {
+        try {
+            FileStore fileStore = Files.getFileStore(file.toPath());
+            return Math.toIntExact((long) BLOCK_SIZE.invoke(fileStore));
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new IOException("Unable to get block size of " + file, e);
+        }
+    }
+
+    /**
+     * Allocate a direct buffer of {@code capacity} bytes with an address aligned on {@code alignment}.
+     *
+     * @param allocated direct buffer of at least {@code capacity + alignment} bytes the returned buffer is a view of,
+     *                  to be freed once the returned buffer is no longer used
+     */
+    public static ByteBuffer alignedSlice(ByteBuffer allocated, int capacity, int alignment)
+    {
+        ByteBuffer aligned;
+        try {
+            aligned = (ByteBuffer) ALIGNED_SLICE.invoke(allocated, alignment);
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        aligned.limit(capacity);
+        return aligned.slice();
+    }
+
+    public static long alignDown(long position, int alignment)
+    {
+        return position - position % alignment;
+    }
+
+    public static long alignUp(long position, int alignment)
+    {
+        return alignDown(position + alignment - 1, alignment);
+    }
+}
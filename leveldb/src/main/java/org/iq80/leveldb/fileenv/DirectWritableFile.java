@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.fileenv;
+
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.util.Slice;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writable file bypassing the page cache. Appended data is gathered in an aligned buffer
+ * written once full, the partial last block is written padded when the file is synced or
+ * closed, and the padding truncated.
+ */
+class DirectWritableFile implements WritableFile
+{
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int alignment;
+    private final ByteBuffer allocated;
+    // data following flushedPosition
+    private final ByteBuffer buffer;
+    // aligned size of the data fully written to the file
+    private long flushedPosition;
+    private boolean closed;
+
+    private DirectWritableFile(File file, FileChannel channel, int alignment)
+    {
+        this.file = file;
+        this.channel = channel;
+        this.alignment = alignment;
+        int capacity = Math.toIntExact(DirectIO.alignUp(BUFFER_SIZE, alignment));
+        this.allocated = ByteBuffer.allocateDirect(capacity + alignment);
+        this.buffer = DirectIO.alignedSlice(allocated, capacity, alignment);
+    }
+
+    /**
+     * @throws IOException if the file can not be opened or direct I/O is not supported
+     */
+    public static WritableFile open(File file) throws IOException
+    {
+        requireNonNull(file, "file is null");
+        FileChannel channel = DirectIO.openForWrite(file);
+        try {
+            return new DirectWritableFile(file, channel, DirectIO.alignment(file));
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void append(Slice data) throws IOException
+    {
+        ByteBuffer source = data.toByteBuffer();
+        while (source.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                writeFully(buffer, flushedPosition);
+                flushedPosition += buffer.capacity();
+                buffer.clear();
+            }
+            int length = Math.min(source.remaining(), buffer.remaining());
+            ByteBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + length);
+            buffer.put(chunk);
+            source.position(source.position() + length);
+        }
+    }
+
+    /**
+     * Write the buffered data padded to the alignment, keeping it buffered,
+     * and cut the file to the size of the data.
+     */
+    private void writeTail() throws IOException
+    {
+        int length = buffer.position();
+        if (length > 0) {
+            ByteBuffer tail = buffer.duplicate();
+            tail.position(0).limit(Math.toIntExact(DirectIO.alignUp(length, alignment)));
+            writeFully(tail, flushedPosition);
+        }
+        channel.truncate(flushedPosition + length);
+    }
+
+    private void writeFully(ByteBuffer data, long position) throws IOException
+    {
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+
+    @Override
+    public void force() throws IOException
+    {
+        writeTail();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeTail();
+        }
+        finally {
+            channel.close();
+            ByteBufferSupport.free(allocated);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DirectWritableFile{" +
+                "file=" + file +
+                '}';
+    }
+}
@@ -81,10 +81,21 @@ public class EnvImpl implements Env
 
     @Override
     public RandomInputFile newRandomAccessFile(File file) throws IOException
+    {
+        return newRandomAccessFile(file, false);
+    }
+
+    @Override
+    public RandomInputFile newZeroCopyRandomAccessFile(File file) throws IOException
+    {
+        return newRandomAccessFile(file, true);
+    }
+
+    private RandomInputFile newRandomAccessFile(File file, boolean zeroCopy) throws IOException
     {
         if (mmapLimiter.acquire()) {
             try {
-                return new DelegateRandomInputFile(mmapLimiter, MMRandomInputFile.open(JavaFile.toFile(file)));
+                return new DelegateRandomInputFile(mmapLimiter, MMRandomInputFile.open(JavaFile.toFile(file), zeroCopy));
             }
             catch (IOException e) {
                 mmapLimiter.release();
@@ -109,6 +120,49 @@ public class EnvImpl implements Env
         return UnbufferedWritableFile.open(JavaFile.toFile(file), false);
     }
 
+    @Override
+    public RandomInputFile newDirectRandomAccessFile(File file) throws IOException
+    {
+        if (DirectIO.isSupported()) {
+            try {
+                return UnbufferedRandomInputFile.openDirect(JavaFile.toFile(file));
+            }
+            catch (IOException e) {
+                // file system without direct I/O support
+            }
+        }
+        return newRandomAccessFile(file);
+    }
+
+    @Override
+    public WritableFile newDirectWritableFile(File file) throws IOException
+    {
+        if (DirectIO.isSupported()) {
+            try {
+                return DirectWritableFile.open(JavaFile.toFile(file));
+            }
+            catch (IOException e) {
+                // file system without direct I/O support
+            }
+        }
+        return newWritableFile(file);
+    }
+
+    @Override
+    public WritableFile newPreallocatedWritableFile(File file, long preallocationSize) throws IOException
+    {
+        return PreallocatedWritableFile.open(JavaFile.toFile(file), preallocationSize, true);
+    }
+
+    @Override
+    public WritableFile reuseWritableFile(File oldFile, File file, long preallocationSize) throws IOException
+    {
+        if (!oldFile.renameTo(file)) {
+            throw new IOException("Could not rename " + oldFile + " to " + file);
+        }
+        return PreallocatedWritableFile.open(JavaFile.toFile(file), preallocationSize, false);
+    }
+
     @Override
     public WritableFile newAppendableFile(File file) throws IOException
     {
@@ -173,6 +227,12 @@ public class EnvImpl implements Env
             return open.read(offset, length);
         }
 
+        @Override
+        public boolean isZeroCopy()
+        {
+            return open.isZeroCopy();
+        }
+
         @Override
         public void close() throws IOException
         {
@@ -30,6 +30,12 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Memory mapped filed table.
+ * <p>
+ * Reads return views of the mapped memory. By default their content is copied by the reader and the
+ * file is unmapped on close. In zero copy mode (see {@link #isZeroCopy()}) table blocks use the views in
+ * place. As they may outlive the file (cached blocks, values returned by lookups), the mapping is then not
+ * forcibly unmapped on close but released by the garbage collector once no view is reachable anymore
+ * (space of deleted files is only reclaimed at that time, and on Windows such files can't be deleted before).
  *
  * @author Honore Vasconcelos
  */
@@ -38,26 +44,29 @@ class MMRandomInputFile implements RandomInputFile
     private final String file;
     private final long size;
     private final MappedByteBuffer data;
+    private final boolean zeroCopy;
 
-    private MMRandomInputFile(String file, MappedByteBuffer data, long size)
+    private MMRandomInputFile(String file, MappedByteBuffer data, long size, boolean zeroCopy)
     {
         this.file = file;
         this.size = size;
         this.data = data;
+        this.zeroCopy = zeroCopy;
     }
 
     /**
      * Open file using memory mapped file access.
      * @param file file to open
+     * @param zeroCopy if {@code true} views returned by reads may be referenced after the file is closed
      * @return readable file
      * @throws IOException If some other I/O error occurs
      */
-    public static RandomInputFile open(File file) throws IOException
+    public static RandomInputFile open(File file, boolean zeroCopy) throws IOException
     {
         requireNonNull(file, "file is null");
         MappedByteBuffer map = Files.map(file);
 
-        return new MMRandomInputFile(file.getAbsolutePath(), map, map.capacity());
+        return new MMRandomInputFile(file.getAbsolutePath(), map, map.capacity(), zeroCopy);
     }
 
     @Override
@@ -73,9 +82,19 @@ class MMRandomInputFile implements RandomInputFile
         return (ByteBuffer) data.duplicate().order(ByteOrder.LITTLE_ENDIAN).clear().limit(newPosition + length).position(newPosition);
     }
 
+    @Override
+    public boolean isZeroCopy()
+    {
+        return zeroCopy;
+    }
+
     @Override
     public void close() throws IOException
     {
+        if (zeroCopy) {
+            // views of the mapping may still be referenced, unmapping now could crash the JVM on access
+            return;
+        }
         try {
             ByteBufferSupport.unmap(data);
         }
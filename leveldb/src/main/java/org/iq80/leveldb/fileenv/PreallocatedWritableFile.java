@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.fileenv;
+
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.util.Slice;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link WritableFile} extending the file with zeros ahead of the writes, or
+ * overwriting an existing file in place. Syncs of the written data do not have
+ * to update the size of the file until the preallocated space is used up.
+ */
+class PreallocatedWritableFile implements WritableFile
+{
+    private static final ByteBuffer ZEROS = ByteBuffer.allocate(64 * 1024);
+
+    private final File file;
+    private final FileChannel channel;
+    private final long preallocationSize;
+    private long position;
+    private long allocated;
+
+    private PreallocatedWritableFile(File file, FileChannel channel, long preallocationSize)
+            throws IOException
+    {
+        this.file = file;
+        this.channel = channel;
+        this.preallocationSize = preallocationSize;
+        this.allocated = channel.size();
+    }
+
+    /**
+     * @param truncate {@code false} to overwrite the content of an existing file
+     */
+    public static WritableFile open(File file, long preallocationSize, boolean truncate) throws IOException
+    {
+        FileChannel channel = truncate
+                ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        try {
+            return new PreallocatedWritableFile(file, channel, preallocationSize);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void append(Slice data) throws IOException
+    {
+        long end = position + data.length();
+        if (end > allocated) {
+            preallocate(Math.max(end, allocated + preallocationSize));
+        }
+        ByteBuffer buffer = data.toByteBuffer();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void preallocate(long size) throws IOException
+    {
+        while (allocated < size) {
+            ByteBuffer zeros = ZEROS.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), size - allocated));
+            allocated += channel.write(zeros, allocated);
+        }
+    }
+
+    @Override
+    public void force() throws IOException
+    {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PreallocatedWritableFile{" +
+                "file=" + file +
+                '}';
+    }
+}
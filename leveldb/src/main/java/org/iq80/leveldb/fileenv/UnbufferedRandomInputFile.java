@@ -21,13 +21,13 @@ import org.iq80.leveldb.env.RandomInputFile;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import static java.util.Objects.requireNonNull;
 
@@ -37,28 +37,50 @@ import static java.util.Objects.requireNonNull;
 class UnbufferedRandomInputFile implements RandomInputFile
 {
     private static final int MAX_RETRY = Integer.getInteger(" org.iq80.leveldb.FileChannel.RETRY", 1000);
+    // reads larger than this use a temporary buffer instead of the buffer kept by each thread
+    private static final int MAX_DIRECT_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<DirectBuffer> DIRECT_BUFFER = new ThreadLocal<>();
     private final Object lock = new Object();
     private final File file;
     private volatile FileChannel fileChannel;
     private final long size;
+    // 0 unless the file is read with direct I/O
+    private final int alignment;
     private boolean closed = false;
 
-    private UnbufferedRandomInputFile(File file, FileChannel fileChannel, long size)
+    private UnbufferedRandomInputFile(File file, FileChannel fileChannel, long size, int alignment)
     {
         this.file = file;
         this.fileChannel = fileChannel;
         this.size = size;
+        this.alignment = alignment;
     }
 
     public static RandomInputFile open(File file) throws IOException
     {
         requireNonNull(file, "file is null");
-        FileChannel channel = openChannel(file);
-        return new UnbufferedRandomInputFile(file, channel, channel.size());
+        FileChannel channel = openChannel(file, 0);
+        return new UnbufferedRandomInputFile(file, channel, channel.size(), 0);
     }
 
-    private static FileChannel openChannel(File file) throws FileNotFoundException
+    /**
+     * Open {@code file} for direct I/O, reads are then expanded to the alignment of its file system.
+     *
+     * @throws IOException if the file can not be opened or direct I/O is not supported
+     */
+    public static RandomInputFile openDirect(File file) throws IOException
     {
+        requireNonNull(file, "file is null");
+        int alignment = DirectIO.alignment(file);
+        FileChannel channel = openChannel(file, alignment);
+        return new UnbufferedRandomInputFile(file, channel, channel.size(), alignment);
+    }
+
+    private static FileChannel openChannel(File file, int alignment) throws IOException
+    {
+        if (alignment > 0) {
+            return DirectIO.open(file, StandardOpenOption.READ);
+        }
         return new FileInputStream(file).getChannel();
     }
 
@@ -79,7 +101,12 @@ class UnbufferedRandomInputFile implements RandomInputFile
         do {
             final FileChannel fc = this.fileChannel;
             try {
-                fc.read(uncompressedBuffer, offset);
+                if (alignment > 0) {
+                    readDirect(fc, uncompressedBuffer, offset);
+                }
+                else {
+                    fc.read(uncompressedBuffer, offset);
+                }
                 if (uncompressedBuffer.hasRemaining()) {
                     throw new IOException("Could not read all the data");
                 }
@@ -99,7 +126,54 @@ class UnbufferedRandomInputFile implements RandomInputFile
         throw new IOException("Unable to reopen file after close exception");
     }
 
-    private boolean reOpenChannel(FileChannel currentFc) throws FileNotFoundException
+    /**
+     * Read the aligned range enclosing {@code [offset, offset + destination.remaining())} and copy
+     * the requested bytes to {@code destination}.
+     */
+    private void readDirect(FileChannel fc, ByteBuffer destination, long offset) throws IOException
+    {
+        long alignedOffset = DirectIO.alignDown(offset, alignment);
+        long end = offset + destination.remaining();
+        int alignedLength = Math.toIntExact(DirectIO.alignUp(end, alignment) - alignedOffset);
+        DirectBuffer directBuffer = DIRECT_BUFFER.get();
+        boolean temporary = false;
+        if (directBuffer == null || directBuffer.buffer.capacity() < alignedLength || directBuffer.alignment % alignment != 0) {
+            directBuffer = new DirectBuffer(alignedLength, alignment);
+            if (alignedLength <= MAX_DIRECT_BUFFER_SIZE) {
+                DirectBuffer previous = DIRECT_BUFFER.get();
+                if (previous != null) {
+                    previous.free();
+                }
+                DIRECT_BUFFER.set(directBuffer);
+            }
+            else {
+                temporary = true;
+            }
+        }
+        try {
+            ByteBuffer buffer = directBuffer.buffer;
+            buffer.clear().limit(alignedLength);
+            int needed = Math.toIntExact(end - alignedOffset);
+            // a read stops short of an aligned length only at the end of the file
+            while (buffer.position() < needed && buffer.position() % alignment == 0) {
+                if (fc.read(buffer, alignedOffset + buffer.position()) <= 0) {
+                    break;
+                }
+            }
+            if (buffer.position() < needed) {
+                throw new IOException("Could not read all the data");
+            }
+            buffer.limit(needed).position(Math.toIntExact(offset - alignedOffset));
+            destination.put(buffer);
+        }
+        finally {
+            if (temporary) {
+                directBuffer.free();
+            }
+        }
+    }
+
+    private boolean reOpenChannel(FileChannel currentFc) throws IOException
     {
         synchronized (lock) {
             if (closed) {
@@ -107,7 +181,7 @@ class UnbufferedRandomInputFile implements RandomInputFile
                 return false;
             }
             if (this.fileChannel == currentFc) {
-                this.fileChannel = openChannel(file);
+                this.fileChannel = openChannel(file, alignment);
             }
         }
         return true;
@@ -131,6 +205,26 @@ class UnbufferedRandomInputFile implements RandomInputFile
         return "FileTableDataSource{" +
             "file='" + file + '\'' +
             ", size=" + size +
+            ", alignment=" + alignment +
             '}';
     }
+
+    private static final class DirectBuffer
+    {
+        private final ByteBuffer allocated;
+        private final ByteBuffer buffer;
+        private final int alignment;
+
+        private DirectBuffer(int capacity, int alignment)
+        {
+            this.allocated = ByteBuffer.allocateDirect(capacity + alignment);
+            this.buffer = DirectIO.alignedSlice(allocated, capacity, alignment);
+            this.alignment = alignment;
+        }
+
+        private void free()
+        {
+            ByteBufferSupport.free(allocated);
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.util.Crc32C;
+import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.Slices;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.zip.Checksum;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+import static org.iq80.leveldb.util.SizeOf.SIZE_OF_INT;
+
+/**
+ * Appends values to a blob file. Each value is followed by the masked crc32c of its bytes,
+ * the {@link BlobIndex} returned for it only holding the value position and length.
+ */
+public class BlobFileBuilder implements Closeable
+{
+    public static final int TRAILER_SIZE = SIZE_OF_INT;
+
+    private final long fileNumber;
+    private final WritableFile file;
+    private long fileSize;
+    private long valueCount;
+    private long valueBytes;
+    private boolean closed;
+
+    public BlobFileBuilder(long fileNumber, WritableFile file)
+    {
+        this.fileNumber = fileNumber;
+        this.file = requireNonNull(file, "file is null");
+    }
+
+    public long getFileNumber()
+    {
+        return fileNumber;
+    }
+
+    public long getFileSize()
+    {
+        return fileSize;
+    }
+
+    public BlobIndex add(Slice value) throws IOException
+    {
+        checkState(!closed, "Blob file is closed");
+        Checksum checksum = Crc32C.newChecksum();
+        Crc32C.update(checksum, value.toByteBuffer());
+        Slice trailer = Slices.allocate(TRAILER_SIZE);
+        trailer.setInt(0, Crc32C.getMaskedValue(checksum));
+
+        file.append(value);
+        file.append(trailer);
+
+        BlobIndex index = new BlobIndex(fileNumber, fileSize, value.length());
+        fileSize += value.length() + TRAILER_SIZE;
+        valueCount++;
+        valueBytes += value.length();
+        return index;
+    }
+
+    /**
+     * Sync and close the file.
+     *
+     * @return metadata of the finished file
+     */
+    public BlobFileMetaData finish() throws IOException
+    {
+        checkState(!closed, "Blob file is closed");
+        closed = true;
+        try {
+            file.force();
+        }
+        finally {
+            file.close();
+        }
+        return new BlobFileMetaData(fileNumber, valueCount, valueBytes);
+    }
+
+    /**
+     * Close the file without syncing it, the caller then deletes it.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed) {
+            closed = true;
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.env.Env;
+import org.iq80.leveldb.env.File;
+import org.iq80.leveldb.env.RandomInputFile;
+import org.iq80.leveldb.util.Crc32C;
+import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.Slices;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Checksum;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Open blob files, to read the values {@link BlobIndex} entries refer to.
+ */
+public class BlobFileCache
+{
+    private final LoadingCache<Long, BlobFile> cache;
+
+    public BlobFileCache(final File databaseDir, int blobFileCacheSize, Env env)
+    {
+        requireNonNull(databaseDir, "databaseDir is null");
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(blobFileCacheSize)
+                .removalListener((RemovalListener<Long, BlobFile>) notification -> {
+                    final BlobFile value = notification.getValue();
+                    if (value != null) {
+                        try {
+                            value.release();
+                        }
+                        catch (IOException e) {
+                            throw new DBException(e);
+                        }
+                    }
+                })
+                .build(new CacheLoader<Long, BlobFile>()
+                {
+                    @Override
+                    public BlobFile load(Long fileNumber)
+                            throws IOException
+                    {
+                        return new BlobFile(env.newRandomAccessFile(databaseDir.child(Filename.blobFileName(fileNumber))));
+                    }
+                });
+    }
+
+    /**
+     * Read the value {@code index} refers to. As for table blocks, the returned slice may
+     * reference the file content in place.
+     */
+    public Slice get(BlobIndex index, boolean verifyChecksums)
+    {
+        BlobFile blobFile = getBlobFile(index.getFileNumber());
+        try {
+            ByteBuffer content = blobFile.source.read(index.getOffset(), index.getLength() + BlobFileBuilder.TRAILER_SIZE);
+            if (content.remaining() != index.getLength() + BlobFileBuilder.TRAILER_SIZE) {
+                throw new DBException("Corruption: truncated blob file " + index.getFileNumber() + " for " + index);
+            }
+            Slice record = Slices.avoidCopiedBuffer(content);
+            Slice value = record.slice(0, index.getLength());
+            if (verifyChecksums) {
+                Checksum checksum = Crc32C.newChecksum();
+                Crc32C.update(checksum, value.toByteBuffer());
+                if (record.getInt(index.getLength()) != Crc32C.getMaskedValue(checksum)) {
+                    throw new DBException("Corruption: checksum mismatch in blob file " + index.getFileNumber() + " for " + index);
+                }
+            }
+            return value;
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+        finally {
+            try {
+                blobFile.release();
+            }
+            catch (IOException e) {
+                throw new DBException(e);
+            }
+        }
+    }
+
+    private BlobFile getBlobFile(long number)
+    {
+        BlobFile blobFile;
+        try {
+            do {
+                blobFile = cache.get(number);
+            } while (!blobFile.retain());
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e;
+            if (e.getCause() != null) {
+                cause = e.getCause();
+            }
+            throw new DBException("Could not open blob file " + number, cause);
+        }
+        return blobFile;
+    }
+
+    public void close()
+    {
+        invalidateAll();
+    }
+
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    public void evict(long number)
+    {
+        cache.invalidate(number);
+    }
+
+    private static final class BlobFile
+    {
+        private final RandomInputFile source;
+        //released by the cache on eviction and by each read
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private BlobFile(RandomInputFile source)
+        {
+            this.source = source;
+        }
+
+        private boolean retain()
+        {
+            int refs;
+            do {
+                refs = refCount.get();
+                if (refs == 0) {
+                    return false; //already released. do not use!
+                }
+            } while (!refCount.compareAndSet(refs, refs + 1));
+            return true;
+        }
+
+        private void release() throws IOException
+        {
+            if (refCount.decrementAndGet() == 0) {
+                source.close();
+            }
+        }
+    }
+}
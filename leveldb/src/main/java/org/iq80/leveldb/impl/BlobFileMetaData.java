@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+/**
+ * Blob file of a version, with the values of the file no table refers to anymore.
+ */
+public final class BlobFileMetaData
+{
+    private final long number;
+
+    /**
+     * Values written to the file and their total length
+     */
+    private final long valueCount;
+    private final long valueBytes;
+
+    /**
+     * Values overwritten, deleted or moved to another blob file by compactions
+     */
+    private final long garbageCount;
+    private final long garbageBytes;
+
+    public BlobFileMetaData(long number, long valueCount, long valueBytes)
+    {
+        this(number, valueCount, valueBytes, 0, 0);
+    }
+
+    public BlobFileMetaData(long number, long valueCount, long valueBytes, long garbageCount, long garbageBytes)
+    {
+        this.number = number;
+        this.valueCount = valueCount;
+        this.valueBytes = valueBytes;
+        this.garbageCount = garbageCount;
+        this.garbageBytes = garbageBytes;
+    }
+
+    public long getNumber()
+    {
+        return number;
+    }
+
+    public long getValueCount()
+    {
+        return valueCount;
+    }
+
+    public long getValueBytes()
+    {
+        return valueBytes;
+    }
+
+    public long getGarbageCount()
+    {
+        return garbageCount;
+    }
+
+    public long getGarbageBytes()
+    {
+        return garbageBytes;
+    }
+
+    /**
+     * Fraction of the bytes of the file no table refers to.
+     */
+    public double getGarbageRatio()
+    {
+        return valueBytes == 0 ? 1.0 : 1.0 * garbageBytes / valueBytes;
+    }
+
+    /**
+     * Whether no table refers to the file anymore.
+     */
+    public boolean isObsolete()
+    {
+        return garbageCount >= valueCount;
+    }
+
+    public BlobFileMetaData withGarbage(long count, long bytes)
+    {
+        return new BlobFileMetaData(number, valueCount, valueBytes, garbageCount + count, garbageBytes + bytes);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BlobFileMetaData");
+        sb.append("{number=").append(number);
+        sb.append(", valueCount=").append(valueCount);
+        sb.append(", valueBytes=").append(valueBytes);
+        sb.append(", garbageCount=").append(garbageCount);
+        sb.append(", garbageBytes=").append(garbageBytes);
+        sb.append('}');
+        return sb.toString();
+    }
+}
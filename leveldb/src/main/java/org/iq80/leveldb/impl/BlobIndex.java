@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.SliceInput;
+import org.iq80.leveldb.util.SliceOutput;
+import org.iq80.leveldb.util.Slices;
+import org.iq80.leveldb.util.VariableLengthQuantity;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Location of a value in a blob file, stored as value of {@link ValueType#BLOB_INDEX} entries.
+ */
+public final class BlobIndex
+{
+    // 2 variable length longs and 1 variable length int
+    private static final int MAX_ENCODED_LENGTH = 10 + 10 + 5;
+
+    private final long fileNumber;
+    private final long offset;
+    private final int length;
+
+    public BlobIndex(long fileNumber, long offset, int length)
+    {
+        checkArgument(offset >= 0, "offset is negative");
+        checkArgument(length >= 0, "length is negative");
+        this.fileNumber = fileNumber;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static BlobIndex decode(Slice slice)
+    {
+        SliceInput input = slice.input();
+        long fileNumber = VariableLengthQuantity.readVariableLengthLong(input);
+        long offset = VariableLengthQuantity.readVariableLengthLong(input);
+        int length = VariableLengthQuantity.readVariableLengthInt(input);
+        return new BlobIndex(fileNumber, offset, length);
+    }
+
+    public Slice encode()
+    {
+        Slice slice = Slices.allocate(MAX_ENCODED_LENGTH);
+        SliceOutput output = slice.output();
+        VariableLengthQuantity.writeVariableLengthLong(fileNumber, output);
+        VariableLengthQuantity.writeVariableLengthLong(offset, output);
+        VariableLengthQuantity.writeVariableLengthInt(length, output);
+        return slice.slice(0, output.size());
+    }
+
+    public long getFileNumber()
+    {
+        return fileNumber;
+    }
+
+    /**
+     * Position of the value in the blob file.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Length of the value.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BlobIndex");
+        sb.append("{fileNumber=").append(fileNumber);
+        sb.append(", offset=").append(offset);
+        sb.append(", length=").append(length);
+        sb.append('}');
+        return sb.toString();
+    }
+}
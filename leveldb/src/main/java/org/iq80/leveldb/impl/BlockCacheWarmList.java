@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.env.Env;
+import org.iq80.leveldb.env.File;
+import org.iq80.leveldb.env.SequentialFile;
+import org.iq80.leveldb.table.BlockHandle;
+import org.iq80.leveldb.util.DynamicSliceOutput;
+import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.SliceInput;
+import org.iq80.leveldb.util.VariableLengthQuantity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+import static org.iq80.leveldb.impl.LogMonitors.throwExceptionMonitor;
+
+/**
+ * Blocks held by the block cache, most recently used first, saved so that a
+ * reopened database can load them again. The list is a log file whose records
+ * each hold a run of table file number and block handle pairs.
+ */
+public final class BlockCacheWarmList
+{
+    private static final int BLOCKS_PER_RECORD = 1024;
+
+    private BlockCacheWarmList()
+    {
+    }
+
+    /**
+     * Replace the warm list of the database, the previous list is kept if writing fails.
+     */
+    public static void write(File databaseDir, List<CachedBlock> blocks, Env env)
+            throws IOException
+    {
+        File tempFile = databaseDir.child(Filename.warmListFileName() + ".dbtmp");
+        try (LogWriter writer = Logs.createLogWriter(tempFile, 0, env)) {
+            DynamicSliceOutput record = new DynamicSliceOutput(BLOCKS_PER_RECORD * (10 + BlockHandle.MAX_ENCODED_LENGTH));
+            int count = 0;
+            for (CachedBlock block : blocks) {
+                VariableLengthQuantity.writeVariableLengthLong(block.getFileNumber(), record);
+                BlockHandle.writeBlockHandleTo(block.getBlockHandle(), record);
+                if (++count % BLOCKS_PER_RECORD == 0) {
+                    writer.addRecord(record.slice(), false);
+                    record.reset();
+                }
+            }
+            // the list is synced before it replaces the previous one
+            writer.addRecord(record.slice(), true);
+        }
+        catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+        if (!tempFile.renameTo(databaseDir.child(Filename.warmListFileName()))) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + Filename.warmListFileName());
+        }
+    }
+
+    /**
+     * Warm list of the database, empty if the database has none.
+     */
+    public static List<CachedBlock> read(File databaseDir, Env env)
+            throws IOException
+    {
+        File file = databaseDir.child(Filename.warmListFileName());
+        List<CachedBlock> blocks = new ArrayList<>();
+        if (!file.canRead()) {
+            return blocks;
+        }
+        try (SequentialFile in = env.newSequentialFile(file)) {
+            LogReader reader = new LogReader(in, throwExceptionMonitor(), true, 0);
+            for (Slice record = reader.readRecord(); record != null; record = reader.readRecord()) {
+                SliceInput input = record.input();
+                while (input.isReadable()) {
+                    long fileNumber = VariableLengthQuantity.readVariableLengthLong(input);
+                    blocks.add(new CachedBlock(fileNumber, BlockHandle.readBlockHandle(input)));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    public static final class CachedBlock
+    {
+        private final long fileNumber;
+        private final BlockHandle blockHandle;
+
+        public CachedBlock(long fileNumber, BlockHandle blockHandle)
+        {
+            this.fileNumber = fileNumber;
+            this.blockHandle = requireNonNull(blockHandle, "blockHandle is null");
+        }
+
+        public long getFileNumber()
+        {
+            return fileNumber;
+        }
+
+        public BlockHandle getBlockHandle()
+        {
+            return blockHandle;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CachedBlock that = (CachedBlock) o;
+            return fileNumber == that.fileNumber && blockHandle.equals(that.blockHandle);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Long.hashCode(fileNumber) + blockHandle.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "CachedBlock{fileNumber=" + fileNumber + ", blockHandle=" + blockHandle + '}';
+        }
+    }
+}
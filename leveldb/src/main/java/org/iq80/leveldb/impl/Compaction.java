@@ -170,6 +170,50 @@ public class Compaction implements AutoCloseable
         return true;
     }
 
+    // Returns true if no data exists in levels greater than "level+1" for
+    // the user keys in [begin, end), i.e. a range tombstone may be dropped.
+    public boolean isBaseLevelForRange(Slice begin, Slice end)
+    {
+        for (int level = this.level + 2; level < NUM_LEVELS; level++) {
+            if (inputVersion.overlapInLevel(level, begin, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns true if no data exists in levels greater than "level+1" for
+    // the key range of this compaction, i.e. its outputs hold the oldest data.
+    public boolean isBottommost()
+    {
+        UserComparator userComparator = inputVersion.getInternalKeyComparator().getUserComparator();
+        Slice smallest = null;
+        Slice largest = null;
+        for (List<FileMetaData> files : inputs) {
+            for (FileMetaData file : files) {
+                if (smallest == null || userComparator.compare(file.getSmallest().getUserKey(), smallest) < 0) {
+                    smallest = file.getSmallest().getUserKey();
+                }
+                if (largest == null || userComparator.compare(file.getLargest().getUserKey(), largest) > 0) {
+                    largest = file.getLargest().getUserKey();
+                }
+            }
+        }
+        for (int level = this.level + 2; level < NUM_LEVELS; level++) {
+            if (inputVersion.overlapInLevel(level, smallest, largest)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns true if the values of the blob file still referred to by the inputs
+    // are to be moved to a new blob file, the file holding too much garbage.
+    public boolean isBlobFileToCollect(long blobFileNumber)
+    {
+        return inputVersion.getVersionSet().isBlobFileToCollect(inputVersion.getBlobFiles().get(blobFileNumber));
+    }
+
     // Returns true iff we should stop building the current output
     // before processing "internal_key".
     public boolean shouldStopBefore(InternalKey internalKey)
@@ -61,6 +61,39 @@ public final class DbConstants
 
     public static final int NUM_NON_TABLE_CACHE_FILES = 10;
 
+    /**
+     * Maximum factor by which an auto-tuned compaction rate limit is raised
+     * above the configured one.
+     */
+    public static final int MAX_RATE_LIMIT_TUNING = 8;
+
+    /**
+     * Number of threads loading blocks ahead of iterators.
+     */
+    public static final int NUM_PREFETCH_THREADS = 4;
+
+    /**
+     * Maximum number of block prefetches waiting for a thread.
+     */
+    public static final int MAX_PENDING_PREFETCHES = 256;
+
+    /**
+     * Number of threads inserting replayed log records in memtables and
+     * flushing them while a database is opened.
+     */
+    public static final int NUM_RECOVERY_THREADS = 4;
+
+    /**
+     * Approximate number of bytes of log records inserted together in a
+     * memtable during recovery.
+     */
+    public static final int RECOVERY_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Number of threads opening tables when the table cache is warmed.
+     */
+    public static final int NUM_WARMUP_THREADS = 4;
+
     private DbConstants()
     {
     }
@@ -20,12 +20,15 @@ package org.iq80.leveldb.impl;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.iq80.leveldb.CompactionFilter;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBComparator;
 import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.MergeOperator;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.Range;
 import org.iq80.leveldb.ReadOptions;
@@ -36,8 +39,12 @@ import org.iq80.leveldb.env.DbLock;
 import org.iq80.leveldb.env.Env;
 import org.iq80.leveldb.env.File;
 import org.iq80.leveldb.env.NoOpLogger;
+import org.iq80.leveldb.env.RandomInputFile;
+import org.iq80.leveldb.env.RateLimiter;
+import org.iq80.leveldb.env.RateLimiter.Priority;
 import org.iq80.leveldb.env.SequentialFile;
 import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.impl.BlockCacheWarmList.CachedBlock;
 import org.iq80.leveldb.impl.Filename.FileInfo;
 import org.iq80.leveldb.impl.Filename.FileType;
 import org.iq80.leveldb.impl.WriteBatchImpl.Handler;
@@ -45,33 +52,42 @@ import org.iq80.leveldb.iterator.DBIteratorAdapter;
 import org.iq80.leveldb.iterator.DbIterator;
 import org.iq80.leveldb.iterator.InternalIterator;
 import org.iq80.leveldb.iterator.MergingIterator;
+import org.iq80.leveldb.iterator.SliceIterator;
 import org.iq80.leveldb.iterator.SnapshotSeekingIterator;
 import org.iq80.leveldb.table.BytewiseComparator;
 import org.iq80.leveldb.table.CustomUserComparator;
 import org.iq80.leveldb.table.FilterPolicy;
+import org.iq80.leveldb.table.Table;
 import org.iq80.leveldb.table.TableBuilder;
 import org.iq80.leveldb.table.UserComparator;
 import org.iq80.leveldb.util.Closeables;
+import org.iq80.leveldb.util.Compressions;
 import org.iq80.leveldb.util.SafeListBuilder;
 import org.iq80.leveldb.util.Slice;
 import org.iq80.leveldb.util.SliceInput;
 import org.iq80.leveldb.util.SliceOutput;
 import org.iq80.leveldb.util.Slices;
-import org.iq80.leveldb.util.Snappy;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
@@ -87,7 +103,10 @@ import static org.iq80.leveldb.impl.DbConstants.L0_SLOWDOWN_WRITES_TRIGGER;
 import static org.iq80.leveldb.impl.DbConstants.L0_STOP_WRITES_TRIGGER;
 import static org.iq80.leveldb.impl.DbConstants.NUM_NON_TABLE_CACHE_FILES;
 import static org.iq80.leveldb.impl.SequenceNumber.MAX_SEQUENCE_NUMBER;
+import static org.iq80.leveldb.impl.ValueType.BLOB_INDEX;
 import static org.iq80.leveldb.impl.ValueType.DELETION;
+import static org.iq80.leveldb.impl.ValueType.MERGE;
+import static org.iq80.leveldb.impl.ValueType.RANGE_DELETION;
 import static org.iq80.leveldb.impl.ValueType.VALUE;
 import static org.iq80.leveldb.util.SizeOf.SIZE_OF_INT;
 import static org.iq80.leveldb.util.SizeOf.SIZE_OF_LONG;
@@ -102,6 +121,9 @@ public class DbImpl
     private final boolean ownsLogger;
     private final File databaseDir;
     private final TableCache tableCache;
+    private final BlobFileCache blobFileCache;
+    // null when background writes are not limited
+    private final RateLimiter rateLimiter;
     private final DbLock dbLock;
     private final VersionSet versions;
 
@@ -124,9 +146,26 @@ public class DbImpl
 
     private volatile Throwable backgroundException;
     private final ExecutorService compactionExecutor;
+    // null when data blocks are compressed on the compaction thread
+    private final ExecutorService compressionExecutor;
+    private final ThreadPoolExecutor prefetchExecutor;
+    // null unless the table cache or the block cache is warmed on open
+    private final ExecutorService warmupExecutor;
+    // null unless the block cache warm list is saved periodically
+    private final ScheduledExecutorService warmListSaver;
+    // groups the log syncs of this database with those of other databases, null to sync on its own
+    private final GroupSyncCoordinator syncCoordinator;
+    // the warm list is not replaced before it is loaded, a partially warmed cache would truncate it
+    private volatile boolean warmListLoaded;
     private Future<?> backgroundCompaction;
 
     private ManualCompaction manualCompaction;
+    // no background work is started while ingested files are installed
+    private boolean ingestingFiles;
+    // obsolete logs kept to be overwritten by new logs, oldest first
+    private final Deque<Long> recyclableLogs = new LinkedList<>();
+    // logs written by this instance in the recyclable format start at this number
+    private long firstRecyclableLog = Long.MAX_VALUE;
 
     private CompactionStats[] stats = new CompactionStats[DbConstants.NUM_LEVELS];
 
@@ -140,10 +179,17 @@ public class DbImpl
         this.options = sanitizeOptions(databaseDir, rawOptions);
         this.ownsLogger = this.options.logger() != rawOptions.logger();
 
-        if (this.options.compressionType() == CompressionType.SNAPPY && !Snappy.available()) {
-            // Disable snappy if it's not available.
+        if (!Compressions.available(this.options.compressionType())) {
+            // Disable compression if codec is not available.
             this.options.compressionType(CompressionType.NONE);
         }
+        if (this.options.compressionPerLevel() != null) {
+            List<CompressionType> compressionPerLevel = new ArrayList<>();
+            for (CompressionType compressionType : this.options.compressionPerLevel()) {
+                compressionPerLevel.add(Compressions.available(compressionType) ? compressionType : CompressionType.NONE);
+            }
+            this.options.compressionPerLevel(compressionPerLevel);
+        }
 
         this.databaseDir = databaseDir;
 
@@ -151,6 +197,7 @@ public class DbImpl
             checkArgument(this.options.filterPolicy() instanceof FilterPolicy, "Filter policy must implement Java interface FilterPolicy");
             this.options.filterPolicy(InternalFilterPolicy.convert(this.options.filterPolicy()));
         }
+        syncCoordinator = GroupSyncCoordinator.convert(this.options.syncCoordinator());
 
         //use custom comparator if set
         DBComparator comparator = options.comparator();
@@ -180,10 +227,47 @@ public class DbImpl
                 })
                 .build();
         compactionExecutor = Executors.newSingleThreadExecutor(compactionThreadFactory);
+        if (options.compressionThreads() > 1) {
+            compressionExecutor = Executors.newFixedThreadPool(options.compressionThreads(), new ThreadFactoryBuilder()
+                    .setNameFormat("leveldb-" + databaseDir.getName() + "-compression-%s")
+                    .setDaemon(true)
+                    .build());
+        }
+        else {
+            compressionExecutor = null;
+        }
+        // threads are only started by iterators prefetching blocks, prefetches are skipped once the queue is full
+        prefetchExecutor = new ThreadPoolExecutor(DbConstants.NUM_PREFETCH_THREADS, DbConstants.NUM_PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DbConstants.MAX_PENDING_PREFETCHES), new ThreadFactoryBuilder()
+                .setNameFormat("leveldb-" + databaseDir.getName() + "-prefetch-%s")
+                .setDaemon(true)
+                .build());
+        prefetchExecutor.allowCoreThreadTimeOut(true);
+        if (options.warmTableCache() || options.blockCacheWarmList()) {
+            warmupExecutor = Executors.newFixedThreadPool(DbConstants.NUM_WARMUP_THREADS, new ThreadFactoryBuilder()
+                    .setNameFormat("leveldb-" + databaseDir.getName() + "-warmup-%s")
+                    .setDaemon(true)
+                    .build());
+        }
+        else {
+            warmupExecutor = null;
+        }
+        if (options.blockCacheWarmList() && options.blockCacheWarmListPeriod() > 0) {
+            warmListSaver = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("leveldb-" + databaseDir.getName() + "-warmlist-%s")
+                    .setDaemon(true)
+                    .build());
+        }
+        else {
+            warmListSaver = null;
+        }
 
         // Reserve ten files or so for other uses and give the rest to TableCache.
         int tableCacheSize = options.maxOpenFiles() - DbConstants.NUM_NON_TABLE_CACHE_FILES;
-        tableCache = new TableCache(databaseDir, tableCacheSize, new InternalUserComparator(internalKeyComparator), options, env);
+        tableCache = new TableCache(databaseDir, tableCacheSize, internalKeyComparator, options, env, prefetchExecutor);
+        // blob files are few, each one holding the large values of many tables
+        blobFileCache = new BlobFileCache(databaseDir, Math.max(1, tableCacheSize / 16), env);
+        rateLimiter = options.compactionRateLimit() > 0 ? new RateLimiter(options.compactionRateLimit()) : null;
 
         // create the version set
 
@@ -229,6 +313,7 @@ public class DbImpl
             long minLogNumber = versions.getLogNumber();
             long previousLogNumber = versions.getPrevLogNumber();
             final Set<Long> expected = versions.getLiveFiles().stream().map(FileMetaData::getNumber).collect(Collectors.toSet());
+            expected.addAll(versions.getLiveBlobFiles());
             List<File> filenames = databaseDir.listFiles();
 
             List<Long> logs = new ArrayList<>();
@@ -248,26 +333,35 @@ public class DbImpl
             // Recover in the order in which the logs were generated
             VersionEdit edit = new VersionEdit();
             Collections.sort(logs);
-            for (Iterator<Long> iterator = logs.iterator(); iterator.hasNext(); ) {
-                Long fileNumber = iterator.next();
-                RecoverResult result = recoverLogFile(fileNumber, !iterator.hasNext(), edit);
-                saveManifest |= result.saveManifest;
-
-                // The previous incarnation may not have written any MANIFEST
-                // records after allocating this log number.  So we manually
-                // update the file number allocation counter in VersionSet.
-                this.versions.markFileNumberUsed(fileNumber);
-
-                if (versions.getLastSequence() < result.maxSequence) {
-                    versions.setLastSequence(result.maxSequence);
+            ExecutorService recoveryExecutor = Executors.newFixedThreadPool(DbConstants.NUM_RECOVERY_THREADS, new ThreadFactoryBuilder()
+                    .setNameFormat("leveldb-" + databaseDir.getName() + "-recovery-%s")
+                    .setDaemon(true)
+                    .build());
+            try {
+                for (Iterator<Long> iterator = logs.iterator(); iterator.hasNext(); ) {
+                    Long fileNumber = iterator.next();
+                    RecoverResult result = recoverLogFile(fileNumber, !iterator.hasNext(), edit, recoveryExecutor);
+                    saveManifest |= result.saveManifest;
+
+                    // The previous incarnation may not have written any MANIFEST
+                    // records after allocating this log number.  So we manually
+                    // update the file number allocation counter in VersionSet.
+                    this.versions.markFileNumberUsed(fileNumber);
+
+                    if (versions.getLastSequence() < result.maxSequence) {
+                        versions.setLastSequence(result.maxSequence);
+                    }
                 }
             }
+            finally {
+                recoveryExecutor.shutdownNow();
+            }
             //</editor-fold>
 
             // open transaction log
             if (memTable == null) {
                 long logFileNumber = versions.getNextFileNumber();
-                this.log = Logs.createLogWriter(databaseDir.child(Filename.logFileName(logFileNumber)), logFileNumber, env);
+                this.log = newLogWriter(logFileNumber);
                 c.register(log);
                 edit.setLogNumber(log.getFileNumber());
                 memTable = new MemTable(internalKeyComparator);
@@ -285,6 +379,21 @@ public class DbImpl
 
             // schedule compactions
             maybeScheduleCompaction();
+
+            if (warmupExecutor != null) {
+                if (options.warmTableCache()) {
+                    warmTableCache();
+                }
+                if (options.blockCacheWarmList()) {
+                    Set<Long> liveTables = versions.getLiveFiles().stream().map(FileMetaData::getNumber).collect(Collectors.toSet());
+                    warmupExecutor.execute(() -> loadBlockCacheWarmList(liveTables));
+                }
+                warmupExecutor.shutdown();
+            }
+            if (warmListSaver != null) {
+                warmListSaver.scheduleWithFixedDelay(this::saveBlockCacheWarmList,
+                        options.blockCacheWarmListPeriod(), options.blockCacheWarmListPeriod(), TimeUnit.SECONDS);
+            }
             success = true;
         }
         catch (Throwable e) {
@@ -301,6 +410,89 @@ public class DbImpl
         }
     }
 
+    /**
+     * Open the newest live tables in the background, as many as the table cache holds.
+     * Recently written tables are the most likely to be read first.
+     */
+    private void warmTableCache()
+    {
+        checkState(mutex.isHeldByCurrentThread());
+        List<Long> tables = versions.getLiveFiles().stream()
+                .map(FileMetaData::getNumber)
+                .distinct()
+                .sorted(Collections.reverseOrder())
+                .limit(options.maxOpenFiles() - DbConstants.NUM_NON_TABLE_CACHE_FILES)
+                .collect(Collectors.toList());
+        for (long number : tables) {
+            warmupExecutor.execute(() -> warmTable(number));
+        }
+    }
+
+    private void warmTable(long number)
+    {
+        if (shuttingDown.get()) {
+            return;
+        }
+        try {
+            tableCache.warm(number, options.preloadIndexAndFilters());
+        }
+        catch (Exception e) {
+            // the table may have been compacted away already, reads report real errors
+            options.logger().log("Could not warm table #%s: %s", number, e);
+        }
+    }
+
+    /**
+     * Load the blocks of the warm list saved by the previous incarnation in the block cache,
+     * at most {@link Options#blockCacheWarmupRate()} bytes per second.
+     */
+    private void loadBlockCacheWarmList(Set<Long> liveTables)
+    {
+        try {
+            List<CachedBlock> blocks = BlockCacheWarmList.read(databaseDir, env);
+            RateLimiter limiter = options.blockCacheWarmupRate() > 0 ? new RateLimiter(options.blockCacheWarmupRate()) : null;
+            Set<Long> failedTables = new HashSet<>();
+            // coldest blocks first, the hottest ones end up the most recently used
+            for (CachedBlock block : Lists.reverse(blocks)) {
+                if (shuttingDown.get()) {
+                    return;
+                }
+                long number = block.getFileNumber();
+                if (!liveTables.contains(number) || failedTables.contains(number)) {
+                    continue;
+                }
+                if (limiter != null) {
+                    limiter.request(block.getBlockHandle().getFullBlockSize(), Priority.LOW);
+                }
+                try {
+                    tableCache.loadBlock(number, block.getBlockHandle());
+                }
+                catch (Exception e) {
+                    // the table may have been compacted away already
+                    failedTables.add(number);
+                    options.logger().log("Could not load cached blocks of table #%s: %s", number, e);
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            options.logger().log("Could not load block cache warm list: %s", e);
+        }
+        warmListLoaded = true;
+    }
+
+    private void saveBlockCacheWarmList()
+    {
+        if (!warmListLoaded) {
+            return;
+        }
+        try {
+            BlockCacheWarmList.write(databaseDir, tableCache.getCachedBlocks(), env);
+        }
+        catch (IOException | RuntimeException e) {
+            options.logger().log("Could not save block cache warm list: %s", e);
+        }
+    }
+
     // Fix user-supplied options to be reasonable
     private static <T extends Comparable<T>> T clipToRange(T in, T min, T max)
     {
@@ -324,6 +516,12 @@ public class DbImpl
         result.writeBufferSize(clipToRange(src.writeBufferSize(), 64 << 10, 1 << 30));
         result.maxFileSize(clipToRange(src.maxFileSize(), 1 << 20, 1 << 30));
         result.blockSize(clipToRange(src.blockSize(), 1 << 10, 4 << 20));
+        result.metadataBlockSize(clipToRange(src.metadataBlockSize(), 1 << 10, 4 << 20));
+        result.compressionThreads(clipToRange(src.compressionThreads(), 1, 64));
+        if (result.cacheSize() == 0) {
+            // nothing to warm without a block cache
+            result.blockCacheWarmList(false);
+        }
         if (result.logger() == null && databaseDir != null && (databaseDir.isDirectory() || databaseDir.mkdirs())) {
             File file = databaseDir.child(Filename.infoLogFileName());
             file.renameTo(databaseDir.child(Filename.oldInfoLogFileName()));
@@ -348,6 +546,7 @@ public class DbImpl
                 backgroundCondition.awaitUninterruptibly();
             }
             tableCache.invalidateAll();
+            blobFileCache.invalidateAll();
         }
         finally {
             mutex.unlock();
@@ -378,6 +577,34 @@ public class DbImpl
         catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        if (compressionExecutor != null) {
+            // all table builders are done once compactions are over
+            compressionExecutor.shutdown();
+        }
+        // pending prefetches still run and release their tables
+        prefetchExecutor.shutdown();
+        if (warmupExecutor != null) {
+            // pending warmups are skipped, not interrupted as interrupts close the channel of the table being read
+            warmupExecutor.shutdown();
+            try {
+                warmupExecutor.awaitTermination(1, TimeUnit.DAYS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (warmListSaver != null) {
+            warmListSaver.shutdown();
+            try {
+                warmListSaver.awaitTermination(1, TimeUnit.DAYS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (options.blockCacheWarmList()) {
+            saveBlockCacheWarmList();
+        }
         try {
             versions.release();
         }
@@ -389,6 +616,7 @@ public class DbImpl
         catch (IOException ignored) {
         }
         tableCache.close();
+        blobFileCache.close();
         if (ownsLogger) {
             Closeables.closeQuietly(options.logger());
         }
@@ -446,6 +674,9 @@ public class DbImpl
                 }
                 return Long.toUnsignedString(sizeTotal);
             }
+            else if ("rate-limiter-throttled-micros".equals(key)) {
+                return String.valueOf(rateLimiter != null ? rateLimiter.getThrottledMicros() : 0);
+            }
         }
         finally {
             mutex.unlock();
@@ -464,6 +695,7 @@ public class DbImpl
         for (FileMetaData fileMetaData : versions.getLiveFiles()) {
             live.add(fileMetaData.getNumber());
         }
+        live.addAll(versions.getLiveBlobFiles());
 
         final List<File> filesToDelete = new ArrayList<>();
         for (File file : databaseDir.listFiles()) {
@@ -484,6 +716,7 @@ public class DbImpl
                     keep = (number >= versions.getManifestFileNumber());
                     break;
                 case TABLE:
+                case BLOB:
                     keep = live.contains(number);
                     break;
                 case TEMP:
@@ -498,10 +731,21 @@ public class DbImpl
                     break;
             }
 
+            if (!keep && fileInfo.getFileType() == FileType.LOG && number >= firstRecyclableLog &&
+                    (recyclableLogs.contains(number) || recyclableLogs.size() < options.recycleLogFileNum())) {
+                // overwritten by a later log instead of being deleted
+                if (!recyclableLogs.contains(number)) {
+                    recyclableLogs.addLast(number);
+                }
+                continue;
+            }
             if (!keep) {
                 if (fileInfo.getFileType() == FileType.TABLE) {
                     tableCache.evict(number);
                 }
+                else if (fileInfo.getFileType() == FileType.BLOB) {
+                    blobFileCache.evict(number);
+                }
                 options.logger().log("Delete type=%s #%s",
                         fileInfo.getFileType(),
                         number);
@@ -520,6 +764,34 @@ public class DbImpl
         }
     }
 
+    /**
+     * Create the log file of a new memtable, reusing the file of an obsolete log when log recycling is enabled.
+     */
+    private LogWriter newLogWriter(long logNumber)
+            throws IOException
+    {
+        checkState(mutex.isHeldByCurrentThread());
+        File file = databaseDir.child(Filename.logFileName(logNumber));
+        if (options.recycleLogFileNum() == 0) {
+            if (options.logPreallocationSize() == 0) {
+                return Logs.createLogWriter(file, logNumber, env);
+            }
+            return Logs.createLogWriter(logNumber, env.newPreallocatedWritableFile(file, options.logPreallocationSize()), 0);
+        }
+        // only logs in the recyclable format can be recycled, their old records are told apart from the new ones
+        firstRecyclableLog = Math.min(firstRecyclableLog, logNumber);
+        Long recycled = recyclableLogs.pollFirst();
+        WritableFile writableFile;
+        if (recycled != null) {
+            options.logger().log("Recycling log #%s as #%s", recycled, logNumber);
+            writableFile = env.reuseWritableFile(databaseDir.child(Filename.logFileName(recycled)), file, options.logPreallocationSize());
+        }
+        else {
+            writableFile = env.newPreallocatedWritableFile(file, options.logPreallocationSize());
+        }
+        return Logs.createRecyclableLogWriter(logNumber, writableFile);
+    }
+
     private void maybeScheduleCompaction()
     {
         checkState(mutex.isHeldByCurrentThread());
@@ -533,6 +805,9 @@ public class DbImpl
         else if (backgroundException != null) {
             // Already got an error; no more changes
         }
+        else if (ingestingFiles) {
+            // Scheduled once the ingested files are installed
+        }
         else if (immutableMemTable == null &&
                 manualCompaction == null &&
                 !versions.needsCompaction()) {
@@ -559,6 +834,7 @@ public class DbImpl
 
             try {
                 if (!shuttingDown.get() && backgroundException == null) {
+                    tuneRateLimiter();
                     backgroundCompaction();
                 }
             }
@@ -584,6 +860,19 @@ public class DbImpl
         }
     }
 
+    /**
+     * Scale the rate limit with the compaction backlog of the current version.
+     */
+    private void tuneRateLimiter()
+    {
+        checkState(mutex.isHeldByCurrentThread());
+        if (rateLimiter == null || !options.autoTuneCompactionRateLimit()) {
+            return;
+        }
+        double backlog = Math.max(1.0, Math.min(DbConstants.MAX_RATE_LIMIT_TUNING, versions.getCurrent().getCompactionScore()));
+        rateLimiter.setBytesPerSecond((long) (options.compactionRateLimit() * backlog));
+    }
+
     private void backgroundCompaction()
             throws IOException
     {
@@ -684,6 +973,14 @@ public class DbImpl
             compactionState.builder.abandon();
             compactionState.builder = null;
         }
+        if (compactionState.blobBuilder != null) {
+            compactionState.blobBuilder.close();
+            pendingOutputs.remove(compactionState.blobBuilder.getFileNumber());
+            compactionState.blobBuilder = null;
+        }
+        for (BlobFileMetaData blobOutput : compactionState.blobOutputs) {
+            pendingOutputs.remove(blobOutput.getNumber());
+        }
         if (compactionState.outfile != null) {
             //an error as occurred but we need to release the resources!
             compactionState.outfile.force();
@@ -708,7 +1005,12 @@ public class DbImpl
         }
     }
 
-    private RecoverResult recoverLogFile(long fileNumber, boolean lastLog, VersionEdit edit)
+    /**
+     * Replay a log file. Records are decoded by the calling thread and inserted in the memtable
+     * in chunks by {@code recoveryExecutor}, which also flushes the full memtables, while the
+     * following records are replayed in a new memtable.
+     */
+    private RecoverResult recoverLogFile(long fileNumber, boolean lastLog, VersionEdit edit, ExecutorService recoveryExecutor)
             throws IOException
     {
         checkState(mutex.isHeldByCurrentThread());
@@ -720,7 +1022,7 @@ public class DbImpl
             // paranoidChecks==false so that corruptions cause entire commits
             // to be skipped instead of propagating bad information (like overly
             // large sequence numbers).
-            LogReader logReader = new LogReader(in, logMonitor, true, 0);
+            LogReader logReader = new LogReader(in, logMonitor, true, 0, fileNumber);
 
             options.logger().log("Recovering log #%s",
                     fileNumber);
@@ -730,6 +1032,11 @@ public class DbImpl
             int compactions = 0;
             boolean saveManifest = false;
             MemTable mem = null;
+            // approximate memory usage of the records replayed in mem
+            long memSize = 0;
+            RecoveryChunk chunk = null;
+            List<Future<?>> inserts = new ArrayList<>();
+            Deque<RecoveredTable> flushes = new LinkedList<>();
             for (Slice record = logReader.readRecord(); record != null; record = logReader.readRecord()) {
                 SliceInput sliceInput = record.input();
                 // read header
@@ -741,12 +1048,9 @@ public class DbImpl
                 int updateSize = sliceInput.readInt();
 
                 // read entries
-                try (WriteBatchImpl writeBatch = readWriteBatch(sliceInput, updateSize)) {
-                    // apply entries to memTable
-                    if (mem == null) {
-                        mem = new MemTable(internalKeyComparator);
-                    }
-                    writeBatch.forEach(new InsertIntoHandler(mem, sequenceBegin));
+                WriteBatchImpl writeBatch;
+                try {
+                    writeBatch = readWriteBatch(sliceInput, updateSize);
                 }
                 catch (Exception e) {
                     if (!options.paranoidChecks()) {
@@ -755,6 +1059,17 @@ public class DbImpl
                     Throwables.propagateIfPossible(e, IOException.class);
                     throw new IOException(e);
                 }
+                // apply entries to memTable
+                if (mem == null) {
+                    mem = new MemTable(internalKeyComparator);
+                    chunk = new RecoveryChunk(mem);
+                }
+                chunk.add(writeBatch, sequenceBegin, record.length());
+                memSize += record.length();
+                if (chunk.size >= DbConstants.RECOVERY_CHUNK_SIZE) {
+                    inserts.add(recoveryExecutor.submit(chunk));
+                    chunk = new RecoveryChunk(mem);
+                }
 
                 // update the maxSequence
                 long lastSequence = sequenceBegin + updateSize - 1;
@@ -763,16 +1078,30 @@ public class DbImpl
                 }
 
                 // flush mem table if necessary
-                if (mem.approximateMemoryUsage() > options.writeBufferSize()) {
+                if (memSize > options.writeBufferSize()) {
                     compactions++;
                     saveManifest = true;
-                    writeLevel0Table(mem, edit, null);
+                    awaitInserts(chunk, inserts);
+                    // bound the memory held by memtables waiting to be flushed
+                    if (flushes.size() >= DbConstants.NUM_RECOVERY_THREADS) {
+                        flushes.removeFirst().install(edit);
+                    }
+                    flushes.add(new RecoveredTable(mem, recoveryExecutor));
                     mem = null;
+                    chunk = null;
+                    memSize = 0;
                 }
             }
+            if (chunk != null) {
+                awaitInserts(chunk, inserts);
+            }
+            while (!flushes.isEmpty()) {
+                flushes.removeFirst().install(edit);
+            }
 
-            // See if we should keep reusing the last log file.
-            if (options.reuseLogs() && lastLog && compactions == 0) {
+            // See if we should keep reusing the last log file, appending to a preallocated
+            // or recycled log would leave zeros or old records before the new ones
+            if (options.reuseLogs() && lastLog && compactions == 0 && options.recycleLogFileNum() == 0 && options.logPreallocationSize() == 0) {
                 Preconditions.checkState(this.log == null);
                 Preconditions.checkState(this.memTable == null);
                 long originalSize = file.length();
@@ -799,6 +1128,119 @@ public class DbImpl
         }
     }
 
+    private static void awaitInserts(RecoveryChunk lastChunk, List<Future<?>> inserts)
+            throws IOException
+    {
+        lastChunk.call();
+        for (Future<?> insert : inserts) {
+            awaitRecovery(insert);
+        }
+        inserts.clear();
+    }
+
+    private static <T> T awaitRecovery(Future<T> future)
+            throws IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while recovering");
+        }
+        catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Write batches replayed from a log, inserted together in a memtable. Batches hold distinct
+     * sequence numbers, chunks of the same memtable are inserted in any order and concurrently.
+     */
+    private static final class RecoveryChunk
+            implements Callable<Void>
+    {
+        private final MemTable mem;
+        private final List<WriteBatchImpl> batches = new ArrayList<>();
+        private final List<Long> sequences = new ArrayList<>();
+        private long size;
+
+        private RecoveryChunk(MemTable mem)
+        {
+            this.mem = mem;
+        }
+
+        private void add(WriteBatchImpl batch, long sequenceBegin, int recordSize)
+        {
+            batches.add(batch);
+            sequences.add(sequenceBegin);
+            size += recordSize;
+        }
+
+        @Override
+        public Void call()
+        {
+            for (int i = 0; i < batches.size(); i++) {
+                try (WriteBatchImpl batch = batches.get(i)) {
+                    batch.forEach(new InsertIntoHandler(mem, sequences.get(i)));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Level-0 table of a recovered memtable, built and verified by the recovery executor while the log is replayed.
+     */
+    private final class RecoveredTable
+    {
+        private final long startMicros = env.nowMicros();
+        private final long fileNumber;
+        private final long blobFileNumber;
+        // receives the blob file of the table, if any
+        private final VersionEdit tableEdit = new VersionEdit();
+        private final Future<FileMetaData> meta;
+
+        private RecoveredTable(MemTable mem, ExecutorService recoveryExecutor)
+        {
+            checkState(mutex.isHeldByCurrentThread());
+            fileNumber = versions.getNextFileNumber();
+            pendingOutputs.add(fileNumber);
+            blobFileNumber = options.minBlobSize() > 0 ? versions.getNextFileNumber() : 0;
+            if (blobFileNumber != 0) {
+                pendingOutputs.add(blobFileNumber);
+            }
+            options.logger().log("Level-0 table #%s: started",
+                    fileNumber);
+            meta = recoveryExecutor.submit(() -> buildTable(mem, fileNumber, blobFileNumber, compressionType(0), tableEdit));
+        }
+
+        private void install(VersionEdit edit)
+                throws IOException
+        {
+            checkState(mutex.isHeldByCurrentThread());
+            FileMetaData fileMetaData;
+            try {
+                fileMetaData = awaitRecovery(meta);
+            }
+            finally {
+                pendingOutputs.remove(blobFileNumber);
+            }
+            options.logger().log("Level-0 table #%s: %s bytes",
+                    fileMetaData.getNumber(),
+                    fileMetaData.getFileSize());
+            pendingOutputs.remove(fileNumber);
+            if (fileMetaData.getFileSize() > 0) {
+                edit.addFile(0, fileMetaData);
+                for (BlobFileMetaData blobFile : tableEdit.getNewBlobFiles().values()) {
+                    edit.addBlobFile(blobFile);
+                }
+            }
+            stats[0].add(env.nowMicros() - startMicros, 0, fileMetaData.getFileSize());
+        }
+    }
+
     @Override
     public byte[] get(byte[] key)
             throws DBException
@@ -826,15 +1268,23 @@ public class DbImpl
             ReadStats readStats = null;
             mutex.unlock();
             try {
+                // merge operands are completed with the older entries of the key
                 lookupResult = memTable.get(lookupKey);
-                if (lookupResult == null && immutableMemTable != null) {
-                    lookupResult = immutableMemTable.get(lookupKey);
+                if ((lookupResult == null || lookupResult.isPartial()) && immutableMemTable != null) {
+                    lookupResult = LookupResult.concat(lookupResult, immutableMemTable.get(lookupKey));
                 }
 
-                if (lookupResult == null) {
+                if (lookupResult == null || lookupResult.isPartial()) {
                     // Not in memTables; try live files in level order
                     readStats = new ReadStats();
-                    lookupResult = current.get(options, lookupKey, readStats);
+                    lookupResult = LookupResult.concat(lookupResult, current.get(options, lookupKey, readStats));
+                }
+                if (lookupResult != null && (lookupResult.getValue() != null || lookupResult.hasOperands())) {
+                    lookupResult = lookupResult.hideOlderThan(maxCoveringRangeTombstone(lookupKey, memTable, immutableMemTable, current));
+                }
+                if (lookupResult != null && lookupResult.isBlobIndex()) {
+                    // read while the version retains the blob file
+                    lookupResult = lookupResult.withResolvedValue(blobFileCache.get(BlobIndex.decode(lookupResult.getValue()), options.verifyChecksums()));
                 }
 
                 // schedule compaction if necessary
@@ -852,7 +1302,7 @@ public class DbImpl
         }
 
         if (lookupResult != null) {
-            Slice value = lookupResult.getValue();
+            Slice value = lookupResult.getMergedValue(this.options.mergeOperator());
             if (value != null) {
                 return value.getBytes();
             }
@@ -860,6 +1310,19 @@ public class DbImpl
         return null;
     }
 
+    /**
+     * Largest sequence of the range tombstones visible at the lookup sequence covering the key, {@code 0} if none.
+     */
+    private static long maxCoveringRangeTombstone(LookupKey lookupKey, MemTable memTable, MemTable immutableMemTable, Version current)
+    {
+        long snapshot = lookupKey.getInternalKey().getSequenceNumber();
+        long sequence = Math.max(memTable.maxCoveringRangeTombstone(lookupKey.getUserKey(), snapshot), current.maxCoveringRangeTombstone(lookupKey));
+        if (immutableMemTable != null) {
+            sequence = Math.max(sequence, immutableMemTable.maxCoveringRangeTombstone(lookupKey.getUserKey(), snapshot));
+        }
+        return sequence;
+    }
+
     @Override
     public void put(byte[] key, byte[] value)
             throws DBException
@@ -892,6 +1355,38 @@ public class DbImpl
         }
     }
 
+    @Override
+    public void merge(byte[] key, byte[] operand)
+            throws DBException
+    {
+        merge(key, operand, new WriteOptions());
+    }
+
+    @Override
+    public Snapshot merge(byte[] key, byte[] operand, WriteOptions options)
+            throws DBException
+    {
+        try (WriteBatchImpl writeBatch = new WriteBatchImpl()) {
+            return writeInternal(writeBatch.merge(key, operand), options);
+        }
+    }
+
+    @Override
+    public void deleteRange(byte[] begin, byte[] end)
+            throws DBException
+    {
+        deleteRange(begin, end, new WriteOptions());
+    }
+
+    @Override
+    public Snapshot deleteRange(byte[] begin, byte[] end, WriteOptions options)
+            throws DBException
+    {
+        try (WriteBatchImpl writeBatch = new WriteBatchImpl()) {
+            return writeInternal(writeBatch.deleteRange(begin, end), options);
+        }
+    }
+
     @Override
     public void write(WriteBatch updates)
             throws DBException
@@ -910,6 +1405,7 @@ public class DbImpl
             throws DBException
     {
         checkBackgroundException();
+        checkArgument(myBatch == null || !myBatch.hasMerges() || this.options.mergeOperator() != null, "Merges require a merge operator");
         final WriteBatchInternal w = new WriteBatchInternal(myBatch, options.sync(), mutex.newCondition());
         mutex.lock();
         try {
@@ -983,7 +1479,13 @@ public class DbImpl
             try {
                 // Log write
                 Slice record = writeWriteBatch(updates, sequenceBegin);
-                log.addRecord(record, options.sync());
+                if (options.sync() && syncCoordinator != null) {
+                    log.addRecord(record, false);
+                    syncCoordinator.sync(log);
+                }
+                else {
+                    log.addRecord(record, options.sync());
+                }
                 // Update memtable
                 //this.memTable is modified by makeRoomForWrite
                 updates.forEach(new InsertIntoHandler(this.memTable, sequenceBegin));
@@ -1038,6 +1540,10 @@ public class DbImpl
         int size = 0;
         lastWriter.setValue(first);
         for (WriteBatchInternal w : writers) {
+            if (w.exclusive) {
+                // Do not complete a writer that needs the write queue for itself.
+                break;
+            }
             if (w.sync && !lastWriter.getValue().sync) {
                 // Do not include a sync write into a batch handled by a non-sync write.
                 break;
@@ -1082,18 +1588,45 @@ public class DbImpl
     @Override
     public DBIteratorAdapter iterator(ReadOptions options)
     {
+        InternalIterator rawIterator;
+        long snapshot;
+        List<RangeTombstones> rangeTombstones = new ArrayList<>(3);
+        Version current;
         mutex.lock();
         try {
-            InternalIterator rawIterator = internalIterator(options);
-
-            // filter out any entries not visible in our snapshot
-            long snapshot = getSnapshot(options);
-            SnapshotSeekingIterator snapshotIterator = new SnapshotSeekingIterator(rawIterator, snapshot, internalKeyComparator.getUserComparator(), new RecordBytesListener());
-            return new DBIteratorAdapter(snapshotIterator);
+            rawIterator = internalIterator(options);
+            snapshot = getSnapshot(options);
+            addIfNotEmpty(rangeTombstones, memTable.getRangeTombstones());
+            if (immutableMemTable != null) {
+                addIfNotEmpty(rangeTombstones, immutableMemTable.getRangeTombstones());
+            }
+            // retained by rawIterator
+            current = versions.getCurrent();
         }
         finally {
             mutex.unlock();
         }
+
+        // tombstones of the version are fragmented once per version, possibly opening its tables
+        try {
+            addIfNotEmpty(rangeTombstones, current.getRangeTombstones());
+        }
+        catch (RuntimeException e) {
+            Closeables.closeQuietly(rawIterator);
+            throw e;
+        }
+
+        // filter out any entries not visible in our snapshot
+        SnapshotSeekingIterator snapshotIterator = new SnapshotSeekingIterator(rawIterator, snapshot, internalKeyComparator.getUserComparator(), new RecordBytesListener(),
+                rangeTombstones, this.options.mergeOperator(), blobIndex -> blobFileCache.get(BlobIndex.decode(blobIndex), options.verifyChecksums()));
+        return new DBIteratorAdapter(snapshotIterator);
+    }
+
+    private static void addIfNotEmpty(List<RangeTombstones> rangeTombstones, RangeTombstones tombstones)
+    {
+        if (!tombstones.isEmpty()) {
+            rangeTombstones.add(tombstones);
+        }
     }
 
     InternalIterator internalIterator(ReadOptions options)
@@ -1230,7 +1763,7 @@ public class DbImpl
                 // open a new log
                 long logNumber = versions.getNextFileNumber();
                 try {
-                    this.log = Logs.createLogWriter(databaseDir.child(Filename.logFileName(logNumber)), logNumber, env);
+                    this.log = newLogWriter(logNumber);
                 }
                 catch (IOException e) {
                     throw new DBException("Unable to open new log file " +
@@ -1294,16 +1827,29 @@ public class DbImpl
         // write the memtable to a new sstable
         long fileNumber = versions.getNextFileNumber();
         pendingOutputs.add(fileNumber);
+        // large values are written to a blob file
+        long blobFileNumber = 0;
+        if (options.minBlobSize() > 0) {
+            blobFileNumber = versions.getNextFileNumber();
+            pendingOutputs.add(blobFileNumber);
+        }
         options.logger().log("Level-0 table #%s: started",
                 fileNumber);
 
+        // the table may be placed below level 0, pick the level first to compress it as configured for that level
+        int level = 0;
+        if (base != null) {
+            level = base.pickLevelForMemTableOutput(mem.smallestUserKey(), mem.largestUserKey());
+        }
+
         mutex.unlock();
         FileMetaData meta;
         try {
-            meta = buildTable(mem, fileNumber);
+            meta = buildTable(mem, fileNumber, blobFileNumber, compressionType(level), edit);
         }
         finally {
             mutex.lock();
+            pendingOutputs.remove(blobFileNumber);
         }
         options.logger().log("Level-0 table #%s: %s bytes",
                 meta.getNumber(),
@@ -1312,27 +1858,30 @@ public class DbImpl
 
         // Note that if file size is zero, the file has been deleted and
         // should not be added to the manifest.
-        int level = 0;
         if (meta.getFileSize() > 0) {
-            Slice minUserKey = meta.getSmallest().getUserKey();
-            Slice maxUserKey = meta.getLargest().getUserKey();
-            if (base != null) {
-                level = base.pickLevelForMemTableOutput(minUserKey, maxUserKey);
-            }
+            // the table spans the user key range of the memtable the level was picked for
             edit.addFile(level, meta);
         }
         this.stats[level].add(env.nowMicros() - startMicros, 0, meta.getFileSize());
     }
 
-    private FileMetaData buildTable(MemTable data, long fileNumber)
+    /**
+     * @param blobFileNumber number of the blob file the values of at least {@link Options#minBlobSize()} bytes are written to,
+     *                       added to {@code edit} if there is any. {@code 0} to keep all values in the table.
+     * @param compressionType compression of the level the table is added to
+     */
+    private FileMetaData buildTable(MemTable data, long fileNumber, long blobFileNumber, CompressionType compressionType, VersionEdit edit)
             throws IOException
     {
         File file = databaseDir.child(Filename.tableFileName(fileNumber));
+        File blobFile = databaseDir.child(Filename.blobFileName(blobFileNumber));
+        BlobFileBuilder blobBuilder = null;
         try {
             InternalKey smallest = null;
             InternalKey largest = null;
-            try (WritableFile writableFile = env.newWritableFile(file)) {
-                TableBuilder tableBuilder = new TableBuilder(options, writableFile, new InternalUserComparator(internalKeyComparator));
+            boolean rangeTombstones;
+            try (WritableFile writableFile = limitRate(newTableFile(file), Priority.HIGH)) {
+                TableBuilder tableBuilder = new TableBuilder(options, writableFile, new InternalUserComparator(internalKeyComparator), compressionType, false, compressionExecutor);
 
                 try (InternalIterator it = data.iterator()) {
                     for (boolean valid = it.seekToFirst(); valid; valid = it.next()) {
@@ -1343,9 +1892,29 @@ public class DbImpl
                         }
                         largest = key;
 
-                        tableBuilder.add(key.encode(), it.value());
+                        Slice value = it.value();
+                        if (blobFileNumber != 0 && key.getValueType() == VALUE && value.length() >= options.minBlobSize()) {
+                            if (blobBuilder == null) {
+                                blobBuilder = new BlobFileBuilder(blobFileNumber, limitRate(env.newWritableFile(blobFile), Priority.HIGH));
+                            }
+                            value = blobBuilder.add(value).encode();
+                            key = new InternalKey(key.getUserKey(), key.getSequenceNumber(), BLOB_INDEX);
+                        }
+                        tableBuilder.add(key.encode(), value);
+                    }
+                }
+                for (RangeTombstone tombstone : data.getRangeTombstones().getTombstones()) {
+                    InternalKey start = tombstone.getInternalKey();
+                    InternalKey limit = new InternalKey(tombstone.getEnd(), MAX_SEQUENCE_NUMBER, RANGE_DELETION);
+                    tableBuilder.addRangeTombstone(start.encode(), tombstone.getEnd());
+                    if (smallest == null || internalKeyComparator.compare(start, smallest) < 0) {
+                        smallest = start;
+                    }
+                    if (largest == null || internalKeyComparator.compare(limit, largest) > 0) {
+                        largest = limit;
                     }
                 }
+                rangeTombstones = tableBuilder.getRangeTombstoneCount() > 0;
 
                 tableBuilder.finish();
                 writableFile.force();
@@ -1356,15 +1925,24 @@ public class DbImpl
                 file.delete();
                 return new FileMetaData(fileNumber, 0, null, null);
             }
-            FileMetaData fileMetaData = new FileMetaData(fileNumber, file.length(), smallest, largest);
+            long oldestBlobFile = 0;
+            if (blobBuilder != null) {
+                edit.addBlobFile(blobBuilder.finish());
+                oldestBlobFile = blobFileNumber;
+            }
+            FileMetaData fileMetaData = new FileMetaData(fileNumber, file.length(), smallest, largest, rangeTombstones, oldestBlobFile);
 
             // verify table can be opened
-            tableCache.newIterator(fileMetaData, new ReadOptions()).close();
+            tableCache.newReusedKeyIterator(fileMetaData, new ReadOptions()).close();
 
             return fileMetaData;
         }
         catch (IOException e) {
             file.delete();
+            if (blobBuilder != null) {
+                blobBuilder.close();
+                blobFile.delete();
+            }
             throw e;
         }
     }
@@ -1381,16 +1959,46 @@ public class DbImpl
                 compactionState.compaction.getLevel() + 1);
 
         checkState(mutex.isHeldByCurrentThread());
-        checkArgument(versions.numberOfBytesInLevel(compactionState.getCompaction().getLevel()) > 0);
+        // the level of the inputs is empty when a table is rewritten in place
+        checkArgument(versions.numberOfBytesInLevel(compactionState.getCompaction().getLevel()) > 0 || !compactionState.getCompaction().getLevelUpInputs().isEmpty());
         checkArgument(compactionState.builder == null);
         checkArgument(compactionState.outfile == null);
 
         compactionState.smallestSnapshot = snapshots.isEmpty() ? versions.getLastSequence() : snapshots.getOldest();
+        // entries newer than every snapshot are only visible from the current state of the db
+        compactionState.largestSnapshot = snapshots.isEmpty() ? -1 : snapshots.getNewest();
 
         // Release mutex while we're actually doing the compaction work
         final MergingIterator mergingIterator = versions.makeInputIterator(compactionState.compaction);
         mutex.unlock();
+        final CompactionFilter compactionFilter = options.compactionFilter();
+        final MergeOperator mergeOperator = options.mergeOperator();
+        final UserComparator userComparator = internalKeyComparator.getUserComparator();
         try (MergingIterator iterator = mergingIterator) {
+            // tombstones of the inputs delete the older entries they cover, they are kept in the
+            // outputs unless visible to every snapshot with nothing left to delete in deeper levels
+            List<RangeTombstone> inputTombstones = new ArrayList<>();
+            for (int which = 0; which < 2; which++) {
+                for (FileMetaData file : compactionState.compaction.input(which)) {
+                    inputTombstones.addAll(tableCache.getRangeTombstones(file).getTombstones());
+                }
+            }
+            RangeTombstones coveringTombstones = null;
+            if (!inputTombstones.isEmpty()) {
+                coveringTombstones = new RangeTombstones(userComparator, inputTombstones);
+                compactionState.rangeTombstones = new ArrayList<>();
+                for (RangeTombstone tombstone : inputTombstones) {
+                    if (tombstone.getSequence() > compactionState.smallestSnapshot ||
+                            !compactionState.compaction.isBaseLevelForRange(tombstone.getBegin(), tombstone.getEnd())) {
+                        compactionState.rangeTombstones.add(tombstone);
+                    }
+                }
+            }
+            // with range tombstones, outputs are only split between user keys
+            boolean splitPending = false;
+
+            // input keys are only valid until the iterator is moved, current user key is copied in a reused buffer
+            byte[] currentUserKeyBuffer = new byte[0];
             Slice currentUserKey = null;
             boolean hasCurrentUserKey = false;
 
@@ -1409,8 +2017,23 @@ public class DbImpl
                     immMicros += (env.nowMicros() - immStart);
                 }
                 InternalKey key = iterator.key();
-                if (compactionState.compaction.shouldStopBefore(key) && compactionState.builder != null) {
-                    finishCompactionOutputFile(compactionState);
+                if (compactionState.mergeKey != null && userComparator.compare(key.getUserKey(), compactionState.mergeKey) != 0) {
+                    finishPendingMerge(compactionState);
+                }
+                boolean stopBefore = compactionState.compaction.shouldStopBefore(key);
+                if (compactionState.builder != null) {
+                    if (compactionState.rangeTombstones.isEmpty()) {
+                        if (stopBefore) {
+                            finishCompactionOutputFile(compactionState, null);
+                        }
+                    }
+                    else {
+                        splitPending |= stopBefore || compactionState.builder.getFileSize() >= compactionState.compaction.getMaxOutputFileSize();
+                        if (splitPending && userComparator.compare(key.getUserKey(), currentUserKey) != 0) {
+                            finishCompactionOutputFile(compactionState, key.getUserKey().copySlice());
+                            splitPending = false;
+                        }
+                    }
                 }
 
                 // Handle key/value, add to state, etc.
@@ -1425,7 +2048,12 @@ public class DbImpl
                 else {
                     if (!hasCurrentUserKey || internalKeyComparator.getUserComparator().compare(key.getUserKey(), currentUserKey) != 0) {
                         // First occurrence of this user key
-                        currentUserKey = key.getUserKey();
+                        Slice userKey = key.getUserKey();
+                        if (currentUserKeyBuffer.length < userKey.length()) {
+                            currentUserKeyBuffer = new byte[Math.max(userKey.length(), currentUserKeyBuffer.length * 2)];
+                        }
+                        userKey.getBytes(0, currentUserKeyBuffer, 0, userKey.length());
+                        currentUserKey = new Slice(currentUserKeyBuffer, 0, userKey.length());
                         hasCurrentUserKey = true;
                         lastSequenceForKey = MAX_SEQUENCE_NUMBER;
                     }
@@ -1446,34 +2074,102 @@ public class DbImpl
                         // Therefore this deletion marker is obsolete and can be dropped.
                         drop = true;
                     }
+                    else if (coveringTombstones != null &&
+                            coveringTombstones.maxCoveringSequence(key.getUserKey(), compactionState.smallestSnapshot) > key.getSequenceNumber()) {
+                        // Deleted by a range tombstone visible to every snapshot
+                        drop = true;
+                    }
 
-                    lastSequenceForKey = key.getSequenceNumber();
+                    if (key.getValueType() != MERGE || mergeOperator != null) {
+                        // without an operator, older entries are needed once merge operands are read
+                        lastSequenceForKey = key.getSequenceNumber();
+                    }
                 }
 
-                if (!drop) {
-                    // Open output file if necessary
-                    if (compactionState.builder == null) {
-                        openCompactionOutputFile(compactionState);
+                if (compactionState.mergeKey != null) {
+                    // older entries are hidden by the pending merge, they are folded into it instead
+                    BlobIndex blobIndex = key.getValueType() == BLOB_INDEX ? BlobIndex.decode(iterator.value()) : null;
+                    if (!compactionState.mergeComplete) {
+                        boolean rangeDeleted = coveringTombstones != null &&
+                                coveringTombstones.maxCoveringSequence(key.getUserKey(), compactionState.smallestSnapshot) > key.getSequenceNumber();
+                        if (rangeDeleted) {
+                            foldIntoPendingMerge(compactionState, DELETION, null);
+                        }
+                        else if (blobIndex != null) {
+                            foldIntoPendingMerge(compactionState, VALUE, readBlob(blobIndex));
+                        }
+                        else {
+                            foldIntoPendingMerge(compactionState, key.getValueType(), iterator.value());
+                        }
                     }
-                    if (compactionState.builder.getEntryCount() == 0) {
-                        compactionState.currentSmallest = key;
+                    if (blobIndex != null) {
+                        addBlobGarbage(compactionState, blobIndex);
                     }
-                    compactionState.currentLargest = key;
-                    compactionState.builder.add(key.encode(), iterator.value());
+                    continue;
+                }
+                if (!drop && mergeOperator != null && key.getValueType() == MERGE && key.getSequenceNumber() <= compactionState.smallestSnapshot) {
+                    compactionState.mergeKey = key.getUserKey().copySlice();
+                    compactionState.mergeSequence = key.getSequenceNumber();
+                    compactionState.mergeValue = iterator.value().getBytes();
+                    compactionState.mergeComplete = false;
+                    continue;
+                }
 
-                    // Close output file if it is big enough
-                    if (compactionState.builder.getFileSize() >=
-                            compactionState.compaction.getMaxOutputFileSize()) {
-                        finishCompactionOutputFile(compactionState);
+                Slice value = iterator.value();
+                ValueType valueType = key.getValueType();
+                BlobIndex blobIndex = valueType == BLOB_INDEX ? BlobIndex.decode(value) : null;
+                if (!drop && compactionFilter != null && (valueType == VALUE || valueType == BLOB_INDEX) && key.getSequenceNumber() > compactionState.largestSnapshot) {
+                    byte[] existingValue = (blobIndex != null ? readBlob(blobIndex) : value).getBytes();
+                    byte[] newValue = compactionFilter.filter(compactionState.compaction.getLevel() + 1, key.getUserKey().getBytes(), existingValue);
+                    if (newValue == null) {
+                        // handle as a deletion written with the same sequence, it must hide older values
+                        if (key.getSequenceNumber() <= compactionState.smallestSnapshot &&
+                                compactionState.compaction.isBaseLevelForKey(key.getUserKey())) {
+                            drop = true;
+                        }
+                        else {
+                            valueType = DELETION;
+                            value = Slices.EMPTY_SLICE;
+                        }
                     }
+                    else if (newValue != existingValue) {
+                        valueType = VALUE;
+                        value = Slices.wrappedBuffer(newValue);
+                    }
+                }
+                if (!drop && valueType == BLOB_INDEX && compactionState.compaction.isBlobFileToCollect(blobIndex.getFileNumber())) {
+                    // move the value out of a blob file holding too much garbage
+                    valueType = VALUE;
+                    value = readBlob(blobIndex);
+                }
+                if (blobIndex != null && (drop || valueType != BLOB_INDEX)) {
+                    // the value in the blob file is not referred to anymore
+                    addBlobGarbage(compactionState, blobIndex);
+                }
+
+                if (!drop) {
+                    if (valueType != key.getValueType()) {
+                        key = new InternalKey(key.getUserKey(), key.getSequenceNumber(), valueType);
+                    }
+                    addCompactionOutput(compactionState, key, value);
                 }
             }
 
             if (shuttingDown.get()) {
                 throw new DatabaseShutdownException("DB shutdown during compaction");
             }
+            if (compactionState.mergeKey != null) {
+                finishPendingMerge(compactionState);
+            }
+            if (compactionState.builder == null && hasRangeTombstonesFrom(compactionState, compactionState.rangeTombstonesLowerBound)) {
+                // tombstones after the last output entry
+                openCompactionOutputFile(compactionState);
+            }
             if (compactionState.builder != null) {
-                finishCompactionOutputFile(compactionState);
+                finishCompactionOutputFile(compactionState, null);
+            }
+            if (compactionState.blobBuilder != null) {
+                finishBlobOutputFile(compactionState);
             }
         }
         finally {
@@ -1496,6 +2192,136 @@ public class DbImpl
                 "compacted to: %s", versions.levelSummary());
     }
 
+    private void addCompactionOutput(CompactionState compactionState, InternalKey key, Slice value)
+            throws IOException
+    {
+        // Open output file if necessary
+        if (compactionState.builder == null) {
+            openCompactionOutputFile(compactionState);
+        }
+        if (key.getValueType() == VALUE && options.minBlobSize() > 0 && value.length() >= options.minBlobSize()) {
+            value = addBlobOutput(compactionState, value).encode();
+            key = new InternalKey(key.getUserKey(), key.getSequenceNumber(), BLOB_INDEX);
+        }
+        if (key.getValueType() == BLOB_INDEX) {
+            long blobFileNumber = BlobIndex.decode(value).getFileNumber();
+            if (compactionState.currentOldestBlobFile == 0 || blobFileNumber < compactionState.currentOldestBlobFile) {
+                compactionState.currentOldestBlobFile = blobFileNumber;
+            }
+        }
+        // encoded key is a copy, it is safe to keep it after the iterator is moved
+        Slice encodedKey = key.encode();
+        if (compactionState.builder.getEntryCount() == 0) {
+            compactionState.currentSmallest = new InternalKey(encodedKey);
+        }
+        compactionState.currentLargest = encodedKey;
+        compactionState.builder.add(encodedKey, value);
+
+        // Close output file if it is big enough
+        if (compactionState.rangeTombstones.isEmpty() && compactionState.builder.getFileSize() >=
+                compactionState.compaction.getMaxOutputFileSize()) {
+            finishCompactionOutputFile(compactionState, null);
+        }
+    }
+
+    /**
+     * Write the value to the current blob output, a new one being started when it reaches the max output size.
+     */
+    private BlobIndex addBlobOutput(CompactionState compactionState, Slice value)
+            throws IOException
+    {
+        if (compactionState.blobBuilder == null) {
+            long fileNumber;
+            mutex.lock();
+            try {
+                fileNumber = versions.getNextFileNumber();
+                pendingOutputs.add(fileNumber);
+            }
+            finally {
+                mutex.unlock();
+            }
+            WritableFile blobFile = env.newWritableFile(databaseDir.child(Filename.blobFileName(fileNumber)));
+            compactionState.blobBuilder = new BlobFileBuilder(fileNumber, limitRate(blobFile, Priority.LOW));
+        }
+        BlobIndex blobIndex = compactionState.blobBuilder.add(value);
+        if (compactionState.blobBuilder.getFileSize() >= compactionState.compaction.getMaxOutputFileSize()) {
+            finishBlobOutputFile(compactionState);
+        }
+        return blobIndex;
+    }
+
+    private void finishBlobOutputFile(CompactionState compactionState)
+            throws IOException
+    {
+        BlobFileBuilder blobBuilder = compactionState.blobBuilder;
+        compactionState.blobBuilder = null;
+        BlobFileMetaData blobFile = blobBuilder.finish();
+        compactionState.blobOutputs.add(blobFile);
+        options.logger().log("Generated blob file #%s: %s values, %s bytes",
+                blobFile.getNumber(),
+                blobFile.getValueCount(),
+                blobFile.getValueBytes());
+    }
+
+    private Slice readBlob(BlobIndex blobIndex)
+    {
+        // inputs and the blob files they refer to are retained by the compaction version
+        return blobFileCache.get(blobIndex, options.paranoidChecks());
+    }
+
+    /**
+     * Record that no output refers to the value of the input blob index anymore.
+     */
+    private static void addBlobGarbage(CompactionState compactionState, BlobIndex blobIndex)
+    {
+        compactionState.compaction.getEdit().addBlobGarbage(blobIndex.getFileNumber(), 1, blobIndex.getLength());
+    }
+
+    /**
+     * Fold an older entry of the key of the pending merge into it, {@code DELETION} if it is range deleted.
+     */
+    private void foldIntoPendingMerge(CompactionState compactionState, ValueType valueType, Slice value)
+    {
+        byte[] userKey = compactionState.mergeKey.getBytes();
+        switch (valueType) {
+            case MERGE:
+                // partial merge of two operands
+                compactionState.mergeValue = options.mergeOperator().merge(userKey, value.getBytes(), compactionState.mergeValue);
+                break;
+            case VALUE:
+                compactionState.mergeValue = options.mergeOperator().merge(userKey, value.getBytes(), compactionState.mergeValue);
+                compactionState.mergeComplete = true;
+                break;
+            case DELETION:
+                compactionState.mergeValue = options.mergeOperator().merge(userKey, null, compactionState.mergeValue);
+                compactionState.mergeComplete = true;
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value type " + valueType);
+        }
+    }
+
+    /**
+     * Write the pending merge, as a value if no older entry of its key is left in deeper levels.
+     */
+    private void finishPendingMerge(CompactionState compactionState)
+            throws IOException
+    {
+        Slice userKey = compactionState.mergeKey;
+        byte[] value = compactionState.mergeValue;
+        ValueType valueType = MERGE;
+        if (compactionState.mergeComplete) {
+            valueType = VALUE;
+        }
+        else if (compactionState.compaction.isBaseLevelForKey(userKey)) {
+            value = options.mergeOperator().merge(userKey.getBytes(), null, value);
+            valueType = VALUE;
+        }
+        compactionState.mergeKey = null;
+        compactionState.mergeValue = null;
+        addCompactionOutput(compactionState, new InternalKey(userKey, compactionState.mergeSequence, valueType), Slices.wrappedBuffer(value));
+    }
+
     private void openCompactionOutputFile(CompactionState compactionState)
             throws IOException
     {
@@ -1511,16 +2337,57 @@ public class DbImpl
             compactionState.currentFileSize = 0;
             compactionState.currentSmallest = null;
             compactionState.currentLargest = null;
+            compactionState.currentOldestBlobFile = 0;
         }
         finally {
             mutex.unlock();
         }
         File file = databaseDir.child(Filename.tableFileName(fileNumber));
-        compactionState.outfile = env.newWritableFile(file);
-        compactionState.builder = new TableBuilder(options, compactionState.outfile, new InternalUserComparator(internalKeyComparator));
+        compactionState.outfile = limitRate(newTableFile(file), Priority.LOW);
+        Compaction compaction = compactionState.compaction;
+        compactionState.builder = new TableBuilder(options, compactionState.outfile, new InternalUserComparator(internalKeyComparator),
+                compressionType(compaction.getLevel() + 1), compaction.isBottommost(), compressionExecutor);
+    }
+
+    private WritableFile newTableFile(File file)
+            throws IOException
+    {
+        return options.useDirectIO() ? env.newDirectWritableFile(file) : env.newWritableFile(file);
+    }
+
+    /**
+     * Flushes and compactions write through the rate limiter, if any.
+     */
+    private WritableFile limitRate(WritableFile file, Priority priority)
+    {
+        return rateLimiter != null ? rateLimiter.limit(file, priority) : file;
+    }
+
+    private CompressionType compressionType(int level)
+    {
+        List<CompressionType> compressionPerLevel = options.compressionPerLevel();
+        if (compressionPerLevel == null) {
+            return options.compressionType();
+        }
+        return compressionPerLevel.get(Math.min(level, compressionPerLevel.size() - 1));
+    }
+
+    private boolean hasRangeTombstonesFrom(CompactionState compactionState, Slice lowerBound)
+    {
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        for (RangeTombstone tombstone : compactionState.rangeTombstones) {
+            if (lowerBound == null || userComparator.compare(tombstone.getEnd(), lowerBound) > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void finishCompactionOutputFile(CompactionState compactionState)
+    /**
+     * @param boundary user key of the next output, range tombstones are split at this key.
+     *                 {@code null} for the last output.
+     */
+    private void finishCompactionOutputFile(CompactionState compactionState, Slice boundary)
             throws IOException
     {
         requireNonNull(compactionState, "compactionState is null");
@@ -1530,6 +2397,32 @@ public class DbImpl
         long outputNumber = compactionState.currentFileNumber;
         checkArgument(outputNumber != 0);
 
+        InternalKey smallest = compactionState.currentSmallest;
+        InternalKey largest = compactionState.currentLargest != null ? new InternalKey(compactionState.currentLargest) : null;
+        if (!compactionState.rangeTombstones.isEmpty()) {
+            // write the part of the tombstones in [lowerBound, boundary)
+            UserComparator userComparator = internalKeyComparator.getUserComparator();
+            Slice lowerBound = compactionState.rangeTombstonesLowerBound;
+            for (RangeTombstone tombstone : compactionState.rangeTombstones) {
+                Slice begin = lowerBound != null && userComparator.compare(tombstone.getBegin(), lowerBound) < 0 ? lowerBound : tombstone.getBegin();
+                Slice end = boundary != null && userComparator.compare(tombstone.getEnd(), boundary) > 0 ? boundary : tombstone.getEnd();
+                if (userComparator.compare(begin, end) >= 0) {
+                    continue;
+                }
+                InternalKey start = new InternalKey(begin, tombstone.getSequence(), RANGE_DELETION);
+                InternalKey limit = new InternalKey(end, MAX_SEQUENCE_NUMBER, RANGE_DELETION);
+                compactionState.builder.addRangeTombstone(start.encode(), end);
+                if (smallest == null || internalKeyComparator.compare(start, smallest) < 0) {
+                    smallest = start;
+                }
+                if (largest == null || internalKeyComparator.compare(limit, largest) > 0) {
+                    largest = limit;
+                }
+            }
+            compactionState.rangeTombstonesLowerBound = boundary;
+        }
+        boolean rangeTombstones = compactionState.builder.getRangeTombstoneCount() > 0;
+
         long currentEntries = compactionState.builder.getEntryCount();
         long currentBytes = 0;
         try {
@@ -1544,8 +2437,10 @@ public class DbImpl
 
         FileMetaData currentFileMetaData = new FileMetaData(compactionState.currentFileNumber,
                 compactionState.currentFileSize,
-                compactionState.currentSmallest,
-                compactionState.currentLargest);
+                smallest,
+                largest,
+                rangeTombstones,
+                compactionState.currentOldestBlobFile);
         compactionState.outputs.add(currentFileMetaData);
 
         compactionState.outfile.force();
@@ -1554,7 +2449,7 @@ public class DbImpl
 
         if (currentEntries > 0) {
             // Verify that the table is usable
-            tableCache.newIterator(outputNumber, new ReadOptions()).close();
+            tableCache.newReusedKeyIterator(currentFileMetaData, new ReadOptions()).close();
             options.logger().log(
                     "Generated table #%s@%s: %s keys, %s bytes",
                     outputNumber,
@@ -1582,6 +2477,10 @@ public class DbImpl
             compact.compaction.getEdit().addFile(level + 1, output);
             pendingOutputs.remove(output.getNumber());
         }
+        for (BlobFileMetaData blobOutput : compact.blobOutputs) {
+            compact.compaction.getEdit().addBlobFile(blobOutput);
+            pendingOutputs.remove(blobOutput.getNumber());
+        }
 
         versions.logAndApply(compact.compaction.getEdit(), mutex);
     }
@@ -1653,6 +2552,7 @@ public class DbImpl
         private final List<FileMetaData> outputs = new ArrayList<>();
 
         private long smallestSnapshot;
+        private long largestSnapshot;
 
         // State kept for output being generated
         private WritableFile outfile;
@@ -1662,7 +2562,26 @@ public class DbImpl
         private long currentFileNumber;
         private long currentFileSize;
         private InternalKey currentSmallest;
-        private InternalKey currentLargest;
+        // encoded, only decoded once the output file is finished
+        private Slice currentLargest;
+        // oldest blob file the current output refers to, 0 if none
+        private long currentOldestBlobFile;
+
+        // blob file the large values of the outputs are written to
+        private BlobFileBuilder blobBuilder;
+        private final List<BlobFileMetaData> blobOutputs = new ArrayList<>();
+
+        // range tombstones written again to the outputs, split at output boundaries
+        private List<RangeTombstone> rangeTombstones = Collections.emptyList();
+        // user key from which tombstones are not written to an output yet, null before the first output
+        private Slice rangeTombstonesLowerBound;
+
+        // merge operand visible to every snapshot, the older entries of its key are folded into it
+        private Slice mergeKey;
+        private long mergeSequence;
+        private byte[] mergeValue;
+        // whether the value the operands apply to was found
+        private boolean mergeComplete;
 
         private long totalBytes;
 
@@ -1732,6 +2651,16 @@ public class DbImpl
                 Slice key = readLengthPrefixedBytes(record);
                 writeBatch.delete(key);
             }
+            else if (valueType == MERGE) {
+                Slice key = readLengthPrefixedBytes(record);
+                Slice operand = readLengthPrefixedBytes(record);
+                writeBatch.merge(key, operand);
+            }
+            else if (valueType == RANGE_DELETION) {
+                Slice begin = readLengthPrefixedBytes(record);
+                Slice end = readLengthPrefixedBytes(record);
+                writeBatch.deleteRange(begin, end);
+            }
             else {
                 throw new IllegalStateException("Unexpected value type " + valueType);
             }
@@ -1766,6 +2695,22 @@ public class DbImpl
                 sliceOutput.writeByte(DELETION.getPersistentId());
                 writeLengthPrefixedBytes(sliceOutput, key);
             }
+
+            @Override
+            public void merge(Slice key, Slice operand)
+            {
+                sliceOutput.writeByte(MERGE.getPersistentId());
+                writeLengthPrefixedBytes(sliceOutput, key);
+                writeLengthPrefixedBytes(sliceOutput, operand);
+            }
+
+            @Override
+            public void deleteRange(Slice begin, Slice end)
+            {
+                sliceOutput.writeByte(RANGE_DELETION.getPersistentId());
+                writeLengthPrefixedBytes(sliceOutput, begin);
+                writeLengthPrefixedBytes(sliceOutput, end);
+            }
         });
         return record.slice(0, sliceOutput.size());
     }
@@ -1853,6 +2798,190 @@ public class DbImpl
         }
     }
 
+    @Override
+    public void ingestExternalFiles(List<java.io.File> files)
+            throws DBException
+    {
+        checkBackgroundException();
+        requireNonNull(files, "files is null");
+        checkArgument(!files.isEmpty(), "No file to ingest");
+        List<IngestedFile> ingestedFiles = new ArrayList<>();
+        try {
+            for (java.io.File file : files) {
+                ingestedFiles.add(readIngestedFile(env.toFile(file.getAbsolutePath())));
+            }
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        ingestedFiles.sort((left, right) -> userComparator.compare(left.smallest, right.smallest));
+        for (int i = 1; i < ingestedFiles.size(); i++) {
+            checkArgument(userComparator.compare(ingestedFiles.get(i - 1).largest, ingestedFiles.get(i).smallest) < 0,
+                    "Key ranges of %s and %s overlap", ingestedFiles.get(i - 1).file, ingestedFiles.get(i).file);
+        }
+
+        // hold the head of the write queue so that no entry is added meanwhile
+        final WriteBatchInternal w = new WriteBatchInternal(null, false, mutex.newCondition(), true);
+        mutex.lock();
+        try {
+            writers.offerLast(w);
+            while (writers.peekFirst() != w) {
+                w.backgroundCondition.awaitUninterruptibly();
+            }
+            try {
+                ingestFiles(ingestedFiles);
+            }
+            catch (IOException e) {
+                throw new DBException(e);
+            }
+            finally {
+                writers.pollFirst();
+                // Notify new head of write queue
+                if (!writers.isEmpty()) {
+                    writers.peekFirst().signal();
+                }
+            }
+        }
+        finally {
+            mutex.unlock();
+        }
+    }
+
+    private void ingestFiles(List<IngestedFile> ingestedFiles)
+            throws IOException
+    {
+        checkState(mutex.isHeldByCurrentThread());
+        Slice smallest = ingestedFiles.get(0).smallest;
+        Slice largest = ingestedFiles.get(ingestedFiles.size() - 1).largest;
+
+        // memtable entries of the range are older than the ingested ones, they must be in a table first
+        if (memTable.overlapsRange(smallest, largest)) {
+            makeRoomForWrite(true);
+        }
+        while (immutableMemTable != null && immutableMemTable.overlapsRange(smallest, largest)) {
+            checkBackgroundException();
+            backgroundCondition.awaitUninterruptibly();
+        }
+        checkBackgroundException();
+
+        // all ingested entries share a sequence newer than any entry of the database
+        long sequence = versions.getLastSequence() + 1;
+        Version base = versions.getCurrent();
+        List<Long> fileNumbers = new ArrayList<>();
+        List<CompressionType> compressionTypes = new ArrayList<>();
+        for (IngestedFile ingestedFile : ingestedFiles) {
+            long fileNumber = versions.getNextFileNumber();
+            pendingOutputs.add(fileNumber);
+            fileNumbers.add(fileNumber);
+            compressionTypes.add(compressionType(base.pickLevelForIngestedFile(ingestedFile.smallest, ingestedFile.largest)));
+        }
+        try {
+            List<FileMetaData> tables = new ArrayList<>();
+            mutex.unlock();
+            try {
+                for (int i = 0; i < ingestedFiles.size(); i++) {
+                    tables.add(writeIngestedTable(ingestedFiles.get(i), fileNumbers.get(i), sequence, compressionTypes.get(i)));
+                }
+            }
+            finally {
+                mutex.lock();
+            }
+
+            // a compaction running while the levels are picked could add overlapping files to them
+            ingestingFiles = true;
+            try {
+                while (backgroundCompaction != null) {
+                    backgroundCondition.awaitUninterruptibly();
+                }
+                checkBackgroundException();
+
+                VersionEdit edit = new VersionEdit();
+                Version current = versions.getCurrent();
+                for (FileMetaData table : tables) {
+                    int level = current.pickLevelForIngestedFile(table.getSmallest().getUserKey(), table.getLargest().getUserKey());
+                    edit.addFile(level, table);
+                    options.logger().log("Ingested table #%s at level-%s: %s bytes",
+                            table.getNumber(),
+                            level,
+                            table.getFileSize());
+                }
+                edit.setLastSequenceNumber(sequence);
+                versions.logAndApply(edit, mutex);
+            }
+            finally {
+                ingestingFiles = false;
+                maybeScheduleCompaction();
+            }
+        }
+        finally {
+            pendingOutputs.removeAll(fileNumbers);
+        }
+    }
+
+    /**
+     * Check that {@code file} holds entries written by a {@link SstFileWriter}, in strictly increasing key order.
+     */
+    private IngestedFile readIngestedFile(File file)
+            throws IOException
+    {
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        Slice smallest = null;
+        Slice largest = null;
+        try (Table table = openIngestedTable(file);
+                SliceIterator iterator = table.iterator(new ReadOptions().verifyChecksums(true))) {
+            checkArgument(table.getRangeDeletions() == null, "%s holds range tombstones", file);
+            for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                InternalKey key = new InternalKey(iterator.key());
+                checkArgument(key.getSequenceNumber() == 0 && (key.getValueType() == VALUE || key.getValueType() == DELETION),
+                        "%s holds entry %s that was not written by a SstFileWriter", file, key);
+                checkArgument(largest == null || userComparator.compare(key.getUserKey(), largest) > 0,
+                        "Keys of %s are not in strictly increasing order", file);
+                if (smallest == null) {
+                    smallest = key.getUserKey();
+                }
+                largest = key.getUserKey();
+            }
+        }
+        checkArgument(smallest != null, "%s holds no entry", file);
+        return new IngestedFile(file, smallest, largest);
+    }
+
+    /**
+     * Copy the entries of an ingested file to table {@code fileNumber}, with sequence {@code sequence}.
+     */
+    private FileMetaData writeIngestedTable(IngestedFile ingestedFile, long fileNumber, long sequence, CompressionType compressionType)
+            throws IOException
+    {
+        File file = databaseDir.child(Filename.tableFileName(fileNumber));
+        InternalKey smallest = null;
+        InternalKey largest = null;
+        try (Table table = openIngestedTable(ingestedFile.file);
+                SliceIterator iterator = table.iterator(new ReadOptions());
+                WritableFile writableFile = newTableFile(file)) {
+            TableBuilder tableBuilder = new TableBuilder(options, writableFile, new InternalUserComparator(internalKeyComparator), compressionType, false, compressionExecutor);
+            for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                InternalKey key = new InternalKey(iterator.key());
+                key = new InternalKey(key.getUserKey(), sequence, key.getValueType());
+                if (smallest == null) {
+                    smallest = key;
+                }
+                largest = key;
+                tableBuilder.add(key.encode(), iterator.value());
+            }
+            tableBuilder.finish();
+            writableFile.force();
+        }
+        return new FileMetaData(fileNumber, file.length(), smallest, largest);
+    }
+
+    private Table openIngestedTable(File file)
+            throws IOException
+    {
+        RandomInputFile source = env.newRandomAccessFile(file);
+        return Closeables.wrapResource(() -> new Table(source, new InternalUserComparator(internalKeyComparator), true, null, (FilterPolicy) options.filterPolicy()), source);
+    }
+
     @VisibleForTesting
     void testCompactRange(int level, Slice begin, Slice end) throws DBException
     {
@@ -1987,19 +3116,41 @@ public class DbImpl
         }
     }
 
+    private static final class IngestedFile
+    {
+        private final File file;
+        private final Slice smallest;
+        private final Slice largest;
+
+        private IngestedFile(File file, Slice smallest, Slice largest)
+        {
+            this.file = file;
+            this.smallest = smallest;
+            this.largest = largest;
+        }
+    }
+
     private class WriteBatchInternal
     {
         private final WriteBatchImpl batch;
         private final boolean sync;
         private final Condition backgroundCondition;
+        // never grouped with other writers, it is done once it leaves the head of the queue
+        private final boolean exclusive;
         boolean done = false;
         public Throwable error;
 
         WriteBatchInternal(WriteBatchImpl batch, boolean sync, Condition backgroundCondition)
+        {
+            this(batch, sync, backgroundCondition, false);
+        }
+
+        WriteBatchInternal(WriteBatchImpl batch, boolean sync, Condition backgroundCondition, boolean exclusive)
         {
             this.batch = batch;
             this.sync = sync;
             this.backgroundCondition = backgroundCondition;
+            this.exclusive = exclusive;
         }
 
         void signal()
@@ -38,6 +38,16 @@ public class FileMetaData
      */
     private final InternalKey largest;
 
+    /**
+     * Table has a range tombstones meta block, its bounds include the tombstone ranges
+     */
+    private final boolean rangeTombstones;
+
+    /**
+     * Number of the oldest blob file the table refers to, {@code 0} if the table holds no blob index
+     */
+    private final long oldestBlobFile;
+
     /**
      * Seeks allowed until compaction
      */
@@ -45,11 +55,23 @@ public class FileMetaData
     private final AtomicInteger allowedSeeks = new AtomicInteger(1 << 30);
 
     public FileMetaData(long number, long fileSize, InternalKey smallest, InternalKey largest)
+    {
+        this(number, fileSize, smallest, largest, false);
+    }
+
+    public FileMetaData(long number, long fileSize, InternalKey smallest, InternalKey largest, boolean rangeTombstones)
+    {
+        this(number, fileSize, smallest, largest, rangeTombstones, 0);
+    }
+
+    public FileMetaData(long number, long fileSize, InternalKey smallest, InternalKey largest, boolean rangeTombstones, long oldestBlobFile)
     {
         this.number = number;
         this.fileSize = fileSize;
-        this.smallest = smallest.compact();
-        this.largest = largest.compact();
+        this.smallest = smallest == null ? null : smallest.compact();
+        this.largest = largest == null ? null : largest.compact();
+        this.rangeTombstones = rangeTombstones;
+        this.oldestBlobFile = oldestBlobFile;
     }
 
     public long getFileSize()
@@ -72,6 +94,21 @@ public class FileMetaData
         return largest;
     }
 
+    public boolean hasRangeTombstones()
+    {
+        return rangeTombstones;
+    }
+
+    public long getOldestBlobFile()
+    {
+        return oldestBlobFile;
+    }
+
+    public boolean hasBlobReferences()
+    {
+        return oldestBlobFile != 0;
+    }
+
     public int getAllowedSeeks()
     {
         return allowedSeeks.get();
@@ -96,6 +133,8 @@ public class FileMetaData
         sb.append(", fileSize=").append(fileSize);
         sb.append(", smallest=").append(smallest);
         sb.append(", largest=").append(largest);
+        sb.append(", rangeTombstones=").append(rangeTombstones);
+        sb.append(", oldestBlobFile=").append(oldestBlobFile);
         sb.append(", allowedSeeks=").append(allowedSeeks);
         sb.append('}');
         return sb.toString();
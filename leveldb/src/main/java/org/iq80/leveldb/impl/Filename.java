@@ -39,6 +39,7 @@ public final class Filename
         LOG,
         DB_LOCK,
         TABLE,
+        BLOB,
         DESCRIPTOR,
         CURRENT,
         TEMP,
@@ -69,6 +70,14 @@ public final class Filename
         return makeFileName(number, "sst");
     }
 
+    /**
+     * Return the name of the blob file with the specified number.
+     */
+    public static String blobFileName(long number)
+    {
+        return makeFileName(number, "blob");
+    }
+
     /**
      * Return the name of the descriptor file with the specified incarnation number.
      */
@@ -118,6 +127,14 @@ public final class Filename
         return "LOG.old";
     }
 
+    /**
+     * Return the name of the block cache warm list, see {@link BlockCacheWarmList}.
+     */
+    public static String warmListFileName()
+    {
+        return "WARMLIST";
+    }
+
     /**
      * If filename is a leveldb file, store the type of the file in *type.
      * The number encoded in the filename is stored in *number.  If the
@@ -131,7 +148,7 @@ public final class Filename
         //    dbname/LOG
         //    dbname/LOG.old
         //    dbname/MANIFEST-[0-9]+
-        //    dbname/[0-9]+.(log|sst|dbtmp)
+        //    dbname/[0-9]+.(log|sst|ldb|blob|dbtmp)
         try {
             String fileName = file.getName();
             if ("CURRENT".equals(fileName)) {
@@ -155,6 +172,10 @@ public final class Filename
                 long fileNumber = parseLong(fileName.substring(0, fileName.lastIndexOf('.')));
                 return new FileInfo(FileType.TABLE, fileNumber);
             }
+            else if (fileName.endsWith(".blob")) {
+                long fileNumber = parseLong(removeSuffix(fileName, ".blob"));
+                return new FileInfo(FileType.BLOB, fileNumber);
+            }
             else if (fileName.endsWith(".dbtmp")) {
                 long fileNumber = parseLong(removeSuffix(fileName, ".dbtmp"));
                 return new FileInfo(FileType.TEMP, fileNumber);
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.iq80.leveldb.SyncCoordinator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link SyncCoordinator} grouping the log syncs of the databases sharing it.
+ * The first sync of a batch waits for the batch window, the syncs requested
+ * meanwhile join its batch. Its writer then issues the syncs of the batch in
+ * parallel and all writers of the batch resume once the last sync completed.
+ * <p>
+ * The coordinator is owned by the application, it should be closed once the
+ * databases using it are closed. Syncs requested after that are not grouped.
+ */
+public final class GroupSyncCoordinator
+        implements SyncCoordinator, Closeable
+{
+    private static final long DEFAULT_WINDOW_MICROS = 100;
+    private static final int DEFAULT_SYNC_THREADS = 8;
+
+    private final long windowNanos;
+    private final ExecutorService syncExecutor;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private Batch pendingBatch;
+    private boolean closed;
+
+    public GroupSyncCoordinator()
+    {
+        this(DEFAULT_WINDOW_MICROS, TimeUnit.MICROSECONDS, DEFAULT_SYNC_THREADS);
+    }
+
+    /**
+     * @param window      time the first sync of a batch waits for other syncs to join it
+     * @param syncThreads number of syncs of a batch issued in parallel, besides the one of its first writer
+     */
+    public GroupSyncCoordinator(long window, TimeUnit unit, int syncThreads)
+    {
+        checkArgument(window >= 0, "window must not be negative");
+        checkArgument(syncThreads > 0, "syncThreads must be positive");
+        this.windowNanos = unit.toNanos(window);
+        this.syncExecutor = Executors.newFixedThreadPool(syncThreads, new ThreadFactoryBuilder()
+                .setNameFormat("leveldb-sync-%s")
+                .setDaemon(true)
+                .build());
+    }
+
+    static GroupSyncCoordinator convert(SyncCoordinator syncCoordinator)
+    {
+        checkArgument(syncCoordinator == null || syncCoordinator instanceof GroupSyncCoordinator, "Sync coordinator must be a GroupSyncCoordinator");
+        return (GroupSyncCoordinator) syncCoordinator;
+    }
+
+    /**
+     * Sync {@code log} with the logs of the other writers of its batch, returning once all of them are synced.
+     *
+     * @throws IOException if the sync of {@code log} failed
+     */
+    void sync(LogWriter log)
+            throws IOException
+    {
+        Batch batch;
+        SyncRequest request;
+        boolean leader;
+        synchronized (this) {
+            if (closed) {
+                log.sync();
+                return;
+            }
+            leader = pendingBatch == null;
+            if (leader) {
+                pendingBatch = new Batch();
+            }
+            batch = pendingBatch;
+            request = new SyncRequest(log);
+            batch.requests.add(request);
+        }
+        if (leader) {
+            // give the writers of other databases the time to join the batch
+            if (windowNanos > 0) {
+                Uninterruptibles.sleepUninterruptibly(windowNanos, TimeUnit.NANOSECONDS);
+            }
+            synchronized (this) {
+                pendingBatch = null;
+            }
+            batch.run(request);
+        }
+        else {
+            Uninterruptibles.awaitUninterruptibly(batch.done);
+        }
+        if (request.failure instanceof IOException) {
+            throw (IOException) request.failure;
+        }
+        if (request.failure != null) {
+            throw new IOException("Unable to sync " + log, request.failure);
+        }
+    }
+
+    /**
+     * Number of batches of syncs issued so far.
+     */
+    public long getBatchCount()
+    {
+        return batches.get();
+    }
+
+    /**
+     * Number of syncs issued so far.
+     */
+    public long getSyncCount()
+    {
+        return syncs.get();
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (this) {
+            closed = true;
+        }
+        // syncs already handed to the executor still run
+        syncExecutor.shutdown();
+    }
+
+    private final class Batch
+    {
+        // guarded by GroupSyncCoordinator.this until the batch is no longer pending
+        private final List<SyncRequest> requests = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private void run(SyncRequest leaderRequest)
+        {
+            batches.incrementAndGet();
+            syncs.addAndGet(requests.size());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (SyncRequest request : requests) {
+                    if (request != leaderRequest) {
+                        try {
+                            futures.add(syncExecutor.submit(request::run));
+                        }
+                        catch (RejectedExecutionException e) {
+                            // coordinator closed meanwhile
+                            request.run();
+                        }
+                    }
+                }
+                leaderRequest.run();
+                for (Future<?> future : futures) {
+                    Uninterruptibles.getUninterruptibly(future);
+                }
+            }
+            catch (Exception e) {
+                // requests record their own failures
+                throw new AssertionError(e);
+            }
+            finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private static final class SyncRequest
+    {
+        private final LogWriter log;
+        private volatile Throwable failure;
+
+        private SyncRequest(LogWriter log)
+        {
+            this.log = log;
+        }
+
+        private void run()
+        {
+            try {
+                log.sync();
+            }
+            catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+}
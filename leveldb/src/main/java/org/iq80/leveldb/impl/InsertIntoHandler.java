@@ -21,6 +21,7 @@ import org.iq80.leveldb.util.Slice;
 import org.iq80.leveldb.util.Slices;
 
 import static org.iq80.leveldb.impl.ValueType.DELETION;
+import static org.iq80.leveldb.impl.ValueType.MERGE;
 import static org.iq80.leveldb.impl.ValueType.VALUE;
 
 final class InsertIntoHandler
@@ -46,4 +47,16 @@ final class InsertIntoHandler
     {
         memTable.add(sequence++, DELETION, key.copySlice(), Slices.EMPTY_SLICE);
     }
+
+    @Override
+    public void merge(Slice key, Slice operand)
+    {
+        memTable.add(sequence++, MERGE, key.copySlice(), operand.copySlice());
+    }
+
+    @Override
+    public void deleteRange(Slice begin, Slice end)
+    {
+        memTable.addRangeTombstone(sequence++, begin.copySlice(), end.copySlice());
+    }
 }
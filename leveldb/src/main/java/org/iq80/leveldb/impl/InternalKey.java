@@ -147,12 +147,12 @@ public class InternalKey
     }
 
     /**
-     * If user key refer to partial view of data, create a new InternalKey with only relevant bytes and enable
-     * the other to be garbage collected.
+     * If user key refer to partial view of data (or to direct/memory mapped data), create a new InternalKey with
+     * only relevant bytes and enable the other to be garbage collected.
      */
     public InternalKey compact()
     {
-        if (userKey.length() != userKey.getRawArray().length) {
+        if (!userKey.hasArray() || userKey.length() != userKey.getRawArray().length) {
             return new InternalKey(userKey.copySlice(), sequenceNumber, valueType);
         }
         return this;
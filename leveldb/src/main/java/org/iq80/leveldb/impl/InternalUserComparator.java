@@ -17,26 +17,44 @@
  */
 package org.iq80.leveldb.impl;
 
+import org.iq80.leveldb.table.BytewiseComparator;
 import org.iq80.leveldb.table.UserComparator;
 import org.iq80.leveldb.util.Slice;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.iq80.leveldb.impl.SequenceNumber.MAX_SEQUENCE_NUMBER;
+import static org.iq80.leveldb.impl.SequenceNumber.unpackSequenceNumber;
+import static org.iq80.leveldb.util.SizeOf.SIZE_OF_LONG;
 
 public class InternalUserComparator
         implements UserComparator
 {
     private final InternalKeyComparator internalKeyComparator;
+    // bytewise user keys are compared in place in the encoded keys
+    private final boolean bytewise;
 
     public InternalUserComparator(InternalKeyComparator internalKeyComparator)
     {
         this.internalKeyComparator = internalKeyComparator;
+        this.bytewise = internalKeyComparator.getUserComparator().getClass() == BytewiseComparator.class;
     }
 
+    /**
+     * Same order as {@link InternalKeyComparator} on the encoded keys, without decoding them.
+     */
     @Override
     public int compare(Slice left, Slice right)
     {
-        return internalKeyComparator.compare(new InternalKey(left), new InternalKey(right));
+        int leftUserKeyLength = left.length() - SIZE_OF_LONG;
+        int rightUserKeyLength = right.length() - SIZE_OF_LONG;
+        int result = bytewise
+                ? left.compareTo(leftUserKeyLength, right, rightUserKeyLength)
+                : internalKeyComparator.getUserComparator().compare(left.slice(0, leftUserKeyLength), right.slice(0, rightUserKeyLength));
+        if (result != 0) {
+            return result;
+        }
+        // reverse sorted version numbers
+        return Long.compare(unpackSequenceNumber(right.getLong(rightUserKeyLength)), unpackSequenceNumber(left.getLong(leftUserKeyLength)));
     }
 
     @Override
@@ -22,7 +22,6 @@ import org.iq80.leveldb.table.KeyValueFunction;
 import org.iq80.leveldb.util.Slice;
 
 import static com.google.common.base.Preconditions.checkState;
-import static org.iq80.leveldb.impl.ValueType.VALUE;
 
 /**
  * @author Honore Vasconcelos
@@ -44,14 +43,9 @@ public class KeyMatchingLookup implements KeyValueFunction<LookupResult>
 
         final InternalKey internalKey = new InternalKey(internalKey1);
 
-        // if this is a value key (not a delete) and the keys match, return the value
+        // if the keys match, return the value, deletion or merge operand
         if (key.getUserKey().equals(internalKey.getUserKey())) {
-            if (internalKey.getValueType() == ValueType.DELETION) {
-                return LookupResult.deleted(key);
-            }
-            else if (internalKey.getValueType() == VALUE) {
-                return LookupResult.ok(key, value);
-            }
+            return LookupResult.of(key, internalKey, value);
         }
         return null;
     }
@@ -48,6 +48,7 @@ public class Level
     private final TableCache tableCache;
     private final InternalKeyComparator internalKeyComparator;
     private final List<FileMetaData> files;
+    private int rangeTombstoneFiles;
 
     public Level(int levelNumber, Collection<FileMetaData> files, TableCache tableCache, InternalKeyComparator internalKeyComparator)
     {
@@ -57,6 +58,11 @@ public class Level
         requireNonNull(internalKeyComparator, "internalKeyComparator is null");
 
         this.files = new ArrayList<>(files);
+        for (FileMetaData file : files) {
+            if (file.hasRangeTombstones()) {
+                rangeTombstoneFiles++;
+            }
+        }
         this.tableCache = tableCache;
         this.internalKeyComparator = internalKeyComparator;
         this.levelNumber = levelNumber;
@@ -88,11 +94,20 @@ public class Level
     }
 
     public static InternalIterator createLevelConcatIterator(TableCache tableCache, List<FileMetaData> files, InternalKeyComparator internalKeyComparator, ReadOptions options)
+    {
+        return createLevelConcatIterator(tableCache, files, internalKeyComparator, options, false);
+    }
+
+    /**
+     * @param reuseKeyBuffer if {@code true}, table keys are only valid until the iterator is moved
+     *                       (see {@link TableCache#newReusedKeyIterator(FileMetaData, ReadOptions)})
+     */
+    public static InternalIterator createLevelConcatIterator(TableCache tableCache, List<FileMetaData> files, InternalKeyComparator internalKeyComparator, ReadOptions options, boolean reuseKeyBuffer)
     {
         SeekingIterator<InternalKey, FileMetaData> iterator = SeekingIterators.fromSortedList(files, FileMetaData::getLargest, f -> f, internalKeyComparator);
         return SeekingIterators.twoLevelInternalIterator(iterator, fileMetaData -> {
             try {
-                return tableCache.newIterator(fileMetaData, options);
+                return reuseKeyBuffer ? tableCache.newReusedKeyIterator(fileMetaData, options) : tableCache.newIterator(fileMetaData, options);
             }
             catch (IOException e) {
                 throw new DBException(e);
@@ -112,6 +127,7 @@ public class Level
             return null;
         }
 
+        LookupResult result = null;
         for (FileMetaData fileMetaData : fileMetaDataList) {
             if (lasReadFile.getSeekFile() != null && readStats.getSeekFile() == null) {
                 // We have had more than one seek for this read.  Charge the first file.
@@ -122,13 +138,85 @@ public class Level
             lasReadFile.setSeekFile(fileMetaData);
             lasReadFile.setSeekFileLevel(levelNumber);
 
-            final LookupResult lookupResult = tableCache.get(options, key.getInternalKey().encode(), fileMetaData, new KeyMatchingLookup(key));
-            if (lookupResult != null) {
-                return lookupResult;
+            LookupResult lookupResult = tableCache.get(options, key.getInternalKey().encode(), fileMetaData, new KeyMatchingLookup(key));
+            if (lookupResult != null && lookupResult.isPartial()) {
+                lookupResult = getAllEntries(options, key, fileMetaData);
+            }
+            result = LookupResult.concat(result, lookupResult);
+            if (result != null && !result.isPartial()) {
+                return result;
+            }
+        }
+
+        if (result != null && levelNumber > 0) {
+            // older entries of the key may be continued in the next files of the level
+            UserComparator userComparator = internalKeyComparator.getUserComparator();
+            for (int index = findFile(key.getInternalKey()) + 1; index < files.size() && result.isPartial(); index++) {
+                FileMetaData fileMetaData = files.get(index);
+                if (userComparator.compare(key.getUserKey(), fileMetaData.getSmallest().getUserKey()) != 0) {
+                    break;
+                }
+                result = result.withOlder(getAllEntries(options, key, fileMetaData));
             }
         }
+        return result;
+    }
 
-        return null;
+    /**
+     * Entries of the key in a file, combined until one that is not a merge operand.
+     */
+    private LookupResult getAllEntries(ReadOptions options, LookupKey key, FileMetaData fileMetaData)
+    {
+        try (InternalIterator iterator = tableCache.newIterator(fileMetaData, options)) {
+            LookupResult result = null;
+            for (boolean valid = iterator.seek(key.getInternalKey()); valid && key.getUserKey().equals(iterator.key().getUserKey()); valid = iterator.next()) {
+                result = LookupResult.concat(result, LookupResult.of(key, iterator.key(), iterator.value()));
+                if (!result.isPartial()) {
+                    break;
+                }
+            }
+            return result;
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+    }
+
+    public boolean hasRangeTombstones()
+    {
+        return rangeTombstoneFiles > 0;
+    }
+
+    /**
+     * @see RangeTombstones#maxCoveringSequence(Slice, long)
+     */
+    public long maxCoveringRangeTombstone(LookupKey key)
+    {
+        if (rangeTombstoneFiles == 0) {
+            return 0;
+        }
+        long sequence = 0;
+        for (FileMetaData file : getFilesForKey(key.getUserKey(), key.getInternalKey())) {
+            if (file.hasRangeTombstones()) {
+                sequence = Math.max(sequence, tableCache.getRangeTombstones(file).maxCoveringSequence(key.getUserKey(), key.getInternalKey().getSequenceNumber()));
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Range tombstones of all files in this level.
+     */
+    public List<RangeTombstone> getRangeTombstones()
+    {
+        if (rangeTombstoneFiles == 0) {
+            return Collections.emptyList();
+        }
+        List<RangeTombstone> tombstones = new ArrayList<>();
+        for (FileMetaData file : files) {
+            tombstones.addAll(tableCache.getRangeTombstones(file).getTombstones());
+        }
+        return tombstones;
     }
 
     public List<FileMetaData> getFilesForKey(Slice userKey, InternalKey internalKey)
@@ -241,6 +329,9 @@ public class Level
     {
         // todo remove mutation
         files.add(fileMetaData);
+        if (fileMetaData.hasRangeTombstones()) {
+            rangeTombstoneFiles++;
+        }
     }
 
     @Override
@@ -26,6 +26,11 @@ public enum LogChunkType
     FIRST(2),
     MIDDLE(3),
     LAST(4),
+    // chunks of recycled logs, their header also holds the number of the log they were written to
+    RECYCLABLE_FULL(5),
+    RECYCLABLE_FIRST(6),
+    RECYCLABLE_MIDDLE(7),
+    RECYCLABLE_LAST(8),
     EOF,
     BAD_CHUNK,
     UNKNOWN;
@@ -52,6 +57,49 @@ public enum LogChunkType
         this.persistentId = persistentId;
     }
 
+    public boolean isRecyclable()
+    {
+        return persistentId != null && persistentId >= RECYCLABLE_FULL.persistentId;
+    }
+
+    /**
+     * The chunk type written in the recyclable format, see {@link #isRecyclable()}.
+     */
+    public LogChunkType toRecyclable()
+    {
+        switch (this) {
+            case FULL:
+                return RECYCLABLE_FULL;
+            case FIRST:
+                return RECYCLABLE_FIRST;
+            case MIDDLE:
+                return RECYCLABLE_MIDDLE;
+            case LAST:
+                return RECYCLABLE_LAST;
+            default:
+                throw new IllegalArgumentException(name() + " has no recyclable format");
+        }
+    }
+
+    /**
+     * The chunk type of a chunk written in the recyclable format.
+     */
+    public LogChunkType fromRecyclable()
+    {
+        switch (this) {
+            case RECYCLABLE_FULL:
+                return FULL;
+            case RECYCLABLE_FIRST:
+                return FIRST;
+            case RECYCLABLE_MIDDLE:
+                return MIDDLE;
+            case RECYCLABLE_LAST:
+                return LAST;
+            default:
+                return this;
+        }
+    }
+
     public int getPersistentId()
     {
         checkArgument(persistentId != null, "%s is not a persistent chunk type", name());
@@ -30,6 +30,9 @@ public final class LogConstants
     // Header is checksum (4 bytes), type (1 byte), length (2 bytes).
     public static final int HEADER_SIZE = SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_SHORT;
 
+    // Header of recyclable chunks also holds the low 32 bits of the log number (4 bytes).
+    public static final int RECYCLABLE_HEADER_SIZE = HEADER_SIZE + SIZE_OF_INT;
+
     private LogConstants()
     {
     }
@@ -35,7 +35,9 @@ import static org.iq80.leveldb.impl.LogChunkType.ZERO_TYPE;
 import static org.iq80.leveldb.impl.LogChunkType.getLogChunkTypeByPersistentId;
 import static org.iq80.leveldb.impl.LogConstants.BLOCK_SIZE;
 import static org.iq80.leveldb.impl.LogConstants.HEADER_SIZE;
+import static org.iq80.leveldb.impl.LogConstants.RECYCLABLE_HEADER_SIZE;
 import static org.iq80.leveldb.impl.Logs.getChunkChecksum;
+import static org.iq80.leveldb.impl.Logs.getRecyclableChunkChecksum;
 
 public class LogReader
 {
@@ -45,6 +47,22 @@ public class LogReader
 
     private final boolean verifyChecksums;
 
+    /**
+     * Number of the log, chunks of recycled logs written for another log are past the end of this one.
+     * Negative to accept the chunks of any log.
+     */
+    private final long logNumber;
+
+    /**
+     * Has a recyclable chunk been read? Garbage after it is what remains of the previous use of the file.
+     */
+    private boolean recycled;
+
+    /**
+     * Header size of the current chunk.
+     */
+    private int currentHeaderSize = HEADER_SIZE;
+
     /**
      * Offset at which to start looking for the first record to return
      */
@@ -87,12 +105,22 @@ public class LogReader
     private Slice currentChunk = Slices.EMPTY_SLICE;
 
     public LogReader(SequentialFile sequentialFile, LogMonitor monitor, boolean verifyChecksums, long initialOffset)
+    {
+        this(sequentialFile, monitor, verifyChecksums, initialOffset, -1);
+    }
+
+    /**
+     * Reader of a log that may have been written to a recycled file, see {@link LogWriter#createRecyclableWriter(long, org.iq80.leveldb.env.WritableFile)}.
+     * Reading ends at the first chunk written for another log, or at the first corrupted chunk after a recyclable one.
+     */
+    public LogReader(SequentialFile sequentialFile, LogMonitor monitor, boolean verifyChecksums, long initialOffset, long logNumber)
     {
         this.sequentialFile = sequentialFile;
         this.monitor = monitor;
         this.verifyChecksums = verifyChecksums;
         this.initialOffset = initialOffset;
         this.resyncing = initialOffset > 0;
+        this.logNumber = logNumber;
     }
 
     public long getLastRecordOffset()
@@ -154,7 +182,7 @@ public class LogReader
             // ReadPhysicalRecord may have only had an empty trailer remaining in its
             // internal buffer. Calculate the offset of the next physical record now
             // that it has returned, properly accounting for its header size.
-            long physicalRecordOffset = endOfBufferOffset - currentBlock.available() - HEADER_SIZE - currentChunk.length();
+            long physicalRecordOffset = endOfBufferOffset - currentBlock.available() - currentHeaderSize - currentChunk.length();
 
             if (resyncing) {
                 if (chunkType == MIDDLE) {
@@ -254,6 +282,7 @@ public class LogReader
     {
         // clear the current chunk
         currentChunk = Slices.EMPTY_SLICE;
+        currentHeaderSize = HEADER_SIZE;
 
         // read the next block if necessary
         if (currentBlock.available() < HEADER_SIZE) {
@@ -270,11 +299,32 @@ public class LogReader
         length = length | currentBlock.readUnsignedByte() << 8;
         byte chunkTypeId = currentBlock.readByte();
         LogChunkType chunkType = getLogChunkTypeByPersistentId(chunkTypeId);
+        int chunkLogNumber = 0;
+        if (chunkType.isRecyclable()) {
+            if (currentBlock.available() < RECYCLABLE_HEADER_SIZE - HEADER_SIZE) {
+                // a truncated header, written last or left by the previous use of the file
+                currentBlock = Slices.EMPTY_SLICE.input();
+                if (eof || recycled) {
+                    eof = true;
+                    return EOF;
+                }
+                reportCorruption(HEADER_SIZE, "truncated recyclable header");
+                return BAD_CHUNK;
+            }
+            chunkLogNumber = currentBlock.readInt();
+            currentHeaderSize = RECYCLABLE_HEADER_SIZE;
+        }
 
         // verify length
         if (length > currentBlock.available()) {
+            if (recycled) {
+                // garbage left by the previous use of the file
+                currentBlock = Slices.EMPTY_SLICE.input();
+                eof = true;
+                return EOF;
+            }
             if (!eof) {
-                int dropSize = currentBlock.available() + HEADER_SIZE;
+                int dropSize = currentBlock.available() + currentHeaderSize;
                 reportCorruption(dropSize, "bad record length");
                 currentBlock = Slices.EMPTY_SLICE.input();
                 return BAD_CHUNK;
@@ -294,7 +344,7 @@ public class LogReader
         }
 
         // Skip physical record that started before initialOffset
-        if (endOfBufferOffset - HEADER_SIZE - length < initialOffset) {
+        if (endOfBufferOffset - currentHeaderSize - length < initialOffset) {
             currentBlock.skipBytes(length);
             return BAD_CHUNK;
         }
@@ -303,21 +353,40 @@ public class LogReader
         currentChunk = currentBlock.readBytes(length);
 
         if (verifyChecksums) {
-            int actualChecksum = getChunkChecksum(chunkTypeId, currentChunk);
+            int actualChecksum = chunkType.isRecyclable()
+                    ? getRecyclableChunkChecksum(chunkTypeId, chunkLogNumber, currentChunk)
+                    : getChunkChecksum(chunkTypeId, currentChunk);
             if (actualChecksum != expectedChecksum) {
                 // Drop the rest of the buffer since "length" itself may have
                 // been corrupted and if we trust it, we could find some
                 // fragment of a real log record that just happens to look
                 // like a valid log record.
-                int dropSize = currentBlock.available() + HEADER_SIZE + length;
+                int dropSize = currentBlock.available() + currentHeaderSize + length;
                 currentBlock = Slices.EMPTY_SLICE.input();
+                if (recycled) {
+                    // garbage left by the previous use of the file
+                    eof = true;
+                    return EOF;
+                }
                 reportCorruption(dropSize, "checksum mismatch");
                 return BAD_CHUNK;
             }
         }
 
+        if (chunkType.isRecyclable()) {
+            if (logNumber >= 0 && chunkLogNumber != (int) logNumber) {
+                // written for the log that previously used the file, this log ends here
+                currentChunk = Slices.EMPTY_SLICE;
+                currentBlock = Slices.EMPTY_SLICE.input();
+                eof = true;
+                return EOF;
+            }
+            recycled = true;
+            chunkType = chunkType.fromRecyclable();
+        }
+
         // Skip physical record that started before initial_offset_
-        if (endOfBufferOffset - currentBlock.available() - HEADER_SIZE - length <
+        if (endOfBufferOffset - currentBlock.available() - currentHeaderSize - length <
                 initialOffset) {
             currentChunk = Slices.EMPTY_SLICE;
             return BAD_CHUNK;
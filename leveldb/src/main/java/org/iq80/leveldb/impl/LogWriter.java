@@ -32,14 +32,19 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static org.iq80.leveldb.impl.LogConstants.BLOCK_SIZE;
 import static org.iq80.leveldb.impl.LogConstants.HEADER_SIZE;
+import static org.iq80.leveldb.impl.LogConstants.RECYCLABLE_HEADER_SIZE;
 import static org.iq80.leveldb.impl.Logs.getChunkChecksum;
+import static org.iq80.leveldb.impl.Logs.getRecyclableChunkChecksum;
 
 public class LogWriter
         implements Closeable
 {
-    private static final byte[] SA = new byte[HEADER_SIZE];
+    private static final byte[] SA = new byte[RECYCLABLE_HEADER_SIZE];
     private final WritableFile writableFile;
     private final long fileNumber;
+    // chunks hold the log number, see LogChunkType#isRecyclable()
+    private final boolean recyclable;
+    private final int headerSize;
     private final AtomicBoolean closed = new AtomicBoolean();
 
     /**
@@ -47,23 +52,34 @@ public class LogWriter
      */
     private int blockOffset;
 
-    private LogWriter(long fileNumber, WritableFile file)
+    private LogWriter(long fileNumber, WritableFile file, boolean recyclable)
     {
         requireNonNull(file, "file is null");
         checkArgument(fileNumber >= 0, "fileNumber is negative");
         this.fileNumber = fileNumber;
         this.writableFile = file;
+        this.recyclable = recyclable;
+        this.headerSize = recyclable ? RECYCLABLE_HEADER_SIZE : HEADER_SIZE;
     }
 
     private LogWriter(long fileNumber, WritableFile file, long destinationLength)
     {
-        this(fileNumber, file);
+        this(fileNumber, file, false);
         this.blockOffset = (int) (destinationLength % LogConstants.BLOCK_SIZE);
     }
 
     public static LogWriter createWriter(long fileNumber, WritableFile writableFile)
     {
-        return new LogWriter(fileNumber, writableFile);
+        return new LogWriter(fileNumber, writableFile, false);
+    }
+
+    /**
+     * Writer whose chunks hold the log number, so that a reader of a recycled file
+     * stops at the records left by the log previously written to it.
+     */
+    public static LogWriter createRecyclableWriter(long fileNumber, WritableFile writableFile)
+    {
+        return new LogWriter(fileNumber, writableFile, true);
     }
 
     public static LogWriter createWriter(long fileNumber, WritableFile writableFile, long destinationLength)
@@ -104,7 +120,7 @@ public class LogWriter
             checkState(bytesRemainingInBlock >= 0);
 
             // Switch to a new block if necessary
-            if (bytesRemainingInBlock < HEADER_SIZE) {
+            if (bytesRemainingInBlock < headerSize) {
                 if (bytesRemainingInBlock > 0) {
                     // Fill the rest of the block with zeros
                     // todo lame... need a better way to write zeros
@@ -115,7 +131,7 @@ public class LogWriter
             }
 
             // Invariant: we never leave less than HEADER_SIZE bytes available in a block
-            int bytesAvailableInBlock = bytesRemainingInBlock - HEADER_SIZE;
+            int bytesAvailableInBlock = bytesRemainingInBlock - headerSize;
             checkState(bytesAvailableInBlock >= 0);
 
             // if there are more bytes in the record then there are available in the block,
@@ -147,7 +163,7 @@ public class LogWriter
             }
 
             // write the chunk
-            writeChunk(type, sliceInput.readBytes(fragmentLength));
+            writeChunk(recyclable ? type.toRecyclable() : type, sliceInput.readBytes(fragmentLength));
 
             // we are no longer on the first chunk
             begin = false;
@@ -158,20 +174,46 @@ public class LogWriter
         }
     }
 
+    /**
+     * Force the records added so far to the file system.
+     */
+    public void sync()
+            throws IOException
+    {
+        checkState(!closed.get(), "Log has been closed");
+        writableFile.force();
+    }
+
     private void writeChunk(LogChunkType type, Slice slice)
             throws IOException
     {
         checkArgument(slice.length() <= 0xffff, "length %s is larger than two bytes", slice.length());
-        checkArgument(blockOffset + HEADER_SIZE <= BLOCK_SIZE);
+        checkArgument(blockOffset + headerSize <= BLOCK_SIZE);
 
         // create header
-        Slice header = newLogRecordHeader(type, slice, slice.length());
+        Slice header = recyclable ? newRecyclableLogRecordHeader(type, slice, (int) fileNumber) : newLogRecordHeader(type, slice, slice.length());
 
         // write the header and the payload
         writableFile.append(header);
         writableFile.append(slice);
 
-        blockOffset += HEADER_SIZE + slice.length();
+        blockOffset += headerSize + slice.length();
+    }
+
+    private static Slice newRecyclableLogRecordHeader(LogChunkType type, Slice slice, int logNumber)
+    {
+        int crc = getRecyclableChunkChecksum(type.getPersistentId(), logNumber, slice);
+
+        // Format the header
+        Slice header = Slices.allocate(RECYCLABLE_HEADER_SIZE);
+        SliceOutput sliceOutput = header.output();
+        sliceOutput.writeInt(crc);
+        sliceOutput.writeByte((byte) (slice.length() & 0xff));
+        sliceOutput.writeByte((byte) (slice.length() >>> 8));
+        sliceOutput.writeByte((byte) (type.getPersistentId()));
+        sliceOutput.writeInt(logNumber);
+
+        return header;
     }
 
     private static Slice newLogRecordHeader(LogChunkType type, Slice slice, int length)
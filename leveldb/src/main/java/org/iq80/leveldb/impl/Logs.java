@@ -18,12 +18,13 @@
 package org.iq80.leveldb.impl;
 
 import org.iq80.leveldb.env.Env;
-import org.iq80.leveldb.util.PureJavaCrc32C;
+import org.iq80.leveldb.util.Crc32C;
 import org.iq80.leveldb.util.Slice;
 import org.iq80.leveldb.env.WritableFile;
 
 import org.iq80.leveldb.env.File;
 import java.io.IOException;
+import java.util.zip.Checksum;
 
 public final class Logs
 {
@@ -41,6 +42,15 @@ public final class Logs
         return LogWriter.createWriter(fileNumber, writableFile, destinationLength);
     }
 
+    /**
+     * Writer of a log that may be recycled later, its records can be told apart from the records
+     * of earlier logs left in the same file, see {@link LogReader}.
+     */
+    public static LogWriter createRecyclableLogWriter(long fileNumber, WritableFile writableFile)
+    {
+        return LogWriter.createRecyclableWriter(fileNumber, writableFile);
+    }
+
     public static int getChunkChecksum(int chunkTypeId, Slice slice)
     {
         return getChunkChecksum(chunkTypeId, slice.getRawArray(), slice.getRawOffset(), slice.length());
@@ -49,9 +59,27 @@ public final class Logs
     public static int getChunkChecksum(int chunkTypeId, byte[] buffer, int offset, int length)
     {
         // Compute the crc of the record type and the payload.
-        PureJavaCrc32C crc32C = new PureJavaCrc32C();
+        Checksum crc32C = Crc32C.newChecksum();
+        crc32C.update(chunkTypeId);
+        crc32C.update(buffer, offset, length);
+        return Crc32C.getMaskedValue(crc32C);
+    }
+
+    public static int getRecyclableChunkChecksum(int chunkTypeId, int logNumber, Slice slice)
+    {
+        return getRecyclableChunkChecksum(chunkTypeId, logNumber, slice.getRawArray(), slice.getRawOffset(), slice.length());
+    }
+
+    public static int getRecyclableChunkChecksum(int chunkTypeId, int logNumber, byte[] buffer, int offset, int length)
+    {
+        // Compute the crc of the record type, the log number and the payload.
+        Checksum crc32C = Crc32C.newChecksum();
         crc32C.update(chunkTypeId);
+        crc32C.update(logNumber);
+        crc32C.update(logNumber >>> 8);
+        crc32C.update(logNumber >>> 16);
+        crc32C.update(logNumber >>> 24);
         crc32C.update(buffer, offset, length);
-        return crc32C.getMaskedValue();
+        return Crc32C.getMaskedValue(crc32C);
     }
 }
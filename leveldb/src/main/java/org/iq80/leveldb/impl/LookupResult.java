@@ -17,27 +17,87 @@
  */
 package org.iq80.leveldb.impl;
 
+import com.google.common.collect.ImmutableList;
+import org.iq80.leveldb.MergeOperator;
 import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.Slices;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 public class LookupResult
 {
-    public static LookupResult ok(LookupKey key, Slice value)
+    public static LookupResult ok(LookupKey key, Slice value, long sequence)
     {
-        return new LookupResult(key, value, false);
+        return new LookupResult(key, value, sequence, false, ImmutableList.of());
+    }
+
+    /**
+     * Result whose value is the {@link BlobIndex} of the value in a blob file (see {@link #withResolvedValue(Slice)}).
+     */
+    public static LookupResult blobIndex(LookupKey key, Slice blobIndex, long sequence)
+    {
+        return new LookupResult(key, blobIndex, sequence, false, ImmutableList.of(), true);
     }
 
     public static LookupResult deleted(LookupKey key)
     {
-        return new LookupResult(key, null, true);
+        return new LookupResult(key, null, 0, true, ImmutableList.of());
+    }
+
+    /**
+     * Partial result holding a merge operand, to be completed with the older
+     * entries of the key (see {@link #withOlder(LookupResult)}).
+     */
+    public static LookupResult merge(LookupKey key, Slice operand, long sequence)
+    {
+        return new LookupResult(key, null, 0, false, ImmutableList.of(new Operand(operand.slice(), sequence)));
+    }
+
+    /**
+     * Result for a table or memtable entry of the looked up key.
+     */
+    public static LookupResult of(LookupKey key, InternalKey entryKey, Slice value)
+    {
+        switch (entryKey.getValueType()) {
+            case VALUE:
+                return ok(key, value, entryKey.getSequenceNumber());
+            case DELETION:
+                return deleted(key);
+            case MERGE:
+                return merge(key, value, entryKey.getSequenceNumber());
+            case BLOB_INDEX:
+                return blobIndex(key, value, entryKey.getSequenceNumber());
+            default:
+                throw new IllegalStateException("Unexpected value type " + entryKey.getValueType());
+        }
+    }
+
+    /**
+     * Complete {@code newer}, if partial, with the {@code older} entries of the key.
+     */
+    public static LookupResult concat(LookupResult newer, LookupResult older)
+    {
+        if (newer == null) {
+            return older;
+        }
+        return newer.withOlder(older);
     }
 
     private final LookupKey key;
     private final Slice value;
+    private final long sequence;
     private final boolean deleted;
+    // merge operands applied to value, newest first
+    private final ImmutableList<Operand> operands;
+    private final boolean blobIndex;
+
+    private LookupResult(LookupKey key, Slice value, long sequence, boolean deleted, ImmutableList<Operand> operands)
+    {
+        this(key, value, sequence, deleted, operands, false);
+    }
 
-    private LookupResult(LookupKey key, Slice value, boolean deleted)
+    private LookupResult(LookupKey key, Slice value, long sequence, boolean deleted, ImmutableList<Operand> operands, boolean blobIndex)
     {
         requireNonNull(key, "key is null");
         this.key = key;
@@ -47,7 +107,10 @@ public class LookupResult
         else {
             this.value = null;
         }
+        this.sequence = sequence;
         this.deleted = deleted;
+        this.operands = operands;
+        this.blobIndex = blobIndex;
     }
 
     public LookupKey getKey()
@@ -55,6 +118,9 @@ public class LookupResult
         return key;
     }
 
+    /**
+     * Value of the key, the value operands are applied to if the result has merge operands.
+     */
     public Slice getValue()
     {
         if (value == null) {
@@ -63,8 +129,110 @@ public class LookupResult
         return value;
     }
 
+    /**
+     * Sequence of the entry holding the value, {@code 0} if deleted.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
     public boolean isDeleted()
     {
         return deleted;
     }
+
+    /**
+     * Whether the value is the {@link BlobIndex} of the actual value.
+     */
+    public boolean isBlobIndex()
+    {
+        return blobIndex;
+    }
+
+    /**
+     * Same result with the value read from the blob file its {@link BlobIndex} refers to.
+     */
+    public LookupResult withResolvedValue(Slice value)
+    {
+        checkState(blobIndex, "Value is not a blob index");
+        return new LookupResult(key, value, sequence, deleted, operands);
+    }
+
+    public boolean hasOperands()
+    {
+        return !operands.isEmpty();
+    }
+
+    /**
+     * Whether the result only holds merge operands, older entries of the key
+     * being needed to find the value they apply to.
+     */
+    public boolean isPartial()
+    {
+        return value == null && !deleted;
+    }
+
+    /**
+     * Apply the operands of this partial result to the {@code older} entries of the key.
+     * The result stays partial if {@code older} is {@code null} or partial.
+     */
+    public LookupResult withOlder(LookupResult older)
+    {
+        if (older == null || !isPartial()) {
+            return this;
+        }
+        ImmutableList<Operand> combined = ImmutableList.<Operand>builder()
+                .addAll(operands)
+                .addAll(older.operands)
+                .build();
+        return new LookupResult(key, older.value, older.sequence, older.deleted, combined, older.blobIndex);
+    }
+
+    /**
+     * Hide the entries written before a range tombstone with sequence {@code tombstoneSequence}.
+     */
+    public LookupResult hideOlderThan(long tombstoneSequence)
+    {
+        if (tombstoneSequence == 0 || (value != null && sequence > tombstoneSequence)) {
+            return this;
+        }
+        // the tombstone hides the value (if any) and the operands it covers
+        ImmutableList.Builder<Operand> visible = ImmutableList.builder();
+        for (Operand operand : operands) {
+            if (operand.sequence > tombstoneSequence) {
+                visible.add(operand);
+            }
+        }
+        return new LookupResult(key, null, 0, true, visible.build());
+    }
+
+    /**
+     * Value of the key once the merge operands are applied, {@code null} if the key is deleted.
+     */
+    public Slice getMergedValue(MergeOperator mergeOperator)
+    {
+        if (operands.isEmpty()) {
+            return value;
+        }
+        checkState(mergeOperator != null, "Merge operands found without a merge operator");
+        byte[] userKey = key.getUserKey().getBytes();
+        byte[] merged = value == null ? null : value.getBytes();
+        for (Operand operand : operands.reverse()) {
+            merged = mergeOperator.merge(userKey, merged, operand.value.getBytes());
+        }
+        return Slices.wrappedBuffer(merged);
+    }
+
+    private static final class Operand
+    {
+        private final Slice value;
+        private final long sequence;
+
+        private Operand(Slice value, long sequence)
+        {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
 }
@@ -18,10 +18,14 @@
 package org.iq80.leveldb.impl;
 
 import org.iq80.leveldb.iterator.MemTableIterator;
+import org.iq80.leveldb.table.UserComparator;
 import org.iq80.leveldb.util.Slice;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Objects.requireNonNull;
@@ -31,15 +35,23 @@ public class MemTable
 {
     private final ConcurrentSkipListMap<InternalKey, Slice> table;
     private final AtomicLong approximateMemoryUsage = new AtomicLong();
+    private final InternalKeyComparator internalKeyComparator;
+    // range tombstones by begin key, the end key being the value
+    private final ConcurrentSkipListMap<InternalKey, Slice> rangeTombstones;
+    private final AtomicInteger rangeTombstoneCount = new AtomicInteger();
+    // fragmented tombstones, stale once fewer than rangeTombstoneCount
+    private volatile RangeTombstones fragmentedRangeTombstones = RangeTombstones.EMPTY;
 
     public MemTable(InternalKeyComparator internalKeyComparator)
     {
+        this.internalKeyComparator = internalKeyComparator;
         table = new ConcurrentSkipListMap<>(internalKeyComparator);
+        rangeTombstones = new ConcurrentSkipListMap<>(internalKeyComparator);
     }
 
     public boolean isEmpty()
     {
-        return table.isEmpty();
+        return table.isEmpty() && rangeTombstones.isEmpty();
     }
 
     public long approximateMemoryUsage()
@@ -59,26 +71,120 @@ public class MemTable
         approximateMemoryUsage.addAndGet(key.length() + SIZE_OF_LONG + value.length());
     }
 
-    public LookupResult get(LookupKey key)
+    /**
+     * Delete all keys in {@code [begin, end)}, nothing is deleted if {@code begin >= end}.
+     */
+    public void addRangeTombstone(long sequenceNumber, Slice begin, Slice end)
     {
-        requireNonNull(key, "key is null");
+        requireNonNull(begin, "begin is null");
+        requireNonNull(end, "end is null");
+        if (internalKeyComparator.getUserComparator().compare(begin, end) >= 0) {
+            return;
+        }
+        rangeTombstones.put(new InternalKey(begin, sequenceNumber, ValueType.RANGE_DELETION), end);
+        rangeTombstoneCount.incrementAndGet();
 
-        InternalKey internalKey = key.getInternalKey();
-        Entry<InternalKey, Slice> entry = table.ceilingEntry(internalKey);
-        if (entry == null) {
-            return null;
+        approximateMemoryUsage.addAndGet(begin.length() + SIZE_OF_LONG + end.length());
+    }
+
+    /**
+     * Range tombstones added to this memtable, in begin key order.
+     */
+    public RangeTombstones getRangeTombstones()
+    {
+        RangeTombstones fragmented = fragmentedRangeTombstones;
+        if (fragmented.size() >= rangeTombstoneCount.get()) {
+            return fragmented;
+        }
+        // entries are never removed, a set with as many tombstones as counted is up to date
+        List<RangeTombstone> tombstones = new ArrayList<>();
+        for (Entry<InternalKey, Slice> entry : rangeTombstones.entrySet()) {
+            tombstones.add(new RangeTombstone(entry.getKey().getUserKey(), entry.getValue(), entry.getKey().getSequenceNumber()));
+        }
+        fragmented = new RangeTombstones(internalKeyComparator.getUserComparator(), tombstones);
+        fragmentedRangeTombstones = fragmented;
+        return fragmented;
+    }
+
+    /**
+     * @see RangeTombstones#maxCoveringSequence(Slice, long)
+     */
+    public long maxCoveringRangeTombstone(Slice userKey, long snapshot)
+    {
+        if (rangeTombstoneCount.get() == 0) {
+            return 0;
+        }
+        return getRangeTombstones().maxCoveringSequence(userKey, snapshot);
+    }
+
+    /**
+     * Smallest user key of the entries and range tombstones of this memtable, {@code null} if empty.
+     */
+    public Slice smallestUserKey()
+    {
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        Entry<InternalKey, Slice> first = table.firstEntry();
+        Entry<InternalKey, Slice> firstTombstone = rangeTombstones.firstEntry();
+        Slice smallest = first != null ? first.getKey().getUserKey() : null;
+        if (firstTombstone != null && (smallest == null || userComparator.compare(firstTombstone.getKey().getUserKey(), smallest) < 0)) {
+            smallest = firstTombstone.getKey().getUserKey();
         }
+        return smallest;
+    }
+
+    /**
+     * Largest user key of the entries and range tombstone end keys of this memtable, {@code null} if empty.
+     */
+    public Slice largestUserKey()
+    {
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        Entry<InternalKey, Slice> last = table.lastEntry();
+        Slice largest = last != null ? last.getKey().getUserKey() : null;
+        for (Slice end : rangeTombstones.values()) {
+            if (largest == null || userComparator.compare(end, largest) > 0) {
+                largest = end;
+            }
+        }
+        return largest;
+    }
 
-        InternalKey entryKey = entry.getKey();
-        if (entryKey.getUserKey().equals(key.getUserKey())) {
-            if (entryKey.getValueType() == ValueType.DELETION) {
-                return LookupResult.deleted(key);
+    /**
+     * Returns true if some entry or range tombstone of this memtable touches
+     * the user key range {@code [smallestUserKey, largestUserKey]}.
+     */
+    public boolean overlapsRange(Slice smallestUserKey, Slice largestUserKey)
+    {
+        UserComparator userComparator = internalKeyComparator.getUserComparator();
+        InternalKey start = new InternalKey(smallestUserKey, SequenceNumber.MAX_SEQUENCE_NUMBER, ValueType.VALUE);
+        InternalKey first = table.ceilingKey(start);
+        if (first != null && userComparator.compare(first.getUserKey(), largestUserKey) <= 0) {
+            return true;
+        }
+        for (Entry<InternalKey, Slice> entry : rangeTombstones.entrySet()) {
+            if (userComparator.compare(entry.getKey().getUserKey(), largestUserKey) <= 0 &&
+                    userComparator.compare(entry.getValue(), smallestUserKey) > 0) {
+                return true;
             }
-            else {
-                return LookupResult.ok(key, entry.getValue());
+        }
+        return false;
+    }
+
+    public LookupResult get(LookupKey key)
+    {
+        requireNonNull(key, "key is null");
+
+        InternalKey internalKey = key.getInternalKey();
+        LookupResult result = null;
+        // merge operands are completed with the older entries of the key
+        for (Entry<InternalKey, Slice> entry = table.ceilingEntry(internalKey);
+                entry != null && entry.getKey().getUserKey().equals(key.getUserKey());
+                entry = table.higherEntry(entry.getKey())) {
+            result = LookupResult.concat(result, LookupResult.of(key, entry.getKey(), entry.getValue()));
+            if (!result.isPartial()) {
+                break;
             }
         }
-        return null;
+        return result;
     }
 
     public MemTableIterator iterator()
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.util.Slice;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Deletion of every user key in {@code [begin, end)} written with {@code sequence}.
+ */
+public final class RangeTombstone
+{
+    private final Slice begin;
+    private final Slice end;
+    private final long sequence;
+
+    public RangeTombstone(Slice begin, Slice end, long sequence)
+    {
+        requireNonNull(begin, "begin is null");
+        requireNonNull(end, "end is null");
+        this.begin = begin;
+        this.end = end;
+        this.sequence = sequence;
+    }
+
+    public Slice getBegin()
+    {
+        return begin;
+    }
+
+    public Slice getEnd()
+    {
+        return end;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Key of the tombstone in a table, the end key being stored as value.
+     */
+    public InternalKey getInternalKey()
+    {
+        return new InternalKey(begin, sequence, ValueType.RANGE_DELETION);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("RangeTombstone");
+        sb.append("{begin=").append(begin.toString(UTF_8));
+        sb.append(", end=").append(end.toString(UTF_8));
+        sb.append(", sequence=").append(sequence);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.iq80.leveldb.util.Slice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable set of range tombstones fragmented at every begin and end key, so that
+ * the tombstones covering a user key are found with a binary search over fragments.
+ * Tombstones with an empty range are ignored.
+ */
+public final class RangeTombstones
+{
+    public static final RangeTombstones EMPTY = new RangeTombstones();
+
+    private final Comparator<Slice> userComparator;
+    private final List<RangeTombstone> tombstones;
+    // fragment i covers [boundaries[i], boundaries[i + 1])
+    private final Slice[] boundaries;
+    // ascending sequences of the tombstones covering each fragment
+    private final long[][] sequences;
+
+    private RangeTombstones()
+    {
+        this.userComparator = null;
+        this.tombstones = ImmutableList.of();
+        this.boundaries = new Slice[0];
+        this.sequences = new long[0][];
+    }
+
+    public RangeTombstones(Comparator<Slice> userComparator, Collection<RangeTombstone> tombstones)
+    {
+        requireNonNull(userComparator, "userComparator is null");
+        requireNonNull(tombstones, "tombstones is null");
+        this.userComparator = userComparator;
+        this.tombstones = ImmutableList.copyOf(tombstones);
+
+        List<Slice> keys = new ArrayList<>(tombstones.size() * 2);
+        for (RangeTombstone tombstone : tombstones) {
+            if (userComparator.compare(tombstone.getBegin(), tombstone.getEnd()) < 0) {
+                keys.add(tombstone.getBegin());
+                keys.add(tombstone.getEnd());
+            }
+        }
+        keys.sort(userComparator);
+        List<Slice> distinct = new ArrayList<>(keys.size());
+        for (Slice key : keys) {
+            if (distinct.isEmpty() || userComparator.compare(distinct.get(distinct.size() - 1), key) != 0) {
+                distinct.add(key);
+            }
+        }
+        this.boundaries = distinct.toArray(new Slice[0]);
+
+        int fragments = Math.max(boundaries.length - 1, 0);
+        int[] counts = new int[fragments];
+        for (RangeTombstone tombstone : tombstones) {
+            if (userComparator.compare(tombstone.getBegin(), tombstone.getEnd()) < 0) {
+                for (int i = boundaryIndex(tombstone.getBegin()); i < boundaryIndex(tombstone.getEnd()); i++) {
+                    counts[i]++;
+                }
+            }
+        }
+        this.sequences = new long[fragments][];
+        for (int i = 0; i < fragments; i++) {
+            sequences[i] = new long[counts[i]];
+            counts[i] = 0;
+        }
+        for (RangeTombstone tombstone : tombstones) {
+            if (userComparator.compare(tombstone.getBegin(), tombstone.getEnd()) < 0) {
+                for (int i = boundaryIndex(tombstone.getBegin()); i < boundaryIndex(tombstone.getEnd()); i++) {
+                    sequences[i][counts[i]++] = tombstone.getSequence();
+                }
+            }
+        }
+        for (long[] fragmentSequences : sequences) {
+            Arrays.sort(fragmentSequences);
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return tombstones.isEmpty();
+    }
+
+    /**
+     * Number of tombstones in this set, including the ones with an empty range.
+     */
+    public int size()
+    {
+        return tombstones.size();
+    }
+
+    public List<RangeTombstone> getTombstones()
+    {
+        return tombstones;
+    }
+
+    /**
+     * Largest sequence, not greater than {@code snapshot}, of the tombstones covering
+     * {@code userKey} or {@code 0} if none is visible. An entry of {@code userKey} is
+     * deleted if its sequence is smaller than the returned sequence.
+     */
+    public long maxCoveringSequence(Slice userKey, long snapshot)
+    {
+        // last boundary not greater than the key
+        int left = 0;
+        int right = boundaries.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (userComparator.compare(boundaries[mid], userKey) <= 0) {
+                left = mid + 1;
+            }
+            else {
+                right = mid;
+            }
+        }
+        int fragment = left - 1;
+        if (fragment < 0 || fragment >= sequences.length) {
+            return 0;
+        }
+        long[] fragmentSequences = sequences[fragment];
+        int index = Arrays.binarySearch(fragmentSequences, snapshot);
+        if (index >= 0) {
+            return fragmentSequences[index];
+        }
+        int firstGreater = -index - 1;
+        return firstGreater == 0 ? 0 : fragmentSequences[firstGreater - 1];
+    }
+
+    private int boundaryIndex(Slice key)
+    {
+        return Arrays.binarySearch(boundaries, key, userComparator);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RangeTombstones{tombstones=" + tombstones + '}';
+    }
+}
@@ -90,6 +90,19 @@ final class SnapshotList
         return list.next.number;
     }
 
+    /**
+     * Return newest sequence number of this list
+     *
+     * @return newest sequence number
+     * @throws IllegalStateException if mutex is not held by current thread or list is empty
+     */
+    public long getNewest()
+    {
+        checkState(mutex.isHeldByCurrentThread());
+        checkState(!isEmpty());
+        return list.prev.number;
+    }
+
     /**
      * Return sequence corresponding to given snapshot.
      *
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.CompressionType;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBComparator;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.env.Env;
+import org.iq80.leveldb.env.File;
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.fileenv.EnvImpl;
+import org.iq80.leveldb.table.BytewiseComparator;
+import org.iq80.leveldb.table.CustomUserComparator;
+import org.iq80.leveldb.table.TableBuilder;
+import org.iq80.leveldb.table.UserComparator;
+import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.Slices;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+import static org.iq80.leveldb.util.Compressions.available;
+
+/**
+ * Writes a table file that can be added to a database with {@link DB#ingestExternalFiles(java.util.List)}.
+ * Keys must be added in strictly increasing order of {@link Options#comparator()}, they are stored
+ * with sequence number {@code 0}, the database assigning them a sequence when the file is ingested.
+ * <p>
+ * The options must match the ones of the database the file is ingested into, at least the comparator
+ * and the filter policy.
+ */
+public class SstFileWriter implements Closeable
+{
+    private final File file;
+    private final WritableFile writableFile;
+    private final UserComparator userComparator;
+    private final TableBuilder tableBuilder;
+    private Slice lastKey;
+    private boolean closed;
+
+    public SstFileWriter(Options options, java.io.File file)
+            throws IOException
+    {
+        this(options, file.getAbsolutePath(), EnvImpl.createEnv());
+    }
+
+    public SstFileWriter(Options options, String filename, Env env)
+            throws IOException
+    {
+        requireNonNull(options, "options is null");
+        requireNonNull(filename, "filename is null");
+        requireNonNull(env, "env is null");
+        this.file = env.toFile(filename);
+
+        Options tableOptions = Options.fromOptions(options);
+        if (tableOptions.filterPolicy() != null) {
+            tableOptions.filterPolicy(InternalFilterPolicy.convert(tableOptions.filterPolicy()));
+        }
+        DBComparator comparator = options.comparator();
+        userComparator = comparator != null ? new CustomUserComparator(comparator) : new BytewiseComparator();
+        CompressionType compressionType = available(options.compressionType()) ? options.compressionType() : CompressionType.NONE;
+
+        writableFile = env.newWritableFile(file);
+        tableBuilder = new TableBuilder(tableOptions, writableFile, new InternalUserComparator(new InternalKeyComparator(userComparator)), compressionType);
+    }
+
+    public SstFileWriter put(byte[] key, byte[] value)
+            throws DBException
+    {
+        add(Slices.wrappedBuffer(key), ValueType.VALUE, Slices.wrappedBuffer(value));
+        return this;
+    }
+
+    public SstFileWriter delete(byte[] key)
+            throws DBException
+    {
+        add(Slices.wrappedBuffer(key), ValueType.DELETION, Slices.EMPTY_SLICE);
+        return this;
+    }
+
+    private void add(Slice key, ValueType valueType, Slice value)
+    {
+        checkState(!closed, "Writer is closed");
+        checkArgument(lastKey == null || userComparator.compare(key, lastKey) > 0, "Keys must be added in strictly increasing order");
+        try {
+            tableBuilder.add(new InternalKey(key, 0, valueType).encode(), value);
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+        lastKey = key;
+    }
+
+    /**
+     * Number of entries added so far.
+     */
+    public long getEntryCount()
+    {
+        return tableBuilder.getEntryCount();
+    }
+
+    /**
+     * Finish and sync the file, the writer can not be used afterwards.
+     *
+     * @throws IllegalStateException if no entry was added
+     */
+    public void finish()
+            throws DBException
+    {
+        checkState(!closed, "Writer is closed");
+        checkState(lastKey != null, "Can not create a file without entries");
+        closed = true;
+        try {
+            try {
+                tableBuilder.finish();
+                writableFile.force();
+            }
+            finally {
+                writableFile.close();
+            }
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+    }
+
+    /**
+     * Abandon and delete the file if it was not finished.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (!closed) {
+            closed = true;
+            tableBuilder.abandon();
+            writableFile.close();
+            file.delete();
+        }
+    }
+}
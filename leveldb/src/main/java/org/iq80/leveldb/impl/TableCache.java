@@ -25,7 +25,11 @@ import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.ReadOptions;
 import org.iq80.leveldb.env.Env;
+import org.iq80.leveldb.impl.BlockCacheWarmList.CachedBlock;
 import org.iq80.leveldb.iterator.InternalTableIterator;
+import org.iq80.leveldb.table.Block;
+import org.iq80.leveldb.table.BlockHandle;
+import org.iq80.leveldb.table.BlockIterator;
 import org.iq80.leveldb.table.BlockHandleSliceWeigher;
 import org.iq80.leveldb.table.CacheKey;
 import org.iq80.leveldb.table.FilterPolicy;
@@ -34,28 +38,62 @@ import org.iq80.leveldb.table.Table;
 import org.iq80.leveldb.table.UserComparator;
 import org.iq80.leveldb.util.Closeables;
 import org.iq80.leveldb.util.ILRUCache;
+import org.iq80.leveldb.util.IRecencyTrackingCache;
 import org.iq80.leveldb.util.LRUCache;
 import org.iq80.leveldb.env.RandomInputFile;
 import org.iq80.leveldb.util.Slice;
 
 import org.iq80.leveldb.env.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 public class TableCache
 {
     private final LoadingCache<Long, TableAndFile> cache;
     private final ILRUCache<CacheKey, Slice> blockCache;
+    // same cache as blockCache when the warm list is enabled, null otherwise
+    private final IRecencyTrackingCache<CacheKey, Slice> recencyTrackingBlockCache;
 
     public TableCache(final File databaseDir,
                       int tableCacheSize,
-                      final UserComparator userComparator,
+                      final InternalKeyComparator internalKeyComparator,
                       final Options options, Env env)
+    {
+        this(databaseDir, tableCacheSize, internalKeyComparator, options, env, null);
+    }
+
+    /**
+     * @param prefetchExecutor executor prefetching blocks for iterators, see {@link Table#Table(RandomInputFile, Comparator, boolean, ILRUCache, FilterPolicy, Executor)}
+     */
+    public TableCache(final File databaseDir,
+                      int tableCacheSize,
+                      final InternalKeyComparator internalKeyComparator,
+                      final Options options, Env env, Executor prefetchExecutor)
     {
         requireNonNull(databaseDir, "databaseName is null");
-        blockCache = options.cacheSize() == 0 ? null : LRUCache.createCache((int) options.cacheSize(), new BlockHandleSliceWeigher());
+        final UserComparator userComparator = new InternalUserComparator(internalKeyComparator);
+        if (options.cacheSize() == 0) {
+            blockCache = null;
+            recencyTrackingBlockCache = null;
+        }
+        else if (options.blockCacheWarmList()) {
+            // recency of the blocks is only needed to save the warm list, it costs a shared counter update per hit
+            recencyTrackingBlockCache = LRUCache.createRecencyTrackingCache((int) options.cacheSize(), new BlockHandleSliceWeigher());
+            blockCache = recencyTrackingBlockCache;
+        }
+        else {
+            blockCache = LRUCache.createCache((int) options.cacheSize(), new BlockHandleSliceWeigher());
+            recencyTrackingBlockCache = null;
+        }
         cache = CacheBuilder.newBuilder()
                 .maximumSize(tableCacheSize)
                 .removalListener((RemovalListener<Long, TableAndFile>) notification -> {
@@ -78,7 +116,7 @@ public class TableCache
                     public TableAndFile load(Long fileNumber)
                             throws IOException
                     {
-                        return new TableAndFile(databaseDir, fileNumber, userComparator, options, blockCache, env);
+                        return new TableAndFile(databaseDir, fileNumber, userComparator, internalKeyComparator.getUserComparator(), options, blockCache, env, prefetchExecutor);
                     }
                 });
     }
@@ -88,10 +126,75 @@ public class TableCache
         return newIterator(file.getNumber(), options);
     }
 
+    /**
+     * Iterator whose keys are decoded in a reused buffer and only valid until it is moved,
+     * for internal scans that do not retain keys (see {@link Table#iterator(ReadOptions, boolean)}).
+     */
+    public InternalTableIterator newReusedKeyIterator(FileMetaData file, ReadOptions options) throws IOException
+    {
+        return newIterator(file.getNumber(), options, true);
+    }
+
     public InternalTableIterator newIterator(long number, ReadOptions options) throws IOException
+    {
+        return newIterator(number, options, false);
+    }
+
+    private InternalTableIterator newIterator(long number, ReadOptions options, boolean reuseKeyBuffer) throws IOException
     {
         try (Table table = getTable(number)) { //same as release
-            return new InternalTableIterator(table.iterator(options)); //make its own retain
+            return new InternalTableIterator(table.iterator(options, reuseKeyBuffer)); //make its own retain
+        }
+    }
+
+    /**
+     * Open the table ahead of its first read.
+     *
+     * @param preloadPartitions also load the index and filter partitions of the table, see {@link Table#preloadPartitions()}
+     */
+    public void warm(long number, boolean preloadPartitions)
+            throws IOException
+    {
+        try (Table table = getTable(number)) {
+            if (preloadPartitions) {
+                table.preloadPartitions();
+            }
+        }
+    }
+
+    /**
+     * Blocks of the open tables held by the block cache, most recently used first.
+     * Requires {@link Options#blockCacheWarmList()}, the block cache only tracks recency for the warm list.
+     */
+    public List<CachedBlock> getCachedBlocks()
+    {
+        List<CachedBlock> blocks = new ArrayList<>();
+        if (recencyTrackingBlockCache == null) {
+            return blocks;
+        }
+        // blocks of closed tables are no longer reachable, a reopened table caches its blocks again
+        Map<Long, Long> fileNumbers = new HashMap<>();
+        for (Map.Entry<Long, TableAndFile> entry : cache.asMap().entrySet()) {
+            fileNumbers.put(entry.getValue().getTable().getCacheId(), entry.getKey());
+        }
+        for (CacheKey key : recencyTrackingBlockCache.keysByRecency()) {
+            Long fileNumber = fileNumbers.get(key.getTableId());
+            if (fileNumber != null) {
+                blocks.add(new CachedBlock(fileNumber, key.getBlockHandle()));
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Load a block of the table in the block cache, see {@link Table#loadBlock(BlockHandle)}.
+     */
+    public void loadBlock(long number, BlockHandle blockHandle)
+            throws IOException
+    {
+        checkState(blockCache != null, "block cache is disabled");
+        try (Table table = getTable(number)) {
+            table.loadBlock(blockHandle);
         }
     }
 
@@ -105,6 +208,36 @@ public class TableCache
         }
     }
 
+    /**
+     * Range tombstones of the table, decoded once while it stays in cache.
+     */
+    public RangeTombstones getRangeTombstones(FileMetaData file)
+    {
+        if (!file.hasRangeTombstones()) {
+            return RangeTombstones.EMPTY;
+        }
+        try {
+            TableAndFile tableAndFile;
+            Table table;
+            do {
+                tableAndFile = cache.get(file.getNumber());
+                table = tableAndFile.getTable();
+            } while (!table.retain());
+            try {
+                return tableAndFile.getRangeTombstones();
+            }
+            finally {
+                table.release();
+            }
+        }
+        catch (ExecutionException e) {
+            throw new DBException("Could not open table " + file.getNumber(), e.getCause() != null ? e.getCause() : e);
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+    }
+
     public long getApproximateOffsetOf(FileMetaData file, Slice key)
     {
         try (Table table = getTable(file.getNumber())) {
@@ -157,16 +290,29 @@ public class TableCache
     private static final class TableAndFile
     {
         private final Table table;
+        private final Comparator<Slice> userKeyComparator;
+        private volatile RangeTombstones rangeTombstones;
 
-        private TableAndFile(File databaseDir, long fileNumber, UserComparator userComparator, Options options, ILRUCache<CacheKey, Slice> blockCache, Env env)
+        private TableAndFile(File databaseDir, long fileNumber, UserComparator userComparator, Comparator<Slice> userKeyComparator, Options options,
+                ILRUCache<CacheKey, Slice> blockCache, Env env, Executor prefetchExecutor)
                 throws IOException
         {
+            this.userKeyComparator = userKeyComparator;
             final File tableFile = tableFileName(databaseDir, fileNumber);
-            RandomInputFile source = env.newRandomAccessFile(tableFile);
+            RandomInputFile source;
+            if (options.useDirectIO()) {
+                source = env.newDirectRandomAccessFile(tableFile);
+            }
+            else if (options.zeroCopyMmapReads()) {
+                source = env.newZeroCopyRandomAccessFile(tableFile);
+            }
+            else {
+                source = env.newRandomAccessFile(tableFile);
+            }
             table = Closeables.wrapResource(() -> {
                 final FilterPolicy filterPolicy = (FilterPolicy) options.filterPolicy();
                 return new Table(source, userComparator,
-                        options.paranoidChecks(), blockCache, filterPolicy);
+                        options.paranoidChecks(), blockCache, filterPolicy, prefetchExecutor);
             }, source);
         }
 
@@ -189,6 +335,29 @@ public class TableCache
         {
             return table;
         }
+
+        private RangeTombstones getRangeTombstones()
+        {
+            RangeTombstones tombstones = rangeTombstones;
+            if (tombstones == null) {
+                Block block = table.getRangeDeletions();
+                if (block == null) {
+                    tombstones = RangeTombstones.EMPTY;
+                }
+                else {
+                    List<RangeTombstone> list = new ArrayList<>();
+                    try (BlockIterator iterator = block.iterator()) {
+                        for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                            InternalKey key = new InternalKey(iterator.key());
+                            list.add(new RangeTombstone(key.getUserKey(), iterator.value(), key.getSequenceNumber()));
+                        }
+                    }
+                    tombstones = new RangeTombstones(userKeyComparator, list);
+                }
+                rangeTombstones = tombstones;
+            }
+            return tombstones;
+        }
     }
 
     public long getApproximateMemoryUsage()
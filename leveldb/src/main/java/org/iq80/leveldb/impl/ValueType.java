@@ -20,7 +20,23 @@ package org.iq80.leveldb.impl;
 public enum ValueType
 {
     DELETION(0x00),
-    VALUE(0x01);
+    VALUE(0x01),
+    /**
+     * Merge operand, combined with the older entries of the same user key by the
+     * {@link org.iq80.leveldb.MergeOperator} of the database.
+     */
+    MERGE(0x02),
+    /**
+     * Value stored in a blob file, the entry holding its {@link BlobIndex}.
+     * Only written to tables, memtables always hold the value itself.
+     */
+    BLOB_INDEX(0x03),
+    /**
+     * Range tombstone, deleting every key from the user key (inclusive) to the
+     * end key stored as value (exclusive). Never part of the point entries of a
+     * memtable or table, they are kept aside (see {@link RangeTombstones}).
+     */
+    RANGE_DELETION(0x0F);
 
     public static ValueType getValueTypeByPersistentId(int persistentId)
     {
@@ -29,6 +45,12 @@ public enum ValueType
                 return DELETION;
             case 1:
                 return VALUE;
+            case 2:
+                return MERGE;
+            case 3:
+                return BLOB_INDEX;
+            case 0x0F:
+                return RANGE_DELETION;
             default:
                 throw new IllegalArgumentException("Unknown persistentId " + persistentId);
         }
@@ -30,6 +30,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -45,12 +47,17 @@ public class Version
     private final AtomicInteger retained = new AtomicInteger(1);
     private final VersionSet versionSet;
     private final List<Level> levels;
+    private final Map<Long, BlobFileMetaData> blobFiles = new TreeMap<>();
+    // fragmented range tombstones of all levels, computed on first use
+    private volatile RangeTombstones rangeTombstones;
 
     // move these mutable fields somewhere else
     private int compactionLevel;
     private double compactionScore;
     private FileMetaData fileToCompact;
     private int fileToCompactLevel;
+    private FileMetaData blobFileToCompact;
+    private int blobFileToCompactLevel;
 
     public Version(VersionSet versionSet)
     {
@@ -137,18 +144,65 @@ public class Version
     {
         // We can search level-by-level since entries never hop across
         // levels.  Therefore we are guaranteed that if we find data
-        // in a smaller level, later levels are irrelevant.
+        // in a smaller level, later levels are irrelevant, unless it is
+        // a merge operand to complete with the older entries of the key.
         LookupResult lookupResult = null;
         ReadStats lastStats = new ReadStats();
         for (Level level : levels) {
-            lookupResult = level.get(options, key, readStats, lastStats);
-            if (lookupResult != null) {
+            lookupResult = LookupResult.concat(lookupResult, level.get(options, key, readStats, lastStats));
+            if (lookupResult != null && !lookupResult.isPartial()) {
                 break;
             }
         }
         return lookupResult;
     }
 
+    /**
+     * Largest sequence of the range tombstones of all levels covering the key and visible
+     * at its sequence, {@code 0} if none.
+     */
+    public long maxCoveringRangeTombstone(LookupKey key)
+    {
+        long sequence = 0;
+        for (Level level : levels) {
+            sequence = Math.max(sequence, level.maxCoveringRangeTombstone(key));
+        }
+        return sequence;
+    }
+
+    public boolean hasRangeTombstones()
+    {
+        for (Level level : levels) {
+            if (level.hasRangeTombstones()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Range tombstones of all levels, fragmented once for this version. The tables
+     * holding tombstones may have to be opened by the first call.
+     */
+    public RangeTombstones getRangeTombstones()
+    {
+        RangeTombstones tombstones = rangeTombstones;
+        if (tombstones == null) {
+            if (!hasRangeTombstones()) {
+                tombstones = RangeTombstones.EMPTY;
+            }
+            else {
+                List<RangeTombstone> list = new ArrayList<>();
+                for (Level level : levels) {
+                    list.addAll(level.getRangeTombstones());
+                }
+                tombstones = new RangeTombstones(getInternalKeyComparator().getUserComparator(), list);
+            }
+            rangeTombstones = tombstones;
+        }
+        return tombstones;
+    }
+
     int pickLevelForMemTableOutput(Slice smallestUserKey, Slice largestUserKey)
     {
         int level = 0;
@@ -174,6 +228,21 @@ public class Version
         return level;
     }
 
+    /**
+     * Deepest level a file of externally built entries, newer than every entry of this
+     * version, can be added to: neither that level nor any level above it overlaps the file.
+     */
+    int pickLevelForIngestedFile(Slice smallestUserKey, Slice largestUserKey)
+    {
+        int level = 0;
+        if (!overlapInLevel(0, smallestUserKey, largestUserKey)) {
+            while (level + 1 < DbConstants.NUM_LEVELS && !overlapInLevel(level + 1, smallestUserKey, largestUserKey)) {
+                level++;
+            }
+        }
+        return level;
+    }
+
     public boolean overlapInLevel(int level, Slice smallestUserKey, Slice largestUserKey)
     {
         checkPositionIndex(level, levels.size(), "Invalid level");
@@ -210,6 +279,19 @@ public class Version
         levels.get(level).addFile(fileMetaData);
     }
 
+    /**
+     * Blob files by number, with their garbage.
+     */
+    public Map<Long, BlobFileMetaData> getBlobFiles()
+    {
+        return blobFiles;
+    }
+
+    public void addBlobFile(BlobFileMetaData blobFile)
+    {
+        blobFiles.put(blobFile.getNumber(), blobFile);
+    }
+
     public boolean updateStats(ReadStats readStats)
     {
         final int seekFileLevel = readStats.getSeekFileLevel();
@@ -238,6 +320,25 @@ public class Version
         return fileToCompactLevel;
     }
 
+    /**
+     * Table to rewrite to move its values out of a blob file holding too much garbage, {@code null} if none.
+     */
+    public FileMetaData getBlobFileToCompact()
+    {
+        return blobFileToCompact;
+    }
+
+    public int getBlobFileToCompactLevel()
+    {
+        return blobFileToCompactLevel;
+    }
+
+    public void setBlobFileToCompact(FileMetaData blobFileToCompact, int level)
+    {
+        this.blobFileToCompact = blobFileToCompact;
+        this.blobFileToCompactLevel = level;
+    }
+
     public long getApproximateOffsetOf(InternalKey key)
     {
         long result = 0;
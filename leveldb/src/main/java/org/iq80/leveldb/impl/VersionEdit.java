@@ -39,6 +39,8 @@ public class VersionEdit
     private final Map<Integer, InternalKey> compactPointers = new TreeMap<>();
     private final Multimap<Integer, FileMetaData> newFiles = ArrayListMultimap.create();
     private final Multimap<Integer, Long> deletedFiles = ArrayListMultimap.create();
+    private final Map<Long, BlobFileMetaData> newBlobFiles = new TreeMap<>();
+    private final Map<Long, BlobFileMetaData> blobGarbage = new TreeMap<>();
 
     public VersionEdit()
     {
@@ -157,6 +159,31 @@ public class VersionEdit
         deletedFiles.put(level, fileNumber);
     }
 
+    public Map<Long, BlobFileMetaData> getNewBlobFiles()
+    {
+        return ImmutableMap.copyOf(newBlobFiles);
+    }
+
+    public void addBlobFile(BlobFileMetaData blobFile)
+    {
+        newBlobFiles.put(blobFile.getNumber(), blobFile);
+    }
+
+    /**
+     * Garbage added to existing blob files, as metadata with only the garbage counts set.
+     */
+    public Map<Long, BlobFileMetaData> getBlobGarbage()
+    {
+        return ImmutableMap.copyOf(blobGarbage);
+    }
+
+    // Record that "count" values of "bytes" total length of the blob file are not referred to anymore.
+    public void addBlobGarbage(long fileNumber, long count, long bytes)
+    {
+        blobGarbage.merge(fileNumber, new BlobFileMetaData(fileNumber, 0, 0, count, bytes),
+                (previous, garbage) -> previous.withGarbage(count, bytes));
+    }
+
     public Slice encode()
     {
         DynamicSliceOutput dynamicSliceOutput = new DynamicSliceOutput(4096);
@@ -178,6 +205,8 @@ public class VersionEdit
         sb.append(", compactPointers=").append(compactPointers);
         sb.append(", newFiles=").append(newFiles);
         sb.append(", deletedFiles=").append(deletedFiles);
+        sb.append(", newBlobFiles=").append(newBlobFiles.values());
+        sb.append(", blobGarbage=").append(blobGarbage.values());
         sb.append('}');
         return sb.toString();
     }
@@ -193,49 +193,165 @@ public enum VersionEditTag
                 @Override
                 public void readValue(SliceInput sliceInput, VersionEdit versionEdit)
                 {
-                    // level
-                    int level = VariableLengthQuantity.readVariableLengthInt(sliceInput);
-
-                    // file number
-                    long fileNumber = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    readNewFile(sliceInput, versionEdit, false);
+                }
 
-                    // file size
-                    long fileSize = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                @Override
+                public void writeValue(SliceOutput sliceOutput, VersionEdit versionEdit)
+                {
+                    writeNewFiles(getPersistentId(), sliceOutput, versionEdit, false);
+                }
+            },
 
-                    // smallest key
-                    InternalKey smallestKey = new InternalKey(readLengthPrefixedBytes(sliceInput));
+    // same as NEW_FILE for tables holding range tombstones
+    NEW_FILE_WITH_RANGE_TOMBSTONES(10)
+            {
+                @Override
+                public void readValue(SliceInput sliceInput, VersionEdit versionEdit)
+                {
+                    readNewFile(sliceInput, versionEdit, true);
+                }
 
-                    // largest key
-                    InternalKey largestKey = new InternalKey(readLengthPrefixedBytes(sliceInput));
+                @Override
+                public void writeValue(SliceOutput sliceOutput, VersionEdit versionEdit)
+                {
+                    writeNewFiles(getPersistentId(), sliceOutput, versionEdit, true);
+                }
+            },
 
-                    versionEdit.addFile(level, fileNumber, fileSize, smallestKey, largestKey);
+    NEW_BLOB_FILE(11)
+            {
+                @Override
+                public void readValue(SliceInput sliceInput, VersionEdit versionEdit)
+                {
+                    long fileNumber = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long valueCount = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long valueBytes = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long garbageCount = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long garbageBytes = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    versionEdit.addBlobFile(new BlobFileMetaData(fileNumber, valueCount, valueBytes, garbageCount, garbageBytes));
                 }
 
                 @Override
                 public void writeValue(SliceOutput sliceOutput, VersionEdit versionEdit)
                 {
-                    for (Entry<Integer, FileMetaData> entry : versionEdit.getNewFiles().entries()) {
+                    for (BlobFileMetaData blobFile : versionEdit.getNewBlobFiles().values()) {
                         VariableLengthQuantity.writeVariableLengthInt(getPersistentId(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(blobFile.getNumber(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(blobFile.getValueCount(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(blobFile.getValueBytes(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(blobFile.getGarbageCount(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(blobFile.getGarbageBytes(), sliceOutput);
+                    }
+                }
+            },
 
-                        // level
-                        VariableLengthQuantity.writeVariableLengthInt(entry.getKey(), sliceOutput);
-
-                        // file number
-                        FileMetaData fileMetaData = entry.getValue();
-                        VariableLengthQuantity.writeVariableLengthLong(fileMetaData.getNumber(), sliceOutput);
+    BLOB_FILE_GARBAGE(12)
+            {
+                @Override
+                public void readValue(SliceInput sliceInput, VersionEdit versionEdit)
+                {
+                    long fileNumber = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long garbageCount = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    long garbageBytes = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    versionEdit.addBlobGarbage(fileNumber, garbageCount, garbageBytes);
+                }
 
-                        // file size
-                        VariableLengthQuantity.writeVariableLengthLong(fileMetaData.getFileSize(), sliceOutput);
+                @Override
+                public void writeValue(SliceOutput sliceOutput, VersionEdit versionEdit)
+                {
+                    for (BlobFileMetaData garbage : versionEdit.getBlobGarbage().values()) {
+                        VariableLengthQuantity.writeVariableLengthInt(getPersistentId(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(garbage.getNumber(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(garbage.getGarbageCount(), sliceOutput);
+                        VariableLengthQuantity.writeVariableLengthLong(garbage.getGarbageBytes(), sliceOutput);
+                    }
+                }
+            },
 
-                        // smallest key
-                        writeLengthPrefixedBytes(sliceOutput, fileMetaData.getSmallest().encode());
+    // same as NEW_FILE for tables holding blob indexes, followed by the range tombstones flag and the oldest blob file
+    NEW_FILE_WITH_BLOB_REFERENCES(13)
+            {
+                @Override
+                public void readValue(SliceInput sliceInput, VersionEdit versionEdit)
+                {
+                    int level = VariableLengthQuantity.readVariableLengthInt(sliceInput);
+                    FileMetaData file = readFileMetaData(sliceInput, false);
+                    boolean rangeTombstones = sliceInput.readByte() != 0;
+                    long oldestBlobFile = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+                    versionEdit.addFile(level, new FileMetaData(file.getNumber(), file.getFileSize(), file.getSmallest(), file.getLargest(), rangeTombstones, oldestBlobFile));
+                }
 
-                        // smallest key
-                        writeLengthPrefixedBytes(sliceOutput, fileMetaData.getLargest().encode());
+                @Override
+                public void writeValue(SliceOutput sliceOutput, VersionEdit versionEdit)
+                {
+                    for (Entry<Integer, FileMetaData> entry : versionEdit.getNewFiles().entries()) {
+                        FileMetaData fileMetaData = entry.getValue();
+                        if (fileMetaData.hasBlobReferences()) {
+                            writeFileMetaData(getPersistentId(), sliceOutput, entry.getKey(), fileMetaData);
+                            sliceOutput.writeByte(fileMetaData.hasRangeTombstones() ? 1 : 0);
+                            VariableLengthQuantity.writeVariableLengthLong(fileMetaData.getOldestBlobFile(), sliceOutput);
+                        }
                     }
                 }
             };
 
+    private static void readNewFile(SliceInput sliceInput, VersionEdit versionEdit, boolean rangeTombstones)
+    {
+        // level
+        int level = VariableLengthQuantity.readVariableLengthInt(sliceInput);
+
+        versionEdit.addFile(level, readFileMetaData(sliceInput, rangeTombstones));
+    }
+
+    private static FileMetaData readFileMetaData(SliceInput sliceInput, boolean rangeTombstones)
+    {
+        // file number
+        long fileNumber = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+
+        // file size
+        long fileSize = VariableLengthQuantity.readVariableLengthLong(sliceInput);
+
+        // smallest key
+        InternalKey smallestKey = new InternalKey(readLengthPrefixedBytes(sliceInput));
+
+        // largest key
+        InternalKey largestKey = new InternalKey(readLengthPrefixedBytes(sliceInput));
+
+        return new FileMetaData(fileNumber, fileSize, smallestKey, largestKey, rangeTombstones);
+    }
+
+    private static void writeNewFiles(int persistentId, SliceOutput sliceOutput, VersionEdit versionEdit, boolean rangeTombstones)
+    {
+        for (Entry<Integer, FileMetaData> entry : versionEdit.getNewFiles().entries()) {
+            FileMetaData fileMetaData = entry.getValue();
+            if (fileMetaData.hasRangeTombstones() != rangeTombstones || fileMetaData.hasBlobReferences()) {
+                continue;
+            }
+            writeFileMetaData(persistentId, sliceOutput, entry.getKey(), fileMetaData);
+        }
+    }
+
+    private static void writeFileMetaData(int persistentId, SliceOutput sliceOutput, int level, FileMetaData fileMetaData)
+    {
+        VariableLengthQuantity.writeVariableLengthInt(persistentId, sliceOutput);
+
+        // level
+        VariableLengthQuantity.writeVariableLengthInt(level, sliceOutput);
+
+        // file number
+        VariableLengthQuantity.writeVariableLengthLong(fileMetaData.getNumber(), sliceOutput);
+
+        // file size
+        VariableLengthQuantity.writeVariableLengthLong(fileMetaData.getFileSize(), sliceOutput);
+
+        // smallest key
+        writeLengthPrefixedBytes(sliceOutput, fileMetaData.getSmallest().encode());
+
+        // smallest key
+        writeLengthPrefixedBytes(sliceOutput, fileMetaData.getLargest().encode());
+    }
+
     public static VersionEditTag getValueTypeByPersistentId(int persistentId)
     {
         for (VersionEditTag compressionType : VersionEditTag.values()) {
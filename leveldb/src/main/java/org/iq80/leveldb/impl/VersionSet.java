@@ -33,6 +33,7 @@ import org.iq80.leveldb.env.SequentialFile;
 import org.iq80.leveldb.iterator.InternalIterator;
 import org.iq80.leveldb.iterator.MergingIterator;
 import org.iq80.leveldb.table.UserComparator;
+import org.iq80.leveldb.util.Closeables;
 import org.iq80.leveldb.util.SafeListBuilder;
 import org.iq80.leveldb.util.Slice;
 
@@ -77,6 +78,8 @@ public class VersionSet
     private final Env env;
 
     private LogWriter descriptorLog;
+    // approximate bytes of records in the descriptor log, see Options#maxManifestFileSize()
+    private long descriptorLogSize;
     private final Map<Integer, InternalKey> compactPointers = new TreeMap<>();
 
     public VersionSet(Options options, File databaseDir, TableCache tableCache, InternalKeyComparator internalKeyComparator, Env env)
@@ -106,7 +109,7 @@ public class VersionSet
 
             LogWriter log = Logs.createLogWriter(databaseDir.child(Filename.descriptorFileName(manifestFileNumber)), manifestFileNumber, env);
             try {
-                writeSnapshot(log);
+                writeSnapshot(log, current, compactPointers);
                 log.addRecord(edit.encode(), false);
             }
             finally {
@@ -192,11 +195,15 @@ public class VersionSet
         return prevLogNumber;
     }
 
+    /**
+     * Iterator over compaction inputs. Keys are decoded in reused buffers and are only valid until the iterator is moved.
+     */
     public MergingIterator makeInputIterator(Compaction c) throws IOException
     {
         ReadOptions rOptions = new ReadOptions();
         rOptions.verifyChecksums(this.options.paranoidChecks());
         rOptions.fillCache(false);
+        rOptions.readaheadSize(this.options.compactionReadaheadSize());
 
         // Level-0 files have to be merged together.  For other levels,
         // we will make a concatenating iterator per level.
@@ -208,14 +215,14 @@ public class VersionSet
                     if (c.getLevel() + which == 0) {
                         try (SafeListBuilder<InternalIterator> builder = SafeListBuilder.builder()) {
                             for (FileMetaData file : files) {
-                                builder.add(tableCache.newIterator(file, rOptions));
+                                builder.add(tableCache.newReusedKeyIterator(file, rOptions));
                             }
                             list.add(new MergingIterator(builder.build(), internalKeyComparator));
                         }
                     }
                     else {
                         // Create concatenating iterator for the files from this level
-                        list.add(Level.createLevelConcatIterator(tableCache, files, internalKeyComparator, rOptions));
+                        list.add(Level.createLevelConcatIterator(tableCache, files, internalKeyComparator, rOptions, true));
                     }
                 }
             }
@@ -265,7 +272,10 @@ public class VersionSet
         }
 
         edit.setNextFileNumber(nextFileNumber.get());
-        edit.setLastSequenceNumber(lastSequence);
+        // an edit may reserve sequence numbers that are published once it is applied
+        if (edit.getLastSequenceNumber() == null || edit.getLastSequenceNumber() < lastSequence) {
+            edit.setLastSequenceNumber(lastSequence);
+        }
 
         Version version = new Version(this);
         try (Builder builder = new Builder(this, current)) {
@@ -276,24 +286,44 @@ public class VersionSet
         finalizeVersion(version);
 
         boolean createdNewManifest = false;
-        final long mFileNumber = manifestFileNumber;
+        long mFileNumber = manifestFileNumber;
+        LogWriter log = descriptorLog;
+        long logSize = descriptorLogSize;
+        Version snapshotVersion = null;
+        Map<Integer, InternalKey> snapshotPointers = null;
         try {
             // Initialize new descriptor log file if necessary by creating
             // a temporary file that contains a snapshot of the current version.
-            if (descriptorLog == null) {
+            if (log == null) {
                 // No reason to unlock mutex here since we only hit this path in the
                 // first call to logAndApply (when opening the database).
                 edit.setNextFileNumber(nextFileNumber.get());
-                descriptorLog = Logs.createLogWriter(databaseDir.child(Filename.descriptorFileName(mFileNumber)), mFileNumber, env);
-                writeSnapshot(descriptorLog);
+                log = Logs.createLogWriter(databaseDir.child(Filename.descriptorFileName(mFileNumber)), mFileNumber, env);
+                logSize = writeSnapshot(log, current, compactPointers);
+                createdNewManifest = true;
+            }
+            else if (logSize >= options.maxManifestFileSize()) {
+                // Roll over to a new descriptor starting with a snapshot of the current version.
+                // Versions are immutable and edits are applied one at a time, the snapshot is
+                // encoded below without holding the mutex.
+                mFileNumber = nextFileNumber.getAndIncrement();
+                edit.setNextFileNumber(nextFileNumber.get());
+                snapshotVersion = current;
+                snapshotPointers = new TreeMap<>(compactPointers);
                 createdNewManifest = true;
             }
             // Unlock during expensive MANIFEST log write
             mutex.unlock();
             try {
+                if (snapshotVersion != null) {
+                    log = Logs.createLogWriter(databaseDir.child(Filename.descriptorFileName(mFileNumber)), mFileNumber, env);
+                    logSize = writeSnapshot(log, snapshotVersion, snapshotPointers);
+                }
+
                 // Write new record to MANIFEST log
                 Slice record = edit.encode();
-                descriptorLog.addRecord(record, true);
+                log.addRecord(record, true);
+                logSize += record.length();
 
                 // If we just created a new descriptor file, install it by writing a
                 // new CURRENT file that points to it.
@@ -307,23 +337,37 @@ public class VersionSet
         }
         catch (IOException e) {
             options.logger().log("MANIFEST write: %s", e);
-            // New manifest file was not installed, so clean up state and delete the file
-            if (createdNewManifest) {
-                descriptorLog.close();
-                // todo add delete method to LogWriter
-                databaseDir.child(Filename.logFileName(mFileNumber)).delete();
-                descriptorLog = null;
+            // New manifest file was not installed, so clean up state and delete the file,
+            // a manifest that was rolled over stays in use
+            if (createdNewManifest && log != null && log != descriptorLog) {
+                Closeables.closeQuietly(log);
+                databaseDir.child(Filename.descriptorFileName(mFileNumber)).delete();
             }
             throw e;
         }
 
+        if (createdNewManifest) {
+            if (descriptorLog != null) {
+                // the previous manifest is deleted with the other obsolete files
+                Closeables.closeQuietly(descriptorLog);
+                options.logger().log("Rolled over MANIFEST to #%s", mFileNumber);
+            }
+            descriptorLog = log;
+            manifestFileNumber = mFileNumber;
+        }
+        descriptorLogSize = logSize;
+
         // Install the new version
         appendVersion(version);
         logNumber = edit.getLogNumber();
         prevLogNumber = edit.getPreviousLogNumber();
+        lastSequence = Math.max(lastSequence, edit.getLastSequenceNumber());
     }
 
-    private void writeSnapshot(LogWriter log)
+    /**
+     * @return the size of the snapshot record
+     */
+    private int writeSnapshot(LogWriter log, Version version, Map<Integer, InternalKey> compactPointers)
             throws IOException
     {
         // Save metadata
@@ -334,10 +378,14 @@ public class VersionSet
         edit.setCompactPointers(compactPointers);
 
         // Save files
-        edit.addFiles(current.getFiles());
+        edit.addFiles(version.getFiles());
+        for (BlobFileMetaData blobFile : version.getBlobFiles().values()) {
+            edit.addBlobFile(blobFile);
+        }
 
         Slice record = edit.encode();
         log.addRecord(record, false);
+        return record.length();
     }
 
     /**
@@ -457,6 +505,7 @@ public class VersionSet
 
         options.logger().log("Reusing MANIFEST %s", currentFile);
         this.manifestFileNumber = fileInfo.getFileNumber();
+        this.descriptorLogSize = currentFile.length();
         return true;
     }
 
@@ -499,6 +548,33 @@ public class VersionSet
 
         version.setCompactionLevel(bestLevel);
         version.setCompactionScore(bestScore);
+
+        // Table referring to the oldest blob file holding too much garbage. Level-0 tables are
+        // left to the regular compactions, rewriting one would change its order among the others.
+        FileMetaData blobFileToCompact = null;
+        int blobFileToCompactLevel = -1;
+        if (!version.getBlobFiles().isEmpty()) {
+            for (int level = 1; level < version.numberOfLevels(); level++) {
+                for (FileMetaData fileMetaData : version.getFiles(level)) {
+                    if (fileMetaData.hasBlobReferences() &&
+                            (blobFileToCompact == null || fileMetaData.getOldestBlobFile() < blobFileToCompact.getOldestBlobFile()) &&
+                            isBlobFileToCollect(version.getBlobFiles().get(fileMetaData.getOldestBlobFile()))) {
+                        blobFileToCompact = fileMetaData;
+                        blobFileToCompactLevel = level;
+                    }
+                }
+            }
+        }
+        version.setBlobFileToCompact(blobFileToCompact, blobFileToCompactLevel);
+    }
+
+    /**
+     * Whether the values still referred to in the blob file should be moved to a new blob file,
+     * its garbage ratio being over {@link Options#blobGarbageRatio()}.
+     */
+    public boolean isBlobFileToCollect(BlobFileMetaData blobFile)
+    {
+        return blobFile != null && blobFile.getGarbageBytes() > 0 && blobFile.getGarbageRatio() >= options.blobGarbageRatio();
     }
 
     private static <V> V coalesce(V... values)
@@ -520,6 +596,18 @@ public class VersionSet
         return builder.build();
     }
 
+    /**
+     * Numbers of the blob files of all live versions.
+     */
+    public Set<Long> getLiveBlobFiles()
+    {
+        Set<Long> live = new HashSet<>();
+        for (Version activeVersion : activeVersions.keySet()) {
+            live.addAll(activeVersion.getBlobFiles().keySet());
+        }
+        return live;
+    }
+
     public long targetFileSize()
     {
         return options.maxFileSize();
@@ -574,7 +662,7 @@ public class VersionSet
 
     public boolean needsCompaction()
     {
-        return current.getCompactionScore() >= 1 || current.getFileToCompact() != null;
+        return current.getCompactionScore() >= 1 || current.getFileToCompact() != null || current.getBlobFileToCompact() != null;
     }
 
     public Compaction compactRange(int level, InternalKey begin, InternalKey end)
@@ -619,6 +707,12 @@ public class VersionSet
             level = current.getFileToCompactLevel();
             levelInputs = ImmutableList.of(current.getFileToCompact());
         }
+        else if (current.getBlobFileToCompact() != null) {
+            // Rewrite the table in place, as the only input of its level, moving the
+            // values of blob files holding too much garbage to a new blob file.
+            level = current.getBlobFileToCompactLevel();
+            return new Compaction(current, level - 1, maxFileSizeForLevel(), ImmutableList.of(), ImmutableList.of(current.getBlobFileToCompact()), ImmutableList.of());
+        }
         else {
             return null;
         }
@@ -891,12 +985,14 @@ public class VersionSet
         private final VersionSet versionSet;
         private final Version baseVersion;
         private final List<LevelState> levels;
+        private final Map<Long, BlobFileMetaData> blobFiles;
 
         private Builder(VersionSet versionSet, Version baseVersion)
         {
             this.versionSet = versionSet;
             this.baseVersion = baseVersion;
             baseVersion.retain();
+            blobFiles = new TreeMap<>(baseVersion.getBlobFiles());
 
             levels = new ArrayList<>(baseVersion.numberOfLevels());
             for (int i = 0; i < baseVersion.numberOfLevels(); i++) {
@@ -950,6 +1046,14 @@ public class VersionSet
                 levels.get(level).deletedFiles.remove(fileMetaData.getNumber());
                 levels.get(level).addedFiles.add(fileMetaData);
             }
+
+            // Add new blob files, then their garbage
+            for (BlobFileMetaData blobFile : edit.getNewBlobFiles().values()) {
+                blobFiles.put(blobFile.getNumber(), blobFile);
+            }
+            for (BlobFileMetaData garbage : edit.getBlobGarbage().values()) {
+                blobFiles.computeIfPresent(garbage.getNumber(), (number, blobFile) -> blobFile.withGarbage(garbage.getGarbageCount(), garbage.getGarbageBytes()));
+            }
         }
 
         /**
@@ -987,6 +1091,13 @@ public class VersionSet
                 version.assertNoOverlappingFiles(level);
                 //#endif
             }
+
+            // Drop the blob files no table refers to anymore
+            for (BlobFileMetaData blobFile : blobFiles.values()) {
+                if (!blobFile.isObsolete()) {
+                    version.addBlobFile(blobFile);
+                }
+            }
         }
 
         private void maybeAddFile(Version version, int level, FileMetaData fileMetaData)
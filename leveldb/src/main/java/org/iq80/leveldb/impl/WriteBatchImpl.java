@@ -17,16 +17,18 @@
  */
 package org.iq80.leveldb.impl;
 
-import com.google.common.collect.Maps;
 import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.util.Slice;
 import org.iq80.leveldb.util.Slices;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
 
 import static java.util.Objects.requireNonNull;
+import static org.iq80.leveldb.impl.ValueType.DELETION;
+import static org.iq80.leveldb.impl.ValueType.MERGE;
+import static org.iq80.leveldb.impl.ValueType.RANGE_DELETION;
+import static org.iq80.leveldb.impl.ValueType.VALUE;
 
 public class WriteBatchImpl
         implements WriteBatch
@@ -34,8 +36,9 @@ public class WriteBatchImpl
     // WriteBatch header has an 8-byte sequence number followed by a 4-byte count.
     private static final int HEADER_SIZE = 12;
 
-    private final List<Entry<Slice, Slice>> batch = new ArrayList<>();
+    private final List<Operation> batch = new ArrayList<>();
     private int approximateSize;
+    private boolean merges;
 
     @Override
     public int getApproximateSize()
@@ -54,7 +57,7 @@ public class WriteBatchImpl
     {
         requireNonNull(key, "key is null");
         requireNonNull(value, "value is null");
-        batch.add(Maps.immutableEntry(Slices.wrappedBuffer(key), Slices.wrappedBuffer(value)));
+        batch.add(new Operation(VALUE, Slices.wrappedBuffer(key), Slices.wrappedBuffer(value)));
         approximateSize += HEADER_SIZE + key.length + value.length;
         return this;
     }
@@ -63,7 +66,7 @@ public class WriteBatchImpl
     {
         requireNonNull(key, "key is null");
         requireNonNull(value, "value is null");
-        batch.add(Maps.immutableEntry(key, value));
+        batch.add(new Operation(VALUE, key, value));
         approximateSize += HEADER_SIZE + key.length() + value.length();
         return this;
     }
@@ -72,7 +75,7 @@ public class WriteBatchImpl
     public WriteBatchImpl delete(byte[] key)
     {
         requireNonNull(key, "key is null");
-        batch.add(Maps.immutableEntry(Slices.wrappedBuffer(key), (Slice) null));
+        batch.add(new Operation(DELETION, Slices.wrappedBuffer(key), null));
         approximateSize += 6 + key.length;
         return this;
     }
@@ -80,26 +83,77 @@ public class WriteBatchImpl
     public WriteBatchImpl delete(Slice key)
     {
         requireNonNull(key, "key is null");
-        batch.add(Maps.immutableEntry(key, (Slice) null));
+        batch.add(new Operation(DELETION, key, null));
         approximateSize += 6 + key.length();
         return this;
     }
 
+    @Override
+    public WriteBatchImpl merge(byte[] key, byte[] operand)
+    {
+        requireNonNull(key, "key is null");
+        requireNonNull(operand, "operand is null");
+        return merge(Slices.wrappedBuffer(key), Slices.wrappedBuffer(operand));
+    }
+
+    public WriteBatchImpl merge(Slice key, Slice operand)
+    {
+        requireNonNull(key, "key is null");
+        requireNonNull(operand, "operand is null");
+        batch.add(new Operation(MERGE, key, operand));
+        merges = true;
+        approximateSize += HEADER_SIZE + key.length() + operand.length();
+        return this;
+    }
+
+    @Override
+    public WriteBatchImpl deleteRange(byte[] begin, byte[] end)
+    {
+        requireNonNull(begin, "begin is null");
+        requireNonNull(end, "end is null");
+        return deleteRange(Slices.wrappedBuffer(begin), Slices.wrappedBuffer(end));
+    }
+
+    public WriteBatchImpl deleteRange(Slice begin, Slice end)
+    {
+        requireNonNull(begin, "begin is null");
+        requireNonNull(end, "end is null");
+        batch.add(new Operation(RANGE_DELETION, begin, end));
+        approximateSize += HEADER_SIZE + begin.length() + end.length();
+        return this;
+    }
+
     @Override
     public void close()
     {
     }
 
+    /**
+     * Whether the batch holds merge operands.
+     */
+    public boolean hasMerges()
+    {
+        return merges;
+    }
+
     public void forEach(Handler handler)
     {
-        for (Entry<Slice, Slice> entry : batch) {
-            Slice key = entry.getKey();
-            Slice value = entry.getValue();
-            if (value != null) {
-                handler.put(key, value);
-            }
-            else {
-                handler.delete(key);
+        for (Operation operation : batch) {
+            switch (operation.type) {
+                case VALUE:
+                    handler.put(operation.key, operation.value);
+                    break;
+                case DELETION:
+                    handler.delete(operation.key);
+                    break;
+                case MERGE:
+                    handler.merge(operation.key, operation.value);
+                    break;
+                case RANGE_DELETION:
+                    handler.deleteRange(operation.key, operation.value);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected value type " + operation.type);
             }
         }
     }
@@ -108,11 +162,13 @@ public class WriteBatchImpl
     {
         this.batch.addAll(batch.batch);
         this.approximateSize += batch.approximateSize;
+        this.merges |= batch.merges;
     }
 
     public void clear()
     {
         approximateSize = 0;
+        merges = false;
         batch.clear();
     }
 
@@ -121,5 +177,24 @@ public class WriteBatchImpl
         void put(Slice key, Slice value);
 
         void delete(Slice key);
+
+        void merge(Slice key, Slice operand);
+
+        void deleteRange(Slice begin, Slice end);
+    }
+
+    private static final class Operation
+    {
+        private final ValueType type;
+        private final Slice key;
+        // operand of merges, end key of range deletions
+        private final Slice value;
+
+        private Operation(ValueType type, Slice key, Slice value)
+        {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
     }
 }
@@ -24,7 +24,6 @@ import org.iq80.leveldb.util.Slice;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.function.Function;
 
 public final class MergingIterator extends ASeekingIterator<InternalKey, Slice>
@@ -32,63 +31,121 @@ public final class MergingIterator extends ASeekingIterator<InternalKey, Slice>
 {
     private final List<InternalIterator> iterators;
     private final Comparator<InternalKey> keyComparator;
-    private final Comparator<InternalIterator> iteratorComparator;
-    private PriorityQueue<InternalIterator> queue;
-    private InternalIterator current;
+    private final InternalIterator[] children;
+    private final boolean[] valid;
+    // Loser tree over children: tree[0] is the winner (current child), internal nodes 1..n-1 hold the loser
+    // of the match played at that node and child i is the leaf at node n + i. Exhausted children lose every match.
+    private final int[] tree;
+    private boolean reverse;
 
     public MergingIterator(List<InternalIterator> iterators, Comparator<InternalKey> comparator)
     {
         this.keyComparator = comparator;
-        this.iteratorComparator = (o1, o2) -> keyComparator.compare(o1.key(), o2.key());
         this.iterators = iterators;
+        this.children = iterators.toArray(new InternalIterator[0]);
+        this.valid = new boolean[children.length];
+        this.tree = new int[Math.max(1, children.length)];
     }
 
-    private void rebuildQueue(boolean reverse, Function<InternalIterator, Boolean> func)
+    private boolean rebuildTree(boolean reverse, Function<InternalIterator, Boolean> func)
     {
-        this.queue = new PriorityQueue<>(iterators.size(), reverse ? iteratorComparator.reversed() : iteratorComparator);
-        for (InternalIterator iterator : iterators) {
-            if (func.apply(iterator)) {
-                queue.add(iterator);
+        for (int i = 0; i < children.length; i++) {
+            valid[i] = func.apply(children[i]);
+        }
+        return playTournament(reverse);
+    }
+
+    private boolean playTournament(boolean reverse)
+    {
+        this.reverse = reverse;
+        if (children.length == 0) {
+            return false;
+        }
+        tree[0] = play(1);
+        return valid[tree[0]];
+    }
+
+    /**
+     * Play all matches of the subtree rooted at {@code node}, record losers and return the winner.
+     */
+    private int play(int node)
+    {
+        if (node >= children.length) {
+            return node - children.length;
+        }
+        int left = play(node << 1);
+        int right = play((node << 1) + 1);
+        if (beats(right, left)) {
+            tree[node] = left;
+            return right;
+        }
+        tree[node] = right;
+        return left;
+    }
+
+    /**
+     * Current winner moved, replay its matches up to the root: one comparison per level.
+     */
+    private boolean replayWinner(boolean childValid)
+    {
+        int winner = tree[0];
+        valid[winner] = childValid;
+        for (int node = (winner + children.length) >>> 1; node > 0; node >>>= 1) {
+            int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
             }
         }
+        tree[0] = winner;
+        return valid[winner];
+    }
+
+    private boolean beats(int a, int b)
+    {
+        if (!valid[a]) {
+            return false;
+        }
+        if (!valid[b]) {
+            return true;
+        }
+        int result = keyComparator.compare(children[a].key(), children[b].key());
+        return reverse ? result > 0 : result < 0;
     }
 
     @Override
     protected boolean internalSeekToFirst()
     {
-        rebuildQueue(false, SeekingIterator::seekToFirst);
-        current = queue.poll();
-        return current != null;
+        return rebuildTree(false, SeekingIterator::seekToFirst);
     }
 
     @Override
     protected boolean internalSeekToLast()
     {
-        rebuildQueue(true, SeekingIterator::seekToLast);
-        current = queue.poll();
-        return current != null;
+        return rebuildTree(true, SeekingIterator::seekToLast);
     }
 
     @Override
     protected boolean internalSeek(InternalKey targetKey)
     {
-        rebuildQueue(false, itr -> itr.seek(targetKey));
-        current = queue.poll();
-        return current != null;
+        return rebuildTree(false, itr -> itr.seek(targetKey));
     }
 
     @Override
     protected boolean internalNext(boolean switchDirection)
     {
+        int current = tree[0];
         if (switchDirection) {
             InternalKey key = key();
-            rebuildQueue(false, iter -> iter != current && iter.seek(key) && (keyComparator.compare(key, iter.key()) != 0 || iter.next()));
-        }
-        if (current.next()) {
-            queue.add(current);
+            for (int i = 0; i < children.length; i++) {
+                InternalIterator iter = children[i];
+                valid[i] = i != current && iter.seek(key) && (keyComparator.compare(key, iter.key()) != 0 || iter.next());
+            }
+            // current child is moved last, its key may be a view only valid until then
+            valid[current] = children[current].next();
+            return playTournament(false);
         }
-        current = queue.poll();
-        return current != null;
+        return replayWinner(children[current].next());
     }
 
     @Override
@@ -96,7 +153,7 @@ public final class MergingIterator extends ASeekingIterator<InternalKey, Slice>
     {
         if (switchDirection) {
             InternalKey key = key();
-            rebuildQueue(true, iter -> {
+            return rebuildTree(true, iter -> {
                 if (iter.seek(key)) {
                     // Child is at first entry >= key().  Step back one to be < key()
                     return iter.prev();
@@ -107,25 +164,19 @@ public final class MergingIterator extends ASeekingIterator<InternalKey, Slice>
                 }
             });
         }
-        else {
-            if (current.prev()) {
-                queue.add(current);
-            }
-        }
-        current = queue.poll();
-        return current != null;
+        return replayWinner(children[tree[0]].prev());
     }
 
     @Override
     protected InternalKey internalKey()
     {
-        return current.key();
+        return children[tree[0]].key();
     }
 
     @Override
     protected Slice internalValue()
     {
-        return current.value();
+        return children[tree[0]].value();
     }
 
     @Override
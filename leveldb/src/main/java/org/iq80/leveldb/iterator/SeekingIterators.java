@@ -23,6 +23,7 @@ import org.iq80.leveldb.util.Slice;
 import java.io.Closeable;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -47,7 +48,17 @@ public final class SeekingIterators
 
     public static SliceIterator twoLevelSliceIterator(SliceIterator indexIterator, Function<Slice, SeekingIterator<Slice, Slice>> blockFunction, Closeable closeableResources)
     {
-        return new SliceTwoLevelIterator(indexIterator, blockFunction, closeableResources);
+        return new SliceTwoLevelIterator(indexIterator, blockFunction, null, null, closeableResources);
+    }
+
+    /**
+     * Two level iterator that passes the index value of the block following the current one to {@code prefetchFunction}
+     * whenever it moves forward to a new block. {@code prefetchIndexIterator} is a second iterator over the same index.
+     */
+    public static SliceIterator twoLevelSliceIterator(SliceIterator indexIterator, Function<Slice, SeekingIterator<Slice, Slice>> blockFunction,
+            SliceIterator prefetchIndexIterator, Consumer<Slice> prefetchFunction, Closeable closeableResources)
+    {
+        return new SliceTwoLevelIterator(indexIterator, blockFunction, prefetchIndexIterator, prefetchFunction, closeableResources);
     }
 
     public static <T> InternalIterator twoLevelInternalIterator(SeekingIterator<InternalKey, T> indexIterator, Function<T, SeekingIterator<InternalKey, Slice>> blockFunction, Closeable closeableResources)
@@ -65,9 +76,10 @@ public final class SeekingIterators
 
     private static class SliceTwoLevelIterator extends TwoLevelIterator<Slice, Slice, Slice> implements SliceIterator
     {
-        SliceTwoLevelIterator(SliceIterator indexIterator, Function<Slice, SeekingIterator<Slice, Slice>> blockFunction, Closeable closeableResources)
+        SliceTwoLevelIterator(SliceIterator indexIterator, Function<Slice, SeekingIterator<Slice, Slice>> blockFunction,
+                SliceIterator prefetchIndexIterator, Consumer<Slice> prefetchFunction, Closeable closeableResources)
         {
-            super(indexIterator, blockFunction, closeableResources);
+            super(indexIterator, blockFunction, prefetchIndexIterator, prefetchFunction, closeableResources);
         }
     }
 }
@@ -18,12 +18,20 @@
 package org.iq80.leveldb.iterator;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import org.iq80.leveldb.MergeOperator;
 import org.iq80.leveldb.impl.InternalKey;
+import org.iq80.leveldb.impl.RangeTombstones;
 import org.iq80.leveldb.impl.ValueType;
 import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.Slices;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
 
 //DbIter
 public final class SnapshotSeekingIterator
@@ -33,15 +41,37 @@ public final class SnapshotSeekingIterator
     private final long sequence;
     private final Comparator<Slice> userComparator;
     private final IRecordBytesListener listener;
+    // sets of range tombstones, empty if no range tombstone exists
+    private final List<RangeTombstones> rangeTombstones;
+    // null if the database has no merge operator
+    private final MergeOperator mergeOperator;
+    // null if the database has no blob file
+    private final Function<Slice, Slice> blobResolver;
     private Slice key;
     private Slice value;
+    // value is a blob index, only read from its blob file when requested
+    private boolean blobValue;
 
     public SnapshotSeekingIterator(InternalIterator iterator, long sequence, Comparator<Slice> userComparator, IRecordBytesListener listener)
+    {
+        this(iterator, sequence, userComparator, listener, ImmutableList.of(), null, null);
+    }
+
+    /**
+     * @param rangeTombstones sets of range tombstones hiding values of {@code iterator}, empty if there is none
+     * @param mergeOperator   operator combining the merge operands of {@code iterator}, {@code null} if there is none
+     * @param blobResolver    reads the value a blob index of {@code iterator} refers to, {@code null} if there is none
+     */
+    public SnapshotSeekingIterator(InternalIterator iterator, long sequence, Comparator<Slice> userComparator, IRecordBytesListener listener, List<RangeTombstones> rangeTombstones,
+                                   MergeOperator mergeOperator, Function<Slice, Slice> blobResolver)
     {
         this.iterator = iterator;
         this.sequence = sequence;
         this.userComparator = userComparator;
         this.listener = listener;
+        this.rangeTombstones = rangeTombstones;
+        this.mergeOperator = mergeOperator;
+        this.blobResolver = blobResolver;
     }
 
     @Override
@@ -86,6 +116,7 @@ public final class SnapshotSeekingIterator
             if (!valid) {
                 this.key = null;
                 this.value = null;
+                this.blobValue = false;
                 return false;
             }
         }
@@ -97,7 +128,10 @@ public final class SnapshotSeekingIterator
     protected boolean internalPrev(boolean switchDirection)
     {
         if (switchDirection) {
-            Preconditions.checkState(iterator.valid(), "Should be valid");
+            // merging the entries of this.key() may have exhausted the iterator
+            if (!iterator.valid()) {
+                Preconditions.checkState(iterator.seekToLast(), "Should be valid");
+            }
             do {
                 if (!iterator.prev()) {
                     return false;
@@ -126,20 +160,29 @@ public final class SnapshotSeekingIterator
                     // We encountered a non-deleted value in entries for previous keys,
                     return true;
                 }
-                valueType = key.getValueType();
-                if (valueType == ValueType.DELETION) {
+                ValueType entryType = isRangeDeleted(key) ? ValueType.DELETION : key.getValueType();
+                if (entryType == ValueType.DELETION) {
                     this.key = null;
                     this.value = null;
+                    this.blobValue = false;
+                }
+                else if (entryType == ValueType.MERGE) {
+                    // apply the operand to the older entries of the key, found first
+                    this.value = merge(key.getUserKey(), valueType == ValueType.DELETION ? null : internalValue(), iterator.value());
+                    this.key = key.getUserKey();
                 }
                 else {
                     this.key = key.getUserKey();
                     this.value = iterator.value();
+                    this.blobValue = entryType == ValueType.BLOB_INDEX;
                 }
+                valueType = entryType;
             }
         } while (iterator.prev());
         if (valueType == ValueType.DELETION) {
             this.key = null;
             this.value = null;
+            this.blobValue = false;
             return false;
         }
         else {
@@ -150,6 +193,10 @@ public final class SnapshotSeekingIterator
     @Override
     protected Slice internalValue()
     {
+        if (blobValue) {
+            value = resolveBlob(value);
+            blobValue = false;
+        }
         return value;
     }
 
@@ -164,7 +211,7 @@ public final class SnapshotSeekingIterator
             Slice value = iterator.value();
             listener.record(ikey, ikey.size() + value.length());
             if (ikey.getSequenceNumber() <= sequence) {
-                switch (ikey.getValueType()) {
+                switch (isRangeDeleted(ikey) ? ValueType.DELETION : ikey.getValueType()) {
                     case DELETION:
                         // Arrange to skip all upcoming entries for this key since
                         // they are hidden by this deletion.
@@ -172,6 +219,7 @@ public final class SnapshotSeekingIterator
                         skipping = true;
                         break;
                     case VALUE:
+                    case BLOB_INDEX:
                         if (skipping &&
                                 userComparator.compare(ikey.getUserKey(), savedKey) <= 0) {
                             // Entry hidden
@@ -179,6 +227,19 @@ public final class SnapshotSeekingIterator
                         else {
                             this.key = ikey.getUserKey();
                             this.value = value;
+                            this.blobValue = ikey.getValueType() == ValueType.BLOB_INDEX;
+                            return true;
+                        }
+                        break;
+                    case MERGE:
+                        if (skipping &&
+                                userComparator.compare(ikey.getUserKey(), savedKey) <= 0) {
+                            // Entry hidden
+                        }
+                        else {
+                            this.key = ikey.getUserKey();
+                            this.value = mergeOlderEntries(ikey.getUserKey());
+                            this.blobValue = false;
                             return true;
                         }
                         break;
@@ -187,6 +248,64 @@ public final class SnapshotSeekingIterator
         } while (iterator.next());
         this.key = null;
         this.value = null;
+        this.blobValue = false;
+        return false;
+    }
+
+    /**
+     * Combine the merge operand at the current position with the older entries of
+     * {@code userKey}, leaving the iterator past the operands of the key.
+     */
+    private Slice mergeOlderEntries(Slice userKey)
+    {
+        Deque<Slice> operands = new ArrayDeque<>();
+        operands.push(iterator.value());
+        Slice base = null;
+        while (iterator.next() && userComparator.compare(iterator.key().getUserKey(), userKey) == 0) {
+            InternalKey ikey = iterator.key();
+            listener.record(ikey, ikey.size() + iterator.value().length());
+            ValueType valueType = isRangeDeleted(ikey) ? ValueType.DELETION : ikey.getValueType();
+            if (valueType != ValueType.MERGE) {
+                if (valueType == ValueType.VALUE) {
+                    base = iterator.value();
+                }
+                else if (valueType == ValueType.BLOB_INDEX) {
+                    base = resolveBlob(iterator.value());
+                }
+                break;
+            }
+            operands.push(iterator.value());
+        }
+        // operands were pushed newest first, they are popped oldest first
+        Slice value = base;
+        while (!operands.isEmpty()) {
+            value = merge(userKey, value, operands.pop());
+        }
+        return value;
+    }
+
+    private Slice resolveBlob(Slice blobIndex)
+    {
+        Preconditions.checkState(blobResolver != null, "Blob index found without blob files");
+        return blobResolver.apply(blobIndex);
+    }
+
+    private Slice merge(Slice userKey, Slice existingValue, Slice operand)
+    {
+        Preconditions.checkState(mergeOperator != null, "Merge operands found without a merge operator");
+        return Slices.wrappedBuffer(mergeOperator.merge(userKey.getBytes(), existingValue == null ? null : existingValue.getBytes(), operand.getBytes()));
+    }
+
+    private boolean isRangeDeleted(InternalKey key)
+    {
+        if (key.getValueType() == ValueType.DELETION) {
+            return false;
+        }
+        for (RangeTombstones tombstones : rangeTombstones) {
+            if (tombstones.maxCoveringSequence(key.getUserKey(), sequence) > key.getSequenceNumber()) {
+                return true;
+            }
+        }
         return false;
     }
 
@@ -21,6 +21,7 @@ import org.iq80.leveldb.DBException;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -30,21 +31,33 @@ class TwoLevelIterator<T, K, V>
         extends ASeekingIterator<K, V>
 {
     private final Function<T, SeekingIterator<K, V>> blockFunction;
+    // null unless the block following the current one is prefetched
+    private final Consumer<T> prefetchFunction;
     private Closeable closeableResources;
     private SeekingIterator<K, T> indexIterator;
+    // second cursor over the index, locating the block following the current one
+    private SeekingIterator<K, T> prefetchIndexIterator;
     private SeekingIterator<K, V> current;
 
     TwoLevelIterator(SeekingIterator<K, T> indexIterator, Function<T, SeekingIterator<K, V>> blockFunction, Closeable closeableResources)
+    {
+        this(indexIterator, blockFunction, null, null, closeableResources);
+    }
+
+    TwoLevelIterator(SeekingIterator<K, T> indexIterator, Function<T, SeekingIterator<K, V>> blockFunction,
+            SeekingIterator<K, T> prefetchIndexIterator, Consumer<T> prefetchFunction, Closeable closeableResources)
     {
         this.indexIterator = indexIterator;
         this.blockFunction = blockFunction;
+        this.prefetchIndexIterator = prefetchIndexIterator;
+        this.prefetchFunction = prefetchFunction;
         this.closeableResources = closeableResources;
     }
 
     @Override
     protected boolean internalSeekToFirst()
     {
-        if (initDataBlock(indexIterator.seekToFirst()) && current.seekToFirst()) {
+        if (initDataBlockForward(indexIterator.seekToFirst()) && current.seekToFirst()) {
             return true;
         }
         return skipEmptyDataBlocksForward();
@@ -55,7 +68,7 @@ class TwoLevelIterator<T, K, V>
     {
         // seek the index to the block containing the key
         // if indexIterator does not have a next, it mean the key does not exist in this iterator
-        if (initDataBlock(indexIterator.seek(targetKey)) && current.seek(targetKey)) {
+        if (initDataBlockForward(indexIterator.seek(targetKey)) && current.seek(targetKey)) {
             return true;
         }
         return skipEmptyDataBlocksForward();
@@ -105,7 +118,7 @@ class TwoLevelIterator<T, K, V>
                 closeAndResetCurrent();
                 return false;
             }
-            if (initDataBlock(indexIterator.next()) && current.seekToFirst()) {
+            if (initDataBlockForward(indexIterator.next()) && current.seekToFirst()) {
                 return true;
             }
         }
@@ -140,6 +153,18 @@ class TwoLevelIterator<T, K, V>
         }
     }
 
+    private boolean initDataBlockForward(boolean valid)
+    {
+        if (!initDataBlock(valid)) {
+            return false;
+        }
+        // start loading the next block while the current one is consumed
+        if (prefetchFunction != null && prefetchIndexIterator.seek(indexIterator.key()) && prefetchIndexIterator.next()) {
+            prefetchFunction.accept(prefetchIndexIterator.value());
+        }
+        return true;
+    }
+
     @Override
     public String toString()
     {
@@ -171,6 +196,10 @@ class TwoLevelIterator<T, K, V>
             closeAndResetCurrent();
             this.indexIterator.close();
             this.indexIterator = null;
+            if (prefetchIndexIterator != null) {
+                prefetchIndexIterator.close();
+                prefetchIndexIterator = null;
+            }
         }
         finally {
             closeableResources.close();
@@ -106,11 +106,19 @@ public class Block
     }
 
     public BlockIterator iterator()
+    {
+        return iterator(false);
+    }
+
+    /**
+     * @param reuseKeyBuffer decode keys in a buffer owned by the iterator, see {@link BlockIterator}
+     */
+    public BlockIterator iterator(boolean reuseKeyBuffer)
     {
         if (restartPositions.length() == 0) {
             //initial java db implementation did not save restart position for empty blocks
-            return new BlockIterator(data, Slices.allocate(4), comparator);
+            return new BlockIterator(data, Slices.allocate(4), comparator, reuseKeyBuffer);
         }
-        return new BlockIterator(data, restartPositions, comparator);
+        return new BlockIterator(data, restartPositions, comparator, reuseKeyBuffer);
     }
 }
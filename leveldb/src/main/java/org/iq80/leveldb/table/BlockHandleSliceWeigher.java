@@ -30,6 +30,6 @@ public class BlockHandleSliceWeigher implements Weigher<CacheKey, Slice>
     public int weigh(CacheKey key, Slice value)
     {
         //approximate weigher
-        return 64 + value.getRawArray().length;
+        return 64 + (value.hasArray() ? value.getRawArray().length : value.length());
     }
 }
@@ -37,13 +37,26 @@ public final class BlockIterator extends ASeekingIterator<Slice, Slice>
     private final SliceInput data;
     private final RestartPositions restartPositions;
     private final Comparator<Slice> comparator;
+    private final boolean reuseKeyBuffer;
 
     private int current;
     private int restartIndex;
     private Slice key;
     private Slice value;
+    // keys are decoded in this buffer when reuseKeyBuffer is set
+    private byte[] keyBuffer;
 
     public BlockIterator(Slice data, Slice restartPositions, Comparator<Slice> comparator)
+    {
+        this(data, restartPositions, comparator, false);
+    }
+
+    /**
+     * @param reuseKeyBuffer if {@code true}, keys are decoded in a buffer owned by this iterator and
+     *                       {@link #key()} is a view over it, valid only until the iterator is moved.
+     *                       Callers that need a key past that point must copy it.
+     */
+    public BlockIterator(Slice data, Slice restartPositions, Comparator<Slice> comparator, boolean reuseKeyBuffer)
     {
         requireNonNull(data, "data is null");
         requireNonNull(restartPositions, "restartPositions is null");
@@ -55,6 +68,7 @@ public final class BlockIterator extends ASeekingIterator<Slice, Slice>
         checkArgument(this.restartPositions.size() > 0,
                 "At least one restart position is expected");
         this.comparator = comparator;
+        this.reuseKeyBuffer = reuseKeyBuffer;
     }
 
     @Override
@@ -210,7 +224,10 @@ public final class BlockIterator extends ASeekingIterator<Slice, Slice>
 
         // read key
         Slice key;
-        if (sharedKeyLength > 0) {
+        if (reuseKeyBuffer) {
+            key = readKeyInBuffer(sharedKeyLength, nonSharedKeyLength);
+        }
+        else if (sharedKeyLength > 0) {
             key = Slices.allocate(sharedKeyLength + nonSharedKeyLength);
             SliceOutput sliceOutput = key.output();
             checkState(this.key != null, "Entry has a shared key but no previous entry was provided");
@@ -228,6 +245,24 @@ public final class BlockIterator extends ASeekingIterator<Slice, Slice>
         return true;
     }
 
+    /**
+     * Decode key in {@link #keyBuffer}, where shared prefix is already present from previous key.
+     */
+    private Slice readKeyInBuffer(int sharedKeyLength, int nonSharedKeyLength)
+    {
+        checkState(sharedKeyLength == 0 || this.key != null, "Entry has a shared key but no previous entry was provided");
+        int keyLength = sharedKeyLength + nonSharedKeyLength;
+        if (keyBuffer == null || keyBuffer.length < keyLength) {
+            byte[] newBuffer = new byte[Math.max(keyLength, keyBuffer == null ? 0 : keyBuffer.length * 2)];
+            if (sharedKeyLength > 0) {
+                System.arraycopy(keyBuffer, 0, newBuffer, 0, sharedKeyLength);
+            }
+            keyBuffer = newBuffer;
+        }
+        data.readBytes(keyBuffer, sharedKeyLength, nonSharedKeyLength);
+        return new Slice(keyBuffer, 0, keyLength);
+    }
+
     @Override
     protected void internalClose()
     {
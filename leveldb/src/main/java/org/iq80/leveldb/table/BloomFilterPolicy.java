@@ -89,15 +89,24 @@ public final class BloomFilterPolicy implements org.iq80.leveldb.table.FilterPol
 
     private int bloomHash(Slice data)
     {
-        return Hash.hash(data.getRawArray(), data.getRawOffset(), data.length(), 0xbc9f1d34); //avoid data copy
+        return Hash.hash(data, 0xbc9f1d34); //avoid data copy
     }
 
     @Override
     public boolean keyMayMatch(Slice key, Slice bloomFilter1)
     {
         int len = bloomFilter1.length();
-        byte[] data = bloomFilter1.getRawArray();
-        int offset = bloomFilter1.getRawOffset();
+        byte[] data;
+        int offset;
+        if (bloomFilter1.hasArray()) {
+            data = bloomFilter1.getRawArray();
+            offset = bloomFilter1.getRawOffset();
+        }
+        else {
+            // filter partition of a zero copy table, referenced in place
+            data = bloomFilter1.getBytes();
+            offset = 0;
+        }
         if (len < 2) {
             return false;
         }
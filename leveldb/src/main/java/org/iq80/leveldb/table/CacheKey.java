@@ -28,6 +28,19 @@ public final class CacheKey
         this.key = key;
     }
 
+    /**
+     * @see Table#getCacheId()
+     */
+    public long getTableId()
+    {
+        return id;
+    }
+
+    public BlockHandle getBlockHandle()
+    {
+        return key;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.table;
+
+import org.iq80.leveldb.env.RandomInputFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reads the blocks of one table iterator, reading ahead of them in a single larger read
+ * when blocks are read sequentially. Later blocks are served from that buffer.
+ * <p>
+ * With a fixed readahead size, every read outside the buffer reads that many bytes ahead.
+ * Otherwise sequential access is detected as in the C++ table iterators: readahead starts
+ * at the third consecutive sequential read, at 8KB, and doubles with every buffer refill up
+ * to 256KB. A non sequential read resets the readahead.
+ */
+final class Readahead
+{
+    static final int INITIAL_AUTO_READAHEAD_SIZE = 8 * 1024;
+    static final int MAX_AUTO_READAHEAD_SIZE = 256 * 1024;
+    static final int MIN_FILE_READS_FOR_AUTO_READAHEAD = 2;
+
+    private final RandomInputFile source;
+    // 0 if readahead is automatic
+    private final int fixedReadaheadSize;
+    private ByteBuffer buffer;
+    private long bufferOffset;
+    private int readaheadSize = INITIAL_AUTO_READAHEAD_SIZE;
+    private int fileReads;
+    private long previousEnd = -1;
+    private boolean lastReadBuffered;
+
+    Readahead(RandomInputFile source, int fixedReadaheadSize)
+    {
+        checkArgument(fixedReadaheadSize >= 0, "fixedReadaheadSize must not be negative");
+        this.source = source;
+        this.fixedReadaheadSize = fixedReadaheadSize;
+    }
+
+    /**
+     * Read {@code length} bytes at {@code offset}, the returned buffer may be shared with later reads.
+     */
+    ByteBuffer read(long offset, int length)
+            throws IOException
+    {
+        lastReadBuffered = false;
+        if (fixedReadaheadSize > 0) {
+            if (!isBuffered(offset, length)) {
+                fill(offset, length, fixedReadaheadSize);
+            }
+            return fromBuffer(offset, length);
+        }
+
+        boolean sequential = previousEnd == -1 || previousEnd == offset;
+        previousEnd = offset + length;
+        if (!sequential) {
+            fileReads = 1;
+            readaheadSize = INITIAL_AUTO_READAHEAD_SIZE;
+            buffer = null;
+            return source.read(offset, length);
+        }
+        fileReads++;
+        if (fileReads <= MIN_FILE_READS_FOR_AUTO_READAHEAD) {
+            return source.read(offset, length);
+        }
+        if (!isBuffered(offset, length)) {
+            fill(offset, length, readaheadSize);
+            readaheadSize = Math.min(MAX_AUTO_READAHEAD_SIZE, readaheadSize * 2);
+        }
+        return fromBuffer(offset, length);
+    }
+
+    /**
+     * Was the last read served from the readahead buffer? Its result then shares the buffer with the blocks read after it.
+     */
+    boolean isLastReadBuffered()
+    {
+        return lastReadBuffered;
+    }
+
+    private boolean isBuffered(long offset, int length)
+    {
+        return buffer != null && offset >= bufferOffset && offset + length <= bufferOffset + buffer.remaining();
+    }
+
+    private void fill(long offset, int length, int readahead)
+            throws IOException
+    {
+        // never read past the end of the file
+        long size = source.size();
+        int toRead = (int) Math.max(length, Math.min((long) length + readahead, size - offset));
+        buffer = source.read(offset, toRead);
+        bufferOffset = offset;
+    }
+
+    private ByteBuffer fromBuffer(long offset, int length)
+    {
+        ByteBuffer view = buffer.duplicate().order(buffer.order());
+        int position = buffer.position() + (int) (offset - bufferOffset);
+        view.limit(position + length).position(position);
+        lastReadBuffered = true;
+        return view;
+    }
+}
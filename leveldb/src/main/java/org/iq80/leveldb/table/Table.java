@@ -22,13 +22,14 @@ import org.iq80.leveldb.DBException;
 import org.iq80.leveldb.ReadOptions;
 import org.iq80.leveldb.iterator.SeekingIterators;
 import org.iq80.leveldb.iterator.SliceIterator;
+import org.iq80.leveldb.util.Compressions;
+import org.iq80.leveldb.util.Crc32C;
 import org.iq80.leveldb.util.ILRUCache;
-import org.iq80.leveldb.util.PureJavaCrc32C;
 import org.iq80.leveldb.env.RandomInputFile;
 import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.SliceInput;
 import org.iq80.leveldb.util.Slices;
-import org.iq80.leveldb.util.Snappy;
-import org.iq80.leveldb.util.VariableLengthQuantity;
+import org.iq80.leveldb.util.Zstd;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -37,13 +38,16 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Checksum;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
-import static org.iq80.leveldb.CompressionType.SNAPPY;
+import static org.iq80.leveldb.CompressionType.NONE;
 
 public final class Table
         implements Closeable
@@ -56,16 +60,38 @@ public final class Table
     private final BlockHandle metaindexBlockHandle;
     private final RandomInputFile source;
     private final ILRUCache<CacheKey, Slice> blockCache;
+    // null if blocks are never prefetched
+    private final Executor prefetchExecutor;
     private final FilterBlockReader filter;
+    // top-level index points to index partitions instead of data blocks
+    private final boolean partitionedIndex;
+    // non null if top-level index entries also point to filter partitions of a known policy
+    private final FilterPolicy partitionedFilterPolicy;
+    // non null if blocks other than index and meta index are compressed with a dictionary
+    private final Zstd.Dictionary compressionDictionary;
+    // null if the table holds no range tombstone
+    private final Block rangeDeletions;
     //use ref count to release resource early
     //external user iterator are required to be closed
     private final AtomicInteger refCount = new AtomicInteger(1);
 
     public Table(RandomInputFile source, Comparator<Slice> comparator, boolean paranoidChecks, ILRUCache<CacheKey, Slice> blockCache, final FilterPolicy filterPolicy)
             throws IOException
+    {
+        this(source, comparator, paranoidChecks, blockCache, filterPolicy, null);
+    }
+
+    /**
+     * @param prefetchExecutor executor loading blocks in the block cache ahead of the iterators
+     *                         requesting {@link ReadOptions#asyncPrefetch()}, {@code null} to disable prefetching
+     */
+    public Table(RandomInputFile source, Comparator<Slice> comparator, boolean paranoidChecks, ILRUCache<CacheKey, Slice> blockCache, final FilterPolicy filterPolicy,
+            Executor prefetchExecutor)
+            throws IOException
     {
         this.source = source;
         this.blockCache = blockCache;
+        this.prefetchExecutor = prefetchExecutor;
         requireNonNull(source, "source is null");
         long size = source.size();
         checkArgument(size >= Footer.ENCODED_LENGTH, "File is corrupt: size must be at least %s bytes", Footer.ENCODED_LENGTH);
@@ -75,28 +101,65 @@ public final class Table
         final ByteBuffer footerData = source.read(size - Footer.ENCODED_LENGTH, Footer.ENCODED_LENGTH);
 
         Footer footer = Footer.readFooter(Slices.avoidCopiedBuffer(footerData));
-        indexBlock = new Block(readRawBlock(footer.getIndexBlockHandle(), paranoidChecks), comparator); //no need for cache
+        indexBlock = new Block(onHeap(readRawBlock(footer.getIndexBlockHandle(), paranoidChecks, null)), comparator); //no need for cache
         metaindexBlockHandle = footer.getMetaindexBlockHandle();
-        this.filter = readMeta(filterPolicy, paranoidChecks);
-
+        final Block meta = new Block(readRawBlock(metaindexBlockHandle, paranoidChecks, null), new BytewiseComparator());
+        this.compressionDictionary = readCompressionDictionary(meta, paranoidChecks);
+        this.partitionedIndex = findMeta(meta, TableBuilder.PARTITIONED_INDEX_KEY) != null;
+        if (partitionedIndex) {
+            this.filter = null;
+            this.partitionedFilterPolicy = filterPolicy != null && findMeta(meta, TableBuilder.PARTITIONED_FILTER_PREFIX + filterPolicy.name()) != null ? filterPolicy : null;
+        }
+        else {
+            this.filter = readMeta(meta, filterPolicy, paranoidChecks);
+            this.partitionedFilterPolicy = null;
+        }
+        this.rangeDeletions = readRangeDeletions(meta, paranoidChecks);
     }
 
-    private FilterBlockReader readMeta(FilterPolicy filterPolicy, boolean verifyChecksum) throws IOException
+    private FilterBlockReader readMeta(Block meta, FilterPolicy filterPolicy, boolean verifyChecksum) throws IOException
     {
         assert refCount.get() > 0;
         if (filterPolicy == null) {
             return null;  // Do not need any metadata
         }
 
-        final Block meta = new Block(readRawBlock(metaindexBlockHandle, verifyChecksum), new BytewiseComparator());
+        final Slice filterHandle = findMeta(meta, "filter." + filterPolicy.name());
+        if (filterHandle != null) {
+            return readFilter(filterPolicy, filterHandle, verifyChecksum);
+        }
+        else {
+            return null;
+        }
+    }
+
+    private Zstd.Dictionary readCompressionDictionary(Block meta, boolean verifyChecksum) throws IOException
+    {
+        final Slice dictionaryHandle = findMeta(meta, TableBuilder.COMPRESSION_DICTIONARY_KEY);
+        if (dictionaryHandle == null) {
+            return null;
+        }
+        final Slice dictionary = readRawBlock(BlockHandle.readBlockHandle(dictionaryHandle.input()), verifyChecksum, null);
+        return new Zstd.Dictionary(dictionary.getBytes());
+    }
+
+    private Block readRangeDeletions(Block meta, boolean verifyChecksum) throws IOException
+    {
+        final Slice rangeDeletionsHandle = findMeta(meta, TableBuilder.RANGE_DELETIONS_KEY);
+        if (rangeDeletionsHandle == null) {
+            return null;
+        }
+        return new Block(onHeap(readRawBlock(BlockHandle.readBlockHandle(rangeDeletionsHandle.input()), verifyChecksum, null)), comparator);
+    }
+
+    private static Slice findMeta(Block meta, String name)
+    {
         try (BlockIterator iterator = meta.iterator()) {
-            final Slice targetKey = new Slice(("filter." + filterPolicy.name()).getBytes(CHARSET));
+            final Slice targetKey = new Slice(name.getBytes(CHARSET));
             if (iterator.seek(targetKey) && iterator.key().equals(targetKey)) {
-                return readFilter(filterPolicy, iterator.value(), verifyChecksum);
-            }
-            else {
-                return null;
+                return iterator.value();
             }
+            return null;
         }
     }
 
@@ -104,20 +167,138 @@ public final class Table
     {
         assert refCount.get() > 0;
         final Slice filterBlock = readRawBlock(BlockHandle.readBlockHandle(filterHandle.input()), verifyChecksum);
-        return new FilterBlockReader(filterPolicy, filterBlock);
+        return new FilterBlockReader(filterPolicy, onHeap(filterBlock));
+    }
+
+    /**
+     * Index and filter blocks are used by every lookup for the whole table lifetime,
+     * keep them on the heap where access is cheaper than on direct or mapped memory.
+     */
+    private static Slice onHeap(Slice block)
+    {
+        return block.hasArray() ? block : block.copySlice();
     }
 
     public SliceIterator iterator(ReadOptions options)
+    {
+        return iterator(options, false);
+    }
+
+    /**
+     * @param reuseKeyBuffer if {@code true}, data block keys are decoded in a buffer reused across entries:
+     *                       a key is only valid until the iterator is moved.
+     */
+    public SliceIterator iterator(ReadOptions options, boolean reuseKeyBuffer)
     {
         assert refCount.get() > 0;
         this.retain();
-        return SeekingIterators.twoLevelSliceIterator(indexBlock.iterator(), blockHandle -> openBlock(options, blockHandle), this::release);
+        Readahead readahead = new Readahead(source, options.readaheadSize());
+        if (options.asyncPrefetch() && prefetchExecutor != null && blockCache != null && options.fillCache()) {
+            return SeekingIterators.twoLevelSliceIterator(indexIterator(options), blockHandle -> openBlock(options, blockHandle, reuseKeyBuffer, readahead),
+                    indexIterator(options), blockHandle -> prefetchBlock(options, blockHandle), this::release);
+        }
+        return SeekingIterators.twoLevelSliceIterator(indexIterator(options), blockHandle -> openBlock(options, blockHandle, reuseKeyBuffer, readahead), this::release);
     }
 
-    private BlockIterator openBlock(ReadOptions options, Slice blockHandle)
+    /**
+     * Load the block in the block cache in the background, unless it is already cached.
+     * Iterators reaching the block while it is loaded wait for that load.
+     */
+    private void prefetchBlock(ReadOptions options, Slice blockEntry)
     {
-        Block dataBlock = openBlock(blockHandle, options);
-        return dataBlock.iterator();
+        BlockHandle blockHandle = BlockHandle.readBlockHandle(blockEntry.input());
+        if (blockCache.getIfPresent(new CacheKey(id, blockHandle)) != null || !retain()) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    readCachedRawBlock(blockHandle, options, null);
+                }
+                catch (IOException | RuntimeException ignored) {
+                    // the iterator reads the block again, and reports the failure, when it reaches it
+                }
+                finally {
+                    releaseQuietly();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // prefetch is best effort, skip it when the executor is saturated or shut down
+            releaseQuietly();
+        }
+    }
+
+    private void releaseQuietly()
+    {
+        try {
+            release();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Iterator over data block handles. For partitioned index, partitions are opened lazily through the block cache.
+     * Index keys are only used to position the iterator, they are decoded in reused buffers.
+     */
+    private SliceIterator indexIterator(ReadOptions options)
+    {
+        if (partitionedIndex) {
+            return SeekingIterators.twoLevelSliceIterator(indexBlock.iterator(true), partitionHandle -> openBlock(options, partitionHandle, true, null), () -> {
+            });
+        }
+        return indexBlock.iterator(true);
+    }
+
+    private BlockIterator openBlock(ReadOptions options, Slice blockHandle, boolean reuseKeyBuffer, Readahead readahead)
+    {
+        Block dataBlock = openBlock(blockHandle, options, readahead);
+        return dataBlock.iterator(reuseKeyBuffer);
+    }
+
+    /**
+     * Identifies the blocks of this table in the block cache, see {@link CacheKey#getTableId()}.
+     */
+    public long getCacheId()
+    {
+        return id;
+    }
+
+    /**
+     * Load a block of the table in the block cache, unless it is already cached.
+     * The block is verified as the handle may come from an earlier incarnation of the file.
+     */
+    public void loadBlock(BlockHandle blockHandle)
+            throws IOException
+    {
+        assert refCount.get() > 0;
+        checkArgument(blockCache != null, "table has no block cache");
+        checkArgument(blockHandle.getOffset() + blockHandle.getFullBlockSize() <= source.size(), "block handle %s past the end of the table", blockHandle);
+        readCachedRawBlock(blockHandle, new ReadOptions().verifyChecksums(true), null);
+    }
+
+    /**
+     * Load the index and filter partitions of a partitioned table in the block cache, they are otherwise
+     * loaded by the first reads reaching them. Other tables read their index and filter when opened.
+     */
+    public void preloadPartitions()
+            throws IOException
+    {
+        assert refCount.get() > 0;
+        if (!partitionedIndex || blockCache == null) {
+            return;
+        }
+        ReadOptions options = new ReadOptions();
+        try (BlockIterator topLevelIterator = indexBlock.iterator(true)) {
+            for (boolean valid = topLevelIterator.seekToFirst(); valid; valid = topLevelIterator.next()) {
+                SliceInput handles = topLevelIterator.value().input();
+                readCachedRawBlock(BlockHandle.readBlockHandle(handles), options, null);
+                if (partitionedFilterPolicy != null && handles.isReadable()) {
+                    readCachedRawBlock(BlockHandle.readBlockHandle(handles), options, null);
+                }
+            }
+        }
     }
 
     public FilterBlockReader getFilter()
@@ -126,13 +307,28 @@ public final class Table
         return filter;
     }
 
+    /**
+     * Block of the range tombstones added with {@link TableBuilder#addRangeTombstone(Slice, Slice)},
+     * {@code null} if there is none.
+     */
+    public Block getRangeDeletions()
+    {
+        assert refCount.get() > 0;
+        return rangeDeletions;
+    }
+
     public Block openBlock(Slice blockEntry, ReadOptions options)
+    {
+        return openBlock(blockEntry, options, null);
+    }
+
+    private Block openBlock(Slice blockEntry, ReadOptions options, Readahead readahead)
     {
         assert refCount.get() > 0;
         BlockHandle blockHandle = BlockHandle.readBlockHandle(blockEntry.input());
         Block dataBlock;
         try {
-            dataBlock = readBlock(blockHandle, options);
+            dataBlock = readBlock(blockHandle, options, readahead);
         }
         catch (IOException e) {
             throw new DBException(e);
@@ -140,28 +336,37 @@ public final class Table
         return dataBlock;
     }
 
-    private Block readBlock(BlockHandle blockHandle, ReadOptions options)
+    /**
+     * @param readahead reads of a sequential iterator, {@code null} to read the block alone
+     */
+    private Block readBlock(BlockHandle blockHandle, ReadOptions options, Readahead readahead)
+            throws IOException
+    {
+        return new Block(readCachedRawBlock(blockHandle, options, readahead), comparator);
+    }
+
+    private Slice readCachedRawBlock(BlockHandle blockHandle, ReadOptions options, Readahead readahead)
             throws IOException
     {
         assert refCount.get() > 0;
         try {
             final Slice rawBlock;
             if (blockCache == null) {
-                rawBlock = readRawBlock(blockHandle, options.verifyChecksums());
+                rawBlock = readRawBlock(blockHandle, options.verifyChecksums(), compressionDictionary, readahead, false);
             }
             else if (!options.fillCache()) {
                 Slice ifPresent = blockCache.getIfPresent(new CacheKey(id, blockHandle));
                 if (ifPresent == null) {
-                    rawBlock = readRawBlock(blockHandle, options.verifyChecksums());
+                    rawBlock = readRawBlock(blockHandle, options.verifyChecksums(), compressionDictionary, readahead, false);
                 }
                 else {
                     rawBlock = ifPresent;
                 }
             }
             else {
-                rawBlock = blockCache.load(new CacheKey(id, blockHandle), () -> readRawBlock(blockHandle, options.verifyChecksums()));
+                rawBlock = blockCache.load(new CacheKey(id, blockHandle), () -> readRawBlock(blockHandle, options.verifyChecksums(), compressionDictionary, readahead, true));
             }
-            return new Block(rawBlock, comparator);
+            return rawBlock;
         }
         catch (ExecutionException e) {
             Throwables.propagateIfPossible(e.getCause(), IOException.class);
@@ -171,10 +376,27 @@ public final class Table
 
     protected Slice readRawBlock(BlockHandle blockHandle, boolean verifyChecksum)
             throws IOException
+    {
+        return readRawBlock(blockHandle, verifyChecksum, compressionDictionary);
+    }
+
+    private Slice readRawBlock(BlockHandle blockHandle, boolean verifyChecksum, Zstd.Dictionary dictionary)
+            throws IOException
+    {
+        return readRawBlock(blockHandle, verifyChecksum, dictionary, null, false);
+    }
+
+    /**
+     * @param cached the block is kept by the block cache, it must then not share the readahead buffer
+     */
+    private Slice readRawBlock(BlockHandle blockHandle, boolean verifyChecksum, Zstd.Dictionary dictionary, Readahead readahead, boolean cached)
+            throws IOException
     {
         assert refCount.get() > 0;
         // read block trailer
-        final ByteBuffer content = source.read(blockHandle.getOffset(), blockHandle.getFullBlockSize());
+        final ByteBuffer content = readahead != null
+                ? readahead.read(blockHandle.getOffset(), blockHandle.getFullBlockSize())
+                : source.read(blockHandle.getOffset(), blockHandle.getFullBlockSize());
         int limit = content.limit();
         int position = content.position();
         int trailerStart = position + blockHandle.getDataSize();
@@ -184,10 +406,10 @@ public final class Table
         // only verify check sums if explicitly asked by the user
         if (verifyChecksum) {
             // checksum data and the compression type in the trailer
-            PureJavaCrc32C checksum = new PureJavaCrc32C();
+            Checksum checksum = Crc32C.newChecksum();
             content.position(position).limit(trailerStart /*content*/ + 1/*type*/);
-            checksum.update(content);
-            int actualCrc32c = checksum.getMaskedValue();
+            Crc32C.update(checksum, content);
+            int actualCrc32c = Crc32C.getMaskedValue(checksum);
 
             checkState(blockTrailer.getCrc32c() == actualCrc32c, "Block corrupted: checksum mismatch");
         }
@@ -196,11 +418,16 @@ public final class Table
         Slice uncompressedData;
         content.position(position);
         content.limit(limit - BlockTrailer.ENCODED_LENGTH);
-        if (blockTrailer.getCompressionType() == SNAPPY) {
-            int uncompressedLength = uncompressedLength(content);
-            final ByteBuffer uncompressedScratch = ByteBuffer.allocateDirect(uncompressedLength);
-            Snappy.uncompress(content, uncompressedScratch);
-            uncompressedData = Slices.copiedBuffer(uncompressedScratch);
+        if (blockTrailer.getCompressionType() != NONE) {
+            uncompressedData = Compressions.uncompress(blockTrailer.getCompressionType(), content, dictionary);
+        }
+        else if (cached && readahead != null && readahead.isLastReadBuffered()) {
+            // a cached block must not retain the whole readahead buffer it was read from
+            uncompressedData = Slices.copiedBuffer(content);
+        }
+        else if (source.isZeroCopy()) {
+            // uncompressed blocks of a zero copy source are used in place
+            uncompressedData = Slices.referencedBuffer(content);
         }
         else {
             uncompressedData = Slices.avoidCopiedBuffer(content);
@@ -212,6 +439,9 @@ public final class Table
     public <T> T internalGet(ReadOptions options, Slice key, KeyValueFunction<T> keyValueFunction)
     {
         assert refCount.get() > 0;
+        if (partitionedIndex) {
+            return partitionedGet(options, key, keyValueFunction);
+        }
         try (final BlockIterator iterator = indexBlock.iterator()) {
             if (iterator.seek(key)) {
                 final Slice handleValue = iterator.value();
@@ -230,10 +460,34 @@ public final class Table
         }
     }
 
-    private int uncompressedLength(ByteBuffer data)
+    private <T> T partitionedGet(ReadOptions options, Slice key, KeyValueFunction<T> keyValueFunction)
     {
-        assert refCount.get() > 0;
-        return VariableLengthQuantity.readVariableLengthInt(data.duplicate());
+        try (final BlockIterator topLevelIterator = indexBlock.iterator()) {
+            if (!topLevelIterator.seek(key)) {
+                return null;
+            }
+            final SliceInput handles = topLevelIterator.value().input();
+            final BlockHandle partitionHandle = BlockHandle.readBlockHandle(handles);
+            if (partitionedFilterPolicy != null && handles.isReadable()) {
+                final BlockHandle filterHandle = BlockHandle.readBlockHandle(handles);
+                if (!partitionedFilterPolicy.keyMayMatch(key, readCachedRawBlock(filterHandle, options, null))) {
+                    return null;
+                }
+            }
+            try (BlockIterator partitionIterator = readBlock(partitionHandle, options, null).iterator()) {
+                if (partitionIterator.seek(key)) {
+                    try (BlockIterator iterator1 = openBlock(partitionIterator.value(), options).iterator()) {
+                        if (iterator1.seek(key)) {
+                            return keyValueFunction.apply(iterator1.key(), iterator1.value());
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+        catch (IOException e) {
+            throw new DBException(e);
+        }
     }
 
     /**
@@ -247,13 +501,17 @@ public final class Table
     public long getApproximateOffsetOf(Slice key)
     {
         assert refCount.get() > 0;
-        try (BlockIterator iterator = indexBlock.iterator()) {
+        try (SliceIterator iterator = indexIterator(new ReadOptions())) {
             if (iterator.seek(key)) {
                 BlockHandle blockHandle = BlockHandle.readBlockHandle(iterator.value().input());
                 return blockHandle.getOffset();
             }
         }
 
+        catch (IOException e) {
+            throw new DBException(e);
+        }
+
         // key is past the last key in the file.  Approximate the offset
         // by returning the offset of the metaindex block (which is
         // right near the end of the file).
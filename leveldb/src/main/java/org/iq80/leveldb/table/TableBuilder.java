@@ -17,16 +17,31 @@
  */
 package org.iq80.leveldb.table;
 
+import com.google.common.base.Throwables;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.env.WritableFile;
-import org.iq80.leveldb.util.PureJavaCrc32C;
+import org.iq80.leveldb.util.Compressions;
+import org.iq80.leveldb.util.Crc32C;
 import org.iq80.leveldb.util.Slice;
+import org.iq80.leveldb.util.SliceOutput;
 import org.iq80.leveldb.util.Slices;
-import org.iq80.leveldb.util.Snappy;
+import org.iq80.leveldb.util.Zstd;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Checksum;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
@@ -40,6 +55,24 @@ public class TableBuilder
      */
     public static final long TABLE_MAGIC_NUMBER = 0xdb4775248b80fb57L;
     private static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * Meta index key marking a table whose index block is a top-level index over index partitions.
+     */
+    static final String PARTITIONED_INDEX_KEY = "index.partitioned";
+    /**
+     * Meta index key prefix marking a table whose top-level index entries also reference filter partitions.
+     */
+    static final String PARTITIONED_FILTER_PREFIX = "partitionedfilter.";
+    /**
+     * Meta index key of the block holding the dictionary used to compress every block but the index and meta index.
+     */
+    static final String COMPRESSION_DICTIONARY_KEY = "compression.dictionary";
+    /**
+     * Meta index key of the block holding range tombstones, kept apart from data blocks.
+     */
+    static final String RANGE_DELETIONS_KEY = "rangedeletions";
+    // Zstandard recommends about 100 times the dictionary size of samples
+    private static final int DICTIONARY_SAMPLE_RATIO = 100;
 
     private final int blockRestartInterval;
     private final int blockSize;
@@ -49,10 +82,19 @@ public class TableBuilder
     private final BlockBuilder dataBlockBuilder;
     private final BlockBuilder indexBlockBuilder;
     private final FilterBlockBuilder filterPolicyBuilder;
+    private final PartitionedIndexBuilder partitionedIndexBuilder;
+    private final int compressionDictionarySize;
+    private final long dictionaryBufferLimit;
+    private final Executor compressionExecutor;
+    private final int maxBlocksInFlight;
     private Slice lastKey;
+    // last key added to index and filter, trails lastKey while data blocks are pending
+    private Slice lastWrittenKey;
     private final UserComparator userComparator;
 
     private long entryCount;
+    // range tombstones are only written when the table is finished, in key order
+    private final TreeMap<Slice, Slice> rangeTombstones;
 
     // Either Finish() or Abandon() has been called.
     private boolean closed;
@@ -69,19 +111,70 @@ public class TableBuilder
 
     private Slice compressedOutput;
 
+    // Finished data blocks not written yet, in order. Blocks wait here while a compression
+    // dictionary is trained from them and while the compression executor compresses them.
+    // Index and filter entries of a block are added when it is written and its handle is known.
+    private final Deque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    // keys of the current data block, null when data blocks are written directly
+    private List<Slice> pendingBlockKeys;
+    private boolean trainingDictionary;
+    private long bufferedBytes;
+    private Zstd.Dictionary compressionDictionary;
+
     private long position;
 
     public TableBuilder(Options options, WritableFile file, UserComparator userComparator)
+    {
+        this(options, file, userComparator, options.compressionType());
+    }
+
+    /**
+     * Create a builder that compresses data blocks with {@code compressionType}
+     * instead of {@link Options#compressionType()}.
+     */
+    public TableBuilder(Options options, WritableFile file, UserComparator userComparator, CompressionType compressionType)
+    {
+        this(options, file, userComparator, compressionType, false);
+    }
+
+    /**
+     * Create a builder that compresses data blocks with {@code compressionType} and,
+     * if {@code trainCompressionDictionary} and {@link Options#compressionDictionarySize()}
+     * is set, a dictionary trained from the data blocks of this table.
+     */
+    public TableBuilder(Options options, WritableFile file, UserComparator userComparator, CompressionType compressionType, boolean trainCompressionDictionary)
+    {
+        this(options, file, userComparator, compressionType, trainCompressionDictionary, null);
+    }
+
+    /**
+     * Same as {@link #TableBuilder(Options, WritableFile, UserComparator, CompressionType, boolean)}
+     * compressing data blocks on {@code compressionExecutor} if not {@code null}. Up to twice
+     * {@link Options#compressionThreads()} blocks are compressed concurrently, blocks are still
+     * written to {@code file} in order from the calling thread.
+     */
+    public TableBuilder(Options options, WritableFile file, UserComparator userComparator, CompressionType compressionType, boolean trainCompressionDictionary,
+            Executor compressionExecutor)
     {
         requireNonNull(options, "options is null");
         requireNonNull(file, "file is null");
+        requireNonNull(compressionType, "compressionType is null");
 
         this.file = file;
         this.userComparator = userComparator;
 
         blockRestartInterval = options.blockRestartInterval();
         blockSize = options.blockSize();
-        compressionType = options.compressionType();
+        this.compressionType = compressionType;
+        trainingDictionary = trainCompressionDictionary && options.compressionDictionarySize() > 0 && compressionType == CompressionType.ZSTD && Zstd.dictionaryAvailable();
+        compressionDictionarySize = trainingDictionary ? options.compressionDictionarySize() : 0;
+        // blocks wait for the dictionary, so only buffer as much as is sampled to train it
+        dictionaryBufferLimit = Math.min((long) compressionDictionarySize * DICTIONARY_SAMPLE_RATIO, options.maxFileSize());
+        this.compressionExecutor = compressionType != CompressionType.NONE ? compressionExecutor : null;
+        maxBlocksInFlight = 2 * Math.max(1, options.compressionThreads());
+        if (trainingDictionary || this.compressionExecutor != null) {
+            pendingBlockKeys = new ArrayList<>();
+        }
 
         dataBlockBuilder = new BlockBuilder((int) Math.min(blockSize * 1.1, options.maxFileSize()), blockRestartInterval, userComparator);
 
@@ -90,12 +183,20 @@ public class TableBuilder
         indexBlockBuilder = new BlockBuilder(BlockHandle.MAX_ENCODED_LENGTH * expectedNumberOfBlocks, 1, userComparator);
 
         lastKey = Slices.EMPTY_SLICE;
+        lastWrittenKey = Slices.EMPTY_SLICE;
+        rangeTombstones = new TreeMap<>(userComparator);
 
-        if (options.filterPolicy() != null) {
+        if (options.partitionIndexAndFilters()) {
+            partitionedIndexBuilder = new PartitionedIndexBuilder(options.metadataBlockSize(), (FilterPolicy) options.filterPolicy());
+            filterPolicyBuilder = null;
+        }
+        else if (options.filterPolicy() != null) {
+            partitionedIndexBuilder = null;
             filterPolicyBuilder = new FilterBlockBuilder((FilterPolicy) options.filterPolicy());
             filterPolicyBuilder.startBlock(0);
         }
         else {
+            partitionedIndexBuilder = null;
             filterPolicyBuilder = null;
         }
     }
@@ -107,7 +208,24 @@ public class TableBuilder
 
     public long getFileSize()
     {
-        return position;
+        return position + bufferedBytes;
+    }
+
+    public int getRangeTombstoneCount()
+    {
+        return rangeTombstones.size();
+    }
+
+    /**
+     * Add a range tombstone to the table. Tombstones are stored in a meta block,
+     * they are not returned by the table iterator and may be added in any order.
+     */
+    public void addRangeTombstone(Slice key, Slice end)
+    {
+        requireNonNull(key, "key is null");
+        requireNonNull(end, "end is null");
+        checkState(!closed, "table is finished");
+        rangeTombstones.put(key, end);
     }
 
     public void add(BlockEntry blockEntry)
@@ -129,19 +247,11 @@ public class TableBuilder
             assert (userComparator.compare(key, lastKey) > 0) : "key must be greater than last key";
         }
 
-        // If we just wrote a block, we can now add the handle to index block
-        if (pendingIndexEntry) {
-            checkState(dataBlockBuilder.isEmpty(), "Internal error: Table has a pending index entry but data block builder is empty");
-
-            Slice shortestSeparator = userComparator.findShortestSeparator(lastKey, key);
-
-            Slice handleEncoding = BlockHandle.writeBlockHandle(pendingHandle);
-            indexBlockBuilder.add(shortestSeparator, handleEncoding);
-            pendingIndexEntry = false;
+        if (pendingBlockKeys != null) {
+            pendingBlockKeys.add(key);
         }
-
-        if (filterPolicyBuilder != null) {
-            filterPolicyBuilder.addKey(key);
+        else {
+            startDataKey(key);
         }
 
         lastKey = key;
@@ -154,6 +264,27 @@ public class TableBuilder
         }
     }
 
+    private void startDataKey(Slice key)
+            throws IOException
+    {
+        // If we just wrote a block, we can now add the handle to index block
+        if (pendingIndexEntry) {
+            checkState(dataBlockBuilder.isEmpty(), "Internal error: Table has a pending index entry but data block builder is empty");
+
+            Slice shortestSeparator = userComparator.findShortestSeparator(lastWrittenKey, key);
+
+            addIndexEntry(shortestSeparator);
+        }
+
+        if (filterPolicyBuilder != null) {
+            filterPolicyBuilder.addKey(key);
+        }
+        if (partitionedIndexBuilder != null) {
+            partitionedIndexBuilder.addKey(key);
+        }
+        lastWrittenKey = key;
+    }
+
     private void flush()
             throws IOException
     {
@@ -162,9 +293,31 @@ public class TableBuilder
             return;
         }
 
+        if (pendingBlockKeys != null) {
+            Slice raw = dataBlockBuilder.finish().copySlice();
+            dataBlockBuilder.reset();
+            PendingBlock block = new PendingBlock(raw, pendingBlockKeys);
+            pendingBlockKeys = new ArrayList<>();
+            pendingBlocks.addLast(block);
+            bufferedBytes += raw.length();
+            if (!trainingDictionary) {
+                startCompression(block);
+            }
+            else if (bufferedBytes >= dictionaryBufferLimit) {
+                trainCompressionDictionary();
+            }
+            writePendingBlocks(false);
+            return;
+        }
+
         checkState(!pendingIndexEntry, "Internal error: Table already has a pending index entry to flush");
 
-        pendingHandle = writeBlock(dataBlockBuilder);
+        dataBlockWritten(writeBlock(dataBlockBuilder));
+    }
+
+    private void dataBlockWritten(BlockHandle handle)
+    {
+        pendingHandle = handle;
 
         if (filterPolicyBuilder != null) {
             filterPolicyBuilder.startBlock(position);
@@ -173,12 +326,112 @@ public class TableBuilder
         pendingIndexEntry = true;
     }
 
+    /**
+     * Train the compression dictionary from the pending data blocks and start compressing them.
+     */
+    private void trainCompressionDictionary()
+    {
+        trainingDictionary = false;
+        if (compressionExecutor == null) {
+            // blocks added from now on are written directly
+            pendingBlockKeys = null;
+        }
+
+        // no more blocks are buffered than needed, every one of them is a sample
+        List<byte[]> samples = new ArrayList<>(pendingBlocks.size());
+        for (PendingBlock block : pendingBlocks) {
+            samples.add(block.raw.getBytes());
+        }
+        try {
+            compressionDictionary = Zstd.trainDictionary(samples.toArray(new byte[0][]), compressionDictionarySize);
+        }
+        catch (IOException ignored) {
+            // not enough samples, so just compress without dictionary
+        }
+
+        for (PendingBlock block : pendingBlocks) {
+            startCompression(block);
+        }
+    }
+
+    private void startCompression(PendingBlock block)
+    {
+        if (compressionExecutor == null) {
+            return;  // compressed when written
+        }
+        CompressionType compressionType = this.compressionType;
+        Zstd.Dictionary dictionary = compressionDictionary;
+        FutureTask<CompressedBlock> task = new FutureTask<>(() -> {
+            Slice output = Slices.allocate(Compressions.maxCompressedLength(compressionType, block.raw.length()));
+            return compressBlock(block.raw, compressionType, dictionary, output);
+        });
+        block.compressed = task;
+        compressionExecutor.execute(task);
+    }
+
+    /**
+     * Write pending data blocks in order. Unless {@code all}, stop at the first block
+     * still being compressed if no more than the allowed number of blocks are in flight.
+     */
+    private void writePendingBlocks(boolean all)
+            throws IOException
+    {
+        while (!trainingDictionary && !pendingBlocks.isEmpty()) {
+            PendingBlock block = pendingBlocks.peekFirst();
+            if (!all && block.compressed != null && !block.compressed.isDone() && pendingBlocks.size() <= maxBlocksInFlight) {
+                return;
+            }
+            pendingBlocks.removeFirst();
+            bufferedBytes -= block.raw.length();
+            for (Slice key : block.keys) {
+                startDataKey(key);
+            }
+            dataBlockWritten(writeCompressedBlock(compressed(block)));
+        }
+    }
+
+    private CompressedBlock compressed(PendingBlock block)
+            throws IOException
+    {
+        if (block.compressed == null) {
+            return compressBlock(block.raw, compressionType, compressionDictionary, compressedOutput(compressionType, block.raw.length()));
+        }
+        try {
+            return block.compressed.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing block");
+        }
+        catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void addIndexEntry(Slice separator)
+            throws IOException
+    {
+        Slice handleEncoding = BlockHandle.writeBlockHandle(pendingHandle);
+        indexBlockBuilder.add(separator, handleEncoding);
+        pendingIndexEntry = false;
+        if (partitionedIndexBuilder != null) {
+            partitionedIndexBuilder.indexEntryAdded(separator);
+        }
+    }
+
     private BlockHandle writeBlock(BlockBuilder blockBuilder)
             throws IOException
+    {
+        return writeBlock(blockBuilder, compressionDictionary);
+    }
+
+    private BlockHandle writeBlock(BlockBuilder blockBuilder, Zstd.Dictionary dictionary)
+            throws IOException
     {
         // close the block
         Slice raw = blockBuilder.finish();
-        BlockHandle blockHandle = writeRawBlock(raw);
+        BlockHandle blockHandle = writeRawBlock(raw, compressionType, dictionary);
 
         // clean up state
         blockBuilder.reset();
@@ -187,65 +440,66 @@ public class TableBuilder
     }
 
     private BlockHandle writeRawBlock(Slice raw) throws IOException
+    {
+        return writeRawBlock(raw, compressionType, compressionDictionary);
+    }
+
+    private BlockHandle writeRawBlock(Slice raw, CompressionType compressionType, Zstd.Dictionary dictionary) throws IOException
+    {
+        return writeCompressedBlock(compressBlock(raw, compressionType, dictionary, compressedOutput(compressionType, raw.length())));
+    }
+
+    private Slice compressedOutput(CompressionType compressionType, int length)
+    {
+        if (compressionType == CompressionType.NONE) {
+            return null;
+        }
+        ensureCompressedOutputCapacity(Compressions.maxCompressedLength(compressionType, length));
+        return compressedOutput;
+    }
+
+    /**
+     * Compress {@code raw} into {@code output} and checksum the result. Only uses its arguments
+     * so that blocks can be compressed concurrently.
+     */
+    private static CompressedBlock compressBlock(Slice raw, CompressionType compressionType, Zstd.Dictionary dictionary, Slice output)
     {
         // attempt to compress the block
         Slice blockContents = raw;
         CompressionType blockCompressionType = CompressionType.NONE;
-        if (compressionType == CompressionType.SNAPPY) {
-            ensureCompressedOutputCapacity(maxCompressedLength(raw.length()));
+        if (compressionType != CompressionType.NONE) {
             try {
-                int compressedSize = Snappy.compress(raw.getRawArray(), raw.getRawOffset(), raw.length(), compressedOutput.getRawArray(), 0);
+                int compressedSize = Compressions.compress(compressionType, raw.getRawArray(), raw.getRawOffset(), raw.length(), output.getRawArray(), output.getRawOffset(), dictionary);
 
                 // Don't use the compressed data if compressed less than 12.5%,
                 if (compressedSize < raw.length() - (raw.length() / 8)) {
-                    blockContents = compressedOutput.slice(0, compressedSize);
-                    blockCompressionType = CompressionType.SNAPPY;
+                    blockContents = output.slice(0, compressedSize);
+                    blockCompressionType = compressionType;
                 }
             }
             catch (IOException ignored) {
                 // compression failed, so just store uncompressed form
             }
         }
+        return new CompressedBlock(blockContents, blockCompressionType, crc32c(blockContents, blockCompressionType));
+    }
 
+    private BlockHandle writeCompressedBlock(CompressedBlock block) throws IOException
+    {
         // create block trailer
-        BlockTrailer blockTrailer = new BlockTrailer(blockCompressionType, crc32c(blockContents, blockCompressionType));
+        BlockTrailer blockTrailer = new BlockTrailer(block.compressionType, block.crc32c);
         Slice trailer = BlockTrailer.writeBlockTrailer(blockTrailer);
 
         // create a handle to this block
-        BlockHandle blockHandle = new BlockHandle(position, blockContents.length());
+        BlockHandle blockHandle = new BlockHandle(position, block.contents.length());
 
         // write data and trailer
-        file.append(blockContents);
+        file.append(block.contents);
         file.append(trailer);
-        position += blockContents.length() + trailer.length();
+        position += block.contents.length() + trailer.length();
         return blockHandle;
     }
 
-    private static int maxCompressedLength(int length)
-    {
-        // Compressed data can be defined as:
-        //    compressed := item* literal*
-        //    item       := literal* copy
-        //
-        // The trailing literal sequence has a space blowup of at most 62/60
-        // since a literal of length 60 needs one tag byte + one extra byte
-        // for length information.
-        //
-        // Item blowup is trickier to measure.  Suppose the "copy" op copies
-        // 4 bytes of data.  Because of a special check in the encoding code,
-        // we produce a 4-byte copy only if the offset is < 65536.  Therefore
-        // the copy op takes 3 bytes to encode, and this type of item leads
-        // to at most the 62/60 blowup for representing literals.
-        //
-        // Suppose the "copy" op copies 5 bytes of data.  If the offset is big
-        // enough, it will take 5 bytes to encode the copy op.  Therefore the
-        // worst case here is a one-byte literal followed by a five-byte copy.
-        // I.e., 6 bytes of input turn into 7 bytes of "compressed" data.
-        //
-        // This last factor dominates the blowup, so the final estimate is:
-        return 32 + length + (length / 6);
-    }
-
     public void finish()
             throws IOException
     {
@@ -253,36 +507,68 @@ public class TableBuilder
 
         // flush current data block
         flush();
+        if (trainingDictionary) {
+            trainCompressionDictionary();
+        }
+        writePendingBlocks(true);
 
         // mark table as closed
         closed = true;
 
+        // add last handle to index block
+        if (pendingIndexEntry) {
+            Slice shortSuccessor = userComparator.findShortSuccessor(lastKey);
+            addIndexEntry(shortSuccessor);
+        }
+        if (partitionedIndexBuilder != null) {
+            partitionedIndexBuilder.finish();
+        }
+
         BlockHandle filterBlockHandle = null;
 
         if (filterPolicyBuilder != null) {
             filterBlockHandle = writeRawBlock(filterPolicyBuilder.finish());
         }
 
+        BlockHandle rangeDeletionsBlockHandle = null;
+        if (!rangeTombstones.isEmpty()) {
+            BlockBuilder rangeDeletionsBlockBuilder = new BlockBuilder(1024, blockRestartInterval, userComparator);
+            for (Map.Entry<Slice, Slice> tombstone : rangeTombstones.entrySet()) {
+                rangeDeletionsBlockBuilder.add(tombstone.getKey(), tombstone.getValue());
+            }
+            rangeDeletionsBlockHandle = writeBlock(rangeDeletionsBlockBuilder, null);
+        }
+
+        BlockHandle dictionaryBlockHandle = null;
+        if (compressionDictionary != null) {
+            dictionaryBlockHandle = writeRawBlock(new Slice(compressionDictionary.getData()), CompressionType.NONE, null);
+        }
+
         // write (empty) meta index block
         BlockBuilder metaIndexBlockBuilder = new BlockBuilder(256, blockRestartInterval, new BytewiseComparator());
 
+        // keys are added in bytewise order
+        if (dictionaryBlockHandle != null) {
+            metaIndexBlockBuilder.add(new Slice(COMPRESSION_DICTIONARY_KEY.getBytes(CHARSET)), BlockHandle.writeBlockHandle(dictionaryBlockHandle));
+        }
         if (filterBlockHandle != null) {
             metaIndexBlockBuilder.add(new Slice(("filter." + filterPolicyBuilder.name()).getBytes(CHARSET)), BlockHandle.writeBlockHandle(filterBlockHandle));
         }
-
-        BlockHandle metaindexBlockHandle = writeBlock(metaIndexBlockBuilder);
-
-        // add last handle to index block
-        if (pendingIndexEntry) {
-            Slice shortSuccessor = userComparator.findShortSuccessor(lastKey);
-
-            Slice handleEncoding = BlockHandle.writeBlockHandle(pendingHandle);
-            indexBlockBuilder.add(shortSuccessor, handleEncoding);
-            pendingIndexEntry = false;
+        if (partitionedIndexBuilder != null) {
+            metaIndexBlockBuilder.add(new Slice(PARTITIONED_INDEX_KEY.getBytes(CHARSET)), Slices.EMPTY_SLICE);
+            if (partitionedIndexBuilder.filterPolicy != null) {
+                metaIndexBlockBuilder.add(new Slice((PARTITIONED_FILTER_PREFIX + partitionedIndexBuilder.filterPolicy.name()).getBytes(CHARSET)), Slices.EMPTY_SLICE);
+            }
         }
+        if (rangeDeletionsBlockHandle != null) {
+            metaIndexBlockBuilder.add(new Slice(RANGE_DELETIONS_KEY.getBytes(CHARSET)), BlockHandle.writeBlockHandle(rangeDeletionsBlockHandle));
+        }
+
+        // the dictionary is located through the meta index, so neither of the following blocks may use it
+        BlockHandle metaindexBlockHandle = writeBlock(metaIndexBlockBuilder, null);
 
-        // write index block
-        BlockHandle indexBlockHandle = writeBlock(indexBlockBuilder);
+        // write index block (top-level index when partitioned)
+        BlockHandle indexBlockHandle = writeBlock(partitionedIndexBuilder != null ? partitionedIndexBuilder.topLevelIndex : indexBlockBuilder, null);
 
         // write footer
         Footer footer = new Footer(metaindexBlockHandle, indexBlockHandle);
@@ -294,14 +580,20 @@ public class TableBuilder
     public void abandon()
     {
         closed = true; //mark it as unusable
+        for (PendingBlock block : pendingBlocks) {
+            if (block.compressed != null) {
+                block.compressed.cancel(false);
+            }
+        }
+        pendingBlocks.clear();
     }
 
     public static int crc32c(Slice data, CompressionType type)
     {
-        PureJavaCrc32C crc32c = new PureJavaCrc32C();
+        Checksum crc32c = Crc32C.newChecksum();
         crc32c.update(data.getRawArray(), data.getRawOffset(), data.length());
         crc32c.update(type.persistentId() & 0xFF);
-        return crc32c.getMaskedValue();
+        return Crc32C.getMaskedValue(crc32c);
     }
 
     public void ensureCompressedOutputCapacity(int capacity)
@@ -311,4 +603,94 @@ public class TableBuilder
         }
         compressedOutput = Slices.allocate(capacity);
     }
+
+    private static final class PendingBlock
+    {
+        private final Slice raw;
+        private final List<Slice> keys;
+        // null when compressed by the writing thread
+        private Future<CompressedBlock> compressed;
+
+        private PendingBlock(Slice raw, List<Slice> keys)
+        {
+            this.raw = raw;
+            this.keys = keys;
+        }
+    }
+
+    private static final class CompressedBlock
+    {
+        private final Slice contents;
+        private final CompressionType compressionType;
+        private final int crc32c;
+
+        private CompressedBlock(Slice contents, CompressionType compressionType, int crc32c)
+        {
+            this.contents = contents;
+            this.compressionType = compressionType;
+            this.crc32c = crc32c;
+        }
+    }
+
+    /**
+     * Cut the index into partitions of about {@code metadataBlockSize} bytes. Each partition
+     * is written as a regular block and referenced from a top-level index by the last separator
+     * key it contains, so the top-level index obeys the same seek semantics as a flat index.
+     * When a filter policy is set, a filter over all keys of the data blocks referenced by a
+     * partition is written next to it and its handle is appended to the top-level entry.
+     */
+    private final class PartitionedIndexBuilder
+    {
+        private final int metadataBlockSize;
+        private final FilterPolicy filterPolicy;
+        private final BlockBuilder topLevelIndex;
+        private final List<Slice> partitionKeys = new ArrayList<>();
+        private Slice lastSeparator;
+
+        private PartitionedIndexBuilder(int metadataBlockSize, FilterPolicy filterPolicy)
+        {
+            this.metadataBlockSize = metadataBlockSize;
+            this.filterPolicy = filterPolicy;
+            this.topLevelIndex = new BlockBuilder(BlockHandle.MAX_ENCODED_LENGTH * 64, 1, userComparator);
+        }
+
+        private void addKey(Slice key)
+        {
+            if (filterPolicy != null) {
+                partitionKeys.add(key);
+            }
+        }
+
+        private void indexEntryAdded(Slice separator)
+                throws IOException
+        {
+            lastSeparator = separator;
+            if (indexBlockBuilder.currentSizeEstimate() >= metadataBlockSize) {
+                cutPartition();
+            }
+        }
+
+        private void cutPartition()
+                throws IOException
+        {
+            BlockHandle partitionHandle = writeBlock(indexBlockBuilder);
+            SliceOutput handles = Slices.allocate(BlockHandle.MAX_ENCODED_LENGTH * 2).output();
+            BlockHandle.writeBlockHandleTo(partitionHandle, handles);
+            if (filterPolicy != null) {
+                // keys of the data block waiting for its index entry are never part of a closed partition
+                BlockHandle filterHandle = writeRawBlock(new Slice(filterPolicy.createFilter(partitionKeys)));
+                partitionKeys.clear();
+                BlockHandle.writeBlockHandleTo(filterHandle, handles);
+            }
+            topLevelIndex.add(lastSeparator, handles.slice());
+        }
+
+        private void finish()
+                throws IOException
+        {
+            if (!indexBlockBuilder.isEmpty()) {
+                cutPartition();
+            }
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import org.iq80.leveldb.CompressionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Block compression dispatch by {@link CompressionType}.
+ * <p>
+ * Snappy blocks are self describing. For {@link CompressionType#LZ4} and {@link CompressionType#ZSTD}
+ * the compressed payload is prefixed with the uncompressed length encoded as a variable length int,
+ * the same layout as Snappy, so the reader can always size its output before decompression.
+ */
+public final class Compressions
+{
+    private static final int MAX_SCRATCH_SIZE = 1 << 20;
+    private static final ThreadLocal<byte[]> INPUT_SCRATCH = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    private Compressions()
+    {
+    }
+
+    public static boolean available(CompressionType type)
+    {
+        switch (type) {
+            case NONE:
+                return true;
+            case SNAPPY:
+                return Snappy.available();
+            case LZ4:
+                return Lz4.available();
+            case ZSTD:
+                return Zstd.available();
+            default:
+                return false;
+        }
+    }
+
+    public static int maxCompressedLength(CompressionType type, int length)
+    {
+        switch (type) {
+            case NONE:
+                return length;
+            case SNAPPY:
+                return snappyMaxCompressedLength(length);
+            case LZ4:
+                return VariableLengthQuantity.variableLengthSize(length) + Lz4.maxCompressedLength(length);
+            case ZSTD:
+                return VariableLengthQuantity.variableLengthSize(length) + Zstd.maxCompressedLength(length);
+            default:
+                throw new IllegalArgumentException("Unsupported compression type " + type);
+        }
+    }
+
+    /**
+     * Compress {@code input} into {@code output} that must have at least {@link #maxCompressedLength(CompressionType, int)}
+     * bytes available after {@code outputOffset}.
+     *
+     * @return compressed size
+     */
+    public static int compress(CompressionType type, byte[] input, int inputOffset, int length, byte[] output, int outputOffset)
+            throws IOException
+    {
+        return compress(type, input, inputOffset, length, output, outputOffset, null);
+    }
+
+    /**
+     * Same as {@link #compress(CompressionType, byte[], int, int, byte[], int)} using {@code dictionary}
+     * if not {@code null}. Dictionaries are only supported by {@link CompressionType#ZSTD}.
+     */
+    public static int compress(CompressionType type, byte[] input, int inputOffset, int length, byte[] output, int outputOffset, Zstd.Dictionary dictionary)
+            throws IOException
+    {
+        checkArgument(dictionary == null || type == CompressionType.ZSTD, "Compression dictionaries are not supported by %s", type);
+        switch (type) {
+            case SNAPPY:
+                return Snappy.compress(input, inputOffset, length, output, outputOffset);
+            case LZ4: {
+                int headerSize = writeUncompressedLength(length, output, outputOffset);
+                int maxOutput = Lz4.maxCompressedLength(length);
+                return headerSize + Lz4.compress(input, inputOffset, length, output, outputOffset + headerSize, maxOutput);
+            }
+            case ZSTD: {
+                int headerSize = writeUncompressedLength(length, output, outputOffset);
+                int maxOutput = Zstd.maxCompressedLength(length);
+                if (dictionary != null) {
+                    return headerSize + Zstd.compress(input, inputOffset, length, output, outputOffset + headerSize, maxOutput, dictionary);
+                }
+                return headerSize + Zstd.compress(input, inputOffset, length, output, outputOffset + headerSize, maxOutput);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported compression type " + type);
+        }
+    }
+
+    /**
+     * Uncompress a {@link CompressionType#SNAPPY} block or a length prefixed {@link CompressionType#LZ4}
+     * or {@link CompressionType#ZSTD} block {@code compressed} (from position to limit) into a new heap slice
+     * of exactly the uncompressed size. Position of {@code compressed} is not modified.
+     * <p>
+     * Input that is not heap backed (direct or memory mapped buffers) is first copied into a per thread
+     * scratch array that is reused across calls, so the only allocation is the returned block.
+     */
+    public static Slice uncompress(CompressionType type, ByteBuffer compressed)
+            throws IOException
+    {
+        return uncompress(type, compressed, null);
+    }
+
+    /**
+     * Same as {@link #uncompress(CompressionType, ByteBuffer)} using {@code dictionary} for
+     * {@link CompressionType#ZSTD} blocks if not {@code null}.
+     */
+    public static Slice uncompress(CompressionType type, ByteBuffer compressed, Zstd.Dictionary dictionary)
+            throws IOException
+    {
+        ByteBuffer input = compressed.duplicate();
+        // Snappy embeds the uncompressed length in its own header, that is part of the compressed input
+        int uncompressedLength = VariableLengthQuantity.readVariableLengthInt(type == CompressionType.SNAPPY ? input.duplicate() : input);
+        byte[] inputArray;
+        int inputOffset;
+        int inputLength = input.remaining();
+        if (input.hasArray()) {
+            inputArray = input.array();
+            inputOffset = input.arrayOffset() + input.position();
+        }
+        else {
+            inputArray = inputScratch(inputLength);
+            inputOffset = 0;
+            input.get(inputArray, 0, inputLength);
+        }
+        byte[] output = new byte[uncompressedLength];
+        int size;
+        switch (type) {
+            case SNAPPY:
+                Snappy.uncompress(inputArray, inputOffset, inputLength, output, 0);
+                size = uncompressedLength;
+                break;
+            case LZ4:
+                size = Lz4.uncompress(inputArray, inputOffset, inputLength, output, 0, uncompressedLength);
+                break;
+            case ZSTD:
+                if (dictionary != null) {
+                    size = Zstd.uncompress(inputArray, inputOffset, inputLength, output, 0, uncompressedLength, dictionary);
+                }
+                else {
+                    size = Zstd.uncompress(inputArray, inputOffset, inputLength, output, 0, uncompressedLength);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression type " + type);
+        }
+        if (size != uncompressedLength) {
+            throw new IOException(String.format("Corrupted %s block: expected %d bytes but got %d", type, uncompressedLength, size));
+        }
+        return Slices.wrappedBuffer(output);
+    }
+
+    private static byte[] inputScratch(int length)
+    {
+        if (length > MAX_SCRATCH_SIZE) {
+            // do not pin unusually large blocks to the thread
+            return new byte[length];
+        }
+        byte[] scratch = INPUT_SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, Math.min(MAX_SCRATCH_SIZE, scratch.length * 2))];
+            INPUT_SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    private static int writeUncompressedLength(int length, byte[] output, int outputOffset)
+    {
+        SliceOutput sliceOutput = new Slice(output, outputOffset, output.length - outputOffset).output();
+        VariableLengthQuantity.writeVariableLengthInt(length, sliceOutput);
+        return sliceOutput.size();
+    }
+
+    private static int snappyMaxCompressedLength(int length)
+    {
+        // Compressed data can be defined as:
+        //    compressed := item* literal*
+        //    item       := literal* copy
+        //
+        // The trailing literal sequence has a space blowup of at most 62/60
+        // since a literal of length 60 needs one tag byte + one extra byte
+        // for length information.
+        //
+        // Item blowup is trickier to measure.  Suppose the "copy" op copies
+        // 4 bytes of data.  Because of a special check in the encoding code,
+        // we produce a 4-byte copy only if the offset is < 65536.  Therefore
+        // the copy op takes 3 bytes to encode, and this type of item leads
+        // to at most the 62/60 blowup for representing literals.
+        //
+        // Suppose the "copy" op copies 5 bytes of data.  If the offset is big
+        // enough, it will take 5 bytes to encode the copy op.  Therefore the
+        // worst case here is a one-byte literal followed by a five-byte copy.
+        // I.e., 6 bytes of input turn into 7 bytes of "compressed" data.
+        //
+        // This last factor dominates the blowup, so the final estimate is:
+        return 32 + length + (length / 6);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import com.google.common.base.Throwables;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32-C checksums used by log records and table blocks.
+ * <p>
+ * On JDK 9+ {@code java.util.zip.CRC32C} is used. It is a JVM intrinsic backed by SSE4.2 (or the
+ * equivalent instructions on other CPUs) and several times faster than the table driven
+ * {@link PureJavaCrc32C}, that is used on older JVMs. As the project still targets Java 8, the JDK class
+ * is only accessed through method handles.
+ * <p>
+ * The implementation can be forced with the {@code leveldb.crc32c} system property, a comma separated
+ * list of {@code jdk} and {@code pure} tried in order.
+ */
+public final class Crc32C
+{
+    private static final MethodHandle JDK_CONSTRUCTOR;
+    private static final MethodHandle JDK_UPDATE_BUFFER;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle updateBuffer = null;
+        String[] factories = System.getProperty("leveldb.crc32c", "jdk,pure").split(",");
+        for (int i = 0; i < factories.length && constructor == null; i++) {
+            String name = factories[i].trim().toLowerCase();
+            if ("pure".equals(name)) {
+                break;
+            }
+            if ("jdk".equals(name)) {
+                try {
+                    Class<?> type = Class.forName("java.util.zip.CRC32C");
+                    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                    MethodHandle ctor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                            .asType(MethodType.methodType(Checksum.class));
+                    MethodHandle update = lookup.findVirtual(type, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                            .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+                    // make sure it can be invoked
+                    Checksum checksum = (Checksum) ctor.invokeExact();
+                    update.invokeExact(checksum, ByteBuffer.allocate(1));
+                    constructor = ctor;
+                    updateBuffer = update;
+                }
+                catch (Throwable ignored) {
+                }
+            }
+        }
+        JDK_CONSTRUCTOR = constructor;
+        JDK_UPDATE_BUFFER = updateBuffer;
+    }
+
+    private Crc32C()
+    {
+    }
+
+    /**
+     * @return {@code true} if checksums are computed by the JDK intrinsic
+     */
+    public static boolean intrinsic()
+    {
+        return JDK_CONSTRUCTOR != null;
+    }
+
+    /**
+     * Create a new CRC32-C checksum using the fastest available implementation.
+     */
+    public static Checksum newChecksum()
+    {
+        if (JDK_CONSTRUCTOR != null) {
+            try {
+                return (Checksum) JDK_CONSTRUCTOR.invokeExact();
+            }
+            catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new AssertionError(e);
+            }
+        }
+        return new PureJavaCrc32C();
+    }
+
+    /**
+     * Update {@code checksum} with the bytes of {@code buffer} from position to limit.
+     * Upon return, the buffer's position will be equal to its limit.
+     */
+    public static void update(Checksum checksum, ByteBuffer buffer)
+    {
+        if (checksum instanceof PureJavaCrc32C) {
+            ((PureJavaCrc32C) checksum).update(buffer);
+        }
+        else if (JDK_UPDATE_BUFFER != null) {
+            try {
+                JDK_UPDATE_BUFFER.invokeExact(checksum, buffer);
+            }
+            catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new AssertionError(e);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported checksum " + checksum.getClass());
+        }
+    }
+
+    /**
+     * Return the masked representation of the current value of {@code checksum}.
+     *
+     * @see PureJavaCrc32C#mask(int)
+     */
+    public static int getMaskedValue(Checksum checksum)
+    {
+        return PureJavaCrc32C.mask((int) checksum.getValue());
+    }
+}
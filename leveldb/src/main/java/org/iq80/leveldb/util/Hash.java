@@ -77,6 +77,49 @@ public final class Hash
         return h;
     }
 
+    /**
+     * Same as {@link #hash(byte[], int, int, int)} over the content of {@code data}, without copy
+     * if the slice is not backed by an array.
+     */
+    public static int hash(Slice data, int seed)
+    {
+        if (data.hasArray()) {
+            return hash(data.getRawArray(), data.getRawOffset(), data.length(), seed);
+        }
+        final int len = data.length();
+        // Similar to murmur hash
+        int m = 0xc6a4a793;
+        int r = 24;
+
+        int h = seed ^ (len * m);
+
+        int idx = 0;
+        // Pick up four bytes at a time
+        for (; idx + 4 <= len; idx += 4) {
+            int w = data.getInt(idx);
+            h += w;
+            h *= m;
+            h ^= (h >>> 16);
+        }
+
+        // Pick up remaining bytes
+        final int remaining = len - idx;
+        switch (remaining) {
+            case 3:
+                h += data.getUnsignedByte(idx + 2) << 16;
+                //FALLTHROUGH INTENDED: DO NOT PUT BREAK
+            case 2:
+                h += data.getUnsignedByte(idx + 1) << 8;
+                //FALLTHROUGH INTENDED: DO NOT PUT BREAK
+            case 1:
+                h += data.getUnsignedByte(idx);
+                h *= m;
+                h ^= (h >>> r);
+                break;
+        }
+        return h;
+    }
+
     private static int byteToInt(byte[] data, final int index)
     {
         return (data[index] & 0xff) |
@@ -51,6 +51,15 @@ public final class LRUCache<K, V>
         return new LRUCache<>(capacity, weigher);
     }
 
+    /**
+     * Cache also supporting {@link IRecencyTrackingCache#keysByRecency()}, at the cost of updating
+     * a shared access tick on every hit.
+     */
+    public static <K, V> IRecencyTrackingCache<K, V> createRecencyTrackingCache(int capacity, final Weigher<K, V> weigher)
+    {
+        return new RecencyTrackingLRUCache<>(capacity, weigher);
+    }
+
     public V load(final K key, Callable<V> loader) throws ExecutionException
     {
         return cache.get(key, loader);
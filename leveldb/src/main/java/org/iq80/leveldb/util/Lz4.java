@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * A LZ4 block compression abstraction which attempts to use the lz4-java implementation
+ * (JNI with its own pure Java fallback) and falls back to the pure Java airlift
+ * aircompressor implementation if it cannot be loaded.  You can change the
+ * load order by setting the 'leveldb.lz4' system property.  Example:
+ * <p/>
+ * <code>
+ * -Dleveldb.lz4=airlift,lz4-java
+ * </code>
+ * <p/>
+ * The system property can also be configured with the name of a class which
+ * implements the Lz4.SPI interface.
+ * </p>
+ * Only raw LZ4 blocks are produced, the uncompressed length must be tracked by the caller.
+ */
+public final class Lz4
+{
+    private Lz4()
+    {
+    }
+
+    public interface SPI
+    {
+        int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException;
+
+        int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+                throws IOException;
+
+        int maxCompressedLength(int length);
+    }
+
+    public static class Lz4Java
+            implements SPI
+    {
+        private static final net.jpountz.lz4.LZ4Factory FACTORY = net.jpountz.lz4.LZ4Factory.fastestInstance();
+        private final net.jpountz.lz4.LZ4Compressor compressor = FACTORY.fastCompressor();
+        private final net.jpountz.lz4.LZ4SafeDecompressor decompressor = FACTORY.safeDecompressor();
+
+        @Override
+        public int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException
+        {
+            try {
+                return decompressor.decompress(input, inputOffset, length, output, outputOffset, uncompressedLength);
+            }
+            catch (net.jpountz.lz4.LZ4Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+                throws IOException
+        {
+            try {
+                return compressor.compress(input, inputOffset, length, output, outputOffset, maxOutputLength);
+            }
+            catch (net.jpountz.lz4.LZ4Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public int maxCompressedLength(int length)
+        {
+            return compressor.maxCompressedLength(length);
+        }
+    }
+
+    public static class AirliftLz4
+            implements SPI
+    {
+        // airlift compressor keeps a hash table between calls and is not thread safe
+        private final ThreadLocal<io.airlift.compress.lz4.Lz4Compressor> compressor = ThreadLocal.withInitial(io.airlift.compress.lz4.Lz4Compressor::new);
+        private final io.airlift.compress.lz4.Lz4Decompressor decompressor = new io.airlift.compress.lz4.Lz4Decompressor();
+
+        @Override
+        public int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException
+        {
+            try {
+                return decompressor.decompress(input, inputOffset, length, output, outputOffset, uncompressedLength);
+            }
+            catch (io.airlift.compress.MalformedInputException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            return compressor.get().compress(input, inputOffset, length, output, outputOffset, maxOutputLength);
+        }
+
+        @Override
+        public int maxCompressedLength(int length)
+        {
+            return compressor.get().maxCompressedLength(length);
+        }
+    }
+
+    private static final SPI LZ4;
+
+    static {
+        SPI attempt = null;
+        String[] factories = System.getProperty("leveldb.lz4", "lz4-java,airlift").split(",");
+        for (int i = 0; i < factories.length && attempt == null; i++) {
+            String name = factories[i];
+            try {
+                name = name.trim();
+                if ("lz4-java".equals(name.toLowerCase())) {
+                    name = "org.iq80.leveldb.util.Lz4$Lz4Java";
+                }
+                else if ("airlift".equals(name.toLowerCase())) {
+                    name = "org.iq80.leveldb.util.Lz4$AirliftLz4";
+                }
+                attempt = (SPI) Thread.currentThread().getContextClassLoader().loadClass(name).newInstance();
+            }
+            catch (Throwable e) {
+            }
+        }
+        LZ4 = attempt;
+    }
+
+    public static boolean available()
+    {
+        return LZ4 != null;
+    }
+
+    public static int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+            throws IOException
+    {
+        return LZ4.uncompress(input, inputOffset, length, output, outputOffset, uncompressedLength);
+    }
+
+    public static int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+            throws IOException
+    {
+        return LZ4.compress(input, inputOffset, length, output, outputOffset, maxOutputLength);
+    }
+
+    public static int maxCompressedLength(int length)
+    {
+        return LZ4.maxCompressedLength(length);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iq80.leveldb.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LRUCache} that also tracks the recency of its entries, see {@link #keysByRecency()}.
+ * Every hit stamps the entry with a shared access tick.
+ */
+final class RecencyTrackingLRUCache<K, V>
+        implements IRecencyTrackingCache<K, V>
+{
+    private final Cache<K, Node<V>> cache;
+    private final Weigher<K, V> weigher;
+    // ticks of the most recent accesses, repeated accesses to the most recent entry do not move it
+    private final AtomicLong clock = new AtomicLong();
+
+    RecencyTrackingLRUCache(int capacity, final Weigher<K, V> weigher)
+    {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(capacity)
+                .weigher((Weigher<K, Node<V>>) (key, node) -> weigher.weigh(key, node.value))
+                .concurrencyLevel(1 << 4)
+                .build();
+        this.weigher = weigher;
+    }
+
+    @Override
+    public V load(final K key, Callable<V> loader) throws ExecutionException
+    {
+        return touch(cache.get(key, () -> new Node<>(loader.call(), clock.incrementAndGet())));
+    }
+
+    @Override
+    public long getApproximateMemoryUsage()
+    {
+        return cache.asMap().entrySet().stream()
+                .mapToLong(e -> weigher.weigh(e.getKey(), e.getValue().value))
+                .sum();
+    }
+
+    @Override
+    public V getIfPresent(K key)
+    {
+        Node<V> node = cache.getIfPresent(key);
+        return node == null ? null : touch(node);
+    }
+
+    @Override
+    public List<K> keysByRecency()
+    {
+        List<Map.Entry<K, Node<V>>> entries = new ArrayList<>(cache.asMap().entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<K, Node<V>> entry) -> entry.getValue().lastAccess).reversed());
+        return entries.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    @Override
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    private V touch(Node<V> node)
+    {
+        if (node.lastAccess != clock.get()) {
+            node.lastAccess = clock.incrementAndGet();
+        }
+        return node.value;
+    }
+
+    private static final class Node<V>
+    {
+        private final V value;
+        // racy updates only reorder accesses happening at the same time
+        private volatile long lastAccess;
+
+        private Node(V value, long lastAccess)
+        {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -32,12 +32,20 @@ import static org.iq80.leveldb.util.SizeOf.SIZE_OF_LONG;
 import static org.iq80.leveldb.util.SizeOf.SIZE_OF_SHORT;
 
 /**
- * Little Endian slice of a byte array.
+ * Little Endian slice of a byte array or of a {@link ByteBuffer}.
+ * <p>
+ * Buffer backed slices are used to reference direct and memory mapped data in place
+ * (see {@link Slices#referencedBuffer(ByteBuffer)}). They do not have an accessible
+ * array, {@link #hasArray()} must be checked before using {@link #getRawArray()}.
  */
 public final class Slice
         implements Comparable<Slice>
 {
+    private static final int SMALL_COPY_LENGTH = 64;
+
     private final byte[] data;
+    // little endian buffer indexed with absolute positions, only used when data is null
+    private final ByteBuffer buffer;
     private final int offset;
     private final int length;
 
@@ -46,6 +54,7 @@ public final class Slice
     public Slice(int length)
     {
         data = new byte[length];
+        this.buffer = null;
         this.offset = 0;
         this.length = length;
     }
@@ -54,6 +63,7 @@ public final class Slice
     {
         requireNonNull(data, "array is null");
         this.data = data;
+        this.buffer = null;
         this.offset = 0;
         this.length = data.length;
     }
@@ -62,6 +72,21 @@ public final class Slice
     {
         requireNonNull(data, "array is null");
         this.data = data;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Slice of {@code length} bytes of {@code buffer} starting at absolute index {@code offset}.
+     * {@code buffer} is not duplicated: it must be little endian and its position/limit must never be changed.
+     */
+    Slice(ByteBuffer buffer, int offset, int length)
+    {
+        requireNonNull(buffer, "buffer is null");
+        checkPositionIndexes(offset, offset + length, buffer.capacity());
+        this.data = null;
+        this.buffer = buffer;
         this.offset = offset;
         this.length = length;
     }
@@ -74,22 +99,43 @@ public final class Slice
         return length;
     }
 
+    /**
+     * Tells whether or not this slice is backed by an accessible byte array.
+     */
+    public boolean hasArray()
+    {
+        return data != null;
+    }
+
     /**
      * Gets the array underlying this slice.
+     *
+     * @throws UnsupportedOperationException if this slice is not backed by an array
      */
     public byte[] getRawArray()
     {
+        checkHasArray();
         return data;
     }
 
     /**
      * Gets the offset of this slice in the underlying array.
+     *
+     * @throws UnsupportedOperationException if this slice is not backed by an array
      */
     public int getRawOffset()
     {
+        checkHasArray();
         return offset;
     }
 
+    private void checkHasArray()
+    {
+        if (data == null) {
+            throw new UnsupportedOperationException("Slice is not backed by an array");
+        }
+    }
+
     /**
      * Gets a byte at the specified absolute {@code index} in this buffer.
      *
@@ -99,8 +145,37 @@ public final class Slice
     public byte getByte(int index)
     {
         checkPositionIndexes(index, index + SIZE_OF_BYTE, this.length);
+        return rawByte(index);
+    }
+
+    /**
+     * Little endian long at {@code index} relative to this slice, without bounds check.
+     */
+    private long rawLong(int index)
+    {
+        if (data == null) {
+            return buffer.getLong(offset + index);
+        }
         index += offset;
-        return data[index];
+        return ((long) data[index] & 0xff) |
+                ((long) data[index + 1] & 0xff) << 8 |
+                ((long) data[index + 2] & 0xff) << 16 |
+                ((long) data[index + 3] & 0xff) << 24 |
+                ((long) data[index + 4] & 0xff) << 32 |
+                ((long) data[index + 5] & 0xff) << 40 |
+                ((long) data[index + 6] & 0xff) << 48 |
+                ((long) data[index + 7] & 0xff) << 56;
+    }
+
+    /**
+     * Byte at {@code index} relative to this slice, without bounds check.
+     */
+    private byte rawByte(int index)
+    {
+        if (data == null) {
+            return buffer.get(offset + index);
+        }
+        return data[offset + index];
     }
 
     /**
@@ -126,6 +201,9 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_SHORT, this.length);
         index += offset;
+        if (data == null) {
+            return buffer.getShort(index);
+        }
         return (short) (data[index] & 0xFF | data[index + 1] << 8);
     }
 
@@ -140,6 +218,9 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_INT, this.length);
         index += offset;
+        if (data == null) {
+            return buffer.getInt(index);
+        }
         return (data[index] & 0xff) |
                 (data[index + 1] & 0xff) << 8 |
                 (data[index + 2] & 0xff) << 16 |
@@ -157,6 +238,9 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_LONG, this.length);
         index += offset;
+        if (data == null) {
+            return buffer.getLong(index);
+        }
         return ((long) data[index] & 0xff) |
                 ((long) data[index + 1] & 0xff) << 8 |
                 ((long) data[index + 2] & 0xff) << 16 |
@@ -182,6 +266,10 @@ public final class Slice
      */
     public void getBytes(int index, Slice dst, int dstIndex, int length)
     {
+        if (dst.data == null) {
+            dst.setBytes(dstIndex, this, index, length);
+            return;
+        }
         getBytes(index, dst.data, dstIndex, length);
     }
 
@@ -203,9 +291,20 @@ public final class Slice
         checkPositionIndexes(index, index + length, this.length);
         checkPositionIndexes(destinationIndex, destinationIndex + length, destination.length);
         index += offset;
+        if (data == null) {
+            duplicateAt(index).get(destination, destinationIndex, length);
+            return;
+        }
         System.arraycopy(data, index, destination, destinationIndex, length);
     }
 
+    private ByteBuffer duplicateAt(int absoluteIndex)
+    {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(absoluteIndex);
+        return duplicate;
+    }
+
     public byte[] getBytes()
     {
         return getBytes(0, length);
@@ -214,12 +313,11 @@ public final class Slice
     public byte[] getBytes(int index, int length)
     {
         checkPositionIndexes(index, index + length, this.length);
-        if (length == 0 && this.data.length == 0) {
+        if (length == 0 && this.data != null && this.data.length == 0) {
             return data; //zero size array is immutable
         }
-        index += offset;
         byte[] value = new byte[length];
-        System.arraycopy(data, index, value, 0, length);
+        getBytes(index, value, 0, length);
         return value;
     }
 
@@ -236,6 +334,12 @@ public final class Slice
     {
         checkPositionIndex(index, this.length);
         index += offset;
+        if (data == null) {
+            ByteBuffer source = duplicateAt(index);
+            source.limit(index + Math.min(length, destination.remaining()));
+            destination.put(source);
+            return;
+        }
         destination.put(data, index, Math.min(length, destination.remaining()));
     }
 
@@ -251,6 +355,10 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_SHORT, this.length);
         index += offset;
+        if (data == null) {
+            buffer.putShort(index, (short) value);
+            return;
+        }
         data[index] = (byte) (value);
         data[index + 1] = (byte) (value >>> 8);
     }
@@ -266,6 +374,10 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_INT, this.length);
         index += offset;
+        if (data == null) {
+            buffer.putInt(index, value);
+            return;
+        }
         data[index] = (byte) (value);
         data[index + 1] = (byte) (value >>> 8);
         data[index + 2] = (byte) (value >>> 16);
@@ -283,6 +395,10 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_LONG, this.length);
         index += offset;
+        if (data == null) {
+            buffer.putLong(index, value);
+            return;
+        }
         data[index] = (byte) (value);
         data[index + 1] = (byte) (value >>> 8);
         data[index + 2] = (byte) (value >>> 16);
@@ -304,6 +420,10 @@ public final class Slice
     {
         checkPositionIndexes(index, index + SIZE_OF_BYTE, this.length);
         index += offset;
+        if (data == null) {
+            buffer.put(index, (byte) value);
+            return;
+        }
         data[index] = (byte) value;
     }
 
@@ -322,6 +442,21 @@ public final class Slice
      */
     public void setBytes(int index, Slice src, int srcIndex, int length)
     {
+        if (src.data == null) {
+            checkPositionIndexes(index, index + length, this.length);
+            checkPositionIndexes(srcIndex, srcIndex + length, src.length);
+            if (data != null && length <= SMALL_COPY_LENGTH) {
+                // typically key prefixes, cheaper than a buffer duplicate
+                for (int i = 0; i < length; i++) {
+                    data[offset + index + i] = src.rawByte(srcIndex + i);
+                }
+                return;
+            }
+            ByteBuffer source = src.duplicateAt(src.offset + srcIndex);
+            source.limit(src.offset + srcIndex + length);
+            setBytes(index, source);
+            return;
+        }
         setBytes(index, src.data, src.offset + srcIndex, length);
     }
 
@@ -340,6 +475,10 @@ public final class Slice
         checkPositionIndexes(index, index + length, this.length);
         checkPositionIndexes(sourceIndex, sourceIndex + length, source.length);
         index += offset;
+        if (data == null) {
+            duplicateAt(index).put(source, sourceIndex, length);
+            return;
+        }
         System.arraycopy(source, sourceIndex, data, index, length);
     }
 
@@ -356,6 +495,10 @@ public final class Slice
     {
         checkPositionIndexes(index, index + source.remaining(), this.length);
         index += offset;
+        if (data == null) {
+            duplicateAt(index).put(source);
+            return;
+        }
         source.get(data, index, source.remaining());
     }
 
@@ -374,6 +517,14 @@ public final class Slice
             throws IOException
     {
         checkPositionIndexes(index, index + length, this.length);
+        if (data == null) {
+            byte[] bytes = new byte[length];
+            int readBytes = new Slice(bytes).setBytes(0, in, length);
+            if (readBytes > 0) {
+                setBytes(index, bytes, 0, readBytes);
+            }
+            return readBytes;
+        }
         index += offset;
         int readBytes = 0;
         do {
@@ -444,6 +595,9 @@ public final class Slice
         if (index >= 0 && length == 0) {
             return Slices.EMPTY_SLICE;
         }
+        if (data == null) {
+            return new Slice(buffer, offset + index, length);
+        }
         return new Slice(data, offset + index, length);
     }
 
@@ -480,6 +634,11 @@ public final class Slice
     {
         checkPositionIndexes(index, index + length, this.length);
         index += offset;
+        if (data == null) {
+            ByteBuffer duplicate = duplicateAt(index);
+            duplicate.limit(index + length);
+            return duplicate.order(LITTLE_ENDIAN);
+        }
         return ByteBuffer.wrap(data, index, length).order(LITTLE_ENDIAN);
     }
 
@@ -501,7 +660,15 @@ public final class Slice
         }
 
         // if arrays have same base offset, some optimizations can be taken...
-        if (offset == slice.offset && data == slice.data) {
+        if (offset == slice.offset && data == slice.data && (data != null || buffer == slice.buffer)) {
+            return true;
+        }
+        if (data == null || slice.data == null) {
+            for (int i = 0; i < length; i++) {
+                if (rawByte(i) != slice.rawByte(i)) {
+                    return false;
+                }
+            }
             return true;
         }
         for (int i = 0; i < length; i++) {
@@ -520,8 +687,15 @@ public final class Slice
         }
 
         int result = length;
-        for (int i = offset; i < offset + length; i++) {
-            result = 31 * result + data[i];
+        if (data == null) {
+            for (int i = 0; i < length; i++) {
+                result = 31 * result + rawByte(i);
+            }
+        }
+        else {
+            for (int i = offset; i < offset + length; i++) {
+                result = 31 * result + data[i];
+            }
         }
         if (result == 0) {
             result = 1;
@@ -540,11 +714,42 @@ public final class Slice
         if (this == that) {
             return 0;
         }
-        if (this.data == that.data && length == that.length && offset == that.offset) {
+        return compareRange(length, that, that.length);
+    }
+
+    /**
+     * Same as {@link #compareTo(Slice)} limited to the first {@code length} bytes of this buffer
+     * and the first {@code thatLength} bytes of {@code that}.
+     */
+    public int compareTo(int length, Slice that, int thatLength)
+    {
+        checkPositionIndex(length, this.length);
+        checkPositionIndex(thatLength, that.length);
+        return compareRange(length, that, thatLength);
+    }
+
+    private int compareRange(int length, Slice that, int thatLength)
+    {
+        if (this.data == that.data && length == thatLength && offset == that.offset && (data != null || buffer == that.buffer)) {
             return 0;
         }
 
-        int minLength = Math.min(this.length, that.length);
+        int minLength = Math.min(length, thatLength);
+        if (this.data == null || that.data == null) {
+            // skip equal prefix 8 bytes at a time, buffer accesses are more expensive than array ones
+            int i = 0;
+            while (i + SIZE_OF_LONG <= minLength && this.rawLong(i) == that.rawLong(i)) {
+                i += SIZE_OF_LONG;
+            }
+            for (; i < minLength; i++) {
+                int thisByte = 0xFF & this.rawByte(i);
+                int thatByte = 0xFF & that.rawByte(i);
+                if (thisByte != thatByte) {
+                    return (thisByte) - (thatByte);
+                }
+            }
+            return length - thatLength;
+        }
         for (int i = 0; i < minLength; i++) {
             int thisByte = 0xFF & this.data[this.offset + i];
             int thatByte = 0xFF & that.data[that.offset + i];
@@ -552,7 +757,7 @@ public final class Slice
                 return (thisByte) - (thatByte);
             }
         }
-        return this.length - that.length;
+        return length - thatLength;
     }
 
     /**
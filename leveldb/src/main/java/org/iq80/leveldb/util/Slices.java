@@ -122,6 +122,20 @@ public final class Slices
         }
     }
 
+    /**
+     * Slice over the remaining bytes of {@code source} sharing its content, direct and memory mapped
+     * buffers included. Position of {@code source} is not modified.
+     */
+    public static Slice referencedBuffer(ByteBuffer source)
+    {
+        if (source.hasArray()) {
+            return new Slice(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        }
+        else {
+            return new Slice(source.duplicate().order(ByteOrder.LITTLE_ENDIAN), source.position(), source.remaining());
+        }
+    }
+
     public static Slice copiedBuffer(String string, Charset charset)
     {
         requireNonNull(string, "string is null");
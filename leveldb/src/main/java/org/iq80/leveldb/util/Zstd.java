@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>
+ * A Zstandard abstraction which attempts to use the native zstd-jni implementation
+ * and falls back to the pure Java airlift aircompressor implementation if it
+ * cannot be loaded.  You can change the load order by setting the 'leveldb.zstd'
+ * system property.  Example:
+ * <p/>
+ * <code>
+ * -Dleveldb.zstd=airlift,zstd-jni
+ * </code>
+ * <p/>
+ * The system property can also be configured with the name of a class which
+ * implements the Zstd.SPI interface.
+ * </p>
+ * Both implementations produce and read standard zstd frames at the default compression level.
+ * Dictionary compression is only supported by zstd-jni.
+ */
+public final class Zstd
+{
+    private Zstd()
+    {
+    }
+
+    public interface SPI
+    {
+        int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException;
+
+        int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+                throws IOException;
+
+        int maxCompressedLength(int length);
+
+        default boolean supportsDictionary()
+        {
+            return false;
+        }
+
+        default byte[] trainDictionary(byte[][] samples, int maxDictionarySize)
+                throws IOException
+        {
+            throw new IOException("Zstandard dictionary training is not supported by " + getClass().getName());
+        }
+
+        default int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength, Dictionary dictionary)
+                throws IOException
+        {
+            throw new IOException("Zstandard dictionary decompression is not supported by " + getClass().getName());
+        }
+
+        default int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength, Dictionary dictionary)
+                throws IOException
+        {
+            throw new IOException("Zstandard dictionary compression is not supported by " + getClass().getName());
+        }
+    }
+
+    /**
+     * A trained dictionary shared by all blocks of a table.
+     */
+    public static final class Dictionary
+    {
+        private final byte[] data;
+        // digested form of the dictionary, created by the implementation on first use
+        private volatile Object compressState;
+        private volatile Object decompressState;
+
+        public Dictionary(byte[] data)
+        {
+            this.data = requireNonNull(data, "data is null");
+        }
+
+        public byte[] getData()
+        {
+            return data;
+        }
+    }
+
+    public static class ZstdJni
+            implements SPI
+    {
+        private static final int LEVEL;
+
+        static {
+            // Make sure that the JNI libs are fully loaded.
+            LEVEL = com.github.luben.zstd.Zstd.defaultCompressionLevel();
+        }
+
+        @Override
+        public int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException
+        {
+            return checkResult(com.github.luben.zstd.Zstd.decompressByteArray(output, outputOffset, uncompressedLength, input, inputOffset, length));
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+                throws IOException
+        {
+            return checkResult(com.github.luben.zstd.Zstd.compressByteArray(output, outputOffset, maxOutputLength, input, inputOffset, length, LEVEL));
+        }
+
+        @Override
+        public int maxCompressedLength(int length)
+        {
+            return (int) com.github.luben.zstd.Zstd.compressBound(length);
+        }
+
+        @Override
+        public boolean supportsDictionary()
+        {
+            return true;
+        }
+
+        @Override
+        public byte[] trainDictionary(byte[][] samples, int maxDictionarySize)
+                throws IOException
+        {
+            byte[] dictionary = new byte[maxDictionarySize];
+            int size = checkResult(com.github.luben.zstd.Zstd.trainFromBuffer(samples, dictionary));
+            return Arrays.copyOf(dictionary, size);
+        }
+
+        @Override
+        public int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength, Dictionary dictionary)
+                throws IOException
+        {
+            com.github.luben.zstd.ZstdDictDecompress decompressDictionary = (com.github.luben.zstd.ZstdDictDecompress) dictionary.decompressState;
+            if (decompressDictionary == null) {
+                // racing threads may both digest the dictionary, the result is the same
+                decompressDictionary = new com.github.luben.zstd.ZstdDictDecompress(dictionary.data);
+                dictionary.decompressState = decompressDictionary;
+            }
+            return checkResult(com.github.luben.zstd.Zstd.decompressFastDict(output, outputOffset, input, inputOffset, length, decompressDictionary));
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength, Dictionary dictionary)
+                throws IOException
+        {
+            com.github.luben.zstd.ZstdDictCompress compressDictionary = (com.github.luben.zstd.ZstdDictCompress) dictionary.compressState;
+            if (compressDictionary == null) {
+                compressDictionary = new com.github.luben.zstd.ZstdDictCompress(dictionary.data, LEVEL);
+                dictionary.compressState = compressDictionary;
+            }
+            return checkResult(com.github.luben.zstd.Zstd.compressFastDict(output, outputOffset, input, inputOffset, length, compressDictionary));
+        }
+
+        private static int checkResult(long result)
+                throws IOException
+        {
+            if (com.github.luben.zstd.Zstd.isError(result)) {
+                throw new IOException(com.github.luben.zstd.Zstd.getErrorName(result));
+            }
+            return (int) result;
+        }
+    }
+
+    public static class AirliftZstd
+            implements SPI
+    {
+        // airlift compressor and decompressor keep working state between calls and are not thread safe
+        private final ThreadLocal<io.airlift.compress.zstd.ZstdCompressor> compressor = ThreadLocal.withInitial(io.airlift.compress.zstd.ZstdCompressor::new);
+        private final ThreadLocal<io.airlift.compress.zstd.ZstdDecompressor> decompressor = ThreadLocal.withInitial(io.airlift.compress.zstd.ZstdDecompressor::new);
+
+        @Override
+        public int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+                throws IOException
+        {
+            try {
+                return decompressor.get().decompress(input, inputOffset, length, output, outputOffset, uncompressedLength);
+            }
+            catch (io.airlift.compress.MalformedInputException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            return compressor.get().compress(input, inputOffset, length, output, outputOffset, maxOutputLength);
+        }
+
+        @Override
+        public int maxCompressedLength(int length)
+        {
+            return compressor.get().maxCompressedLength(length);
+        }
+    }
+
+    private static final SPI ZSTD;
+
+    static {
+        SPI attempt = null;
+        String[] factories = System.getProperty("leveldb.zstd", "zstd-jni,airlift").split(",");
+        for (int i = 0; i < factories.length && attempt == null; i++) {
+            String name = factories[i];
+            try {
+                name = name.trim();
+                if ("zstd-jni".equals(name.toLowerCase())) {
+                    name = "org.iq80.leveldb.util.Zstd$ZstdJni";
+                }
+                else if ("airlift".equals(name.toLowerCase())) {
+                    name = "org.iq80.leveldb.util.Zstd$AirliftZstd";
+                }
+                attempt = (SPI) Thread.currentThread().getContextClassLoader().loadClass(name).newInstance();
+            }
+            catch (Throwable e) {
+            }
+        }
+        ZSTD = attempt;
+    }
+
+    public static boolean available()
+    {
+        return ZSTD != null;
+    }
+
+    public static int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength)
+            throws IOException
+    {
+        return ZSTD.uncompress(input, inputOffset, length, output, outputOffset, uncompressedLength);
+    }
+
+    public static int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength)
+            throws IOException
+    {
+        return ZSTD.compress(input, inputOffset, length, output, outputOffset, maxOutputLength);
+    }
+
+    public static int maxCompressedLength(int length)
+    {
+        return ZSTD.maxCompressedLength(length);
+    }
+
+    public static boolean dictionaryAvailable()
+    {
+        return ZSTD != null && ZSTD.supportsDictionary();
+    }
+
+    /**
+     * Train a dictionary of at most {@code maxDictionarySize} bytes from {@code samples}.
+     * Training fails with an {@link IOException} when there is not enough sample data.
+     */
+    public static Dictionary trainDictionary(byte[][] samples, int maxDictionarySize)
+            throws IOException
+    {
+        return new Dictionary(ZSTD.trainDictionary(samples, maxDictionarySize));
+    }
+
+    public static int uncompress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int uncompressedLength, Dictionary dictionary)
+            throws IOException
+    {
+        return ZSTD.uncompress(input, inputOffset, length, output, outputOffset, uncompressedLength, dictionary);
+    }
+
+    public static int compress(byte[] input, int inputOffset, int length, byte[] output, int outputOffset, int maxOutputLength, Dictionary dictionary)
+            throws IOException
+    {
+        return ZSTD.compress(input, inputOffset, length, output, outputOffset, maxOutputLength, dictionary);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.env;
+
+import org.iq80.leveldb.env.RateLimiter.Priority;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RateLimiterTest
+{
+    @Test
+    public void testLimitsRate() throws Exception
+    {
+        RateLimiter rateLimiter = new RateLimiter(1_000_000);
+        long start = System.nanoTime();
+        // one refill is available at once, the remaining bytes take four refill periods
+        rateLimiter.request(500_000, Priority.LOW);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 300, "elapsed " + elapsedMillis + "ms");
+        assertTrue(rateLimiter.getThrottledMicros() > 0);
+    }
+
+    @Test
+    public void testNoWaitWithinBurst() throws Exception
+    {
+        RateLimiter rateLimiter = new RateLimiter(1_000_000);
+        rateLimiter.request(100_000, Priority.LOW);
+        assertEquals(rateLimiter.getThrottledMicros(), 0);
+    }
+
+    @Test
+    public void testHighPriorityFirst() throws Exception
+    {
+        RateLimiter rateLimiter = new RateLimiter(1_000_000);
+        AtomicInteger lowRequests = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> low = executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    rateLimiter.request(100_000, Priority.LOW);
+                    lowRequests.incrementAndGet();
+                }
+                return null;
+            });
+            while (lowRequests.get() == 0) {
+                Thread.sleep(1);
+            }
+            int before = lowRequests.get();
+            rateLimiter.request(300_000, Priority.HIGH);
+            // a low priority request may have been granted before the high priority one started waiting
+            assertTrue(lowRequests.get() - before <= 1, "low priority requests granted: " + (lowRequests.get() - before));
+            low.get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSetBytesPerSecond() throws Exception
+    {
+        RateLimiter rateLimiter = new RateLimiter(1_000);
+        rateLimiter.setBytesPerSecond(100_000_000);
+        assertEquals(rateLimiter.getBytesPerSecond(), 100_000_000);
+        long start = System.nanoTime();
+        rateLimiter.request(20_000_000, Priority.LOW);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+    }
+}
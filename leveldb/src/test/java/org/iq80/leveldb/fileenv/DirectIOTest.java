@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.fileenv;
+
+import org.iq80.leveldb.env.Env;
+import org.iq80.leveldb.env.File;
+import org.iq80.leveldb.env.RandomInputFile;
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.util.Slice;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class DirectIOTest
+{
+    private Env env;
+    private File dir;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        env = EnvImpl.createEnv();
+        dir = env.createTempDir("leveldb-direct");
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        dir.deleteRecursively();
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException
+    {
+        byte[] content = new byte[3 * 1024 * 1024 + 1234];
+        Random random = new Random(42);
+        random.nextBytes(content);
+        File file = dir.child("000001.ldb");
+        int written = 0;
+        try (WritableFile writableFile = env.newDirectWritableFile(file)) {
+            while (written < content.length) {
+                int length = Math.min(random.nextInt(100_000), content.length - written);
+                writableFile.append(new Slice(content, written, length));
+                written += length;
+                if (random.nextInt(10) == 0) {
+                    // the padded last block must be overwritten by later appends
+                    writableFile.force();
+                    assertEquals(Files.size(JavaFile.toFile(file).toPath()), written);
+                }
+            }
+            writableFile.force();
+        }
+        assertEquals(Files.readAllBytes(JavaFile.toFile(file).toPath()), content);
+
+        try (RandomInputFile randomInputFile = env.newDirectRandomAccessFile(file)) {
+            assertEquals(randomInputFile.size(), content.length);
+            assertRead(randomInputFile, content, 0, 10);
+            assertRead(randomInputFile, content, 4095, 2);
+            assertRead(randomInputFile, content, 12345, 2 * 1024 * 1024);
+            assertRead(randomInputFile, content, content.length - 7, 7);
+            for (int i = 0; i < 100; i++) {
+                int offset = random.nextInt(content.length);
+                assertRead(randomInputFile, content, offset, random.nextInt(Math.min(content.length - offset, 64 * 1024)));
+            }
+        }
+    }
+
+    private static void assertRead(RandomInputFile randomInputFile, byte[] content, int offset, int length) throws IOException
+    {
+        ByteBuffer read = randomInputFile.read(offset, length);
+        assertEquals(read.remaining(), length);
+        byte[] bytes = new byte[length];
+        read.get(bytes);
+        assertEquals(bytes, Arrays.copyOfRange(content, offset, offset + length));
+    }
+}
@@ -108,7 +108,17 @@ public class CountingHandlesEnv implements Env
     @Override
     public RandomInputFile newRandomAccessFile(File file) throws IOException
     {
-        final RandomInputFile randomInputFile = env.newRandomAccessFile(file);
+        return getRandomInputFile(env.newRandomAccessFile(file));
+    }
+
+    @Override
+    public RandomInputFile newDirectRandomAccessFile(File file) throws IOException
+    {
+        return getRandomInputFile(env.newDirectRandomAccessFile(file));
+    }
+
+    private RandomInputFile getRandomInputFile(RandomInputFile randomInputFile)
+    {
         counter.incrementAndGet();
         return new RandomInputFile()
         {
@@ -146,6 +156,12 @@ public class CountingHandlesEnv implements Env
         return getWritableFile(env.newWritableFile(file));
     }
 
+    @Override
+    public WritableFile newDirectWritableFile(File file) throws IOException
+    {
+        return getWritableFile(env.newDirectWritableFile(file));
+    }
+
     @Override
     public WritableFile newAppendableFile(File file) throws IOException
     {
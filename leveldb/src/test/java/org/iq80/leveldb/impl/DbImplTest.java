@@ -24,6 +24,7 @@ import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBComparator;
 import org.iq80.leveldb.Logger;
+import org.iq80.leveldb.MergeOperator;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.Range;
 import org.iq80.leveldb.ReadOptions;
@@ -58,14 +59,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static com.google.common.collect.Maps.immutableEntry;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -81,6 +87,7 @@ import static org.iq80.leveldb.table.BlockHelper.assertSequence;
 import static org.iq80.leveldb.table.BlockHelper.beforeString;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertThrows;
@@ -94,6 +101,9 @@ public class DbImplTest
 
     private static final String DOES_NOT_EXIST_FILENAME = "/foo/bar/doowop/idontexist";
     private static final String DOES_NOT_EXIST_FILENAME_PATTERN = ".foo.bar.doowop.idontexist";
+    // comma separated list of the operands
+    private static final MergeOperator APPEND_OPERATOR = (key, existingValue, operand) ->
+            existingValue == null ? operand : (new String(existingValue, UTF_8) + "," + new String(operand, UTF_8)).getBytes(UTF_8);
     private Env defaultEnv;
 
     private File databaseDir;
@@ -106,7 +116,13 @@ public class DbImplTest
                 //new OptionsDesc("Reuse").reuseLog(true)},
                 {new OptionsDesc("Bloom Filter").filterPolicy(new BloomFilterPolicy(10))},
                 {new OptionsDesc("No Compression").compressionType(CompressionType.NONE)},
-                {new OptionsDesc("Snappy").compressionType(CompressionType.SNAPPY)}
+                {new OptionsDesc("Snappy").compressionType(CompressionType.SNAPPY)},
+                {new OptionsDesc("LZ4").compressionType(CompressionType.LZ4)},
+                {new OptionsDesc("Parallel Compression").compressionThreads(4)},
+                {new OptionsDesc("Direct I/O").useDirectIO(true)},
+                {new OptionsDesc("Zero Copy Mmap").compressionType(CompressionType.NONE).zeroCopyMmapReads(true)},
+                {new OptionsDesc("Per Level Compression").compressionPerLevel(asList(NONE, CompressionType.LZ4, CompressionType.SNAPPY))},
+                {new OptionsDesc("Partitioned Index").partitionIndexAndFilters(true).filterPolicy(new BloomFilterPolicy(10))}
         };
     }
 
@@ -377,6 +393,205 @@ public class DbImplTest
         snapshot.close();
     }
 
+    @Test(dataProvider = "options")
+    public void testIterateWithAsyncPrefetch(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options.blockSize(256), databaseDir);
+        for (int i = 0; i < 2000; i++) {
+            db.put(key(i), "value" + i);
+            if (i % 500 == 499) {
+                db.testCompactMemTable();
+            }
+        }
+        db.compactRange(key(0), key(1000));
+        db.reopen();
+
+        try (SeekingIterator<String, String> iterator = db.iterator(new ReadOptions().asyncPrefetch(true))) {
+            iterator.seekToFirst();
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(iterator.valid());
+                assertEquals(iterator.key(), key(i));
+                assertEquals(iterator.value(), "value" + i);
+                iterator.next();
+            }
+            assertFalse(iterator.valid());
+        }
+    }
+
+    @Test(dataProvider = "options")
+    public void testWarmTableCache(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        for (int i = 0; i < 400; i++) {
+            db.put(key(i), "value" + i);
+            if (i % 100 == 99) {
+                db.testCompactMemTable();
+            }
+        }
+        int tables = db.totalTableFiles();
+        assertTrue(tables > 1);
+        db.db.close();
+
+        Options reopenOptions = Options.fromOptions(options).createIfMissing(false).errorIfExists(false);
+        CountingHandlesEnv env = new CountingHandlesEnv(defaultEnv);
+        DbImpl cold = new DbImpl(reopenOptions, databaseDir.getPath(), env);
+        int baseline = env.getOpenHandles();
+        cold.close();
+
+        DbImpl warm = new DbImpl(reopenOptions.warmTableCache(true).preloadIndexAndFilters(true), databaseDir.getPath(), env);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (env.getOpenHandles() < baseline + tables && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(env.getOpenHandles(), baseline + tables, "All tables should be opened in the background");
+            for (int i = 0; i < 400; i++) {
+                assertEquals(new String(warm.get(key(i).getBytes(UTF_8)), UTF_8), "value" + i);
+            }
+        }
+        finally {
+            warm.close();
+        }
+        assertEquals(env.getOpenHandles(), 0, "All files should be closed");
+    }
+
+    @Test
+    public void testBlockCacheWarmList()
+            throws Exception
+    {
+        Options options = new Options().cacheSize(8 << 20).blockSize(256).blockCacheWarmList(true).blockCacheWarmupRate(0);
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        for (int i = 0; i < 2000; i++) {
+            db.put(key(i), "value" + i);
+            if (i % 500 == 499) {
+                db.testCompactMemTable();
+            }
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            assertEquals(db.get(key(i)), "value" + i);
+        }
+        long cached = Long.parseLong(db.db.getProperty("leveldb.approximate-memory-usage"));
+        assertTrue(cached > 0);
+        db.reopen(Options.fromOptions(options));
+        assertTrue(databaseDir.child(Filename.warmListFileName()).exists());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (Long.parseLong(db.db.getProperty("leveldb.approximate-memory-usage")) < cached && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Long.parseLong(db.db.getProperty("leveldb.approximate-memory-usage")), cached, "All blocks should be loaded again");
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(db.get(key(i)), "value" + i);
+        }
+
+        // blocks of compacted tables are skipped
+        db.compactRange(key(0), key(2000));
+        db.reopen(Options.fromOptions(options));
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(db.get(key(i)), "value" + i);
+        }
+    }
+
+    @Test
+    public void testManifestRollover()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().maxManifestFileSize(1024), databaseDir);
+        String firstManifest = Filename.getCurrentFile(databaseDir, defaultEnv);
+        for (int i = 0; i < 100; i++) {
+            db.put(key(i), "value" + i);
+            db.testCompactMemTable();
+        }
+        String manifest = Filename.getCurrentFile(databaseDir, defaultEnv);
+        assertNotEquals(manifest, firstManifest);
+        List<String> manifests = databaseDir.listFiles().stream()
+                .map(File::getName)
+                .filter(name -> name.startsWith("MANIFEST-"))
+                .collect(Collectors.toList());
+        assertEquals(manifests, ImmutableList.of(manifest), "previous manifests should be deleted");
+
+        db.reopen();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(db.get(key(i)), "value" + i);
+        }
+        db.put(key(100), "value100");
+        db.testCompactMemTable();
+        db.reopen();
+        assertEquals(db.get(key(100)), "value100");
+    }
+
+    @Test
+    public void testRecycleLogFiles()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().recycleLogFileNum(2).logPreallocationSize(64 * 1024), databaseDir);
+        for (int i = 0; i < 10; i++) {
+            db.put(key(i), "value" + i);
+            db.testCompactMemTable();
+            assertTrue(logFiles().size() <= 3, "obsolete logs should be recycled or deleted: " + logFiles());
+        }
+        // unflushed writes to a recycled log, over the records of its previous use
+        db.put(key(0), "new");
+        db.put(key(10), "value10");
+
+        db.reopen();
+        assertEquals(db.get(key(0)), "new");
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(db.get(key(i)), "value" + i);
+        }
+        db.put(key(11), "value11");
+        db.reopen(new Options());
+        assertEquals(db.get(key(11)), "value11");
+    }
+
+    private List<String> logFiles()
+    {
+        return databaseDir.listFiles().stream()
+                .map(File::getName)
+                .filter(name -> name.endsWith(".log"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testGroupSync()
+            throws Exception
+    {
+        try (GroupSyncCoordinator syncCoordinator = new GroupSyncCoordinator(1, TimeUnit.MILLISECONDS, 4)) {
+            List<DbStringWrapper> dbs = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                dbs.add(new DbStringWrapper(new Options().syncCoordinator(syncCoordinator), databaseDir.child("db" + i)));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(dbs.size());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (DbStringWrapper db : dbs) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            db.put(key(i), "value" + i, new WriteOptions().sync(true));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+            assertEquals(syncCoordinator.getSyncCount(), 200);
+            assertTrue(syncCoordinator.getBatchCount() < syncCoordinator.getSyncCount(), "syncs of different databases should be grouped");
+
+            for (DbStringWrapper db : dbs) {
+                db.reopen();
+                for (int i = 0; i < 50; i++) {
+                    assertEquals(db.get(key(i)), "value" + i);
+                }
+            }
+        }
+    }
+
     @Test(dataProvider = "options")
     public void testGetLevel0Ordering(final Options options)
             throws Exception
@@ -409,6 +624,671 @@ public class DbImplTest
         assertEquals(db.get("foo"), "v2");
     }
 
+    @Test
+    public void testMemTableFlushUsesCompressionOfItsLevel()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().compressionPerLevel(asList(NONE, NONE, CompressionType.LZ4)), databaseDir);
+        String value = Strings.repeat("x", 1000);
+        for (int i = 0; i < 100; i++) {
+            db.put(key(i), value);
+        }
+        // no table overlaps the memtable, it is flushed straight to level 2
+        db.testCompactMemTable();
+        assertEquals(db.filesPerLevel(), "0,0,1");
+        long size = db.size(key(0), key(100));
+        assertTrue(size < 100 * value.length() / 2, "level-2 table of " + size + " bytes is not compressed");
+        assertEquals(db.get(key(50)), value);
+    }
+
+    @Test
+    public void testCompressionDictionary()
+            throws Exception
+    {
+        Options options = new Options()
+                .compressionType(CompressionType.ZSTD)
+                .compressionDictionarySize(4096)
+                .maxFileSize(64 * 1024)
+                .filterPolicy(new BloomFilterPolicy(10));
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        Random random = new Random(301);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String value = String.format("{\"id\":%d,\"name\":\"user%d\",\"active\":%s}", i, random.nextInt(100000), random.nextBoolean());
+            values.add(value);
+            db.put(key(i), value);
+        }
+        db.testCompactMemTable();
+        // compactions into the bottommost level train a dictionary per output table
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertEquals(db.numberOfFilesInLevel(0), 0);
+        assertTrue(db.numberOfFilesInLevel(NUM_LEVELS - 1) > 0);
+
+        db.reopen();
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(db.get(key(i)), values.get(i));
+        }
+        assertNull(db.get("missing"));
+    }
+
+    @Test
+    public void testCompactionFilter()
+            throws Exception
+    {
+        // drop expired values and rewrite values to upgrade
+        Options options = new Options().compactionFilter((level, key, value) -> {
+            String v = new String(value, UTF_8);
+            if (v.equals("expired")) {
+                return null;
+            }
+            if (v.startsWith("old:")) {
+                return v.substring(4).getBytes(UTF_8);
+            }
+            return value;
+        });
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        db.put("a", "va");
+        db.put("b", "expired");
+        db.put("c", "old:vc");
+        db.delete("d");
+        // flushing the memtable does not apply the filter
+        db.testCompactMemTable();
+        assertEquals(db.get("b"), "expired");
+        assertEquals(db.get("c"), "old:vc");
+
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertEquals(db.get("a"), "va");
+        assertNull(db.get("b"));
+        assertEquals(db.get("c"), "vc");
+        assertNull(db.get("d"));
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "va"), immutableEntry("c", "vc"));
+        }
+    }
+
+    @Test
+    public void testCompactionFilterDeletionHidesOlderValues()
+            throws Exception
+    {
+        Options options = new Options().compactionFilter((level, key, value) -> new String(value, UTF_8).equals("expired") ? null : value);
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        db.put("foo", "v1");
+        db.testCompactMemTable();
+        db.put("foo", "v2");
+        db.testCompactMemTable();
+        db.put("foo", "expired");
+        db.testCompactMemTable();
+        assertEquals(db.filesPerLevel(), "1,1,1");
+
+        // compact level-0 into level-1, "v1" in level-2 must stay hidden
+        db.testCompactRange(0, null, null);
+        assertEquals(db.filesPerLevel(), "0,1,1");
+        assertNull(db.get("foo"));
+
+        db.compactRange(null, null);
+        assertNull(db.get("foo"));
+        assertEquals(db.totalTableFiles(), 0);
+    }
+
+    @Test
+    public void testCompactionFilterSkipsSnapshotVisibleValues()
+            throws Exception
+    {
+        Options options = new Options().compactionFilter((level, key, value) -> new String(value, UTF_8).equals("expired") ? null : value);
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        db.put("foo", "expired");
+        Snapshot snapshot = db.getSnapshot();
+        db.put("bar", "expired");
+        db.testCompactMemTable();
+        db.testCompactRange(2, null, null);
+
+        // "foo" can be read from the snapshot, "bar" is newer than the snapshot
+        assertEquals(db.get("foo", snapshot), "expired");
+        assertEquals(db.get("foo"), "expired");
+        assertNull(db.get("bar"));
+
+        snapshot.close();
+        db.testCompactRange(3, null, null);
+        assertNull(db.get("foo"));
+    }
+
+    @Test(dataProvider = "options")
+    public void testDeleteRange(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        for (String key : asList("a", "b", "c", "d", "e")) {
+            db.put(key, "v" + key);
+        }
+        db.deleteRange("b", "d");
+        // empty range
+        db.deleteRange("e", "a");
+        assertRangeDeleted(db);
+
+        // tombstone replayed from the log
+        db.reopen();
+        assertRangeDeleted(db);
+
+        db.testCompactMemTable();
+        assertRangeDeleted(db);
+        db.reopen();
+        assertRangeDeleted(db);
+
+        db.compactRange(null, null);
+        assertRangeDeleted(db);
+        assertEquals(db.allEntriesFor("b"), asList());
+        assertEquals(db.allEntriesFor("c"), asList());
+        db.reopen();
+        assertRangeDeleted(db);
+    }
+
+    private static void assertRangeDeleted(DbStringWrapper db)
+            throws IOException
+    {
+        assertEquals(db.get("a"), "va");
+        assertNull(db.get("b"));
+        assertNull(db.get("c"));
+        assertEquals(db.get("d"), "vd");
+        assertEquals(db.get("e"), "ve");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "va"), immutableEntry("d", "vd"), immutableEntry("e", "ve"));
+            assertTrue(iterator.seek("b"));
+            assertEquals(iterator.key(), "d");
+            assertTrue(iterator.seekToLast());
+            assertEquals(iterator.key(), "e");
+            assertTrue(iterator.prev());
+            assertEquals(iterator.key(), "d");
+            assertTrue(iterator.prev());
+            assertEquals(iterator.key(), "a");
+            assertFalse(iterator.prev());
+        }
+    }
+
+    @Test
+    public void testDeleteRangeOverOlderLevels()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options(), databaseDir);
+        for (int i = 0; i < 100; i++) {
+            db.put(key(i), "old");
+        }
+        db.testCompactMemTable();
+        db.testCompactRange(0, null, null);
+        db.testCompactRange(1, null, null);
+        assertEquals(db.filesPerLevel(), "0,0,1");
+
+        db.deleteRange(key(10), key(90));
+        db.put(key(50), "new");
+        assertDeletedFrom10To90(db);
+        db.testCompactMemTable();
+        assertDeletedFrom10To90(db);
+        db.reopen();
+        assertDeletedFrom10To90(db);
+
+        db.compactRange(null, null);
+        assertDeletedFrom10To90(db);
+        assertEquals(db.allEntriesFor(key(20)), asList());
+        assertEquals(db.allEntriesFor(key(50)), asList("new"));
+    }
+
+    private static void assertDeletedFrom10To90(DbStringWrapper db)
+            throws IOException
+    {
+        for (int i = 0; i < 100; i++) {
+            if (i == 50) {
+                assertEquals(db.get(key(i)), "new");
+            }
+            else if (i >= 10 && i < 90) {
+                assertNull(db.get(key(i)), key(i));
+            }
+            else {
+                assertEquals(db.get(key(i)), "old", key(i));
+            }
+        }
+        int count = 0;
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                count++;
+            }
+        }
+        assertEquals(count, 21);
+    }
+
+    @Test
+    public void testDeleteRangeKeepsSnapshotVisibleValues()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options(), databaseDir);
+        db.put("foo", "v1");
+        Snapshot snapshot = db.getSnapshot();
+        db.deleteRange("a", "z");
+        db.put("bar", "v2");
+        db.testCompactMemTable();
+        db.compactRange(null, null);
+
+        assertNull(db.get("foo"));
+        assertEquals(db.get("foo", snapshot), "v1");
+        assertEquals(db.get("bar"), "v2");
+        try (SeekingIterator<String, String> iterator = db.iterator(new ReadOptions().snapshot(snapshot))) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("foo", "v1"));
+        }
+        assertEquals(db.allEntriesFor("foo"), asList("v1"));
+
+        snapshot.close();
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertNull(db.get("foo"));
+        assertEquals(db.get("bar"), "v2");
+        assertEquals(db.allEntriesFor("foo"), asList());
+    }
+
+    @Test
+    public void testDeleteRangeSplitAcrossCompactionOutputs()
+            throws Exception
+    {
+        // a tombstone kept for a snapshot spans several outputs of 1MB
+        Options options = new Options().compressionType(NONE).maxFileSize(1 << 20);
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        String value = Strings.repeat("x", 10_000);
+        for (int i = 0; i < 400; i++) {
+            db.put(key(i), value);
+        }
+        Snapshot snapshot = db.getSnapshot();
+        db.deleteRange(key(50), key(350));
+        db.testCompactMemTable();
+        for (int level = 0; level < 3; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertEquals(db.numberOfFilesInLevel(3), db.totalTableFiles());
+        assertTrue(db.totalTableFiles() > 2, db.filesPerLevel());
+
+        for (int i = 0; i < 400; i += 7) {
+            assertEquals(db.get(key(i), snapshot), value);
+            if (i >= 50 && i < 350) {
+                assertNull(db.get(key(i)), key(i));
+            }
+            else {
+                assertEquals(db.get(key(i)), value);
+            }
+        }
+        db.reopen();
+        assertNull(db.get(key(349)));
+        assertEquals(db.get(key(350)), value);
+
+        snapshot.close();
+        db.testCompactRange(3, null, null);
+        assertEquals(db.allEntriesFor(key(200)), asList());
+        int count = 0;
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                count++;
+            }
+        }
+        assertEquals(count, 100);
+    }
+
+    @Test(dataProvider = "options")
+    public void testMerge(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options.mergeOperator(APPEND_OPERATOR), databaseDir);
+        db.put("a", "1");
+        db.merge("a", "2");
+        db.merge("a", "3");
+        db.merge("b", "x");
+        db.put("c", "old");
+        db.delete("c");
+        db.merge("c", "y");
+        db.put("d", "old");
+        db.merge("d", "w");
+        db.deleteRange("d", "e");
+        db.merge("e", "1");
+        db.deleteRange("e", "f");
+        db.merge("e", "2");
+        assertMerged(db);
+
+        // operands replayed from the log
+        db.reopen();
+        assertMerged(db);
+
+        db.testCompactMemTable();
+        assertMerged(db);
+        assertEquals(db.allEntriesFor("a"), asList("MERGE:3", "MERGE:2", "1"));
+
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertMerged(db);
+        assertEquals(db.allEntriesFor("a"), asList("1,2,3"));
+        assertEquals(db.allEntriesFor("b"), asList("x"));
+        assertEquals(db.allEntriesFor("c"), asList("y"));
+        db.reopen();
+        assertMerged(db);
+    }
+
+    private static void assertMerged(DbStringWrapper db)
+            throws IOException
+    {
+        assertEquals(db.get("a"), "1,2,3");
+        assertEquals(db.get("b"), "x");
+        assertEquals(db.get("c"), "y");
+        assertNull(db.get("d"));
+        assertEquals(db.get("e"), "2");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "1,2,3"), immutableEntry("b", "x"), immutableEntry("c", "y"), immutableEntry("e", "2"));
+            assertTrue(iterator.seekToLast());
+            assertEquals(iterator.value(), "2");
+            assertTrue(iterator.prev());
+            assertEquals(iterator.value(), "y");
+            assertTrue(iterator.prev());
+            assertEquals(iterator.value(), "x");
+            assertTrue(iterator.next());
+            assertEquals(iterator.value(), "y");
+            assertTrue(iterator.prev());
+            assertTrue(iterator.prev());
+            assertEquals(iterator.value(), "1,2,3");
+            assertFalse(iterator.prev());
+        }
+    }
+
+    @Test(dataProvider = "options")
+    public void testMergeAfterDeleteAndRangeDeletion(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options.mergeOperator(APPEND_OPERATOR), databaseDir);
+        db.delete("a");
+        db.merge("a", "1");
+        db.deleteRange("a", "b");
+        db.merge("a", "5");
+        assertMergedAfterRangeDeletion(db);
+
+        db.reopen();
+        assertMergedAfterRangeDeletion(db);
+
+        db.testCompactMemTable();
+        assertMergedAfterRangeDeletion(db);
+
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertMergedAfterRangeDeletion(db);
+    }
+
+    private static void assertMergedAfterRangeDeletion(DbStringWrapper db)
+            throws IOException
+    {
+        assertEquals(db.get("a"), "5");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "5"));
+        }
+    }
+
+    @Test
+    public void testMergeAcrossLevels()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().mergeOperator(APPEND_OPERATOR), databaseDir);
+        db.put("a", "1");
+        db.testCompactMemTable();
+        db.testCompactRange(0, null, null);
+        db.testCompactRange(1, null, null);
+        assertEquals(db.filesPerLevel(), "0,0,1");
+
+        // operands are folded but older entries remain in level-2
+        db.merge("a", "2");
+        db.testCompactMemTable();
+        db.merge("a", "3");
+        db.testCompactMemTable();
+        db.merge("a", "4");
+        assertEquals(db.get("a"), "1,2,3,4");
+        db.testCompactRange(0, null, null);
+        assertEquals(db.filesPerLevel(), "0,1,1");
+        assertEquals(db.allEntriesFor("a"), asList("MERGE:4", "MERGE:2,3", "1"));
+        assertEquals(db.get("a"), "1,2,3,4");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "1,2,3,4"));
+        }
+
+        db.testCompactRange(1, null, null);
+        assertEquals(db.allEntriesFor("a"), asList("MERGE:4", "1,2,3"));
+        assertEquals(db.get("a"), "1,2,3,4");
+    }
+
+    @Test
+    public void testMergeKeepsSnapshotVisibleOperands()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().mergeOperator(APPEND_OPERATOR), databaseDir);
+        db.merge("a", "1");
+        Snapshot snapshot = db.getSnapshot();
+        db.merge("a", "2");
+        db.testCompactMemTable();
+        for (int level = 0; level < 3; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertEquals(db.get("a", snapshot), "1");
+        assertEquals(db.get("a"), "1,2");
+        assertEquals(db.allEntriesFor("a"), asList("MERGE:2", "1"));
+        try (SeekingIterator<String, String> iterator = db.iterator(new ReadOptions().snapshot(snapshot))) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "1"));
+        }
+
+        snapshot.close();
+        db.testCompactRange(3, null, null);
+        assertEquals(db.allEntriesFor("a"), asList("1,2"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Merges require a merge operator")
+    public void testMergeRequiresOperator()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options(), databaseDir);
+        db.merge("a", "1");
+    }
+
+    @Test(dataProvider = "options")
+    public void testBlobFiles(final Options options)
+            throws Exception
+    {
+        String large = Strings.repeat("l", 100);
+        DbStringWrapper db = new DbStringWrapper(options.minBlobSize(100).mergeOperator(APPEND_OPERATOR), databaseDir);
+        db.put("a", "small");
+        db.put("b", large);
+        db.put("c", large + "c");
+        db.testCompactMemTable();
+        assertEquals(db.blobFiles().size(), 1);
+        assertEquals(db.allEntriesFor("a"), asList("small"));
+        assertEquals(db.allEntriesFor("b"), asList("BLOB"));
+        assertBlobValues(db, large);
+
+        // merge operands apply to the value read from the blob file
+        db.merge("c", "m");
+        assertEquals(db.get("c"), large + "c,m");
+        db.testCompactMemTable();
+        for (int level = 0; level < NUM_LEVELS - 1; level++) {
+            db.testCompactRange(level, null, null);
+        }
+        assertEquals(db.allEntriesFor("c"), asList("BLOB"));
+        assertEquals(db.get("c"), large + "c,m");
+
+        db.reopen();
+        assertEquals(db.get("c"), large + "c,m");
+        db.put("c", large + "c");
+        assertBlobValues(db, large);
+    }
+
+    private static void assertBlobValues(DbStringWrapper db, String large)
+            throws IOException
+    {
+        assertEquals(db.get("a"), "small");
+        assertEquals(db.get("b"), large);
+        assertEquals(db.get("c"), large + "c");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "small"), immutableEntry("b", large), immutableEntry("c", large + "c"));
+            assertTrue(iterator.seekToLast());
+            assertReverseSequence(iterator, immutableEntry("c", large + "c"), immutableEntry("b", large), immutableEntry("a", "small"));
+        }
+    }
+
+    @Test
+    public void testBlobGarbageCollection()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().minBlobSize(100).blobGarbageRatio(0.5), databaseDir);
+        for (String key : asList("a", "b", "c", "d")) {
+            db.put(key, Strings.repeat(key, 100));
+        }
+        db.testCompactMemTable();
+        assertEquals(db.filesPerLevel(), "0,0,1");
+        List<Long> firstBlobFiles = db.blobFiles();
+        assertEquals(firstBlobFiles.size(), 1);
+
+        // overwriting 3 of the 4 values leaves the first blob file with 75% of garbage,
+        // the value of "d" is then moved to a new blob file and the first one deleted
+        for (String key : asList("a", "b", "c")) {
+            db.put(key, Strings.repeat(key.toUpperCase(), 100));
+        }
+        db.testCompactMemTable();
+        db.testCompactRange(1, null, null);
+        assertEquals(db.filesPerLevel(), "0,0,1");
+        List<Long> blobFiles = db.blobFiles();
+        assertFalse(blobFiles.contains(firstBlobFiles.get(0)), blobFiles.toString());
+        assertEquals(db.allEntriesFor("d"), asList("BLOB"));
+        for (String key : asList("a", "b", "c")) {
+            assertEquals(db.get(key), Strings.repeat(key.toUpperCase(), 100));
+        }
+        assertEquals(db.get("d"), Strings.repeat("d", 100));
+
+        db.reopen();
+        assertEquals(db.get("d"), Strings.repeat("d", 100));
+        assertEquals(db.blobFiles(), blobFiles);
+    }
+
+    @Test(dataProvider = "options")
+    public void testIngestExternalFiles(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options, databaseDir);
+        java.io.File first = db.externalFile("first", "a", "va", "b", "vb", "c", null);
+        java.io.File second = db.externalFile("second", "x", "vx", "y", "vy");
+        db.ingest(second, first);
+
+        // nothing overlaps the files, they are added to the last level
+        assertEquals(db.filesPerLevel(), "0,0,0,0,0,0,2");
+        assertTrue(first.exists() && second.exists());
+        assertEquals(db.get("a"), "va");
+        assertEquals(db.get("c"), null);
+        assertEquals(db.get("y"), "vy");
+        try (SeekingIterator<String, String> iterator = db.iterator()) {
+            assertTrue(iterator.seekToFirst());
+            assertSequence(iterator, immutableEntry("a", "va"), immutableEntry("b", "vb"), immutableEntry("x", "vx"), immutableEntry("y", "vy"));
+        }
+
+        db.put("b", "vb2");
+        assertEquals(db.get("b"), "vb2");
+        db.reopen();
+        assertEquals(db.get("a"), "va");
+        assertEquals(db.get("b"), "vb2");
+        assertEquals(db.get("x"), "vx");
+    }
+
+    @Test
+    public void testIngestExternalFilesOverwritesEntries()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options(), databaseDir);
+        db.put("a", "va");
+        db.put("b", "vb");
+        db.testCompactMemTable();
+        db.put("c", "vc");
+        db.put("z", "vz");
+        Snapshot snapshot = db.getSnapshot();
+
+        // the memtable holding "c" is flushed first, the file is then added above the tables it overlaps
+        db.ingest(db.externalFile("file", "a", "va2", "b", null, "c", "vc2"));
+        assertEquals(db.filesPerLevel(), "0,1,2");
+        assertEquals(db.get("a"), "va2");
+        assertEquals(db.get("b"), null);
+        assertEquals(db.get("c"), "vc2");
+        assertEquals(db.get("z"), "vz");
+        assertEquals(db.get("a", snapshot), "va");
+        assertEquals(db.get("b", snapshot), "vb");
+        assertEquals(db.get("c", snapshot), "vc");
+        snapshot.close();
+
+        db.put("a", "va3");
+        assertEquals(db.get("a"), "va3");
+        db.compactRange(null, null);
+        assertEquals(db.allEntriesFor("a"), asList("va3"));
+        db.reopen();
+        assertEquals(db.get("a"), "va3");
+        assertEquals(db.get("b"), null);
+        assertEquals(db.get("c"), "vc2");
+    }
+
+    @Test
+    public void testIngestInvalidExternalFiles()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options(), databaseDir);
+        java.io.File first = db.externalFile("first", "a", "va", "c", "vc");
+        java.io.File second = db.externalFile("second", "b", "vb");
+        try {
+            db.ingest(first, second);
+            fail("Overlapping files should be rejected");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("overlap"), e.getMessage());
+        }
+        assertEquals(db.totalTableFiles(), 0);
+        assertEquals(db.get("a"), null);
+
+        try {
+            db.externalFile("unsorted", "b", "vb", "a", "va");
+            fail("Keys out of order should be rejected");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Keys must be added in strictly increasing order");
+        }
+    }
+
+    @Test
+    public void testCompactionRateLimit()
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(new Options().compactionRateLimit(1 << 20).autoTuneCompactionRateLimit(true), databaseDir);
+        assertEquals(db.db.getProperty("leveldb.rate-limiter-throttled-micros"), "0");
+        Random random = new Random(301);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String value = randomString(random, 100 * 1024);
+            db.put(key(i), value);
+            values.add(value);
+        }
+        // 2MB are written by the flush and again by the compaction, beyond the 100KB burst
+        long start = System.nanoTime();
+        db.testCompactMemTable();
+        db.testCompactRange(2, null, null);
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(2));
+        assertTrue(Long.parseLong(db.db.getProperty("leveldb.rate-limiter-throttled-micros")) > 0);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(db.get(key(i)), values.get(i));
+        }
+    }
+
     @Test(dataProvider = "options")
     public void testGetPicksCorrectFile(final Options options)
             throws Exception
@@ -811,6 +1691,41 @@ public class DbImplTest
         assertTrue(db.numberOfFilesInLevel(0) > 1);
     }
 
+    @Test(dataProvider = "options")
+    public void testRecoverLogIntoManyMemTables(final Options options)
+            throws Exception
+    {
+        DbStringWrapper db = new DbStringWrapper(options.writeBufferSize(100_000_000), databaseDir);
+        Random random = new Random(301);
+        Map<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            String key = key(random.nextInt(5_000));
+            if (random.nextInt(10) == 0) {
+                db.delete(key);
+                expected.remove(key);
+            }
+            else {
+                String value = randomString(random, 100);
+                db.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        db.deleteRange(key(1000), key(1100));
+        expected.keySet().removeIf(key -> key.compareTo(key(1000)) >= 0 && key.compareTo(key(1100)) < 0);
+        assertEquals(db.totalTableFiles(), 0);
+
+        // the log is replayed in memtables of about 100KB, flushed while the following records are replayed
+        db.reopen(options.writeBufferSize(100_000));
+        assertTrue(db.totalTableFiles() > 10, "tables " + db.totalTableFiles());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(db.get(key(i)), expected.get(key(i)));
+        }
+        db.reopen();
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(db.get(key(i)), expected.get(key(i)));
+        }
+    }
+
     @Test(dataProvider = "options")
     public void testCompactionsGenerateMultipleFiles(final Options options)
             throws Exception
@@ -2009,6 +2924,16 @@ public class DbImplTest
             db.delete(toByteArray(key));
         }
 
+        public void merge(String key, String operand)
+        {
+            db.merge(toByteArray(key), toByteArray(operand));
+        }
+
+        public void deleteRange(String begin, String end)
+        {
+            db.deleteRange(toByteArray(begin), toByteArray(end));
+        }
+
         public SeekingIterator<String, String> iterator()
         {
             return SeekingDBIteratorAdapter.toSeekingIterator(db.iterator(), k -> k.getBytes(UTF_8), k -> new String(k, UTF_8), v -> new String(v, UTF_8));
@@ -2109,6 +3034,45 @@ public class DbImplTest
             db = new DbImpl(options.paranoidChecks(true).createIfMissing(false).errorIfExists(false), databaseDir.getPath(), defaultEnv);
         }
 
+        /**
+         * Write a table with a {@link SstFileWriter}, a {@code null} value adds a deletion of the key.
+         */
+        private java.io.File externalFile(String name, String... keysAndValues)
+                throws IOException
+        {
+            java.io.File file = new java.io.File(databaseDir.getPath(), name);
+            try (SstFileWriter writer = new SstFileWriter(options, file)) {
+                for (int i = 0; i < keysAndValues.length; i += 2) {
+                    if (keysAndValues[i + 1] == null) {
+                        writer.delete(toByteArray(keysAndValues[i]));
+                    }
+                    else {
+                        writer.put(toByteArray(keysAndValues[i]), toByteArray(keysAndValues[i + 1]));
+                    }
+                }
+                writer.finish();
+            }
+            return file;
+        }
+
+        public void ingest(java.io.File... files)
+        {
+            db.ingestExternalFiles(asList(files));
+        }
+
+        private List<Long> blobFiles()
+        {
+            List<Long> blobFiles = new ArrayList<>();
+            for (File file : databaseDir.listFiles()) {
+                Filename.FileInfo fileInfo = Filename.parseFileName(file);
+                if (fileInfo != null && fileInfo.getFileType() == Filename.FileType.BLOB) {
+                    blobFiles.add(fileInfo.getFileNumber());
+                }
+            }
+            Collections.sort(blobFiles);
+            return blobFiles;
+        }
+
         private List<String> allEntriesFor(String userKey) throws IOException
         {
             ImmutableList.Builder<String> result = ImmutableList.builder();
@@ -2120,6 +3084,12 @@ public class DbImplTest
                         if (entry.getKey().getValueType() == ValueType.VALUE) {
                             result.add(entry.getValue().toString(UTF_8));
                         }
+                        else if (entry.getKey().getValueType() == ValueType.MERGE) {
+                            result.add("MERGE:" + entry.getValue().toString(UTF_8));
+                        }
+                        else if (entry.getKey().getValueType() == ValueType.BLOB_INDEX) {
+                            result.add("BLOB");
+                        }
                         else {
                             result.add("DEL");
                         }
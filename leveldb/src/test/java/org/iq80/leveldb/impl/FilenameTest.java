@@ -44,6 +44,7 @@ public class FilenameTest
         assertFileInfo("LOG.old", 0L, Filename.FileType.INFO_LOG);
         assertFileInfo("18446744073709551615.log", -1L, Filename.FileType.LOG);
         assertFileInfo("099876.ldb", 99876L, Filename.FileType.TABLE);
+        assertFileInfo("000012.blob", 12L, Filename.FileType.BLOB);
     }
 
     @Test
@@ -91,6 +92,7 @@ public class FilenameTest
         assertFileInfo(Filename.infoLogFileName(), 0, Filename.FileType.INFO_LOG);
         assertFileInfo(Filename.oldInfoLogFileName(), 0, Filename.FileType.INFO_LOG);
         assertFileInfo(Filename.sstTableFileName(344), 344, Filename.FileType.TABLE);
+        assertFileInfo(Filename.blobFileName(345), 345, Filename.FileType.BLOB);
     }
 
     private void assertFileInfo(String file, long expectedNumber, Filename.FileType expectedType)
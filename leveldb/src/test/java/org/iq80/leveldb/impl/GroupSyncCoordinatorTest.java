@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.env.WritableFile;
+import org.iq80.leveldb.util.Slice;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class GroupSyncCoordinatorTest
+{
+    @Test
+    public void testSyncsAreGrouped()
+            throws Exception
+    {
+        try (GroupSyncCoordinator syncCoordinator = new GroupSyncCoordinator(50, TimeUnit.MILLISECONDS, 2)) {
+            List<SyncCountingFile> files = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                files.add(new SyncCountingFile(false));
+            }
+            syncAll(syncCoordinator, files);
+
+            for (SyncCountingFile file : files) {
+                assertEquals(file.syncs.get(), 1);
+            }
+            assertEquals(syncCoordinator.getSyncCount(), 4);
+            assertTrue(syncCoordinator.getBatchCount() < 4, "syncs requested together should share a batch");
+        }
+    }
+
+    @Test
+    public void testFailureIsReportedToItsWriterOnly()
+            throws Exception
+    {
+        try (GroupSyncCoordinator syncCoordinator = new GroupSyncCoordinator(50, TimeUnit.MILLISECONDS, 2)) {
+            SyncCountingFile failing = new SyncCountingFile(true);
+            SyncCountingFile file = new SyncCountingFile(false);
+            List<Future<?>> futures = syncAll(syncCoordinator, failing, file);
+            try {
+                futures.get(0).get();
+                fail("expected the sync to fail");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            futures.get(1).get();
+            assertEquals(file.syncs.get(), 1);
+        }
+    }
+
+    @Test
+    public void testSyncAfterClose()
+            throws Exception
+    {
+        GroupSyncCoordinator syncCoordinator = new GroupSyncCoordinator();
+        syncCoordinator.close();
+        SyncCountingFile file = new SyncCountingFile(false);
+        syncCoordinator.sync(LogWriter.createWriter(1, file));
+        assertEquals(file.syncs.get(), 1);
+        assertEquals(syncCoordinator.getBatchCount(), 0);
+    }
+
+    private static List<Future<?>> syncAll(GroupSyncCoordinator syncCoordinator, SyncCountingFile... files)
+            throws Exception
+    {
+        return syncAll(syncCoordinator, Arrays.asList(files));
+    }
+
+    private static List<Future<?>> syncAll(GroupSyncCoordinator syncCoordinator, List<SyncCountingFile> files)
+            throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(files.size());
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(files.size());
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                LogWriter log = LogWriter.createWriter(i, files.get(i));
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    syncCoordinator.sync(log);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException ignored) {
+                    // checked by the caller
+                }
+            }
+            return futures;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final class SyncCountingFile
+            implements WritableFile
+    {
+        private final boolean failing;
+        private final AtomicInteger syncs = new AtomicInteger();
+
+        private SyncCountingFile(boolean failing)
+        {
+            this.failing = failing;
+        }
+
+        @Override
+        public void append(Slice data)
+        {
+        }
+
+        @Override
+        public void force()
+                throws IOException
+        {
+            if (failing) {
+                throw new IOException("sync failed");
+            }
+            syncs.incrementAndGet();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -75,6 +75,32 @@ public class InternalUserComparatorTest
                 shortSuccessor(key(new byte[] {(byte) 0xff, (byte) 0xff}, 100, ValueType.VALUE)));
     }
 
+    @Test
+    public void testCompareEncodedKeys()
+    {
+        InternalKeyComparator internalKeyComparator = new InternalKeyComparator(new BytewiseComparator());
+        // bytewise keys are compared in place, other user comparators on the sliced user keys
+        InternalUserComparator bytewise = new InternalUserComparator(internalKeyComparator);
+        InternalUserComparator custom = new InternalUserComparator(new InternalKeyComparator(new BytewiseComparator()
+        {
+        }));
+        InternalKey[] keys = {
+                key("", 5, ValueType.VALUE),
+                key("foo", 200, ValueType.VALUE),
+                key("foo", 100, ValueType.DELETION),
+                key("foo", 100, ValueType.VALUE),
+                key("foobar", 300, ValueType.VALUE),
+                key(new byte[] {(byte) 0xff}, 1, ValueType.VALUE),
+        };
+        for (InternalKey left : keys) {
+            for (InternalKey right : keys) {
+                int expected = Integer.signum(internalKeyComparator.compare(left, right));
+                assertEquals(Integer.signum(bytewise.compare(left.encode(), right.encode())), expected);
+                assertEquals(Integer.signum(custom.compare(left.encode(), right.encode())), expected);
+            }
+        }
+    }
+
     private InternalKey key(String foo, long sequenceNumber, ValueType value)
     {
         return new InternalKey(Slices.wrappedBuffer(foo.getBytes(UTF_8)), sequenceNumber, value);
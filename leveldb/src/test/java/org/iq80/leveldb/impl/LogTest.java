@@ -117,6 +117,73 @@ public class LogTest
         testLog(ImmutableList.of(toSlice("something"), toSlice("something else")), false);
     }
 
+    @Test
+    public void testPreallocatedLog()
+            throws Exception
+    {
+        Env env = EnvImpl.createEnv();
+        org.iq80.leveldb.env.File file = env.toFile(tempFile.getAbsolutePath());
+        writer.close();
+        writer = Logs.createLogWriter(42, env.newPreallocatedWritableFile(file, 64 * 1024), 0);
+        List<Slice> records = asList(toSlice("Oban 14"), toSlice("Highland Park", 4000));
+        for (Slice record : records) {
+            writer.addRecord(record, false);
+        }
+        writer.close();
+        assertEquals(tempFile.length(), 64 * 1024);
+
+        // the zeros past the records are not reported as corruption
+        assertRecords(env, file, -1, records);
+    }
+
+    @Test
+    public void testRecycledLog()
+            throws Exception
+    {
+        Env env = EnvImpl.createEnv();
+        org.iq80.leveldb.env.File file = env.toFile(tempFile.getAbsolutePath());
+        writer.close();
+        writer = Logs.createRecyclableLogWriter(42, env.newPreallocatedWritableFile(file, 64 * 1024));
+        List<Slice> oldRecords = asList(
+                toSlice("Lagunitas IPA", 4000),
+                toSlice("Lagunitas Imperial Stout", 4000),
+                toSlice("Lagavulin", 4000));
+        for (Slice record : oldRecords) {
+            writer.addRecord(record, false);
+        }
+        writer.close();
+        assertRecords(env, file, 42, oldRecords);
+
+        // overwrite the start of the file with fewer records of another log
+        org.iq80.leveldb.env.File recycledFile = env.toFile(tempFile.getAbsolutePath() + ".recycled");
+        writer = Logs.createRecyclableLogWriter(43, env.reuseWritableFile(file, recycledFile, 64 * 1024));
+        List<Slice> records = asList(toSlice("Oban 14"), toSlice("Highland Park", 4000));
+        try {
+            for (Slice record : records) {
+                writer.addRecord(record, false);
+            }
+            writer.close();
+
+            // the records left by log 42 end log 43 without being reported as corruption
+            assertRecords(env, recycledFile, 43, records);
+        }
+        finally {
+            recycledFile.delete();
+        }
+    }
+
+    private static void assertRecords(Env env, org.iq80.leveldb.env.File file, long logNumber, List<Slice> records)
+            throws IOException
+    {
+        try (SequentialFile in = env.newSequentialFile(file)) {
+            LogReader reader = new LogReader(in, NO_CORRUPTION_MONITOR, true, 0, logNumber);
+            for (Slice expected : records) {
+                assertEquals(reader.readRecord(), expected);
+            }
+            assertNull(reader.readRecord());
+        }
+    }
+
     private void testLog(Slice... entries)
             throws IOException
     {
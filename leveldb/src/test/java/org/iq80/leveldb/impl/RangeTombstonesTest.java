@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.impl;
+
+import org.iq80.leveldb.table.BytewiseComparator;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.iq80.leveldb.util.TestUtils.asciiToSlice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RangeTombstonesTest
+{
+    @Test
+    public void testEmpty()
+    {
+        assertTrue(RangeTombstones.EMPTY.isEmpty());
+        assertEquals(RangeTombstones.EMPTY.maxCoveringSequence(asciiToSlice("a"), 100), 0);
+        RangeTombstones tombstones = new RangeTombstones(new BytewiseComparator(), asList(tombstone("c", "c", 5), tombstone("d", "a", 6)));
+        assertEquals(tombstones.size(), 2);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("b"), 100), 0);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("c"), 100), 0);
+    }
+
+    @Test
+    public void testOverlappingTombstones()
+    {
+        // [b, f)@10, [d, h)@20, [d, e)@5
+        RangeTombstones tombstones = new RangeTombstones(new BytewiseComparator(), asList(
+                tombstone("b", "f", 10),
+                tombstone("d", "h", 20),
+                tombstone("d", "e", 5)));
+
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("a"), 100), 0);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("b"), 100), 10);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("c"), 100), 10);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("d"), 100), 20);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("dd"), 19), 10);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("d"), 9), 5);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("d"), 4), 0);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("e"), 9), 0);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("e"), 10), 10);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("g"), 100), 20);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("h"), 100), 0);
+        assertEquals(tombstones.maxCoveringSequence(asciiToSlice("z"), 100), 0);
+    }
+
+    private static RangeTombstone tombstone(String begin, String end, long sequence)
+    {
+        return new RangeTombstone(asciiToSlice(begin), asciiToSlice(end), sequence);
+    }
+}
@@ -36,6 +36,11 @@ public class VersionEditTest
             edit.addFile(3, kBig + 300 + i, kBig + 400 + i,
                     new InternalKey(asciiToSlice("foo"), kBig + 500 + i, ValueType.VALUE),
                     new InternalKey(asciiToSlice("zoo"), kBig + 600 + i, ValueType.DELETION));
+            edit.addFile(5, new FileMetaData(kBig + 800 + i, kBig + 400 + i,
+                    new InternalKey(asciiToSlice("bar"), kBig + 500 + i, ValueType.BLOB_INDEX),
+                    new InternalKey(asciiToSlice("baz"), kBig + 600 + i, ValueType.VALUE), i % 2 == 0, kBig + 100 + i));
+            edit.addBlobFile(new BlobFileMetaData(kBig + 100 + i, 10 + i, kBig + i, i, 100 + i));
+            edit.addBlobGarbage(kBig + 50, 1, 1000 + i);
             edit.deleteFile(4, kBig + 700 + i);
             edit.setCompactPointer(i, new InternalKey(asciiToSlice("x"), kBig + 900 + i, ValueType.VALUE));
         }
@@ -45,6 +50,12 @@ public class VersionEditTest
         edit.setNextFileNumber(kBig + 200);
         edit.setLastSequenceNumber(kBig + 1000);
         testEncodeDecode(edit);
+
+        VersionEdit parsed = new VersionEdit(edit.encode());
+        assertEquals(parsed.getNewFiles().get(5).iterator().next().getOldestBlobFile(), kBig + 100);
+        assertEquals(parsed.getNewBlobFiles().get(kBig + 103).getGarbageBytes(), 103);
+        assertEquals(parsed.getBlobGarbage().get(kBig + 50).getGarbageCount(), 4);
+        assertEquals(parsed.getBlobGarbage().get(kBig + 50).getGarbageBytes(), 4006);
     }
 
     void testEncodeDecode(VersionEdit edit)
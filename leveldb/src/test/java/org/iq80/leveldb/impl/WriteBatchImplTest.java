@@ -20,6 +20,7 @@ package org.iq80.leveldb.impl;
 import org.iq80.leveldb.util.Slice;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class WriteBatchImplTest
@@ -41,6 +42,15 @@ public class WriteBatchImplTest
         batch.delete(slice("box"));
         int postDeleteSize = batch.getApproximateSize();
         assertTrue(twoKeysSize < postDeleteSize);
+
+        batch.deleteRange(slice("a"), slice("b"));
+        int postDeleteRangeSize = batch.getApproximateSize();
+        assertTrue(postDeleteSize < postDeleteRangeSize);
+
+        assertFalse(batch.hasMerges());
+        batch.merge(slice("foo"), slice("1"));
+        assertTrue(postDeleteRangeSize < batch.getApproximateSize());
+        assertTrue(batch.hasMerges());
     }
 
     private static Slice slice(String txt)
@@ -156,6 +156,69 @@ public class MergingIteratorTest
         }
     }
 
+    @Test
+    public void testRandomWalkOverManyInputs()
+    {
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        Random random = new Random(301);
+        for (int inputs = 0; inputs <= 20; inputs++) {
+            List<InternalKey> internalKeys = new ArrayList<>();
+            List<List<Map.Entry<InternalKey, Slice>>> groups = new ArrayList<>();
+            for (int i = 0; i < inputs; i++) {
+                groups.add(new ArrayList<>());
+            }
+            for (int i = 0; i < 200; i++) {
+                InternalKey key = key(String.format("%04d", i), i + 1, ValueType.VALUE);
+                internalKeys.add(key);
+                if (inputs > 0) {
+                    // some inputs may end up empty
+                    groups.get(random.nextInt(inputs)).add(Maps.immutableEntry(key, new Slice(String.valueOf(i).getBytes())));
+                }
+            }
+            if (inputs == 0) {
+                internalKeys.clear();
+            }
+            List<InternalIterator> iterators = groups.stream().map(e -> toIter(comparator, e)).collect(Collectors.toList());
+            try (MergingIterator mergingIterator = new MergingIterator(iterators, comparator)) {
+                int idx = -1;
+                for (int step = 0; step < 2000; step++) {
+                    switch (random.nextInt(6)) {
+                        case 0:
+                        case 1:
+                        case 2:
+                            if (idx < internalKeys.size()) {
+                                idx++;
+                            }
+                            assertEquals(mergingIterator.next(), idx < internalKeys.size());
+                            break;
+                        case 3:
+                        case 4:
+                            if (idx == internalKeys.size()) {
+                                idx = internalKeys.size() - 1;
+                                assertEquals(mergingIterator.prev(), idx >= 0);
+                            }
+                            else {
+                                idx = Math.max(-1, idx - 1);
+                                assertEquals(mergingIterator.prev(), idx >= 0);
+                            }
+                            break;
+                        default:
+                            int target = random.nextInt(internalKeys.size() + 1);
+                            idx = target;
+                            assertEquals(mergingIterator.seek(key(String.format("%04d", target), Integer.MAX_VALUE, ValueType.VALUE)), idx < internalKeys.size());
+                            break;
+                    }
+                    if (idx >= 0 && idx < internalKeys.size()) {
+                        assertValidKV(mergingIterator, internalKeys.get(idx), new Slice(String.valueOf(idx).getBytes()));
+                    }
+                    else {
+                        assertFalse(mergingIterator.valid());
+                    }
+                }
+            }
+        }
+    }
+
     /*
     Create some random groups of keys to ensure merge is ordering correctly the output
      */
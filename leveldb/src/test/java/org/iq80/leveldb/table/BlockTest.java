@@ -22,6 +22,7 @@ import org.iq80.leveldb.util.Slices;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -107,6 +108,45 @@ public class BlockTest
 
     @Test
     public void testNextPrev()
+    {
+        nextPrevTest(false);
+    }
+
+    @Test
+    public void testNextPrevReusedKeyBuffer()
+    {
+        nextPrevTest(true);
+    }
+
+    @Test
+    public void testReusedKeyBufferWithGrowingSharedKeys()
+            throws Exception
+    {
+        List<BlockEntry> entries = asList(
+                BlockHelper.createBlockEntry("a", "1"),
+                BlockHelper.createBlockEntry("aa", "2"),
+                BlockHelper.createBlockEntry("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", "3"),
+                BlockHelper.createBlockEntry("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaab", "4"),
+                BlockHelper.createBlockEntry("ab", "5"),
+                BlockHelper.createBlockEntry("abbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb", "6"),
+                BlockHelper.createBlockEntry("b", "7"));
+        List<BlockEntry> reversed = new ArrayList<>(entries);
+        Collections.reverse(reversed);
+        for (int i = 1; i <= entries.size(); i++) {
+            try (BlockIterator it = buildBLock(i, entries).iterator(true)) {
+                assertTrue(it.seekToFirst());
+                BlockHelper.assertSequence(it, entries);
+                assertTrue(it.seekToLast());
+                BlockHelper.assertReverseSequence(it, reversed);
+                for (int j = 0; j < entries.size(); j++) {
+                    assertTrue(it.seek(entries.get(j).getKey()));
+                    BlockHelper.assertSequence(it, entries.subList(j, entries.size()));
+                }
+            }
+        }
+    }
+
+    private static void nextPrevTest(boolean reuseKeyBuffer)
     {
         List<BlockEntry> entries = asList(
                 BlockHelper.createBlockEntry("beer/ale", "Lagunitas  Little Sumpin’ Sumpin’"),
@@ -116,7 +156,7 @@ public class BlockTest
                 BlockHelper.createBlockEntry("scotch/medium", "Highland Park"),
                 BlockHelper.createBlockEntry("scotch/strong", "Lagavulin"));
         Block block = buildBLock(2, entries);
-        try (BlockIterator it = block.iterator()) {
+        try (BlockIterator it = block.iterator(reuseKeyBuffer)) {
             assertTrue(it.next());
             assertEquals(entry(it), entries.get(0));
             assertFalse(it.prev());
@@ -167,7 +207,13 @@ public class BlockTest
     private static void blockTest(int blockRestartInterval, List<BlockEntry> entries)
     {
         Block block = buildBLock(blockRestartInterval, entries);
-        try (BlockIterator it = block.iterator()) {
+        blockTest(block, entries, false);
+        blockTest(block, entries, true);
+    }
+
+    private static void blockTest(Block block, List<BlockEntry> entries, boolean reuseKeyBuffer)
+    {
+        try (BlockIterator it = block.iterator(reuseKeyBuffer)) {
             assertTrue(it.next() || entries.isEmpty(), "Next should return validity of iterator");
             BlockHelper.assertSequence(it, entries);
 
@@ -190,7 +236,7 @@ public class BlockTest
             it.seek(Slices.wrappedBuffer(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF}));
             BlockHelper.assertSequence(it, Collections.<BlockEntry>emptyList());
         }
-        BlockIterator iterator = block.iterator();
+        BlockIterator iterator = block.iterator(reuseKeyBuffer);
         iterator.seekToFirst();
         iterator.close();
         assertFalse(iterator.valid());
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.table;
+
+import org.iq80.leveldb.env.RandomInputFile;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ReadaheadTest
+{
+    @Test
+    public void testFixedReadahead() throws Exception
+    {
+        CountingInputFile file = new CountingInputFile(10_000);
+        Readahead readahead = new Readahead(file, 4_000);
+        for (int offset = 0; offset < 10_000; offset += 100) {
+            assertRead(readahead, offset, 100);
+        }
+        // blocks of 100 bytes read ahead by 4000 bytes, the last read stops at the end of the file
+        assertEquals(file.reads, listOf(0, 4100, 4100, 4100, 8200, 1800));
+    }
+
+    @Test
+    public void testAutoReadahead() throws Exception
+    {
+        CountingInputFile file = new CountingInputFile(1 << 20);
+        Readahead readahead = new Readahead(file, 0);
+        for (int offset = 0; offset < 40_000; offset += 1000) {
+            assertRead(readahead, offset, 1000);
+        }
+        // two reads of single blocks, then readahead doubling from 8KB
+        assertEquals(file.reads.subList(0, 6), listOf(0, 1000, 1000, 1000, 2000, 1000 + 8 * 1024));
+        assertEquals(file.reads.subList(6, 8), listOf(11_000, 1000 + 16 * 1024));
+    }
+
+    @Test
+    public void testAutoReadaheadResetOnRandomRead() throws Exception
+    {
+        CountingInputFile file = new CountingInputFile(1 << 20);
+        Readahead readahead = new Readahead(file, 0);
+        assertRead(readahead, 0, 1000);
+        assertRead(readahead, 1000, 1000);
+        assertRead(readahead, 2000, 1000);
+        assertRead(readahead, 500_000, 1000);
+        assertRead(readahead, 501_000, 1000);
+        assertRead(readahead, 502_000, 1000);
+        assertEquals(file.reads, listOf(0, 1000, 1000, 1000, 2000, 1000 + 8 * 1024,
+                500_000, 1000, 501_000, 1000, 502_000, 1000 + 8 * 1024));
+    }
+
+    @Test
+    public void testLastReadBuffered() throws Exception
+    {
+        CountingInputFile file = new CountingInputFile(1 << 20);
+        Readahead readahead = new Readahead(file, 0);
+        assertRead(readahead, 0, 1000);
+        assertFalse(readahead.isLastReadBuffered());
+        assertRead(readahead, 1000, 1000);
+        assertFalse(readahead.isLastReadBuffered());
+        assertRead(readahead, 2000, 1000);
+        assertTrue(readahead.isLastReadBuffered());
+        assertRead(readahead, 3000, 1000);
+        assertTrue(readahead.isLastReadBuffered());
+        assertRead(readahead, 500_000, 1000);
+        assertFalse(readahead.isLastReadBuffered());
+    }
+
+    private static void assertRead(Readahead readahead, long offset, int length) throws Exception
+    {
+        ByteBuffer read = readahead.read(offset, length);
+        assertEquals(read.remaining(), length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(read.get(), (byte) (offset + i));
+        }
+    }
+
+    private static List<Long> listOf(long... values)
+    {
+        List<Long> list = new ArrayList<>();
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * File where each byte is its offset, recording the offset and length of each read.
+     */
+    private static final class CountingInputFile implements RandomInputFile
+    {
+        private final long size;
+        private final List<Long> reads = new ArrayList<>();
+
+        private CountingInputFile(long size)
+        {
+            this.size = size;
+        }
+
+        @Override
+        public long size()
+        {
+            return size;
+        }
+
+        @Override
+        public ByteBuffer read(long offset, int length)
+        {
+            reads.add(offset);
+            reads.add((long) length);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) (offset + i));
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
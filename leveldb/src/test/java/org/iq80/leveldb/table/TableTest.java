@@ -35,6 +35,7 @@ import org.iq80.leveldb.impl.MemTable;
 import org.iq80.leveldb.impl.ValueType;
 import org.iq80.leveldb.iterator.SeekingDBIteratorAdapter;
 import org.iq80.leveldb.iterator.SeekingIterator;
+import org.iq80.leveldb.iterator.SliceIterator;
 import org.iq80.leveldb.util.Closeables;
 import org.iq80.leveldb.util.ILRUCache;
 import org.iq80.leveldb.util.LRUCache;
@@ -60,6 +61,10 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static java.util.Arrays.asList;
@@ -79,7 +84,7 @@ public abstract class TableTest
     private Table createTable(File file, Comparator<Slice> comparator, boolean verifyChecksums, FilterPolicy filterPolicy)
         throws Exception
     {
-        RandomInputFile open = defaultEnv.newRandomAccessFile(file);
+        RandomInputFile open = newRandomAccessFile(defaultEnv, file);
         try {
             return new Table(open, comparator, verifyChecksums, LRUCache.createCache(8 << 5, new BlockHandleSliceWeigher()), filterPolicy);
         }
@@ -321,6 +326,242 @@ public abstract class TableTest
         assertBetween(c.approximateOffsetOf("xyz"), 2 * minZ, 2 * maxZ);
     }
 
+    @Test
+    public void testPartitionedIndexAndFilter() throws Exception
+    {
+        TableConstructor c = new TableConstructor(new BytewiseComparator());
+        for (int i = 0; i < 2000; i += 2) {
+            c.add(String.format("k%06d", i), "value" + i);
+        }
+        Options options = new Options();
+        options.blockSize(256);
+        options.partitionIndexAndFilters(true);
+        options.metadataBlockSize(128);
+        options.filterPolicy(new BloomFilterPolicy(10));
+        c.finish(options, defaultEnv);
+
+        ReadOptions readOptions = new ReadOptions();
+        for (int i = 0; i < 2000; i += 2) {
+            String key = String.format("k%06d", i);
+            Slice value = c.table.internalGet(readOptions, asciiToSlice(key), (k, v) -> k.equals(asciiToSlice(key)) ? v : null);
+            assertEquals(value, asciiToSlice("value" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 1; i < 2000; i += 2) {
+            String key = String.format("k%06d", i);
+            if (c.table.internalGet(readOptions, asciiToSlice(key), (k, v) -> k) != null) {
+                falsePositives++;
+            }
+        }
+        // seek lands on next key in the same partition only when the filter lets it through
+        assertTrue(falsePositives < 100, "too many false positives " + falsePositives);
+        assertBetween(c.approximateOffsetOf("k000000"), 0, 0);
+        assertTrue(c.approximateOffsetOf("k001000") > 0);
+        assertTrue(c.approximateOffsetOf("z") >= c.approximateOffsetOf("k001998"));
+    }
+
+    @Test
+    public void testReadahead() throws Exception
+    {
+        TableConstructor c = new TableConstructor(new BytewiseComparator());
+        for (int i = 0; i < 2000; i++) {
+            c.add(String.format("k%06d", i), "value" + i);
+        }
+        Options options = new Options();
+        options.blockSize(256);
+        c.finish(options, defaultEnv);
+
+        for (int readaheadSize : new int[] {0, 1000, 64 * 1024}) {
+            for (boolean fillCache : new boolean[] {false, true}) {
+                ReadOptions readOptions = new ReadOptions().readaheadSize(readaheadSize).fillCache(fillCache);
+                try (SliceIterator iterator = c.table.iterator(readOptions)) {
+                    int i = 0;
+                    for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                        assertEquals(iterator.key(), asciiToSlice(String.format("k%06d", i)));
+                        assertEquals(iterator.value(), asciiToSlice("value" + i));
+                        i++;
+                    }
+                    assertEquals(i, 2000);
+                    // random access after the sequential scan
+                    for (int j = 1999; j >= 0; j -= 97) {
+                        assertTrue(iterator.seek(asciiToSlice(String.format("k%06d", j))));
+                        assertEquals(iterator.value(), asciiToSlice("value" + j));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncPrefetch() throws Exception
+    {
+        for (boolean partitioned : new boolean[] {false, true}) {
+            Options options = new Options();
+            options.blockSize(256);
+            options.partitionIndexAndFilters(partitioned);
+            options.metadataBlockSize(128);
+            KVMap data = new KVMap(new BytewiseComparator());
+            for (int i = 0; i < 2000; i++) {
+                data.put(asciiToSlice(String.format("k%06d", i)), asciiToSlice("value" + i));
+            }
+            byte[] content = buildTable(options, data, false);
+
+            AtomicInteger prefetches = new AtomicInteger();
+            Executor executor = command -> {
+                prefetches.incrementAndGet();
+                command.run();
+            };
+            ILRUCache<CacheKey, Slice> blockCache = LRUCache.createCache(8 << 20, new BlockHandleSliceWeigher());
+            try (Table table = new Table(new StringSource(content), new BytewiseComparator(), true, blockCache, null, executor)) {
+                assertScan(table, new ReadOptions().asyncPrefetch(true), data);
+                // each block but the first one is loaded ahead of the iterator
+                int blocks = prefetches.get();
+                assertTrue(blocks > 10, "prefetched " + blocks + " blocks");
+
+                // cached blocks are not prefetched again
+                assertScan(table, new ReadOptions().asyncPrefetch(true), data);
+                assertEquals(prefetches.get(), blocks);
+            }
+        }
+    }
+
+    @Test
+    public void testPreloadPartitions() throws Exception
+    {
+        for (boolean partitioned : new boolean[] {false, true}) {
+            Options options = new Options();
+            options.blockSize(256);
+            options.filterPolicy(new BloomFilterPolicy(10));
+            options.partitionIndexAndFilters(partitioned);
+            options.metadataBlockSize(128);
+            KVMap data = new KVMap(new BytewiseComparator());
+            for (int i = 0; i < 2000; i++) {
+                data.put(asciiToSlice(String.format("k%06d", i)), asciiToSlice("value" + i));
+            }
+            byte[] content = buildTable(options, data, false);
+
+            ILRUCache<CacheKey, Slice> blockCache = LRUCache.createCache(8 << 20, new BlockHandleSliceWeigher());
+            try (Table table = new Table(new StringSource(content), new BytewiseComparator(), true, blockCache, (FilterPolicy) options.filterPolicy())) {
+                long opened = blockCache.getApproximateMemoryUsage();
+                table.preloadPartitions();
+                long preloaded = blockCache.getApproximateMemoryUsage();
+                if (partitioned) {
+                    assertTrue(preloaded > opened, "partitions should be cached");
+                }
+                else {
+                    assertEquals(preloaded, opened);
+                }
+                // data blocks are still read on demand
+                ReadOptions readOptions = new ReadOptions().fillCache(false);
+                assertScan(table, readOptions, data);
+                table.preloadPartitions();
+                assertEquals(blockCache.getApproximateMemoryUsage(), preloaded);
+            }
+        }
+    }
+
+    private static void assertScan(Table table, ReadOptions readOptions, KVMap data) throws IOException
+    {
+        try (SliceIterator iterator = table.iterator(readOptions)) {
+            Iterator<Map.Entry<Slice, Slice>> expected = data.entrySet().iterator();
+            for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                Map.Entry<Slice, Slice> entry = expected.next();
+                assertEquals(iterator.key(), entry.getKey());
+                assertEquals(iterator.value(), entry.getValue());
+            }
+            assertFalse(expected.hasNext());
+        }
+    }
+
+    @Test
+    public void testCompressionDictionary() throws Exception
+    {
+        for (boolean partitioned : new boolean[] {false, true}) {
+            Options options = new Options();
+            options.blockSize(512);
+            options.compressionType(CompressionType.ZSTD);
+            options.compressionDictionarySize(4096);
+            options.filterPolicy(new BloomFilterPolicy(10));
+            options.partitionIndexAndFilters(partitioned);
+            options.metadataBlockSize(256);
+            KVMap data = new KVMap(new BytewiseComparator());
+            Random random = new Random(301);
+            for (int i = 0; i < 5000; i++) {
+                // small similar documents, each block on its own is hard to compress
+                data.put(asciiToSlice(String.format("k%06d", i)), asciiToSlice(String.format(
+                        "{\"id\":%d,\"name\":\"user%d\",\"email\":\"user%d@example.com\",\"active\":%s,\"score\":%d}",
+                        i, random.nextInt(100000), random.nextInt(100000), random.nextBoolean(), random.nextInt(1000))));
+            }
+
+            byte[] plain = buildTable(options, data, false);
+            byte[] withDictionary = buildTable(options, data, true);
+            assertTrue(withDictionary.length < plain.length, String.format("dictionary table is %d bytes, plain table %d bytes", withDictionary.length, plain.length));
+
+            try (Table table = new Table(new StringSource(withDictionary), new BytewiseComparator(), true, null, (FilterPolicy) options.filterPolicy())) {
+                ReadOptions readOptions = new ReadOptions().verifyChecksums(true);
+                try (SeekingIterator<Slice, Slice> iterator = table.iterator(readOptions)) {
+                    Iterator<Map.Entry<Slice, Slice>> expected = data.entrySet().iterator();
+                    for (boolean valid = iterator.seekToFirst(); valid; valid = iterator.next()) {
+                        Map.Entry<Slice, Slice> entry = expected.next();
+                        assertEquals(iterator.key(), entry.getKey());
+                        assertEquals(iterator.value(), entry.getValue());
+                    }
+                    assertFalse(expected.hasNext());
+                }
+                for (Map.Entry<Slice, Slice> entry : data.entrySet()) {
+                    assertEquals(table.internalGet(readOptions, entry.getKey(), (k, v) -> v), entry.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelCompression() throws Exception
+    {
+        KVMap data = new KVMap(new BytewiseComparator());
+        Random random = new Random(301);
+        for (int i = 0; i < 20000; i++) {
+            data.put(asciiToSlice(String.format("k%06d", i)), TestUtils.compressibleString(random, 0.5, random.nextInt(200)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (CompressionType compressionType : CompressionType.values()) {
+                for (boolean dictionary : new boolean[] {false, true}) {
+                    Options options = new Options();
+                    options.compressionType(compressionType);
+                    options.compressionDictionarySize(4096);
+                    options.compressionThreads(4);
+                    options.filterPolicy(new BloomFilterPolicy(10));
+                    byte[] expected = buildTable(options, data, dictionary, null);
+                    // blocks are written in order and yield the same table as sequential compression
+                    assertEquals(buildTable(options, data, dictionary, executor), expected, compressionType + " dictionary=" + dictionary);
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] buildTable(Options options, KVMap data, boolean trainCompressionDictionary) throws IOException
+    {
+        return buildTable(options, data, trainCompressionDictionary, null);
+    }
+
+    private static byte[] buildTable(Options options, KVMap data, boolean trainCompressionDictionary, Executor compressionExecutor) throws IOException
+    {
+        StringSink sink = new StringSink();
+        TableBuilder builder = new TableBuilder(options, sink, new BytewiseComparator(), options.compressionType(), trainCompressionDictionary, compressionExecutor);
+        for (Map.Entry<Slice, Slice> e : data.entrySet()) {
+            builder.add(e.getKey(), e.getValue());
+        }
+        assertTrue(builder.getFileSize() > 0);
+        builder.finish();
+        sink.close();
+        assertEquals(sink.content.length, builder.getFileSize());
+        return sink.content;
+    }
+
     static void assertBetween(long val, long low, long high)
     {
         assertTrue((val >= low) && (val <= high),
@@ -424,6 +665,8 @@ public abstract class TableTest
                     {newHarness(TableConstructor.class, reverse, 16)},
                     {newHarness(TableConstructor.class, reverse, 1)},
                     {newHarness(TableConstructor.class, reverse, 1024)},
+                    {newHarness(TableConstructor.class, null, 16, true)},
+                    {newHarness(TableConstructor.class, reverse, 1, true)},
 
                     {newHarness(BlockConstructor.class, null, 16)},
                     {newHarness(BlockConstructor.class, null, 1)},
@@ -438,6 +681,7 @@ public abstract class TableTest
 
                     {newHarness(DbConstructor.class, null, 16)},
                     {newHarness(DbConstructor.class, reverse, 16)},
+                    {newHarness(DbConstructor.class, null, 16, true)},
             };
         }
         catch (Exception e) {
@@ -446,9 +690,14 @@ public abstract class TableTest
     }
 
     private static Harness newHarness(Class<? extends Constructor> cls, DBComparator dbComparator, int restartInterval) throws Exception
+    {
+        return newHarness(cls, dbComparator, restartInterval, false);
+    }
+
+    private static Harness newHarness(Class<? extends Constructor> cls, DBComparator dbComparator, int restartInterval, boolean partitioned) throws Exception
     {
         Random rnd = new Random(301 + System.nanoTime());
-        return new Harness(rnd, dbComparator, cls, restartInterval);
+        return new Harness(rnd, dbComparator, cls, restartInterval, partitioned);
     }
 
     @Test(dataProvider = "testArgs")
@@ -564,11 +813,18 @@ public abstract class TableTest
         private Options options;
 
         public Harness(Random random, DBComparator comparator, Class<T> cls, int restartInterval) throws Exception
+        {
+            this(random, comparator, cls, restartInterval, false);
+        }
+
+        public Harness(Random random, DBComparator comparator, Class<T> cls, int restartInterval, boolean partitioned) throws Exception
         {
             this.rnd = random;
             this.options = new Options();
             options.blockRestartInterval(restartInterval);
             options.blockSize(256);
+            options.partitionIndexAndFilters(partitioned);
+            options.metadataBlockSize(64);
             if (comparator != null) {
                 this.comparator = new CustomUserComparator(comparator);
                 options.comparator(comparator);
@@ -577,7 +833,7 @@ public abstract class TableTest
                 this.comparator = new BytewiseComparator();
             }
             constructor = cls.getConstructor(UserComparator.class).newInstance(this.comparator);
-            desc = cls.getSimpleName() + ", comparator= " + (comparator == null ? null : comparator.getClass().getSimpleName()) + ", restartInterval=" + restartInterval;
+            desc = cls.getSimpleName() + ", comparator= " + (comparator == null ? null : comparator.getClass().getSimpleName()) + ", restartInterval=" + restartInterval + (partitioned ? ", partitioned" : "");
         }
 
         public Random getRnd()
@@ -1073,6 +1329,12 @@ public abstract class TableTest
 
     protected abstract Env getEnv();
 
+    protected RandomInputFile newRandomAccessFile(Env env, File file)
+            throws IOException
+    {
+        return env.newRandomAccessFile(file);
+    }
+
     @AfterMethod
     public void tearDown()
             throws Exception
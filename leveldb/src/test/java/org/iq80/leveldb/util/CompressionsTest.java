@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import com.google.common.base.Strings;
+import org.iq80.leveldb.CompressionType;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CompressionsTest
+{
+    @DataProvider(name = "codecs")
+    public Object[][] codecsProvider()
+    {
+        return new Object[][] {
+                {CompressionType.SNAPPY},
+                {CompressionType.LZ4},
+                {CompressionType.ZSTD},
+        };
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(CompressionType type)
+            throws IOException
+    {
+        assertTrue(Compressions.available(type));
+        Random random = new Random(301);
+        for (int length : new int[] {0, 1, 100, 4096, 100_000}) {
+            byte[] raw = new byte[length];
+            for (int i = 0; i < length; i++) {
+                // compressible but not trivial
+                raw[i] = (byte) ('a' + random.nextInt(8));
+            }
+            assertRoundTrip(type, raw);
+        }
+        assertRoundTrip(type, Strings.repeat("leveldb", 1000).getBytes(UTF_8));
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testDirectBuffer(CompressionType type)
+            throws IOException
+    {
+        byte[] raw = Strings.repeat("direct buffer ", 300).getBytes(UTF_8);
+        byte[] compressed = new byte[Compressions.maxCompressedLength(type, raw.length)];
+        int size = Compressions.compress(type, raw, 0, raw.length, compressed, 0);
+        ByteBuffer direct = ByteBuffer.allocateDirect(size);
+        direct.put(compressed, 0, size);
+        direct.flip();
+        assertEquals(Compressions.uncompress(type, direct), Slices.wrappedBuffer(raw));
+        assertEquals(direct.position(), 0);
+    }
+
+    @Test
+    public void testPureJavaLz4Compatibility()
+            throws IOException
+    {
+        byte[] raw = Strings.repeat("lz4 compatibility ", 500).getBytes(UTF_8);
+        assertCompatible(new Lz4.AirliftLz4(), new Lz4.Lz4Java(), raw);
+        assertCompatible(new Lz4.Lz4Java(), new Lz4.AirliftLz4(), raw);
+    }
+
+    @Test
+    public void testPureJavaZstdCompatibility()
+            throws IOException
+    {
+        byte[] raw = Strings.repeat("zstd compatibility ", 500).getBytes(UTF_8);
+        assertCompatible(new Zstd.AirliftZstd(), new Zstd.ZstdJni(), raw);
+        assertCompatible(new Zstd.ZstdJni(), new Zstd.AirliftZstd(), raw);
+    }
+
+    private static void assertRoundTrip(CompressionType type, byte[] raw)
+            throws IOException
+    {
+        int offset = 3;
+        byte[] compressed = new byte[offset + Compressions.maxCompressedLength(type, raw.length)];
+        int size = Compressions.compress(type, raw, 0, raw.length, compressed, offset);
+        assertTrue(size <= Compressions.maxCompressedLength(type, raw.length));
+        Slice uncompressed = Compressions.uncompress(type, ByteBuffer.wrap(compressed, offset, size));
+        assertEquals(uncompressed, Slices.wrappedBuffer(raw));
+    }
+
+    private static void assertCompatible(Lz4.SPI compressor, Lz4.SPI decompressor, byte[] raw)
+            throws IOException
+    {
+        byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+        int size = compressor.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+        byte[] output = new byte[raw.length];
+        assertEquals(decompressor.uncompress(compressed, 0, size, output, 0, raw.length), raw.length);
+        assertEquals(output, raw);
+    }
+
+    private static void assertCompatible(Zstd.SPI compressor, Zstd.SPI decompressor, byte[] raw)
+            throws IOException
+    {
+        byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+        int size = compressor.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+        byte[] output = new byte[raw.length];
+        assertEquals(decompressor.uncompress(compressed, 0, size, output, 0, raw.length), raw.length);
+        assertEquals(output, raw);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class Crc32CTest
+{
+    @Test
+    public void testIntrinsicAvailable()
+    {
+        // tests run on JDK 9+
+        assertTrue(Crc32C.intrinsic());
+        assertTrue(!(Crc32C.newChecksum() instanceof PureJavaCrc32C));
+    }
+
+    @Test
+    public void testMatchesPureJava()
+    {
+        Random random = new Random(32);
+        for (int length : new int[] {0, 1, 7, 8, 9, 100, 4096, 32_771}) {
+            byte[] data = new byte[length + 3];
+            random.nextBytes(data);
+
+            PureJavaCrc32C expected = new PureJavaCrc32C();
+            expected.update(data, 3, length);
+            expected.update(0x42);
+
+            Checksum actual = Crc32C.newChecksum();
+            actual.update(data, 3, length);
+            actual.update(0x42);
+            assertEquals(actual.getValue(), expected.getValue());
+            assertEquals(Crc32C.getMaskedValue(actual), expected.getMaskedValue());
+
+            assertBuffer(expected.getMaskedValue(), data, length, ByteBuffer.allocate(length + 5));
+            assertBuffer(expected.getMaskedValue(), data, length, ByteBuffer.allocateDirect(length + 5));
+            assertBuffer(expected.getMaskedValue(), data, length, ByteBuffer.allocateDirect(length + 5).order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private static void assertBuffer(int expectedMaskedCrc, byte[] data, int length, ByteBuffer buffer)
+    {
+        buffer.position(2);
+        buffer.put(data, 3, length);
+        buffer.put((byte) 0x42);
+        buffer.limit(buffer.position());
+        buffer.position(2);
+
+        Checksum checksum = Crc32C.newChecksum();
+        Crc32C.update(checksum, buffer);
+        assertEquals(buffer.position(), buffer.limit());
+        assertEquals(Crc32C.getMaskedValue(checksum), expectedMaskedCrc);
+
+        PureJavaCrc32C pure = new PureJavaCrc32C();
+        buffer.position(2);
+        Crc32C.update(pure, buffer);
+        assertEquals(pure.getMaskedValue(), expectedMaskedCrc);
+    }
+}
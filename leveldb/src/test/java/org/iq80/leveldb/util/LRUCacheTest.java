@@ -20,6 +20,7 @@ package org.iq80.leveldb.util;
 import com.google.common.cache.Weigher;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 
 import static org.testng.Assert.assertEquals;
@@ -74,6 +75,22 @@ public class LRUCacheTest
         assertEquals(caches[1].count, 2);
     }
 
+    @Test
+    public void testKeysByRecency() throws Exception
+    {
+        final IRecencyTrackingCache<Long, Integer> cache = LRUCache.createRecencyTrackingCache(3, new CountWeigher());
+        final CacheWithStatistics[] caches = CacheWithStatistics.withStatistics(cache, 1);
+        caches[0].load(0);
+        caches[0].load(1);
+        caches[0].load(2);
+        assertEquals(cache.keysByRecency(), Arrays.asList(2L, 1L, 0L));
+
+        caches[0].load(0);
+        caches[0].load(0);
+        assertEquals(cache.getIfPresent(1L), (Integer) 3);
+        assertEquals(cache.keysByRecency(), Arrays.asList(1L, 0L, 2L));
+    }
+
     private static class CacheWithStatistics
     {
         private final ILRUCache<Long, Integer> cache;
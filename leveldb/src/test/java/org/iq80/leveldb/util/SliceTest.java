@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iq80.leveldb.util;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SliceTest
+{
+    @Test
+    public void testDirectBufferSlice()
+    {
+        byte[] bytes = new byte[64];
+        new Random(33).nextBytes(bytes);
+        Slice heap = Slices.wrappedBuffer(bytes).slice(3, 50);
+        Slice direct = direct(bytes).slice(3, 50);
+
+        assertTrue(heap.hasArray());
+        assertFalse(direct.hasArray());
+        assertEquals(direct.length(), heap.length());
+        for (int i = 0; i < heap.length(); i++) {
+            assertEquals(direct.getByte(i), heap.getByte(i));
+            assertEquals(direct.getUnsignedByte(i), heap.getUnsignedByte(i));
+        }
+        for (int i = 0; i + 8 <= heap.length(); i++) {
+            assertEquals(direct.getShort(i), heap.getShort(i));
+            assertEquals(direct.getInt(i), heap.getInt(i));
+            assertEquals(direct.getLong(i), heap.getLong(i));
+        }
+        assertEquals(direct.getBytes(), heap.getBytes());
+        assertEquals(direct.getBytes(5, 10), heap.getBytes(5, 10));
+        assertEquals(direct.copySlice(5, 10), heap.copySlice(5, 10));
+        assertTrue(direct.copySlice().hasArray());
+        assertEquals(direct.toByteBuffer(2, 7), heap.toByteBuffer(2, 7));
+
+        assertEquals(direct, heap);
+        assertEquals(heap, direct);
+        assertEquals(direct.hashCode(), heap.hashCode());
+        assertEquals(direct.compareTo(heap), 0);
+        assertEquals(direct.slice(1, 10), heap.slice(1, 10));
+        assertTrue(direct.slice(0, 10).compareTo(heap.slice(1, 10)) != 0);
+        assertEquals(Integer.signum(direct.slice(0, 10).compareTo(heap.slice(1, 10))),
+                Integer.signum(heap.slice(0, 10).compareTo(heap.slice(1, 10))));
+        assertTrue(direct.compareTo(heap.slice(0, 49)) > 0);
+        assertEquals(Hash.hash(direct, 7), Hash.hash(heap, 7));
+        assertEquals(Hash.hash(direct.slice(0, 7), 7), Hash.hash(bytes, 3, 7, 7));
+
+        SliceInput input = direct.input();
+        assertEquals(input.readInt(), heap.getInt(0));
+        assertEquals(input.readSlice(4), heap.slice(4, 4));
+    }
+
+    @Test
+    public void testCopyBetweenHeapAndDirect()
+    {
+        byte[] bytes = new byte[32];
+        new Random(34).nextBytes(bytes);
+        Slice direct = direct(bytes);
+
+        Slice heap = Slices.allocate(40);
+        heap.setBytes(4, direct, 2, 30);
+        assertEquals(heap.slice(4, 30), direct.slice(2, 30));
+
+        Slice target = Slices.referencedBuffer(ByteBuffer.allocateDirect(40));
+        target.setBytes(1, heap, 4, 30);
+        assertEquals(target.slice(1, 30), direct.slice(2, 30));
+        target.setBytes(0, direct, 0, 32);
+        assertEquals(target.slice(0, 32), Slices.wrappedBuffer(bytes));
+        target.setInt(32, 0x01020304);
+        assertEquals(target.getInt(32), 0x01020304);
+
+        SliceOutput output = Slices.allocate(64).output();
+        output.writeBytes(direct);
+        output.writeBytes(direct, 1, 3);
+        assertEquals(output.slice().slice(0, 32), direct);
+        assertEquals(output.slice().slice(32, 3), direct.slice(1, 3));
+    }
+
+    private static Slice direct(byte[] bytes)
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 7);
+        buffer.position(7);
+        buffer.put(bytes);
+        buffer.position(7);
+        return Slices.referencedBuffer(buffer);
+    }
+}